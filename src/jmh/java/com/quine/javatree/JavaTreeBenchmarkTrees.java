@@ -0,0 +1,104 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * JavaTreeBenchmarkTrees generates trees used by benchmarks. Trees are filled level by level, every node gets up to
+ * fanOut children and no node is deeper than depth, so the tree has size nodes unless the depth and fan-out can not
+ * hold that many. Titles and texts are random but the same for the same arguments.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeBenchmarkTrees {
+    // longest text of a generated node
+    private final static int    MAX_TEXT_LENGTH = 200;
+
+    private final static String WORDS[]         = { "tree", "node", "data", "java", "swing", "value", "note", "item" };
+
+    /**
+     * Generates a tree.
+     * 
+     * @param size
+     * @param depth
+     * @param fanOut
+     * 
+     * @return root
+     */
+    public static DefaultMutableTreeNode generate(int size, int depth, int fanOut) {
+
+        Random random = new Random(size * 31L + depth * 17L + fanOut);
+        DefaultMutableTreeNode root = createNode(random, 0);
+        int count = 1;
+
+        Deque<DefaultMutableTreeNode> queue = new ArrayDeque<DefaultMutableTreeNode>();
+        queue.add(root);
+        while (count < size && !queue.isEmpty()) {
+            DefaultMutableTreeNode node = queue.poll();
+            if (node.getLevel() >= depth) {
+                break;
+            }
+            for (int index = 0; index < fanOut && count < size; index++) {
+                DefaultMutableTreeNode child = createNode(random, count++);
+                node.add(child);
+                queue.add(child);
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Creates a node with random text.
+     * 
+     * @param random
+     * @param number
+     * 
+     * @return node
+     */
+    private static DefaultMutableTreeNode createNode(Random random, int number) {
+
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(MAX_TEXT_LENGTH);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        return new DefaultMutableTreeNode(new JavaTreeNodeObject("node " + number, text.toString().trim()));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JavaTreeEditBenchmark measures structural edits of generated trees through the node actions of
+ * JavaTreeActionController. Every benchmark performs an edit and the edit that undoes it, so the number of nodes and
+ * their depth stay the same during a run. Only the order of siblings changes.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JavaTreeEditBenchmark {
+    @Param({ "10000", "100000" })
+    private int                          size;
+
+    @Param({ "6" })
+    private int                          depth;
+
+    @Param({ "10" })
+    private int                          fanOut;
+
+    private JavaTreeActionController     controller;
+    private JTree                        tree;
+
+    // all nodes except the root
+    private List<DefaultMutableTreeNode> nodes;
+    private Random                       random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        controller = new JavaTreeActionController(new JavaTreeOptions());
+        DefaultMutableTreeNode root = JavaTreeBenchmarkTrees.generate(size, depth, fanOut);
+        tree = new JTree(root);
+
+        nodes = new ArrayList<DefaultMutableTreeNode>();
+        Enumeration<TreeNode> enumeration = root.preorderEnumeration();
+        enumeration.nextElement();
+        while (enumeration.hasMoreElements()) {
+            nodes.add((DefaultMutableTreeNode) enumeration.nextElement());
+        }
+        random = new Random(size);
+    }
+
+    @Benchmark
+    public void addChildAndDelete() {
+
+        DefaultMutableTreeNode node = randomNode();
+        controller.addChildToGivenNodeAction(tree, node);
+        controller.deleteGivenNodeAction(tree, (DefaultMutableTreeNode) node.getLastChild());
+    }
+
+    @Benchmark
+    public void moveUpAndDown() {
+
+        DefaultMutableTreeNode node = randomNode();
+        if (node.getPreviousSibling() != null) {
+            controller.moveGivenNodeUpAction(tree, node);
+            controller.moveGivenNodeDownAction(tree, node);
+        }
+    }
+
+    @Benchmark
+    public void moveLevelDownAndUp() {
+
+        DefaultMutableTreeNode node = randomNode();
+        if (node.getNextSibling() != null) {
+            controller.moveGivenNodeLevelDownAction(tree, node);
+            controller.moveGivenNodeLevelUpAction(tree, node);
+        }
+    }
+
+    /**
+     * @return random node that is not the root
+     */
+    private DefaultMutableTreeNode randomNode() {
+        return nodes.get(random.nextInt(nodes.size()));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * JavaTreeLoadBenchmark measures reading of XML documents written from generated trees with the DOM engine, with the
+ * DOM engine in trusted mode, which skips validation of the unchanged document, and with the streaming loader.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JavaTreeLoadBenchmark {
+    @Param({ "10000", "100000" })
+    private int                      size;
+
+    @Param({ "6" })
+    private int                      depth;
+
+    @Param({ "10" })
+    private int                      fanOut;
+
+    private JavaTreeActionController domController;
+    private JavaTreeActionController trustedController;
+    private JavaTreeActionController staxController;
+    private Path                     directory;
+    private File                     file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        JavaTreeOptions domOptions = new JavaTreeOptions();
+        domOptions.setLoadEngine(JavaTreeOptions.LoadEngine.DOM);
+        domController = new JavaTreeActionController(domOptions);
+        JavaTreeOptions trustedOptions = new JavaTreeOptions();
+        trustedOptions.setLoadEngine(JavaTreeOptions.LoadEngine.DOM);
+        trustedOptions.setTrustedOpen(true);
+        trustedController = new JavaTreeActionController(trustedOptions);
+        staxController = new JavaTreeActionController(new JavaTreeOptions());
+
+        directory = Files.createTempDirectory("javatree-load");
+        file = directory.resolve("benchmark.jtd").toFile();
+        DefaultMutableTreeNode root = JavaTreeBenchmarkTrees.generate(size, depth, fanOut);
+        if (!staxController.saveTreeToFile(root, file)) {
+            throw new IllegalStateException("Could not write " + file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        Files.deleteIfExists(file.toPath());
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public DefaultMutableTreeNode loadDom() {
+
+        Document document = domController.loadDocumentFromFile(file, new JavaTreeProgress());
+        return domController.convertDocumentToTreeNode(document);
+    }
+
+    @Benchmark
+    public DefaultMutableTreeNode loadDomTrusted() {
+
+        Document document = trustedController.loadDocumentFromFile(file, new JavaTreeProgress());
+        return trustedController.convertDocumentToTreeNode(document);
+    }
+
+    @Benchmark
+    public DefaultMutableTreeNode loadStax() {
+        return staxController.loadTreeFromFile(file, new JavaTreeProgress());
+    }
+}
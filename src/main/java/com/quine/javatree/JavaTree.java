@@ -45,9 +45,16 @@ import javax.swing.UnsupportedLookAndFeelException;
 public class JavaTree {
 
     /**
+     * Starts the application, or runs JavaTreeCli without a user interface if any arguments are given.
+     * 
      * @param args
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            JavaTreeCli.main(args);
+            return;
+        }
+
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 createAndShowGUI();
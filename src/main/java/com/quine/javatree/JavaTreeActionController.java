@@ -27,12 +27,27 @@
 package com.quine.javatree;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JTree;
+import javax.swing.filechooser.FileFilter;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import javax.swing.tree.TreeSelectionModel;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
@@ -42,6 +57,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
@@ -58,12 +74,45 @@ import org.w3c.dom.Text;
  */
 
 public class JavaTreeActionController {
+    // file extension of XML documents
+    private final static String   XML_EXTENSION   = ".jtd";
+
+    // deepest document saved with the Transformer, which recurses once per level, deeper ones are written iteratively
+    private final static int      TRANSFORM_DEPTH = 1000;
+
+    // settings that select load and save engines
+    private JavaTreeOptions       options;
+
+    // cache of binary images of XML documents, created when it is first needed
+    private JavaTreeDocumentCache cache;
 
     /**
      * Creates standard JavaTreeActionControler
      */
     public JavaTreeActionController() {
+        this(JavaTreeOptions.fromSystemProperties());
+    }
+
+    /**
+     * Creates JavaTreeActionControler that uses given options. Sets text store of node objects if options spill large
+     * texts and no store is set yet.
+     * 
+     * @param options
+     */
+    public JavaTreeActionController(JavaTreeOptions options) {
+        this.options = options;
 
+        if (options.getTextSpillSize() > 0 && JavaTreeNodeObject.getTextStore() == null) {
+            JavaTreeNodeObject.setTextStore(new JavaTreeTextStore(options.getTextSpillSize(),
+                                                                  options.getTextCacheSize()));
+        }
+    }
+
+    /**
+     * @return the options
+     */
+    public JavaTreeOptions getOptions() {
+        return options;
     }
 
     /**
@@ -73,9 +122,9 @@ public class JavaTreeActionController {
      */
     public JTree newAction() {
 
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode(new JavaTreeNodeObject("main"));
+        DefaultMutableTreeNode root = new JavaTreeNode(new JavaTreeNodeObject("main"));
 
-        return new JTree(root);
+        return createTree(root);
     }
 
     /**
@@ -86,22 +135,206 @@ public class JavaTreeActionController {
      */
     public JTree openAction() {
 
-        File file = chooseFile(true);
+        File file = chooseOpenFile();
         if (file == null) {
-            JOptionPane.showMessageDialog(null, "Wrong type of file selected.\nFile extenstion needs to be .jtd.");
             return null;
         }
-        Document document = loadDocumentFromFile(file);
-        if (document == null) {
+        TreeModel model = loadModelFromFile(file, new JavaTreeProgress());
+        if (model == null) {
             JOptionPane.showMessageDialog(null, "Error while parsing document.");
             return null;
         }
-        return convertDocumentToJTree(document);
+        return createTree(model);
+    }
+
+    /**
+     * Creates a tree that shows the tree with given root. Lazily loaded roots get a model that loads children on
+     * expansion.
+     * 
+     * @param root
+     * 
+     * @return tree
+     */
+    public JTree createTree(DefaultMutableTreeNode root) {
+
+        if (root instanceof JavaTreeLazyNode) {
+            return createTree(new JavaTreeLazyTreeModel((JavaTreeLazyNode) root, options.isLazyEviction()));
+        }
+        return createTree(new DefaultTreeModel(root));
+    }
+
+    /**
+     * Creates a tree that shows model through a JavaTreeRangeTreeModel, which lets a JavaTreeTransaction coalesce its
+     * events. If large tree is selected in options the tree has fixed row height, large model layout and
+     * JavaTreeCellRenderer, and wide sibling lists are grouped into range folders. Use
+     * JavaTreeRangeTreeModel.getDataModel to get model back from the tree.
+     * 
+     * @param model
+     * 
+     * @return tree
+     */
+    public JTree createTree(TreeModel model) {
+
+        JTree tree;
+        if (model instanceof JavaTreeStoreTreeModel) {
+            tree = ((JavaTreeStoreTreeModel) model).createTree();
+        } else if (model instanceof JavaTreeLazyTreeModel) {
+            tree = ((JavaTreeLazyTreeModel) model).createTree();
+        } else {
+            tree = new JTree(model);
+        }
+
+        int rangeSize = 0;
+        if (options.isLargeTree()) {
+            new JavaTreeCellRenderer().install(tree);
+            rangeSize = options.getRangeSize();
+        }
+        tree.setModel(new JavaTreeRangeTreeModel(model, rangeSize));
+        tree.getSelectionModel().setSelectionMode(TreeSelectionModel.DISCONTIGUOUS_TREE_SELECTION);
+        return tree;
+    }
+
+    /**
+     * Reads a file and creates a model of its tree. If compact store is selected in options nodes are held in a
+     * JavaTreeNodeStore, otherwise the model holds the tree returned by loadTreeFromFile. Returns the model or null if
+     * error occurred or progress was cancelled.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return model
+     */
+    public TreeModel loadModelFromFile(File file, JavaTreeProgress progress) {
+
+        if (options.isCompactStore() && !options.isLazyOpen()) {
+            JavaTreeNodeStore store = loadStoreFromFile(file, progress);
+            if (store == null) {
+                return null;
+            }
+            return new JavaTreeStoreTreeModel(store);
+        }
+
+        DefaultMutableTreeNode root = loadTreeFromFile(file, progress);
+        if (root == null) {
+            return null;
+        }
+        if (root instanceof JavaTreeLazyNode) {
+            return new JavaTreeLazyTreeModel((JavaTreeLazyNode) root, options.isLazyEviction());
+        }
+        return new DefaultTreeModel(root);
+    }
+
+    /**
+     * Reads a file with the load engine selected in options and constructs a tree based on the file content. Returns
+     * root node of the tree or null if error occurred.
+     * 
+     * @param file
+     * 
+     * @return root
+     */
+    public DefaultMutableTreeNode loadTreeFromFile(File file) {
+        return loadTreeFromFile(file, new JavaTreeProgress());
+    }
+
+    /**
+     * Reads a file with the load engine selected in options and constructs a tree based on the file content. Binary
+     * and segmented documents are recognized by their content and read with JavaTreeBinaryReader and
+     * JavaTreeSegmentedReader, or with JavaTreeParallelLoader for segmented documents if the parallel load engine is
+     * selected. If the document cache is enabled, XML documents are read from their cached image while it matches the
+     * file and an image is written after they are read. Read bytes and nodes are reported to progress. Returns root
+     * node of the tree or null if error occurred or progress was cancelled.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    public DefaultMutableTreeNode loadTreeFromFile(File file, JavaTreeProgress progress) {
+
+        if (JavaTreeBinaryFormat.isBinary(file)) {
+            return loadBinaryTree(file, progress);
+        }
+
+        if (JavaTreeSegmentedFormat.isSegmented(file)) {
+            return loadSegmentedTree(file, progress);
+        }
+
+        if (options.isLazyOpen()) {
+            return loadLazyTree(file, progress);
+        }
+
+        JavaTreeDocumentCache documentCache = getCache();
+        if (documentCache == null) {
+            return loadXMLTree(file, progress);
+        }
+
+        long length = file.length();
+        long modified = file.lastModified();
+        DefaultMutableTreeNode root = documentCache.load(file, progress);
+        if (root == null) {
+            root = loadXMLTree(file, progress);
+            if (root != null) {
+                documentCache.store(file, length, modified, root);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns true if the document cache is enabled and has an image of file that matches its length and
+     * modification time.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    public boolean isCached(File file) {
+        JavaTreeDocumentCache documentCache = getCache();
+        return documentCache != null && documentCache.contains(file);
+    }
+
+    /**
+     * @return document cache or null if it is not enabled in options
+     */
+    private synchronized JavaTreeDocumentCache getCache() {
+
+        if (!options.isCache()) {
+            return null;
+        }
+        if (cache == null) {
+            cache = new JavaTreeDocumentCache(options.getCacheDirectory(), options.getCacheSize());
+        }
+        return cache;
+    }
+
+    /**
+     * Reads an XML file with the load engine selected in options and constructs a tree based on the file content.
+     * Returns root node of the tree or null if error occurred or progress was cancelled.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadXMLTree(File file, JavaTreeProgress progress) {
+
+        if (options.getLoadEngine() == JavaTreeOptions.LoadEngine.DOM) {
+            Document document = loadDocumentFromFile(file, progress);
+            if (document == null) {
+                return null;
+            }
+            return convertDocumentToTreeNode(document);
+        }
+
+        if (options.getLoadEngine() == JavaTreeOptions.LoadEngine.PARALLEL) {
+            return loadTreeWithParallelLoader(file, progress);
+        }
+
+        return loadTreeWithStreamLoader(file, progress);
     }
 
     /**
-     * Construct a DOM object from a tree and saves it to XML file. Returns true if method was successful, false if
-     * error occurred.
+     * Saves a tree to XML file user selects. Returns true if method was successful, false if error occurred.
      * 
      * @param tree
      * 
@@ -109,17 +342,123 @@ public class JavaTreeActionController {
      */
     public boolean saveAction(JTree tree) {
 
-        Document document = convertJTreeToXML(tree);
-        if (document == null) {
-            JOptionPane.showMessageDialog(null, "Error while converting data from tree to document.");
+        File file = chooseSaveFile();
+        if (file == null) {
             return false;
         }
-        File file = chooseFile(false);
-        if (file == null) {
-            JOptionPane.showMessageDialog(null, "Wrong type of file selected.\nFile extenstion needs to be .jtd.");
+        if (!saveModelToFile(getModel(tree), file, new JavaTreeProgress())) {
+            JOptionPane.showMessageDialog(null, "Error while saving document.");
             return false;
         }
-        return saveDocumentToFile(document, file);
+        return true;
+    }
+
+    /**
+     * Saves a tree to XML file with the save engine selected in options. Returns true if method was successful, false
+     * if error occurred.
+     * 
+     * @param root
+     * @param file
+     * 
+     * @return status
+     */
+    public boolean saveTreeToFile(DefaultMutableTreeNode root, File file) {
+        return saveTreeToFile(root, file, new JavaTreeProgress());
+    }
+
+    /**
+     * Saves a tree to XML file with the save engine selected in options, or to a binary or segmented document if file
+     * has the binary or segmented extension. Written bytes and nodes are reported to progress. Returns true if method
+     * was successful, false if error occurred.
+     * 
+     * @param root
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    public boolean saveTreeToFile(DefaultMutableTreeNode root, File file, JavaTreeProgress progress) {
+
+        if (root instanceof JavaTreeLazyNode) {
+            // read the whole document before the file it is read from can be overwritten
+            try {
+                ((JavaTreeLazyNode) root).loadAll();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        if (file.getName().toLowerCase().endsWith(JavaTreeBinaryFormat.EXTENSION)) {
+            return saveBinaryTree(root, file, progress);
+        }
+
+        if (file.getName().toLowerCase().endsWith(JavaTreeSegmentedFormat.EXTENSION)) {
+            return saveSegmentedTree(new DefaultTreeModel(root), file, progress);
+        }
+
+        if (options.getSaveEngine() == JavaTreeOptions.SaveEngine.DOM) {
+            Document document = convertJTreeToXML(root);
+            if (document == null) {
+                return false;
+            }
+            return saveDocumentToFile(document, file, progress);
+        }
+
+        if (options.getSaveEngine() == JavaTreeOptions.SaveEngine.PARALLEL) {
+            return saveTreeWithParallelWriter(root, file, progress);
+        }
+
+        return saveTreeWithStreamWriter(root, file, progress);
+    }
+
+    /**
+     * Saves the tree of a model to a file. Trees held in a JavaTreeNodeStore are written straight from the store,
+     * others are saved with saveTreeToFile. Returns true if method was successful, false if error occurred.
+     * 
+     * @param model
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    public boolean saveModelToFile(TreeModel model, File file, JavaTreeProgress progress) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return saveStoreToFile(((JavaTreeStoreTreeModel) model).getStore(), file, progress);
+        }
+        return saveTreeToFile((DefaultMutableTreeNode) model.getRoot(), file, progress);
+    }
+
+    /**
+     * Returns true if file is a binary or a segmented document. Such documents are always loaded completely.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    public boolean isBinaryDocument(File file) {
+        return JavaTreeBinaryFormat.isBinary(file) || JavaTreeSegmentedFormat.isSegmented(file);
+    }
+
+    /**
+     * Lets user choose a file to open. Returns the file or null if no file was chosen or the chosen file is not a
+     * document.
+     * 
+     * @return file
+     */
+    public File chooseOpenFile() {
+        return checkExtension(chooseFile(true));
+    }
+
+    /**
+     * Lets user choose a file to save to. Returns the file or null if no file was chosen or the chosen file is not a
+     * document.
+     * 
+     * @return file
+     */
+    public File chooseSaveFile() {
+        return checkExtension(chooseFile(false));
     }
 
     /**
@@ -129,10 +468,25 @@ public class JavaTreeActionController {
      */
     public void addChildAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         addChildToGivenNodeAction(tree, node);
     }
 
+    /**
+     * Add child to given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void addChildToGivenNodeAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).addChild(((Integer) node).intValue());
+        } else {
+            addChildToGivenNodeAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Add child to given node of a tree.
      * 
@@ -140,8 +494,8 @@ public class JavaTreeActionController {
      * @param node
      */
     public void addChildToGivenNodeAction(JTree tree, DefaultMutableTreeNode node) {
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
-        model.insertNodeInto(new DefaultMutableTreeNode(new JavaTreeNodeObject()), node, model.getChildCount(node));
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
+        model.insertNodeInto(new JavaTreeNode(new JavaTreeNodeObject()), node, model.getChildCount(node));
     }
 
     /**
@@ -151,10 +505,25 @@ public class JavaTreeActionController {
      */
     public void deleteNodeAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         deleteGivenNodeAction(tree, node);
     }
 
+    /**
+     * Delete given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void deleteGivenNodeAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).delete(((Integer) node).intValue());
+        } else {
+            deleteGivenNodeAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Delete given node of a tree
      * 
@@ -162,7 +531,7 @@ public class JavaTreeActionController {
      * @param node
      */
     public void deleteGivenNodeAction(JTree tree, DefaultMutableTreeNode node) {
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
         model.removeNodeFromParent(node);
     }
 
@@ -173,11 +542,26 @@ public class JavaTreeActionController {
      */
     public void moveUpAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         moveGivenNodeUpAction(tree, node);
 
     }
 
+    /**
+     * Move up given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void moveGivenNodeUpAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).moveUp(((Integer) node).intValue());
+        } else {
+            moveGivenNodeUpAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Move up given node of a tree.
      * 
@@ -186,7 +570,7 @@ public class JavaTreeActionController {
      */
     public void moveGivenNodeUpAction(JTree tree, DefaultMutableTreeNode node) {
         DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
         int index = model.getIndexOfChild(parent, node);
 
         if (index > 0) {
@@ -202,10 +586,25 @@ public class JavaTreeActionController {
      */
     public void moveDownAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         moveGivenNodeDownAction(tree, node);
     }
 
+    /**
+     * Move down given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void moveGivenNodeDownAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).moveDown(((Integer) node).intValue());
+        } else {
+            moveGivenNodeDownAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Move down given node of a tree.
      * 
@@ -214,7 +613,7 @@ public class JavaTreeActionController {
      */
     public void moveGivenNodeDownAction(JTree tree, DefaultMutableTreeNode node) {
         DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
         int index = model.getIndexOfChild(parent, node);
 
         if (index < (model.getChildCount(parent) - 1)) {
@@ -230,10 +629,25 @@ public class JavaTreeActionController {
      */
     public void moveLevelUpAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         moveGivenNodeLevelUpAction(tree, node);
     }
 
+    /**
+     * Move level up given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void moveGivenNodeLevelUpAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).moveLevelUp(((Integer) node).intValue());
+        } else {
+            moveGivenNodeLevelUpAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Move level up given node of a tree.
      * 
@@ -243,7 +657,7 @@ public class JavaTreeActionController {
     public void moveGivenNodeLevelUpAction(JTree tree, DefaultMutableTreeNode node) {
         DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
         DefaultMutableTreeNode superParent = (DefaultMutableTreeNode) parent.getParent();
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
 
         if (!(parent.isRoot())) {
             model.removeNodeFromParent(node);
@@ -258,10 +672,25 @@ public class JavaTreeActionController {
      */
     public void moveLevelDownAction(JTree tree) {
 
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
+        Object node = tree.getLastSelectedPathComponent();
         moveGivenNodeLevelDownAction(tree, node);
     }
 
+    /**
+     * Move level down given node of a tree. Node is either a DefaultMutableTreeNode or a node of a JavaTreeStoreTreeModel.
+     * 
+     * @param tree
+     * @param node
+     */
+    public void moveGivenNodeLevelDownAction(JTree tree, Object node) {
+
+        if (getModel(tree) instanceof JavaTreeStoreTreeModel) {
+            ((JavaTreeStoreTreeModel) getModel(tree)).moveLevelDown(((Integer) node).intValue());
+        } else {
+            moveGivenNodeLevelDownAction(tree, (DefaultMutableTreeNode) node);
+        }
+    }
+
     /**
      * Move level down given node of a tree.
      * 
@@ -271,7 +700,7 @@ public class JavaTreeActionController {
     public void moveGivenNodeLevelDownAction(JTree tree, DefaultMutableTreeNode node) {
         DefaultMutableTreeNode parent = (DefaultMutableTreeNode) node.getParent();
         DefaultMutableTreeNode nextNode = (DefaultMutableTreeNode) parent.getChildAfter(node);
-        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        DefaultTreeModel model = (DefaultTreeModel) getModel(tree);
 
         if (nextNode != null) {
             model.removeNodeFromParent(node);
@@ -280,41 +709,315 @@ public class JavaTreeActionController {
     }
 
     /**
-     * Displays help.
+     * Deletes nodes of a tree in one transaction. Paths are paths of the document model. Nodes inside a subtree that is
+     * deleted and the root are skipped.
+     * 
+     * @param tree
+     * @param paths
      */
-    public void HelpAction() {
+    public void deleteNodesAction(JTree tree, List<TreePath> paths) {
 
-        JOptionPane.showMessageDialog(null, "Java Tree data organizer.");
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (TreePath path : getTopPaths(paths)) {
+            transaction.delete(path.getLastPathComponent());
+        }
+        transaction.commit();
     }
 
     /**
-     * Displays about.
+     * Moves nodes of a tree up by one place among their siblings in one transaction. A node that is blocked by the
+     * first child or by a selected sibling that can not move stays in place, so selected siblings keep their order.
+     * Moved nodes stay selected.
+     * 
+     * @param tree
+     * @param paths
      */
-    public void AboutAction() {
-
-        JOptionPane
-                .showMessageDialog(null,
-                                   "JavaTree version 1.0.\nCopyright Quine Interactive 2011.\nwww.quineinteractice.com");
+    public void moveNodesUpAction(JTree tree, List<TreePath> paths) {
+
+        TreeModel model = getModel(tree);
+        List<Object> moved = new ArrayList<Object>();
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (Map.Entry<Object, int[]> entry : getChildIndexes(model, getTopPaths(paths)).entrySet()) {
+            Object parent = entry.getKey();
+            int[] indexes = entry.getValue();
+            // places above floor are taken by nodes that could not move
+            int floor = 0;
+            for (int index : indexes) {
+                if (index > floor) {
+                    Object node = model.getChild(parent, index);
+                    transaction.move(node, parent, index - 1);
+                    moved.add(node);
+                    floor = index;
+                } else {
+                    floor = index + 1;
+                }
+            }
+        }
+        transaction.commit();
+        selectNodes(tree, moved);
     }
 
     /**
-     * Creates file chooser dialog and returns a selected file
+     * Moves nodes of a tree down by one place among their siblings in one transaction. A node that is blocked by the
+     * last child or by a selected sibling that can not move stays in place, so selected siblings keep their order.
+     * Moved nodes stay selected.
      * 
-     * @return file
+     * @param tree
+     * @param paths
      */
-    private File chooseFile(boolean loadFlag) {
-
-        JFileChooser fileChooser = new JFileChooser();
-
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
-            public boolean accept(File f) {
-                return f.isDirectory() || f.getName().toLowerCase().endsWith(".jtd");
+    public void moveNodesDownAction(JTree tree, List<TreePath> paths) {
+
+        TreeModel model = getModel(tree);
+        List<Object> moved = new ArrayList<Object>();
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (Map.Entry<Object, int[]> entry : getChildIndexes(model, getTopPaths(paths)).entrySet()) {
+            Object parent = entry.getKey();
+            int[] indexes = entry.getValue();
+            // places below ceiling are taken by nodes that could not move
+            int ceiling = model.getChildCount(parent) - 1;
+            for (int position = indexes.length - 1; position >= 0; position--) {
+                int index = indexes[position];
+                if (index < ceiling) {
+                    Object node = model.getChild(parent, index);
+                    transaction.move(node, parent, index + 1);
+                    moved.add(node);
+                    ceiling = index;
+                } else {
+                    ceiling = index - 1;
+                }
             }
+        }
+        transaction.commit();
+        selectNodes(tree, moved);
+    }
 
-            public String getDescription() {
-                return "Java Tree document";
+    /**
+     * Moves nodes of a tree to the end of the children of their grand parents in one transaction, in the order they
+     * appear in paths. Children of the root stay in place. Moved nodes stay selected.
+     * 
+     * @param tree
+     * @param paths
+     */
+    public void moveNodesLevelUpAction(JTree tree, List<TreePath> paths) {
+
+        TreeModel model = getModel(tree);
+        List<Object> moved = new ArrayList<Object>();
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (TreePath path : getTopPaths(paths)) {
+            if (path.getPathCount() > 2) {
+                Object grandParent = path.getParentPath().getParentPath().getLastPathComponent();
+                transaction.move(path.getLastPathComponent(), grandParent, model.getChildCount(grandParent));
+                moved.add(path.getLastPathComponent());
             }
-        });
+        }
+        transaction.commit();
+        selectNodes(tree, moved);
+    }
+
+    /**
+     * Moves nodes of a tree to the end of the children of the first next sibling that is not moved, in one
+     * transaction. Targets are found in one pass from the last child up and nodes are moved in the order they appear
+     * in paths. Nodes without such a sibling stay in place. Moved nodes stay selected.
+     * 
+     * @param tree
+     * @param paths
+     */
+    public void moveNodesLevelDownAction(JTree tree, List<TreePath> paths) {
+
+        TreeModel model = getModel(tree);
+        List<Object> nodes = new ArrayList<Object>();
+        List<Object> targets = new ArrayList<Object>();
+        for (Map.Entry<Object, int[]> entry : getChildIndexes(model, getTopPaths(paths)).entrySet()) {
+            Object parent = entry.getKey();
+            int[] indexes = entry.getValue();
+            Object[] parentTargets = new Object[indexes.length];
+            for (int position = indexes.length - 1; position >= 0; position--) {
+                int next = indexes[position] + 1;
+                if (position < indexes.length - 1 && indexes[position + 1] == next) {
+                    parentTargets[position] = parentTargets[position + 1];
+                } else if (next < model.getChildCount(parent)) {
+                    parentTargets[position] = model.getChild(parent, next);
+                }
+            }
+            for (int position = 0; position < indexes.length; position++) {
+                if (parentTargets[position] != null) {
+                    nodes.add(model.getChild(parent, indexes[position]));
+                    targets.add(parentTargets[position]);
+                }
+            }
+        }
+
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (int index = 0; index < nodes.size(); index++) {
+            transaction.move(nodes.get(index), targets.get(index), model.getChildCount(targets.get(index)));
+        }
+        transaction.commit();
+        selectNodes(tree, nodes);
+    }
+
+    /**
+     * Moves nodes of a tree to the end of the children of newParent in one transaction, in the order they appear in
+     * paths. Root, newParent and its ancestors stay in place. Moved nodes stay selected.
+     * 
+     * @param tree
+     * @param paths
+     * @param newParent
+     */
+    public void moveNodesToGivenNodeAction(JTree tree, List<TreePath> paths, Object newParent) {
+
+        TreeModel model = getModel(tree);
+        Set<Object> ancestors = new HashSet<Object>(Arrays.asList(getPath(model, newParent).getPath()));
+        List<Object> moved = new ArrayList<Object>();
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        for (TreePath path : getTopPaths(paths)) {
+            Object node = path.getLastPathComponent();
+            if (!ancestors.contains(node)) {
+                int count = model.getChildCount(newParent);
+                boolean child = path.getParentPath().getLastPathComponent().equals(newParent);
+                transaction.move(node, newParent, child ? count - 1 : count);
+                moved.add(node);
+            }
+        }
+        transaction.commit();
+        selectNodes(tree, moved);
+    }
+
+    /**
+     * Displays help.
+     */
+    public void HelpAction() {
+
+        JOptionPane.showMessageDialog(null, "Java Tree data organizer.");
+    }
+
+    /**
+     * Displays about.
+     */
+    public void AboutAction() {
+
+        JOptionPane
+                .showMessageDialog(null,
+                                   "JavaTree version 1.0.\nCopyright Quine Interactive 2011.\nwww.quineinteractice.com");
+    }
+
+    /**
+     * Returns document model of a tree, without range folders the tree may show.
+     * 
+     * @param tree
+     * 
+     * @return model
+     */
+    private TreeModel getModel(JTree tree) {
+        return JavaTreeRangeTreeModel.getDataModel(tree);
+    }
+
+    /**
+     * Returns paths without the root path and without paths inside the subtree of another path, in the same order.
+     * 
+     * @param paths
+     * 
+     * @return top paths
+     */
+    private List<TreePath> getTopPaths(List<TreePath> paths) {
+
+        Set<Object> nodes = new HashSet<Object>();
+        for (TreePath path : paths) {
+            nodes.add(path.getLastPathComponent());
+        }
+
+        List<TreePath> topPaths = new ArrayList<TreePath>();
+        for (TreePath path : paths) {
+            boolean top = path.getPathCount() > 1;
+            for (TreePath parent = path.getParentPath(); top && parent != null; parent = parent.getParentPath()) {
+                top = !nodes.contains(parent.getLastPathComponent());
+            }
+            if (top) {
+                topPaths.add(path);
+            }
+        }
+        return topPaths;
+    }
+
+    /**
+     * Groups nodes of paths by their parents and returns sorted indexes of the nodes among the children of each parent.
+     * 
+     * @param model
+     * @param paths
+     * 
+     * @return indexes of children by parent
+     */
+    private Map<Object, int[]> getChildIndexes(TreeModel model, List<TreePath> paths) {
+
+        Map<Object, List<Integer>> children = new LinkedHashMap<Object, List<Integer>>();
+        for (TreePath path : paths) {
+            Object parent = path.getParentPath().getLastPathComponent();
+            List<Integer> indexes = children.get(parent);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                children.put(parent, indexes);
+            }
+            indexes.add(Integer.valueOf(model.getIndexOfChild(parent, path.getLastPathComponent())));
+        }
+
+        Map<Object, int[]> childIndexes = new LinkedHashMap<Object, int[]>();
+        for (Map.Entry<Object, List<Integer>> entry : children.entrySet()) {
+            int[] indexes = new int[entry.getValue().size()];
+            for (int index = 0; index < indexes.length; index++) {
+                indexes[index] = entry.getValue().get(index).intValue();
+            }
+            Arrays.sort(indexes);
+            childIndexes.put(entry.getKey(), indexes);
+        }
+        return childIndexes;
+    }
+
+    /**
+     * @param model
+     * @param node
+     * 
+     * @return path from the root of model to node
+     */
+    private TreePath getPath(TreeModel model, Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getPath(((Integer) node).intValue());
+        }
+        return new TreePath(((DefaultMutableTreeNode) node).getPath());
+    }
+
+    /**
+     * Selects nodes of the document model in a tree.
+     * 
+     * @param tree
+     * @param nodes
+     */
+    private void selectNodes(JTree tree, List<Object> nodes) {
+
+        if (nodes.isEmpty()) {
+            return;
+        }
+        TreePath[] paths = new TreePath[nodes.size()];
+        for (int index = 0; index < paths.length; index++) {
+            paths[index] = JavaTreeRangeTreeModel.getViewPath(tree, getPath(getModel(tree), nodes.get(index)));
+        }
+        tree.setSelectionPaths(paths);
+    }
+
+    /**
+     * Creates file chooser dialog and returns a selected file
+     * 
+     * @return file
+     */
+    private File chooseFile(boolean loadFlag) {
+
+        JFileChooser fileChooser = new JFileChooser();
+
+        ExtensionFileFilter binaryFilter = new ExtensionFileFilter(JavaTreeBinaryFormat.EXTENSION,
+                                                                   "Java Tree binary document");
+        fileChooser.addChoosableFileFilter(binaryFilter);
+        fileChooser.addChoosableFileFilter(new ExtensionFileFilter(JavaTreeSegmentedFormat.EXTENSION,
+                                                                   "Java Tree segmented document"));
+        fileChooser.setFileFilter(new ExtensionFileFilter(XML_EXTENSION, "Java Tree document"));
 
         int returnStatus;
         if (loadFlag) {
@@ -326,17 +1029,52 @@ public class JavaTreeActionController {
         if (returnStatus != JFileChooser.APPROVE_OPTION)
             return null;
 
-        return fileChooser.getSelectedFile();
+        File file = fileChooser.getSelectedFile();
+
+        // saved files get the extension of the chosen format unless they already have a known one
+        String name = file.getName().toLowerCase();
+        if (!loadFlag && !name.endsWith(XML_EXTENSION) && !name.endsWith(JavaTreeBinaryFormat.EXTENSION)
+            && !name.endsWith(JavaTreeSegmentedFormat.EXTENSION)
+            && fileChooser.getFileFilter() instanceof ExtensionFileFilter) {
+            file = new File(file.getPath() + ((ExtensionFileFilter) fileChooser.getFileFilter()).extension);
+        }
+
+        return file;
     }
 
     /**
-     * Convert tree it receives as parameter to document.
+     * Returns file if it has the extension of a document format. Otherwise tells user which extensions are accepted
+     * and returns null. Null file means the user cancelled the choice, so nothing is shown.
      * 
-     * @param tree
+     * @param file
+     * 
+     * @return file
+     */
+    private File checkExtension(File file) {
+
+        if (file == null) {
+            return null;
+        }
+
+        String name = file.getName().toLowerCase();
+        if (!name.endsWith(XML_EXTENSION) && !name.endsWith(JavaTreeBinaryFormat.EXTENSION)
+            && !name.endsWith(JavaTreeSegmentedFormat.EXTENSION)) {
+            JOptionPane.showMessageDialog(null, "Wrong type of file selected.\nFile extension needs to be "
+                                                + XML_EXTENSION + ", " + JavaTreeBinaryFormat.EXTENSION + " or "
+                                                + JavaTreeSegmentedFormat.EXTENSION + ".");
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Convert tree with the root it receives as parameter to document.
+     * 
+     * @param rootNode
      * 
      * @return document
      */
-    private Document convertJTreeToXML(JTree tree) {
+    Document convertJTreeToXML(DefaultMutableTreeNode rootNode) {
 
         Document document = null;
 
@@ -346,7 +1084,6 @@ public class JavaTreeActionController {
             document = builder.newDocument();
 
             Element rootElement = document.createElement("JavaTreeXML");
-            DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode) tree.getModel().getRoot();
             rootElement.appendChild(createNodeElement(document, rootNode));
             document.appendChild(rootElement);
         } catch (Exception e) {
@@ -358,42 +1095,265 @@ public class JavaTreeActionController {
     }
 
     /**
-     * Convert document it receives as parameter to tree.
+     * Convert document it receives as parameter to tree and return the root node of the tree.
      * 
      * @param document
      * 
-     * @return tree
+     * @return root
      */
-    private JTree convertDocumentToJTree(Document document) {
+    DefaultMutableTreeNode convertDocumentToTreeNode(Document document) {
 
         Element rootElement = document.getDocumentElement();
         Element node = (Element) rootElement.getFirstChild();
 
-        JTree tree = new JTree(createJavaTreeNode(node));
+        return createJavaTreeNode(node);
+    }
 
-        return tree;
+    /**
+     * Save document to file and return true is successful. Return false if error occurs. Document is serialized with a
+     * Transformer, which recurses once per level, so documents deeper than TRANSFORM_DEPTH are written with
+     * writeDocument instead.
+     * 
+     * @param document
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    boolean saveDocumentToFile(final Document document, File file, final JavaTreeProgress progress) {
+
+        boolean status = true;
+
+        try {
+            final boolean deep = isDeeperThan(document, TRANSFORM_DEPTH);
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeChecksumChannel checked = new JavaTreeChecksumChannel(channel);
+                    if (deep) {
+                        writeDocument(document, checked, progress);
+                    } else {
+                        transformDocument(document, checked, progress);
+                    }
+                    JavaTreeValidator.writeTrailer(checked, progress);
+                }
+            }, progress);
+        } catch (Exception e) {
+            status = false;
+            e.printStackTrace();
+        }
+
+        return status;
+    }
+
+    /**
+     * Serializes a document to a channel with a Transformer.
+     * 
+     * @param document
+     * @param channel
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    private void transformDocument(Document document, WritableByteChannel channel, JavaTreeProgress progress)
+            throws Exception {
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+
+        transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "javatree.dtd");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+
+        OutputStream output = JavaTreeStreamWriter.openStream(channel, progress);
+        transformer.transform(new DOMSource(document), new StreamResult(output));
+        output.flush();
+    }
+
+    /**
+     * Returns true if Node elements of a document are nested deeper than depth. Elements are visited by following
+     * child, sibling and parent links.
+     * 
+     * @param document
+     * @param depth
+     * 
+     * @return status
+     */
+    private static boolean isDeeperThan(Document document, int depth) {
+
+        Element top = getChildElement(document.getDocumentElement(), "Node");
+        Element element = top;
+        int level = 1;
+        while (element != null) {
+            if (level > depth) {
+                return true;
+            }
+
+            Element child = getChildElement(element, "Node");
+            if (child != null) {
+                element = child;
+                level++;
+                continue;
+            }
+            while (element != top && getNextElement(element, "Node") == null) {
+                element = (Element) element.getParentNode();
+                level--;
+            }
+            element = element == top ? null : getNextElement(element, "Node");
+        }
+        return false;
     }
 
     /**
-     * Save document to file and return true is successful. Return false if error occurs.
+     * Writes Node elements of a document to a channel without recursion, for documents too deep for the Transformer.
+     * Elements are visited by following child, sibling and parent links and written with an indenting
+     * JavaTreeStreamWriter.
      * 
      * @param document
+     * @param channel
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    private void writeDocument(Document document, WritableByteChannel channel, JavaTreeProgress progress)
+            throws Exception {
+
+        OutputStream output = JavaTreeStreamWriter.openStream(channel, progress);
+        JavaTreeStreamWriter writer = new JavaTreeStreamWriter(output, true);
+        writer.setProgress(progress);
+        writer.startDocument();
+
+        Element top = getChildElement(document.getDocumentElement(), "Node");
+        Element element = top;
+        while (element != null) {
+            writer.startNode(getElementText(element, "Title"), getElementText(element, "Text"));
+
+            Element child = getChildElement(element, "Node");
+            if (child != null) {
+                element = child;
+                continue;
+            }
+            writer.endNode();
+            while (element != top && getNextElement(element, "Node") == null) {
+                element = (Element) element.getParentNode();
+                writer.endNode();
+            }
+            element = element == top ? null : getNextElement(element, "Node");
+        }
+
+        writer.endDocument();
+        output.flush();
+    }
+
+    /**
+     * @param element
+     * @param tagName
+     * 
+     * @return first child element of element with tagName, or null
+     */
+    private static Element getChildElement(Element element, String tagName) {
+
+        Node child = element.getFirstChild();
+        while (child != null && !(child instanceof Element && ((Element) child).getTagName().equals(tagName))) {
+            child = child.getNextSibling();
+        }
+        return (Element) child;
+    }
+
+    /**
+     * @param element
+     * @param tagName
+     * 
+     * @return next sibling element of element with tagName, or null
+     */
+    private static Element getNextElement(Element element, String tagName) {
+
+        Node sibling = element.getNextSibling();
+        while (sibling != null && !(sibling instanceof Element && ((Element) sibling).getTagName().equals(tagName))) {
+            sibling = sibling.getNextSibling();
+        }
+        return (Element) sibling;
+    }
+
+    /**
+     * @param element
+     * @param tagName
+     * 
+     * @return text of the first child element of element with tagName, or empty string
+     */
+    private static String getElementText(Element element, String tagName) {
+
+        Element child = getChildElement(element, tagName);
+        return child == null ? "" : child.getTextContent();
+    }
+
+    /**
+     * @return file saver with the durability selected in options
+     */
+    private JavaTreeFileSaver createFileSaver() {
+        return new JavaTreeFileSaver(options.getSaveDurability());
+    }
+
+    /**
+     * @return validating stream loader that trusts documents with a matching checksum trailer if options say so
+     */
+    private JavaTreeStreamLoader createStreamLoader() {
+
+        JavaTreeStreamLoader loader = new JavaTreeStreamLoader();
+        loader.setTrusted(options.isTrustedOpen());
+        return loader;
+    }
+
+    /**
+     * Writes a tree to file with the streaming writer and return true if successful. Return false if error occurs.
+     * 
+     * @param root
      * @param file
+     * @param progress
      * 
      * @return status
      */
-    private boolean saveDocumentToFile(Document document, File file) {
+    private boolean saveTreeWithStreamWriter(final DefaultMutableTreeNode root, File file,
+                                             final JavaTreeProgress progress) {
 
         boolean status = true;
 
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeChecksumChannel checked = new JavaTreeChecksumChannel(channel);
+                    JavaTreeStreamWriter.write(root, checked, options.isSaveIndent(), progress);
+                    JavaTreeValidator.writeTrailer(checked, progress);
+                }
+            }, progress);
+        } catch (Exception e) {
+            status = false;
+            e.printStackTrace();
+        }
+
+        return status;
+    }
 
-            transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "javatree.dtd");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+    /**
+     * Writes a tree to file with the parallel writer and return true if successful. Return false if error occurs.
+     * 
+     * @param root
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    private boolean saveTreeWithParallelWriter(final DefaultMutableTreeNode root, File file,
+                                               final JavaTreeProgress progress) {
 
-            transformer.transform(new DOMSource(document), new StreamResult(new FileOutputStream(file)));
+        boolean status = true;
+
+        try {
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeChecksumChannel checked = new JavaTreeChecksumChannel(channel);
+                    JavaTreeParallelWriter.write(root, checked, options.isSaveIndent(), progress);
+                    JavaTreeValidator.writeTrailer(checked, progress);
+                }
+            }, progress);
         } catch (Exception e) {
             status = false;
             e.printStackTrace();
@@ -403,23 +1363,21 @@ public class JavaTreeActionController {
     }
 
     /**
-     * Reads a file and creates a document. Returns document if successful, or null if error occurs.
+     * Reads a file and creates a document with JavaTreeValidator, which checks it against the embedded grammar unless
+     * trusted open is selected and the checksum trailer of the file matches. Returns document if successful, or null
+     * if error occurs or the document is not valid.
      * 
      * @param file
+     * @param progress
      * 
      * @return document
      */
-    private Document loadDocumentFromFile(File file) {
+    Document loadDocumentFromFile(File file, JavaTreeProgress progress) {
 
         Document document = null;
 
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setValidating(true);
-            factory.setIgnoringElementContentWhitespace(true);
-
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.parse(file);
+            document = JavaTreeValidator.parse(file, options.isTrustedOpen(), progress);
         } catch (Exception e) {
             e.printStackTrace();
             document = null;
@@ -429,7 +1387,253 @@ public class JavaTreeActionController {
     }
 
     /**
-     * Creates an element for a document from a node.
+     * Reads a file with the streaming loader and creates a tree. Returns root node if successful, or null if error
+     * occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadTreeWithStreamLoader(File file, JavaTreeProgress progress) {
+
+        DefaultMutableTreeNode root = null;
+
+        try {
+            JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+            createStreamLoader().load(file, builder, progress);
+            root = builder.getRoot();
+        } catch (Exception e) {
+            e.printStackTrace();
+            root = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Reads a file with JavaTreeParallelLoader and creates a tree. Returns root node if successful, or null if error
+     * occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadTreeWithParallelLoader(File file, JavaTreeProgress progress) {
+
+        DefaultMutableTreeNode root = null;
+
+        try {
+            root = JavaTreeParallelLoader.load(file, options.isTrustedOpen(), progress);
+        } catch (Exception e) {
+            e.printStackTrace();
+            root = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Reads a binary document and creates a tree. Returns root node if successful, or null if error occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadBinaryTree(File file, JavaTreeProgress progress) {
+
+        DefaultMutableTreeNode root = null;
+
+        try {
+            JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+            JavaTreeBinaryReader.load(file, builder, progress);
+            root = builder.getRoot();
+        } catch (Exception e) {
+            e.printStackTrace();
+            root = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Writes a tree to a binary document and return true if successful. Return false if error occurs.
+     * 
+     * @param root
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    private boolean saveBinaryTree(final DefaultMutableTreeNode root, File file, final JavaTreeProgress progress) {
+
+        boolean status = true;
+
+        try {
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeBinaryWriter.write(root, channel, progress);
+                }
+            }, progress);
+        } catch (Exception e) {
+            status = false;
+            e.printStackTrace();
+        }
+
+        return status;
+    }
+
+    /**
+     * Reads a segmented document and creates a tree. Returns root node if successful, or null if error occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadSegmentedTree(File file, JavaTreeProgress progress) {
+
+        DefaultMutableTreeNode root = null;
+
+        try {
+            if (options.getLoadEngine() == JavaTreeOptions.LoadEngine.PARALLEL) {
+                root = JavaTreeParallelLoader.loadSegmented(file, progress);
+            } else {
+                JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+                JavaTreeSegmentedReader.load(file, builder, progress);
+                root = builder.getRoot();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            root = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Writes the tree of a model to a segmented document and return true if successful. Return false if error occurs.
+     * 
+     * @param model
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    private boolean saveSegmentedTree(final TreeModel model, File file, final JavaTreeProgress progress) {
+
+        boolean status = true;
+
+        try {
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeSegmentedWriter.write(model, channel, progress);
+                }
+            }, progress);
+        } catch (Exception e) {
+            status = false;
+            e.printStackTrace();
+        }
+
+        return status;
+    }
+
+    /**
+     * Reads a file into a node store. XML documents are always read with the streaming loader. Returns store if
+     * successful, or null if error occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return store
+     */
+    private JavaTreeNodeStore loadStoreFromFile(File file, JavaTreeProgress progress) {
+
+        JavaTreeNodeStore store = null;
+
+        try {
+            JavaTreeStoreBuilder builder = new JavaTreeStoreBuilder();
+            if (JavaTreeBinaryFormat.isBinary(file)) {
+                JavaTreeBinaryReader.load(file, builder, progress);
+            } else if (JavaTreeSegmentedFormat.isSegmented(file)) {
+                JavaTreeSegmentedReader.load(file, builder, progress);
+            } else {
+                createStreamLoader().load(file, builder, progress);
+            }
+            store = builder.getStore();
+        } catch (Exception e) {
+            e.printStackTrace();
+            store = null;
+        }
+
+        return store;
+    }
+
+    /**
+     * Writes the tree held by a store to a file and return true if successful. XML documents are always written with
+     * the streaming writer. Return false if error occurs.
+     * 
+     * @param store
+     * @param file
+     * @param progress
+     * 
+     * @return status
+     */
+    private boolean saveStoreToFile(final JavaTreeNodeStore store, final File file,
+                                    final JavaTreeProgress progress) {
+
+        boolean status = true;
+
+        try {
+            createFileSaver().save(file, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    if (file.getName().toLowerCase().endsWith(JavaTreeBinaryFormat.EXTENSION)) {
+                        JavaTreeBinaryWriter.write(store, channel, progress);
+                    } else if (file.getName().toLowerCase().endsWith(JavaTreeSegmentedFormat.EXTENSION)) {
+                        JavaTreeSegmentedWriter.write(new JavaTreeStoreTreeModel(store), channel, progress);
+                    } else {
+                        JavaTreeChecksumChannel checked = new JavaTreeChecksumChannel(channel);
+                        JavaTreeStreamWriter.write(store, checked, options.isSaveIndent(), progress);
+                        JavaTreeValidator.writeTrailer(checked, progress);
+                    }
+                }
+            }, progress);
+        } catch (Exception e) {
+            status = false;
+            e.printStackTrace();
+        }
+
+        return status;
+    }
+
+    /**
+     * Scans a file and creates a root node that loads its children when they are needed. Returns root node if
+     * successful, or null if error occurs.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    private DefaultMutableTreeNode loadLazyTree(File file, JavaTreeProgress progress) {
+
+        DefaultMutableTreeNode root = null;
+
+        try {
+            root = JavaTreeLazyNode.open(file, options.isTrustedOpen(), progress);
+        } catch (Exception e) {
+            e.printStackTrace();
+            root = null;
+        }
+
+        return root;
+    }
+
+    /**
+     * Creates an element for a document from a node and its descendants. Elements of the open nodes are kept on a
+     * stack, so depth of the tree is not limited by the thread stack.
      * 
      * @param document
      * @param node
@@ -438,31 +1642,41 @@ public class JavaTreeActionController {
      */
     private Element createNodeElement(Document document, DefaultMutableTreeNode node) {
 
-        Element element = document.createElement("Node");
+        Element element = null;
+        Deque<Element> openElements = new ArrayDeque<Element>();
+        JavaTreeTraversal traversal = new JavaTreeTraversal(node);
+        while (traversal.next()) {
+            if (!traversal.isEntering()) {
+                element = openElements.pop();
+                continue;
+            }
+            JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) ((DefaultMutableTreeNode) traversal.getNode())
+                    .getUserObject();
 
-        Element nodeTitleElement = document.createElement("Title");
-        Text nodeTitleText = document.createTextNode(((JavaTreeNodeObject) node.getUserObject()).getTitle());
-        nodeTitleElement.appendChild(nodeTitleText);
-        element.appendChild(nodeTitleElement);
+            Element nodeElement = document.createElement("Node");
 
-        Element nodeTextElement = document.createElement("Text");
-        Text nodeTextText = document.createTextNode(((JavaTreeNodeObject) node.getUserObject()).getText());
-        nodeTextElement.appendChild(nodeTextText);
-        element.appendChild(nodeTextElement);
+            Element nodeTitleElement = document.createElement("Title");
+            Text nodeTitleText = document.createTextNode(nodeObject.getTitle());
+            nodeTitleElement.appendChild(nodeTitleText);
+            nodeElement.appendChild(nodeTitleElement);
 
-        if (!node.isLeaf()) {
-            int childrenCount = node.getChildCount();
+            Element nodeTextElement = document.createElement("Text");
+            Text nodeTextText = document.createTextNode(nodeObject.getText());
+            nodeTextElement.appendChild(nodeTextText);
+            nodeElement.appendChild(nodeTextElement);
 
-            for (int index = 0; index < childrenCount; index++) {
-                element.appendChild(createNodeElement(document, (DefaultMutableTreeNode) node.getChildAt(index)));
+            if (!openElements.isEmpty()) {
+                openElements.peek().appendChild(nodeElement);
             }
+            openElements.push(nodeElement);
         }
 
         return element;
     }
 
     /**
-     * Creates a node from a element.
+     * Creates a node and its descendants from a element. Elements that still have to be read are kept on a stack
+     * together with their nodes, so depth of the document is not limited by the thread stack.
      * 
      * @param element
      * 
@@ -470,10 +1684,32 @@ public class JavaTreeActionController {
      */
     private DefaultMutableTreeNode createJavaTreeNode(Element element) {
 
-        DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(new JavaTreeNodeObject());
-        NodeList nodeList = null;
+        DefaultMutableTreeNode rootNode = new JavaTreeNode(new JavaTreeNodeObject());
+        Deque<Element> elements = new ArrayDeque<Element>();
+        Deque<DefaultMutableTreeNode> treeNodes = new ArrayDeque<DefaultMutableTreeNode>();
+        elements.push(element);
+        treeNodes.push(rootNode);
+
+        while (!elements.isEmpty()) {
+            readNodeElement(elements.pop(), treeNodes.pop(), elements, treeNodes);
+        }
+
+        return rootNode;
+    }
+
+    /**
+     * Sets title and text of treeNode from element and adds a child for every node element in it. Child elements are
+     * pushed with their nodes to be read later.
+     * 
+     * @param element
+     * @param treeNode
+     * @param elements
+     * @param treeNodes
+     */
+    private void readNodeElement(Element element, DefaultMutableTreeNode treeNode, Deque<Element> elements,
+                                 Deque<DefaultMutableTreeNode> treeNodes) {
 
-        nodeList = element.getChildNodes();
+        NodeList nodeList = element.getChildNodes();
 
         for (int index = 0; index < nodeList.getLength(); index++) {
             Element child = (Element) nodeList.item(index);
@@ -496,10 +1732,34 @@ public class JavaTreeActionController {
                 }
             } else if (tagName.equals("Node")) {
 
-                treeNode.add(createJavaTreeNode(child));
+                DefaultMutableTreeNode childNode = new JavaTreeNode(new JavaTreeNodeObject());
+                treeNode.add(childNode);
+                elements.push(child);
+                treeNodes.push(childNode);
             }
         }
+    }
+
+    /**
+     * File filter that accepts directories and files with given extension.
+     */
+    private static class ExtensionFileFilter extends FileFilter {
+        private final String extension;
+        private final String description;
+
+        ExtensionFileFilter(String extension, String description) {
+            this.extension = extension;
+            this.description = description;
+        }
 
-        return treeNode;
+        @Override
+        public boolean accept(File f) {
+            return f.isDirectory() || f.getName().toLowerCase().endsWith(extension);
+        }
+
+        @Override
+        public String getDescription() {
+            return description + " (*" + extension + ")";
+        }
     }
 }
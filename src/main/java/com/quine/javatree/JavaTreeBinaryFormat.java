@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * JavaTreeBinaryFormat defines the compact binary JavaTree document format read by JavaTreeBinaryReader and written
+ * by JavaTreeBinaryWriter.
+ * 
+ * A document starts with a header: magic bytes "JTB1", format version as int, number of nodes as long and CRC32C of
+ * those 16 bytes as int. Header is followed by blocks until the end of the file. Each block is its payload length as
+ * int, CRC32C of the payload as int and the payload. Payload holds whole node records, records never span blocks.
+ * 
+ * Nodes are stored in pre-order. A record is the title and the text of the node, each as varint byte length followed
+ * by UTF-8 bytes, and the number of children of the node as varint. All numbers are big endian, varints use seven
+ * bits per byte with the high bit set on all but the last byte.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public final class JavaTreeBinaryFormat {
+    // file extension of binary documents
+    public final static String EXTENSION      = ".jtb";
+
+    // magic bytes at the start of binary documents
+    public final static int    MAGIC          = 0x4A544231;
+
+    public final static int    VERSION        = 1;
+
+    // size of the header in bytes
+    public final static int    HEADER_SIZE    = 20;
+
+    // size of the block header in bytes
+    public final static int    BLOCK_HEADER   = 8;
+
+    // payload size at which writer starts a new block
+    public final static int    BLOCK_SIZE     = 64 * 1024;
+
+    private JavaTreeBinaryFormat() {
+    }
+
+    /**
+     * Returns true if the file starts with the magic bytes of a binary document.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    public static boolean isBinary(File file) {
+
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the magic bytes are complete
+            }
+            magic.flip();
+            return magic.remaining() == 4 && magic.getInt() == MAGIC;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Computes CRC32C of the remaining bytes of buffer without changing its position.
+     * 
+     * @param buffer
+     * 
+     * @return crc
+     */
+    public static int checksum(ByteBuffer buffer) {
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes value as varint.
+     * 
+     * @param buffer
+     * @param value
+     */
+    public static void putVarint(ByteBuffer buffer, int value) {
+
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads varint.
+     * 
+     * @param buffer
+     * 
+     * @return value
+     * 
+     * @throws IOException if varint is too long
+     */
+    public static int getVarint(ByteBuffer buffer) throws IOException {
+
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte current = buffer.get();
+            value |= (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * JavaTreeBinaryReader reads documents in JavaTreeBinaryFormat and pushes their nodes to a JavaTreeHandler. The file
+ * is memory mapped in windows of up to WINDOW_SIZE bytes, so blocks are checked and decoded directly from the page
+ * cache without copying them into the heap first. Checksum of every block is verified before its records are
+ * decoded.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeBinaryReader {
+    // maximum size of a mapped window of the file
+    private final static long WINDOW_SIZE = 1L << 30;
+
+    private FileChannel       channel;
+    private long              fileSize;
+    private JavaTreeProgress  progress;
+
+    // currently mapped window and its offset in the file
+    private MappedByteBuffer  window;
+    private long              windowOffset;
+
+    // buffer that strings are copied to before they are decoded
+    private byte[]            stringBytes;
+
+    /**
+     * Creates JavaTreeBinaryReader that reads from channel.
+     * 
+     * @param channel
+     * @param progress
+     * 
+     * @throws IOException
+     */
+    public JavaTreeBinaryReader(FileChannel channel, JavaTreeProgress progress) throws IOException {
+        this.channel = channel;
+        this.progress = progress;
+        fileSize = channel.size();
+        stringBytes = new byte[256];
+    }
+
+    /**
+     * Reads a file and pushes its nodes to handler. Read bytes and nodes are reported to progress.
+     * 
+     * @param file
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public static void load(File file, JavaTreeHandler handler, JavaTreeProgress progress) throws Exception {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            progress.setTotalBytes(channel.size());
+            new JavaTreeBinaryReader(channel, progress).readDocument(handler);
+        }
+    }
+
+    /**
+     * Reads header and all blocks of the document.
+     * 
+     * @param handler
+     * 
+     * @throws Exception
+     */
+    public void readDocument(JavaTreeHandler handler) throws Exception {
+
+        ByteBuffer header = map(0, JavaTreeBinaryFormat.HEADER_SIZE);
+        if (header.getInt(0) != JavaTreeBinaryFormat.MAGIC) {
+            throw new IOException("Not a binary JavaTree document.");
+        }
+        if (header.getInt(4) != JavaTreeBinaryFormat.VERSION) {
+            throw new IOException("Unsupported binary JavaTree document version " + header.getInt(4));
+        }
+        ByteBuffer headerData = header.duplicate();
+        headerData.limit(16);
+        if (JavaTreeBinaryFormat.checksum(headerData) != header.getInt(16)) {
+            throw new IOException("Header checksum mismatch.");
+        }
+        long nodeCount = header.getLong(8);
+
+        long nodes = readTree(JavaTreeBinaryFormat.HEADER_SIZE, fileSize, handler);
+        if (nodes != nodeCount) {
+            throw new IOException("Document has " + nodes + " nodes, header says " + nodeCount);
+        }
+    }
+
+    /**
+     * Reads the blocks between position and end, which hold exactly one tree, and pushes its nodes to handler.
+     * 
+     * @param position
+     * @param end
+     * @param handler
+     * 
+     * @return number of read nodes
+     * 
+     * @throws Exception
+     */
+    public long readTree(long position, long end, JavaTreeHandler handler) throws Exception {
+
+        // number of children still to be read for every started node, the last element is the innermost node
+        int[] remaining = new int[64];
+        int depth = 0;
+        long nodes = 0;
+
+        while (position < end) {
+            progress.checkCancelled();
+
+            ByteBuffer blockHeader = map(position, JavaTreeBinaryFormat.BLOCK_HEADER);
+            int length = blockHeader.getInt(0);
+            int crc = blockHeader.getInt(4);
+            position += JavaTreeBinaryFormat.BLOCK_HEADER;
+            if (length < 0 || position + length > end) {
+                throw new IOException("Block at " + position + " exceeds the end of the tree.");
+            }
+
+            ByteBuffer block = map(position, length);
+            if (JavaTreeBinaryFormat.checksum(block) != crc) {
+                throw new IOException("Block checksum mismatch at " + position);
+            }
+            position += length;
+
+            while (block.hasRemaining()) {
+                if (nodes > 0 && depth == 0) {
+                    throw new IOException("Data after the root node at " + position);
+                }
+
+                String title = getString(block);
+                String text = getString(block);
+                int childCount = JavaTreeBinaryFormat.getVarint(block);
+
+                handler.startNode(title, text);
+                progress.addNode();
+                nodes++;
+
+                if (depth == remaining.length) {
+                    int[] grown = new int[depth * 2];
+                    System.arraycopy(remaining, 0, grown, 0, depth);
+                    remaining = grown;
+                }
+                remaining[depth++] = childCount;
+
+                // finish nodes whose children are all read
+                while (depth > 0 && remaining[depth - 1] == 0) {
+                    handler.endNode();
+                    depth--;
+                    if (depth > 0) {
+                        remaining[depth - 1]--;
+                    }
+                }
+            }
+            progress.addBytes(JavaTreeBinaryFormat.BLOCK_HEADER + length);
+        }
+
+        if (depth != 0 || nodes == 0) {
+            throw new IOException("Tree ends before all nodes are read.");
+        }
+        return nodes;
+    }
+
+    /**
+     * Reads length prefixed UTF-8 string.
+     * 
+     * @param buffer
+     * 
+     * @return string
+     * 
+     * @throws IOException
+     */
+    private String getString(ByteBuffer buffer) throws IOException {
+
+        int length = JavaTreeBinaryFormat.getVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("String exceeds the end of the block.");
+        }
+        if (length > stringBytes.length) {
+            stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+        }
+        buffer.get(stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a buffer over length bytes of the file starting at position. A new window is mapped if the range is not
+     * inside the current one.
+     * 
+     * @param position
+     * @param length
+     * 
+     * @return buffer
+     * 
+     * @throws IOException
+     */
+    private ByteBuffer map(long position, int length) throws IOException {
+
+        if (position + length > fileSize) {
+            throw new IOException("Unexpected end of file at " + position);
+        }
+
+        if (window == null || position < windowOffset || position + length > windowOffset + window.capacity()) {
+            long size = Math.min(fileSize - position, Math.max(WINDOW_SIZE, length));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowOffset = position;
+        }
+
+        ByteBuffer buffer = window.duplicate();
+        buffer.position((int) (position - windowOffset));
+        buffer.limit((int) (position - windowOffset) + length);
+        return buffer.slice();
+    }
+}
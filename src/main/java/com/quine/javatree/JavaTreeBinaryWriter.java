@@ -0,0 +1,300 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+/**
+ * JavaTreeBinaryWriter writes trees in JavaTreeBinaryFormat. Records are collected in a block buffer and every full
+ * block is written with its header in one gathering write. Node count in the file header is filled in when the whole
+ * tree is written.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeBinaryWriter {
+    private FileChannel      channel;
+    private JavaTreeProgress progress;
+
+    // payload of the block being filled
+    private ByteBuffer       block;
+
+    // encoded record that is added to the block
+    private ByteBuffer       record;
+
+    private long             nodes;
+
+    /**
+     * Creates JavaTreeBinaryWriter that writes to channel at its current position.
+     * 
+     * @param channel
+     * @param progress
+     */
+    public JavaTreeBinaryWriter(FileChannel channel, JavaTreeProgress progress) {
+        this.channel = channel;
+        this.progress = progress;
+        block = ByteBuffer.allocate(JavaTreeBinaryFormat.BLOCK_SIZE);
+        record = ByteBuffer.allocate(1024);
+        nodes = 0;
+    }
+
+    /**
+     * Writes a tree to a channel at its current position. Written bytes and nodes are reported to progress.
+     * 
+     * @param root
+     * @param channel
+     * @param progress
+     * 
+     * @throws IOException
+     */
+    public static void write(DefaultMutableTreeNode root, FileChannel channel, JavaTreeProgress progress)
+            throws IOException {
+        new JavaTreeBinaryWriter(channel, progress).writeDocument(root);
+    }
+
+    /**
+     * Writes the tree held by a store to a channel at its current position. Written bytes and nodes are reported to
+     * progress.
+     * 
+     * @param store
+     * @param channel
+     * @param progress
+     * 
+     * @throws IOException
+     */
+    public static void write(JavaTreeNodeStore store, FileChannel channel, JavaTreeProgress progress)
+            throws IOException {
+        new JavaTreeBinaryWriter(channel, progress).writeDocument(store);
+    }
+
+    /**
+     * Writes header, all nodes of the tree and then fills in the node count.
+     * 
+     * @param root
+     * 
+     * @throws IOException
+     */
+    public void writeDocument(DefaultMutableTreeNode root) throws IOException {
+
+        long headerPosition = channel.position();
+        writeFully(header(0), headerPosition);
+        channel.position(headerPosition + JavaTreeBinaryFormat.HEADER_SIZE);
+
+        writeTree(root);
+        flushBlock();
+
+        writeFully(header(nodes), headerPosition);
+    }
+
+    /**
+     * Writes header, all nodes held by the store and then fills in the node count.
+     * 
+     * @param store
+     * 
+     * @throws IOException
+     */
+    public void writeDocument(JavaTreeNodeStore store) throws IOException {
+
+        long headerPosition = channel.position();
+        writeFully(header(0), headerPosition);
+        channel.position(headerPosition + JavaTreeBinaryFormat.HEADER_SIZE);
+
+        writeTree(store, store.getRoot());
+        flushBlock();
+
+        writeFully(header(nodes), headerPosition);
+    }
+
+    /**
+     * Writes a node held by the store and all of its descendants. Nodes are visited in document order by following
+     * sibling and parent links, so no stack is needed.
+     * 
+     * @param store
+     * @param top
+     * 
+     * @throws IOException
+     */
+    public void writeTree(JavaTreeNodeStore store, int top) throws IOException {
+
+        int node = top;
+        while (node != JavaTreeNodeStore.NONE) {
+            writeNode(store.getTitle(node), store.getText(node), store.getChildCount(node));
+
+            if (store.getFirstChild(node) != JavaTreeNodeStore.NONE) {
+                node = store.getFirstChild(node);
+                continue;
+            }
+            while (node != top && store.getNextSibling(node) == JavaTreeNodeStore.NONE) {
+                node = store.getParent(node);
+            }
+            node = node == top ? JavaTreeNodeStore.NONE : store.getNextSibling(node);
+        }
+    }
+
+    /**
+     * @return number of nodes written so far
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Writes node and all of its descendants in pre-order, without recursion.
+     * 
+     * @param node
+     * 
+     * @throws IOException
+     */
+    public void writeTree(DefaultMutableTreeNode node) throws IOException {
+
+        for (Iterator<Object> nodes = JavaTreeTraversal.preOrder(new DefaultTreeModel(node), node); nodes.hasNext();) {
+            DefaultMutableTreeNode current = (DefaultMutableTreeNode) nodes.next();
+            JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) current.getUserObject();
+            writeNode(nodeObject.getTitle(), nodeObject.getText(), current.getChildCount());
+        }
+    }
+
+    /**
+     * Writes one node record.
+     * 
+     * @param title
+     * @param text
+     * @param childCount
+     * 
+     * @throws IOException
+     */
+    public void writeNode(String title, String text, int childCount) throws IOException {
+
+        byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+
+        // three varints take at most 15 bytes
+        int size = titleBytes.length + textBytes.length + 15;
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+
+        record.clear();
+        JavaTreeBinaryFormat.putVarint(record, titleBytes.length);
+        record.put(titleBytes);
+        JavaTreeBinaryFormat.putVarint(record, textBytes.length);
+        record.put(textBytes);
+        JavaTreeBinaryFormat.putVarint(record, childCount);
+        record.flip();
+
+        if (record.remaining() > block.remaining()) {
+            flushBlock();
+            if (record.remaining() > block.capacity()) {
+                block = ByteBuffer.allocate(record.remaining());
+            }
+        }
+        block.put(record);
+
+        nodes++;
+        progress.addNode();
+    }
+
+    /**
+     * Writes the block being filled if it is not empty and starts a new one.
+     * 
+     * @throws IOException
+     */
+    public void flushBlock() throws IOException {
+
+        block.flip();
+        if (block.hasRemaining()) {
+            progress.checkCancelled();
+
+            ByteBuffer blockHeader = ByteBuffer.allocate(JavaTreeBinaryFormat.BLOCK_HEADER);
+            blockHeader.putInt(block.remaining());
+            blockHeader.putInt(JavaTreeBinaryFormat.checksum(block));
+            blockHeader.flip();
+
+            ByteBuffer[] buffers = { blockHeader, block };
+            long size = blockHeader.remaining() + block.remaining();
+            long written = 0;
+            while (written < size) {
+                written += channel.write(buffers);
+            }
+            progress.addBytes(size);
+        }
+
+        if (block.capacity() > JavaTreeBinaryFormat.BLOCK_SIZE) {
+            block = ByteBuffer.allocate(JavaTreeBinaryFormat.BLOCK_SIZE);
+        } else {
+            block.clear();
+        }
+    }
+
+    /**
+     * Creates file header for given node count.
+     * 
+     * @param nodeCount
+     * 
+     * @return header
+     */
+    private static ByteBuffer header(long nodeCount) {
+
+        ByteBuffer header = ByteBuffer.allocate(JavaTreeBinaryFormat.HEADER_SIZE);
+        header.putInt(JavaTreeBinaryFormat.MAGIC);
+        header.putInt(JavaTreeBinaryFormat.VERSION);
+        header.putLong(nodeCount);
+        header.flip();
+        int crc = JavaTreeBinaryFormat.checksum(header);
+        header.limit(JavaTreeBinaryFormat.HEADER_SIZE);
+        header.putInt(16, crc);
+        return header;
+    }
+
+    /**
+     * Writes the whole buffer at given position without moving the channel position.
+     * 
+     * @param buffer
+     * @param position
+     * 
+     * @throws IOException
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+}
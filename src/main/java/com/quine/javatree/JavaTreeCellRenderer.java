@@ -0,0 +1,78 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.awt.Component;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultTreeCellRenderer;
+
+/**
+ * JavaTreeCellRenderer renders nodes of trees shown in high-scale mode. Like DefaultTreeCellRenderer it reuses one
+ * label for all rows. Long titles are cut to MAX_TITLE_LENGTH characters before they are given to the label, so a
+ * label never measures and clips a long title on every paint.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeCellRenderer extends DefaultTreeCellRenderer {
+    private static final long serialVersionUID = 4630412749508761318L;
+
+    // longest title shown in the tree
+    public final static int   MAX_TITLE_LENGTH = 200;
+
+    @Override
+    public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded,
+                                                  boolean leaf, int row, boolean hasFocus) {
+
+        super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+        String title = getText();
+        if (title != null && title.length() > MAX_TITLE_LENGTH) {
+            setText(title.substring(0, MAX_TITLE_LENGTH) + "...");
+        }
+        return this;
+    }
+
+    /**
+     * Sets up a tree for documents with many nodes. Rows get the fixed height of this renderer so the tree does not
+     * ask the renderer for the height of every row, and large model keeps only expanded nodes in the layout cache.
+     * 
+     * @param tree
+     */
+    public void install(JTree tree) {
+
+        tree.setCellRenderer(this);
+        Component sample = getTreeCellRendererComponent(tree, "Xg", false, false, false, 0, false);
+        tree.setRowHeight(sample.getPreferredSize().height);
+        tree.setLargeModel(true);
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeChangeTracker keeps dirty flags of the nodes of a tree. Node is dirty if it or a node in its subtree was
+ * changed since the flags were last cleared, so a clean node is the root of an unchanged subtree and a dirty node
+ * always has dirty ancestors. Flags are kept in JavaTreeNodeObject of tree nodes and in JavaTreeNodeStore for store
+ * models.
+ * 
+ * Tracker follows the model as a TreeModelListener. Inserted nodes, parents of inserted and removed nodes and changed
+ * nodes are marked. Title and text edits made without model events have to be reported with markChanged. Structure
+ * changes are ignored, since they are fired when lazily loaded children are unloaded.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeChangeTracker implements TreeModelListener {
+    private TreeModel model;
+
+    /**
+     * Creates JavaTreeChangeTracker and starts following model.
+     * 
+     * @param model
+     */
+    public JavaTreeChangeTracker(TreeModel model) {
+        this.model = model;
+        model.addTreeModelListener(this);
+    }
+
+    /**
+     * Stops following the model.
+     */
+    public void dispose() {
+        model.removeTreeModelListener(this);
+    }
+
+    /**
+     * @return true if anything in the tree was changed
+     */
+    public boolean isChanged() {
+        return isDirty(model.getRoot());
+    }
+
+    /**
+     * @param node
+     * 
+     * @return true if node or a node in its subtree was changed
+     */
+    public boolean isChanged(Object node) {
+        return isDirty(node);
+    }
+
+    /**
+     * Marks the node at the end of path and its ancestors as changed.
+     * 
+     * @param path
+     */
+    public void markChanged(TreePath path) {
+
+        // ancestors of a dirty node are already dirty
+        for (TreePath current = path; current != null && !isDirty(current.getLastPathComponent()); current = current
+                .getParentPath()) {
+            setDirty(current.getLastPathComponent(), true);
+        }
+    }
+
+    /**
+     * Clears flags of all nodes. Only dirty subtrees are visited, and children that were never loaded are skipped.
+     */
+    public void clear() {
+
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(model.getRoot());
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (!isDirty(node)) {
+                continue;
+            }
+            setDirty(node, false);
+            if (node instanceof JavaTreeLazyNode && !((JavaTreeLazyNode) node).isLoaded()) {
+                continue;
+            }
+            for (int index = 0; index < model.getChildCount(node); index++) {
+                pending.push(model.getChild(node, index));
+            }
+        }
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent event) {
+
+        if (event.getChildren() == null) {
+            markChanged(event.getTreePath());
+        } else {
+            for (Object child : event.getChildren()) {
+                markChanged(event.getTreePath().pathByAddingChild(child));
+            }
+        }
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent event) {
+
+        for (Object child : event.getChildren()) {
+            setDirty(child, true);
+        }
+        markChanged(event.getTreePath());
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent event) {
+        markChanged(event.getTreePath());
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent event) {
+        // structure changes are fired when lazily loaded children are unloaded and do not change the document
+    }
+
+    private boolean isDirty(Object node) {
+
+        if (node instanceof Integer) {
+            return ((JavaTreeStoreTreeModel) model).getStore().isDirty(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).isDirty();
+    }
+
+    private void setDirty(Object node, boolean dirty) {
+
+        if (node instanceof Integer) {
+            ((JavaTreeStoreTreeModel) model).getStore().setDirty(((Integer) node).intValue(), dirty);
+        } else {
+            ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).setDirty(dirty);
+        }
+    }
+}
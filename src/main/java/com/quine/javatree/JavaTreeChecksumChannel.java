@@ -0,0 +1,124 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * JavaTreeChecksumChannel passes writes to another channel and adds every byte written through it to a CRC32C
+ * checksum, so writers get the checksum of what they wrote without reading it back. Closing this channel closes the
+ * channel it writes to.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeChecksumChannel implements GatheringByteChannel {
+    private GatheringByteChannel channel;
+    private CRC32C               crc;
+
+    /**
+     * Creates JavaTreeChecksumChannel that writes to channel.
+     * 
+     * @param channel
+     */
+    public JavaTreeChecksumChannel(GatheringByteChannel channel) {
+        this.channel = channel;
+        this.crc = new CRC32C();
+    }
+
+    /**
+     * @return CRC32C of the bytes written so far
+     */
+    public long getChecksum() {
+        return crc.getValue();
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+
+        int position = source.position();
+        int count = channel.write(source);
+        update(source, position, count);
+        return count;
+    }
+
+    @Override
+    public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+
+        int[] positions = new int[length];
+        for (int index = 0; index < length; index++) {
+            positions[index] = sources[offset + index].position();
+        }
+
+        long count = channel.write(sources, offset, length);
+        for (int index = 0; index < length; index++) {
+            ByteBuffer source = sources[offset + index];
+            update(source, positions[index], source.position() - positions[index]);
+        }
+        return count;
+    }
+
+    @Override
+    public long write(ByteBuffer[] sources) throws IOException {
+        return write(sources, 0, sources.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Adds count bytes of source written from position to the checksum.
+     * 
+     * @param source
+     * @param position
+     * @param count
+     */
+    private void update(ByteBuffer source, int position, int count) {
+
+        if (count > 0) {
+            ByteBuffer written = source.duplicate();
+            written.limit(position + count);
+            written.position(position);
+            crc.update(written);
+        }
+    }
+}
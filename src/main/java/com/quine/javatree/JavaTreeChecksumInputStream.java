@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * JavaTreeChecksumInputStream adds the first length bytes read from a stream to a CRC32C checksum, so a document can
+ * be checked against its checksum trailer while it is parsed. Bytes after length, the trailer itself, are not added.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeChecksumInputStream extends FilterInputStream {
+    // skipped bytes are read through a buffer of this size, so they are added to the checksum too
+    private final static int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    private CRC32C           crc;
+    private long             remaining;
+
+    /**
+     * Creates JavaTreeChecksumInputStream that adds the first length bytes of input to the checksum.
+     * 
+     * @param input
+     * @param length
+     */
+    public JavaTreeChecksumInputStream(InputStream input, long length) {
+        super(input);
+        crc = new CRC32C();
+        remaining = length;
+    }
+
+    /**
+     * @param checksum
+     * 
+     * @return true if all length bytes were read and their checksum is checksum
+     */
+    public boolean matches(long checksum) {
+        return remaining == 0 && crc.getValue() == checksum;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int value = super.read();
+        if (value >= 0 && remaining > 0) {
+            crc.update(value);
+            remaining--;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+        int count = super.read(buffer, offset, length);
+        if (count > 0 && remaining > 0) {
+            int counted = (int) Math.min(count, remaining);
+            crc.update(buffer, offset, counted);
+            remaining -= counted;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+
+        int skipped = read(new byte[(int) Math.min(Math.max(count, 0), SKIP_BUFFER_SIZE)]);
+        return Math.max(skipped, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
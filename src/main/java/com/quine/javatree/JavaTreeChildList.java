@@ -0,0 +1,367 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+import javax.swing.tree.TreeNode;
+
+/**
+ * JavaTreeChildList is the list of children of a JavaTreeNode. Children are kept in a treap ordered by position,
+ * where every entry knows the size of its subtree and its parent entry. Getting a child by index, inserting and
+ * removing take logarithmic time, and so does the index of a child from its entry, by adding up the sizes of the
+ * subtrees to the left of the path to the root.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeChildList {
+    private Entry root;
+
+    // state of the generator of entry priorities
+    private int   seed;
+
+    /**
+     * Creates empty JavaTreeChildList.
+     */
+    public JavaTreeChildList() {
+        seed = System.identityHashCode(this) | 1;
+    }
+
+    /**
+     * @return number of children
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @param index
+     * 
+     * @return child at index
+     */
+    public TreeNode get(int index) {
+
+        checkIndex(index, size() - 1);
+        Entry entry = root;
+        while (true) {
+            int leftSize = size(entry.left);
+            if (index < leftSize) {
+                entry = entry.left;
+            } else if (index == leftSize) {
+                return entry.node;
+            } else {
+                index -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+    }
+
+    /**
+     * Returns index of the child held by entry.
+     * 
+     * @param entry
+     * 
+     * @return index
+     */
+    public int indexOf(Entry entry) {
+
+        int index = size(entry.left);
+        for (; entry.parent != null; entry = entry.parent) {
+            if (entry == entry.parent.right) {
+                index += size(entry.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns index of child by going through the list. Used for children that do not know their entry.
+     * 
+     * @param node
+     * 
+     * @return index or -1 if node is not in the list
+     */
+    public int indexOf(TreeNode node) {
+
+        int index = 0;
+        for (Entry entry = first(root); entry != null; entry = next(entry)) {
+            if (entry.node == node) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts node at index.
+     * 
+     * @param index
+     * @param node
+     * 
+     * @return entry that holds node
+     */
+    public Entry insert(int index, TreeNode node) {
+
+        checkIndex(index, size());
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        Entry entry = new Entry(node, seed);
+        if (root == null) {
+            root = entry;
+            return entry;
+        }
+
+        // add as a leaf at index, counting it in the sizes on the way, then rotate it up to its priority
+        Entry current = root;
+        while (true) {
+            current.size++;
+            int leftSize = size(current.left);
+            if (index <= leftSize) {
+                if (current.left == null) {
+                    current.left = entry;
+                    break;
+                }
+                current = current.left;
+            } else {
+                index -= leftSize + 1;
+                if (current.right == null) {
+                    current.right = entry;
+                    break;
+                }
+                current = current.right;
+            }
+        }
+        entry.parent = current;
+        while (entry.parent != null && entry.priority > entry.parent.priority) {
+            rotateUp(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes entry from the list.
+     * 
+     * @param entry
+     */
+    public void remove(Entry entry) {
+
+        // rotate entry down to a leaf and cut it off
+        while (entry.left != null || entry.right != null) {
+            if (entry.left == null) {
+                rotateUp(entry.right);
+            } else if (entry.right == null || entry.left.priority > entry.right.priority) {
+                rotateUp(entry.left);
+            } else {
+                rotateUp(entry.right);
+            }
+        }
+
+        Entry parent = entry.parent;
+        if (parent == null) {
+            root = null;
+        } else {
+            if (parent.left == entry) {
+                parent.left = null;
+            } else {
+                parent.right = null;
+            }
+            for (Entry ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+                ancestor.size--;
+            }
+        }
+        entry.parent = null;
+    }
+
+    /**
+     * Removes child at index.
+     * 
+     * @param index
+     * 
+     * @return removed entry
+     */
+    public Entry remove(int index) {
+
+        checkIndex(index, size() - 1);
+        Entry entry = root;
+        while (true) {
+            int leftSize = size(entry.left);
+            if (index < leftSize) {
+                entry = entry.left;
+            } else if (index == leftSize) {
+                break;
+            } else {
+                index -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+        remove(entry);
+        return entry;
+    }
+
+    /**
+     * @return first child
+     */
+    public TreeNode getFirst() {
+        return first(root).node;
+    }
+
+    /**
+     * @return last child
+     */
+    public TreeNode getLast() {
+
+        Entry entry = root;
+        while (entry.right != null) {
+            entry = entry.right;
+        }
+        return entry.node;
+    }
+
+    /**
+     * @return enumeration of children in order
+     */
+    public Enumeration<TreeNode> elements() {
+
+        return new Enumeration<TreeNode>() {
+            private Entry entry = first(root);
+
+            public boolean hasMoreElements() {
+                return entry != null;
+            }
+
+            public TreeNode nextElement() {
+
+                if (entry == null) {
+                    throw new NoSuchElementException();
+                }
+                TreeNode node = entry.node;
+                entry = next(entry);
+                return node;
+            }
+        };
+    }
+
+    private static int size(Entry entry) {
+        return entry == null ? 0 : entry.size;
+    }
+
+    private static Entry first(Entry entry) {
+
+        if (entry != null) {
+            while (entry.left != null) {
+                entry = entry.left;
+            }
+        }
+        return entry;
+    }
+
+    private static Entry next(Entry entry) {
+
+        if (entry.right != null) {
+            return first(entry.right);
+        }
+        while (entry.parent != null && entry == entry.parent.right) {
+            entry = entry.parent;
+        }
+        return entry.parent;
+    }
+
+    private static void checkIndex(int index, int last) {
+
+        if (index < 0 || index > last) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Rotates entry above its parent keeping the order of entries.
+     */
+    private void rotateUp(Entry entry) {
+
+        Entry parent = entry.parent;
+        Entry grandParent = parent.parent;
+        if (entry == parent.left) {
+            parent.left = entry.right;
+            if (entry.right != null) {
+                entry.right.parent = parent;
+            }
+            entry.right = parent;
+        } else {
+            parent.right = entry.left;
+            if (entry.left != null) {
+                entry.left.parent = parent;
+            }
+            entry.left = parent;
+        }
+        parent.parent = entry;
+        entry.parent = grandParent;
+
+        if (grandParent == null) {
+            root = entry;
+        } else if (grandParent.left == parent) {
+            grandParent.left = entry;
+        } else {
+            grandParent.right = entry;
+        }
+        entry.size = parent.size;
+        parent.size = size(parent.left) + size(parent.right) + 1;
+    }
+
+    /**
+     * Entry of the list that holds a child.
+     */
+    public static final class Entry {
+        private final TreeNode node;
+        private final int      priority;
+        private Entry          left;
+        private Entry          right;
+        private Entry          parent;
+        private int            size;
+
+        private Entry(TreeNode node, int priority) {
+            this.node = node;
+            this.priority = priority;
+            size = 1;
+        }
+
+        /**
+         * @return child held by the entry
+         */
+        public TreeNode getNode() {
+            return node;
+        }
+    }
+}
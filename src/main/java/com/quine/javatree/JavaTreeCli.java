@@ -0,0 +1,397 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.tree.TreeModel;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * JavaTreeCli processes documents without a user interface, so it can run on machines without a display. It uses
+ * the load and save logic of JavaTreeActionController and never creates AWT or Swing components. Options of the
+ * action controller are read from system properties, the same way they are for the application.
+ * 
+ * Commands:
+ * 
+ * <pre>
+ * validate [-j N] FILE...                 check XML documents against javatree.dtd and binary documents against
+ *                                         their checksums
+ * convert  [-j N] --to jtd|jtb FILE...    write every file next to itself in the given format
+ * convert  IN OUT                         write IN to OUT, format is selected by the extension of OUT
+ * stats    [-j N] FILE...                 print number of nodes, depth and sizes of documents
+ * </pre>
+ * 
+ * Files are processed on a pool of N worker threads, by default one per processor. Results are printed in the order
+ * of the files. Exit status is 0 if all files were processed, 1 if some failed and 2 if arguments are wrong.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeCli {
+    private final static int         EXIT_OK     = 0;
+    private final static int         EXIT_FAILED = 1;
+    private final static int         EXIT_USAGE  = 2;
+
+    private final static String      USAGE       = "Usage: javatree validate [-j N] FILE...\n"
+                                                   + "       javatree convert [-j N] --to jtd|jtb|jts FILE...\n"
+                                                   + "       javatree convert IN OUT\n"
+                                                   + "       javatree stats [-j N] FILE...";
+
+    private JavaTreeActionController actionController;
+    private PrintStream              out;
+    private PrintStream              err;
+
+    /**
+     * Creates JavaTreeCli that writes results to out and errors to err.
+     * 
+     * @param actionController
+     * @param out
+     * @param err
+     */
+    public JavaTreeCli(JavaTreeActionController actionController, PrintStream out, PrintStream err) {
+        this.actionController = actionController;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+
+        int status = new JavaTreeCli(new JavaTreeActionController(), System.out, System.err).run(args);
+        System.exit(status);
+    }
+
+    /**
+     * Runs a command and returns exit status.
+     * 
+     * @param args
+     * 
+     * @return status
+     */
+    public int run(String[] args) {
+
+        if (args.length == 0) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        String command = args[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        String target = null;
+        List<File> files = new ArrayList<File>();
+
+        for (int index = 1; index < args.length; index++) {
+            String arg = args[index];
+            if (arg.equals("-j") && index + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++index]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    err.println("Number of threads needs to be a positive number.");
+                    return EXIT_USAGE;
+                }
+            } else if (arg.equals("--to") && index + 1 < args.length) {
+                target = args[++index].toLowerCase();
+                if (!target.startsWith(".")) {
+                    target = "." + target;
+                }
+            } else {
+                files.add(new File(arg));
+            }
+        }
+
+        if (files.isEmpty()) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (command.equals("validate")) {
+            return runAll(files, threads, new Command() {
+                public String execute(File file) throws Exception {
+                    return validate(file);
+                }
+            });
+        }
+
+        if (command.equals("stats")) {
+            return runAll(files, threads, new Command() {
+                public String execute(File file) throws Exception {
+                    return stats(file);
+                }
+            });
+        }
+
+        if (command.equals("convert")) {
+            if (target == null) {
+                if (files.size() != 2) {
+                    err.println(USAGE);
+                    return EXIT_USAGE;
+                }
+                final File output = files.get(1);
+                return runAll(files.subList(0, 1), 1, new Command() {
+                    public String execute(File file) throws Exception {
+                        return convert(file, output);
+                    }
+                });
+            }
+
+            if (!target.equals(JavaTreeBinaryFormat.EXTENSION) && !target.equals(JavaTreeSegmentedFormat.EXTENSION)
+                && !target.equals(".jtd")) {
+                err.println("Target format needs to be jtd, jtb or jts.");
+                return EXIT_USAGE;
+            }
+            final String extension = target;
+            return runAll(files, threads, new Command() {
+                public String execute(File file) throws Exception {
+                    return convert(file, replaceExtension(file, extension));
+                }
+            });
+        }
+
+        err.println("Unknown command " + command + ".");
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    /**
+     * Checks a document. XML documents are always validated against the embedded grammar, even with trusted open,
+     * binary and segmented documents are read completely so the checksums of all blocks are verified.
+     * 
+     * @param file
+     * 
+     * @return result
+     * 
+     * @throws Exception
+     */
+    private String validate(File file) throws Exception {
+
+        if (JavaTreeBinaryFormat.isBinary(file)) {
+            JavaTreeStats stats = new JavaTreeStats();
+            JavaTreeBinaryReader.load(file, stats, new JavaTreeProgress());
+            return String.format("valid, %,d nodes", stats.nodes);
+        }
+        if (JavaTreeSegmentedFormat.isSegmented(file)) {
+            JavaTreeStats stats = new JavaTreeStats();
+            JavaTreeSegmentedReader.load(file, stats, new JavaTreeProgress());
+            return String.format("valid, %,d nodes", stats.nodes);
+        }
+
+        try {
+            JavaTreeValidator.parse(file, false, new JavaTreeProgress());
+        } catch (SAXParseException e) {
+            throw new Exception("line " + e.getLineNumber() + ": " + e.getMessage(), e);
+        }
+        return "valid";
+    }
+
+    /**
+     * Converts a document with the saved changes from its journal to the format selected by the extension of output.
+     * 
+     * @param input
+     * @param output
+     * 
+     * @return result
+     * 
+     * @throws Exception
+     */
+    private String convert(File input, File output) throws Exception {
+
+        if (input.getCanonicalFile().equals(output.getCanonicalFile())) {
+            throw new Exception("document can not be converted to itself");
+        }
+
+        TreeModel model = actionController.loadModelFromFile(input, new JavaTreeProgress());
+        if (model == null) {
+            throw new Exception("error while parsing document");
+        }
+        // saved changes that are still in the journal are part of the document
+        JavaTreeJournal.replay(input, model);
+        JavaTreeProgress progress = new JavaTreeProgress();
+        if (!actionController.saveModelToFile(model, output, progress)) {
+            throw new Exception("error while saving " + output);
+        }
+        return "converted to " + output + " (" + output.length() + " bytes written in " + progress.getElapsedMillis()
+               + " ms)";
+    }
+
+    /**
+     * Reads a document without building its tree and describes it. Documents with saved changes in their journal are
+     * refused, because the document alone does not show them.
+     * 
+     * @param file
+     * 
+     * @return result
+     * 
+     * @throws Exception
+     */
+    private String stats(File file) throws Exception {
+
+        if (JavaTreeJournal.hasRecords(file)) {
+            throw new Exception("document has saved changes in its journal, convert it first");
+        }
+
+        JavaTreeStats stats = new JavaTreeStats();
+        if (JavaTreeBinaryFormat.isBinary(file)) {
+            JavaTreeBinaryReader.load(file, stats, new JavaTreeProgress());
+        } else if (JavaTreeSegmentedFormat.isSegmented(file)) {
+            JavaTreeSegmentedReader.load(file, stats, new JavaTreeProgress());
+        } else {
+            JavaTreeStreamLoader loader = new JavaTreeStreamLoader();
+            loader.setTrusted(actionController.getOptions().isTrustedOpen());
+            loader.load(file, stats, new JavaTreeProgress());
+        }
+
+        return String.format("%,d nodes, depth %d, %,d leaves, %,d bytes of titles, %,d bytes of text, %,d bytes",
+                             stats.nodes, stats.maxDepth, stats.leaves, stats.titleBytes, stats.textBytes,
+                             file.length());
+    }
+
+    /**
+     * Runs command for every file on a bounded pool of threads and prints results in the order of files.
+     * 
+     * @param files
+     * @param threads
+     * @param command
+     * 
+     * @return status
+     */
+    private int runAll(List<File> files, int threads, final Command command) {
+
+        // queue is bounded, so a long list of files does not hold more work than the workers can take
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                                                             new ArrayBlockingQueue<Runnable>(threads * 2),
+                                                             new ThreadPoolExecutor.CallerRunsPolicy());
+        int status = EXIT_OK;
+
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (final File file : files) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return command.execute(file);
+                    }
+                }));
+            }
+
+            for (int index = 0; index < files.size(); index++) {
+                try {
+                    out.println(files.get(index) + ": " + results.get(index).get());
+                } catch (ExecutionException e) {
+                    err.println(files.get(index) + ": " + e.getCause().getMessage());
+                    status = EXIT_FAILED;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = EXIT_FAILED;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return status;
+    }
+
+    /**
+     * Returns file in the same directory with the same name and given extension.
+     * 
+     * @param file
+     * @param extension
+     * 
+     * @return file
+     */
+    private static File replaceExtension(File file, String extension) {
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return new File(file.getAbsoluteFile().getParentFile(), name + extension);
+    }
+
+    /**
+     * Command run for a single file.
+     */
+    private interface Command {
+        String execute(File file) throws Exception;
+    }
+
+    /**
+     * Handler that counts nodes and measures a document instead of building its tree.
+     */
+    private static class JavaTreeStats implements JavaTreeHandler {
+        private long nodes;
+        private long leaves;
+        private int  depth;
+        private int  maxDepth;
+        private long titleBytes;
+        private long textBytes;
+
+        // true while the last started node has no children yet
+        private boolean leaf;
+
+        public void startNode(String title, String text) {
+
+            nodes++;
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+            titleBytes += title.getBytes(StandardCharsets.UTF_8).length;
+            textBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            leaf = true;
+        }
+
+        public void endNode() {
+
+            if (leaf) {
+                leaves++;
+            }
+            leaf = false;
+            depth--;
+        }
+    }
+}
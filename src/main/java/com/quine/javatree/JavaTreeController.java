@@ -30,18 +30,27 @@ import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JTree;
 import javax.swing.SwingUtilities;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 /**
@@ -55,6 +64,9 @@ import javax.swing.tree.TreePath;
  * 
  */
 public class JavaTreeController implements TreeSelectionListener, MouseListener {
+    // most search results that are selected in the tree
+    private final static int         MAX_SEARCH_RESULTS = 1000;
+
     // reference to JavaTreeFrame that is the parent of the controller
     private JavaTreeFrame            parent;
 
@@ -72,11 +84,24 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
     // controller that provides necessary functionality for actions
     private JavaTreeActionController actionController;
 
+    // service that loads and saves documents in background
+    private JavaTreeIOService        ioService;
+
+    // progressive load that is still filling the tree or null
+    private JavaTreeProgressiveLoader progressiveLoader;
+
+    // nodes edited during progressive load, which are recorded once the journal and the tracker are started
+    private List<TreePath>           progressiveEdits;
+
+    // document shown in the tree with its index and journal
+    private JavaTreeDocument         document;
+
     // file menu actions
     private Action                   newAction;
     private Action                   openAction;
     private Action                   saveAction;
     private Action                   exitAction;
+    private Action                   searchAction;
 
     // node menu actions
     private Action                   addChildAction;
@@ -104,21 +129,31 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         // set firstSelection
         firstSelection = true;
+        progressiveEdits = new ArrayList<TreePath>();
+
+        // create action controller, it creates trees in the display mode selected in options
+        actionController = new JavaTreeActionController();
 
         // create tree and set action listener
-        tree = new JTree(new DefaultMutableTreeNode(new JavaTreeNodeObject("main")));
+        tree = actionController.newAction();
         tree.addTreeSelectionListener(this);
         tree.addMouseListener(this);
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(tree);
+        document = new JavaTreeDocument(null, model);
+        document.setIndex(createIndex(model));
+        document.setTracker(new JavaTreeChangeTracker(model));
 
         // create and set panel
         panel = new JavaTreePanel(tree);
         panel.setOpaque(true);
 
         // create and set
-        actionController = new JavaTreeActionController();
+        ioService = new JavaTreeIOService(actionController, parent);
+        panel.setLargeTextSize(actionController.getOptions().getLargeTextSize());
 
         // create actions
         createActions();
+        panel.addSearchListener(searchAction);
 
         // create menu
         menuBar = createMenuItems();
@@ -146,13 +181,9 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
     public void valueChanged(TreeSelectionEvent event) {
         // Set old selected node and copy data to it
         if (!firstSelection) {
-            TreePath oldPath = event.getOldLeadSelectionPath();
-            if (oldPath != null) {
-                DefaultMutableTreeNode oldSelectedNode = (DefaultMutableTreeNode) oldPath.getLastPathComponent();
-                if (oldSelectedNode != null) {
-                    ((JavaTreeNodeObject) oldSelectedNode.getUserObject()).setTitle(panel.getTextFieldText());
-                    ((JavaTreeNodeObject) oldSelectedNode.getUserObject()).setText(panel.getTextAreaText());
-                }
+            TreePath oldPath = JavaTreeRangeTreeModel.getDataPath(tree, event.getOldLeadSelectionPath());
+            if (oldPath != null && isDataNode(oldPath.getLastPathComponent())) {
+                commitNodeData(oldPath);
             }
         }
 
@@ -162,25 +193,34 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         // Set new selected node, copy data from it, and enable and disable
         // appropriate actions
-        TreePath newPath = event.getNewLeadSelectionPath();
+        TreePath newPath = JavaTreeRangeTreeModel.getDataPath(tree, event.getNewLeadSelectionPath());
         if (newPath != null) {
-            DefaultMutableTreeNode newSelectedNode = (DefaultMutableTreeNode) newPath.getLastPathComponent();
-            if (newSelectedNode != null) {
-                panel.setTextField((((JavaTreeNodeObject) newSelectedNode.getUserObject()).getTitle()));
-                panel.setTextArea((((JavaTreeNodeObject) newSelectedNode.getUserObject()).getText()));
-
-                if (newSelectedNode.isRoot()) {
+            Object newSelectedNode = newPath.getLastPathComponent();
+            if (isDataNode(newSelectedNode)) {
+                panel.setTextField(getNodeTitle(newSelectedNode));
+                panel.setTextArea(getNodeText(newSelectedNode));
+
+                if (progressiveLoader != null) {
+                    // tree structure can not be changed while it is being loaded
+                    enableAllNodeActions(false);
+                } else if (newPath.getPathCount() == 1) {
                     enableDisableRootNodeActions();
+                } else if (newPath.getPathCount() == 2) {
+                    enableDisableRootChildNodeActions();
                 } else {
-                    DefaultMutableTreeNode parent = (DefaultMutableTreeNode) newSelectedNode.getParent();
-                    if (parent.isRoot()) {
-                        enableDisableRootChildNodeActions();
-                    } else {
-                        enableAllNodeActions(true);
-                    }
+                    enableAllNodeActions(true);
                 }
+            } else {
+                // range folders and placeholders can not be edited
+                enableAllNodeActions(false);
             }
         }
+
+        if (tree.getSelectionCount() > 1 && progressiveLoader == null) {
+            // actions work on all selected nodes and skip the ones they do not apply to
+            enableAllNodeActions(true);
+            addChildAction.setEnabled(false);
+        }
     }
 
     @Override
@@ -191,24 +231,30 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
     @Override
     public void mousePressed(MouseEvent e) {
-        if (SwingUtilities.isRightMouseButton(e)) {
+        if (SwingUtilities.isRightMouseButton(e) && progressiveLoader == null) {
             TreePath path = tree.getPathForLocation(e.getX(), e.getY());
-            DefaultMutableTreeNode clickedNode = (DefaultMutableTreeNode) path.getLastPathComponent();
+            if (path == null || !isDataNode(path.getLastPathComponent())) {
+                return;
+            }
+            Object clickedNode = path.getLastPathComponent();
+            TreePath dataPath = JavaTreeRangeTreeModel.getDataPath(tree, path);
             boolean root = false;
             boolean rootChild = false;
 
-            if (clickedNode.isRoot()) {
+            if (dataPath.getPathCount() == 1) {
                 enableDisableRootNodeActions();
                 root = true;
-            } else {
-                DefaultMutableTreeNode parent = (DefaultMutableTreeNode) clickedNode.getParent();
-                if (parent.isRoot()) {
-                    enableDisableRootChildNodeActions();
-                    rootChild = true;
-                }
+            } else if (dataPath.getPathCount() == 2) {
+                enableDisableRootChildNodeActions();
+                rootChild = true;
             }
             Rectangle pathBounds = tree.getUI().getPathBounds(tree, path);
             if (pathBounds != null && pathBounds.contains(e.getX(), e.getY())) {
+                if (tree.getSelectionCount() > 1 && tree.isPathSelected(path)) {
+                    showSelectionMenu(pathBounds);
+                    return;
+                }
+
                 JPopupMenu menu = new JPopupMenu();
 
                 JMenuItem addChildMenuItem = new JMenuItem(new AddChildToGivenNodeAction(clickedNode));
@@ -245,6 +291,12 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
                     menu.add(moveLevelDownMenuItem);
                 }
 
+                if (tree.getSelectionCount() > 0 && !tree.isPathSelected(path)) {
+                    JMenuItem moveSelectedMenuItem = new JMenuItem(new MoveSelectedNodesToGivenNodeAction(clickedNode));
+                    moveSelectedMenuItem.setText("Move selected nodes here");
+                    menu.add(moveSelectedMenuItem);
+                }
+
                 menu.show(tree, pathBounds.x, pathBounds.y + pathBounds.height);
             }
         }
@@ -268,6 +320,328 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
     }
 
+    /**
+     * Shows popup menu with actions on all selected nodes below bounds of the clicked node.
+     * 
+     * @param pathBounds
+     */
+    private void showSelectionMenu(Rectangle pathBounds) {
+
+        enableAllNodeActions(true);
+        JPopupMenu menu = new JPopupMenu();
+
+        JMenuItem deleteNodesMenuItem = new JMenuItem(deleteNodeAction);
+        deleteNodesMenuItem.setText("Delete nodes");
+        menu.add(deleteNodesMenuItem);
+
+        JMenuItem moveUpMenuItem = new JMenuItem(moveUpAction);
+        moveUpMenuItem.setText("Move nodes up");
+        menu.add(moveUpMenuItem);
+
+        JMenuItem moveDownMenuItem = new JMenuItem(moveDownAction);
+        moveDownMenuItem.setText("Move nodes down");
+        menu.add(moveDownMenuItem);
+
+        JMenuItem moveLevelUpMenuItem = new JMenuItem(moveLevelUpAction);
+        moveLevelUpMenuItem.setText("Move nodes level up");
+        menu.add(moveLevelUpMenuItem);
+
+        JMenuItem moveLevelDownMenuItem = new JMenuItem(moveLevelDownAction);
+        moveLevelDownMenuItem.setText("Move nodes level down");
+        menu.add(moveLevelDownMenuItem);
+
+        menu.show(tree, pathBounds.x, pathBounds.y + pathBounds.height);
+    }
+
+    /**
+     * @return document model paths of the selected data nodes, in the order of their rows
+     */
+    private List<TreePath> getSelectedDataPaths() {
+
+        List<TreePath> paths = new ArrayList<TreePath>();
+        int[] rows = tree.getSelectionRows();
+        if (rows != null) {
+            Arrays.sort(rows);
+            for (int row : rows) {
+                TreePath path = tree.getPathForRow(row);
+                if (path != null && isDataNode(path.getLastPathComponent())) {
+                    paths.add(JavaTreeRangeTreeModel.getDataPath(tree, path));
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Replaces the tree shown in the panel with t, which shows document d. Previous document is closed.
+     * 
+     * @param t
+     * @param d
+     */
+    private void installTree(JTree t, JavaTreeDocument d) {
+
+        document.close();
+        document = d;
+
+        if (tree.getModel() instanceof JavaTreeRangeTreeModel) {
+            ((JavaTreeRangeTreeModel) tree.getModel()).dispose();
+        }
+        tree = t;
+        firstSelection = true;
+        tree.addTreeSelectionListener(this);
+        tree.addMouseListener(this);
+        panel.setTree(tree);
+        enableAllNodeActions(false);
+    }
+
+    /**
+     * Stops progressive load that is still running, if any.
+     */
+    private void cancelProgressiveLoad() {
+
+        if (progressiveLoader != null) {
+            progressiveLoader.cancel();
+            progressiveLoader = null;
+            saveAction.setEnabled(true);
+        }
+    }
+
+    /**
+     * Opens a file progressively. Tree is shown as soon as its root is read and filled while the rest of the file is
+     * read.
+     * 
+     * @param file
+     */
+    private void openProgressively(final File file) {
+
+        progressiveLoader = ioService.openProgressively(file, new JavaTreeProgressiveLoader.Listener() {
+            public void started(DefaultTreeModel model) {
+                installTree(actionController.createTree(model), new JavaTreeDocument(file, model));
+                progressiveEdits.clear();
+                saveAction.setEnabled(false);
+            }
+
+            public void finished(boolean success) {
+                progressiveLoader = null;
+                saveAction.setEnabled(true);
+
+                if (!success) {
+                    // never leave a partially loaded document that could be saved over the original
+                    installNewTree();
+                    JOptionPane.showMessageDialog(parent, "Error while parsing document.");
+                    return;
+                }
+
+                // journal and tracker start after loading, so loaded nodes are not recorded as changes
+                final JavaTreeDocument loaded = document;
+                loaded.setTracker(new JavaTreeChangeTracker(loaded.getModel()));
+                loaded.setJournal(ioService.openJournal(file, loaded.getModel()));
+                for (TreePath path : progressiveEdits) {
+                    loaded.getTracker().markChanged(path);
+                    if (loaded.getJournal() != null) {
+                        loaded.getJournal().recordEdit(path);
+                    }
+                }
+                progressiveEdits.clear();
+                ioService.index(loaded.getModel(), new Consumer<JavaTreeSearchIndex>() {
+                    public void accept(JavaTreeSearchIndex index) {
+                        if (document == loaded && loaded.getIndex() == null) {
+                            loaded.setIndex(index);
+                        } else {
+                            index.dispose();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns true if file has a journal with records, or its journal can not be read.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    private boolean hasJournalRecords(File file) {
+
+        try {
+            return JavaTreeJournal.hasRecords(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return true;
+        }
+    }
+
+    /**
+     * Returns true if node holds data of a document and false if it is a placeholder shown while loading or a node
+     * that is no longer part of the tree.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    private boolean isDataNode(Object node) {
+
+        if (node instanceof Integer && document.getModel() instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) document.getModel()).getStore().contains(((Integer) node).intValue());
+        }
+        return node instanceof DefaultMutableTreeNode
+               && ((DefaultMutableTreeNode) node).getUserObject() instanceof JavaTreeNodeObject;
+    }
+
+    /**
+     * @param node
+     * 
+     * @return title of a data node
+     */
+    private String getNodeTitle(Object node) {
+
+        if (node instanceof Integer) {
+            return ((JavaTreeStoreTreeModel) document.getModel()).getStore().getTitle(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getTitle();
+    }
+
+    /**
+     * @param node
+     * 
+     * @return text of a data node
+     */
+    private String getNodeText(Object node) {
+
+        if (node instanceof Integer) {
+            return ((JavaTreeStoreTreeModel) document.getModel()).getStore().getText(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getText();
+    }
+
+    /**
+     * Replaces the tree shown in the panel with a new tree.
+     */
+    private void installNewTree() {
+
+        JTree newTree = actionController.newAction();
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(newTree);
+        JavaTreeDocument newDocument = new JavaTreeDocument(null, model);
+        newDocument.setIndex(createIndex(model));
+        newDocument.setTracker(new JavaTreeChangeTracker(model));
+        installTree(newTree, newDocument);
+    }
+
+    /**
+     * Creates index of a tree. Returns index or null if error occurs.
+     * 
+     * @param model
+     * 
+     * @return index
+     */
+    private JavaTreeSearchIndex createIndex(TreeModel model) {
+
+        try {
+            return JavaTreeSearchIndex.build(model, new JavaTreeProgress());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Copies title and text that were modified in the panel to the data node at the end of path. Index, journal and
+     * tracker are updated if the node was changed.
+     * 
+     * @param path
+     */
+    private void commitNodeData(TreePath path) {
+
+        // fields that were not modified are not copied out of the panel
+        if (!panel.isTitleModified() && !panel.isTextModified()) {
+            return;
+        }
+        Object node = path.getLastPathComponent();
+        String title = panel.isTitleModified() ? panel.getTextFieldText() : getNodeTitle(node);
+        String text = panel.isTextModified() ? panel.getTextAreaText() : getNodeText(node);
+        panel.clearModified();
+        if (title.equals(getNodeTitle(node)) && text.equals(getNodeText(node))) {
+            return;
+        }
+
+        setNodeData(node, title, text);
+        if (document.getIndex() != null) {
+            document.getIndex().update(node);
+        }
+        if (document.getTracker() != null) {
+            document.getTracker().markChanged(path);
+        }
+        if (document.getJournal() != null) {
+            document.getJournal().recordEdit(path);
+        } else if (progressiveLoader != null) {
+            progressiveEdits.add(path);
+        }
+    }
+
+    /**
+     * Selects nodes found by a search and makes them visible.
+     * 
+     * @param query
+     */
+    private void search(String query) {
+
+        JavaTreeSearchIndex searchIndex = document.getIndex();
+        if (searchIndex == null) {
+            if (progressiveLoader != null) {
+                JOptionPane.showMessageDialog(parent, "Document is still being loaded.");
+            } else {
+                JOptionPane.showMessageDialog(parent, "Search is not available for lazily opened documents.");
+            }
+            return;
+        }
+
+        // include edits of the selected node that are not committed yet
+        TreePath selected = JavaTreeRangeTreeModel.getDataPath(tree, tree.getSelectionPath());
+        if (selected != null && isDataNode(selected.getLastPathComponent())) {
+            commitNodeData(selected);
+        }
+
+        List<Object> nodes = searchIndex.search(query);
+        if (nodes.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "No nodes found.");
+            return;
+        }
+
+        TreePath[] paths = new TreePath[Math.min(nodes.size(), MAX_SEARCH_RESULTS)];
+        for (int index = 0; index < paths.length; index++) {
+            paths[index] = JavaTreeRangeTreeModel.getViewPath(tree, searchIndex.getPath(nodes.get(index)));
+            tree.makeVisible(paths[index]);
+        }
+        tree.setSelectionPaths(paths);
+        tree.scrollPathToVisible(paths[0]);
+
+        if (nodes.size() > paths.length) {
+            JOptionPane.showMessageDialog(parent, String.format("Showing first %,d of %,d found nodes.", paths.length,
+                                                                nodes.size()));
+        }
+    }
+
+    /**
+     * Sets title and text of a data node.
+     * 
+     * @param node
+     * @param title
+     * @param text
+     */
+    private void setNodeData(Object node, String title, String text) {
+
+        if (node instanceof Integer) {
+            JavaTreeNodeStore store = ((JavaTreeStoreTreeModel) document.getModel()).getStore();
+            store.setTitle(((Integer) node).intValue(), title);
+            store.setText(((Integer) node).intValue(), text);
+        } else {
+            ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).setTitle(title);
+            ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).setText(text);
+        }
+    }
+
     /**
      * Creates all necessary actions.
      */
@@ -277,6 +651,7 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
         openAction = new OpenAction();
         saveAction = new SaveAction();
         exitAction = new ExitAction();
+        searchAction = new SearchAction();
         addChildAction = new AddChildAction();
         deleteNodeAction = new DeleteNodeAction();
         moveUpAction = new MoveUpAction();
@@ -407,11 +782,8 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
         @Override
         public void actionPerformed(ActionEvent event) {
             // creates new tree
-            tree = actionController.newAction();
-            firstSelection = true;
-            tree.addTreeSelectionListener(JavaTreeController.this);
-            panel.setTree(tree);
-            enableAllNodeActions(false);
+            cancelProgressiveLoad();
+            installNewTree();
         }
     }
 
@@ -420,15 +792,27 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            // load tree from file
-            JTree t = actionController.openAction();
-            if (t != null) {
-                tree = t;
-                firstSelection = true;
-                tree.addTreeSelectionListener(JavaTreeController.this);
-                tree.addMouseListener(JavaTreeController.this);
-                panel.setTree(tree);
-                enableAllNodeActions(false);
+            // load tree from file in background and swap it in when done
+            File file = actionController.chooseOpenFile();
+            if (file == null) {
+                return;
+            }
+
+            cancelProgressiveLoad();
+            JavaTreeOptions options = actionController.getOptions();
+            // records have to be applied before the tree is shown, so documents whose journal holds records are not
+            // opened progressively
+            if (options.isProgressiveOpen() && !options.isLazyOpen() && !options.isCompactStore()
+                && options.getLoadEngine() == JavaTreeOptions.LoadEngine.STAX
+                && !actionController.isBinaryDocument(file) && !actionController.isCached(file)
+                && !hasJournalRecords(file)) {
+                openProgressively(file);
+            } else {
+                ioService.open(file, new Consumer<JavaTreeDocument>() {
+                    public void accept(JavaTreeDocument loaded) {
+                        installTree(actionController.createTree(loaded.getModel()), loaded);
+                    }
+                });
             }
         }
     }
@@ -438,16 +822,54 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            TreePath path = tree.getSelectionPath();
-            if (path != null) {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-                if (node != null) {
-                    ((JavaTreeNodeObject) node.getUserObject()).setTitle(panel.getTextFieldText());
-                    ((JavaTreeNodeObject) node.getUserObject()).setText(panel.getTextAreaText());
-                }
+            TreePath path = JavaTreeRangeTreeModel.getDataPath(tree, tree.getSelectionPath());
+            if (path != null && isDataNode(path.getLastPathComponent())) {
+                commitNodeData(path);
+            }
+            final File file = actionController.chooseSaveFile();
+            if (file == null) {
+                return;
+            }
+
+            final JavaTreeDocument saved = document;
+            final boolean sameFile = saved.getFile() != null
+                               && file.getAbsoluteFile().equals(saved.getFile().getAbsoluteFile());
+
+            // saving over an opened segmented document writes only changed subtrees
+            if (sameFile && saved.getSegments() != null && saved.getTracker() != null) {
+                ioService.saveIncrementally(saved, new Runnable() {
+                    public void run() {
+                        saved.getTracker().clear();
+                    }
+                });
+                return;
             }
-            // save tree to file
-            actionController.saveAction(tree);
+
+            // saving over the opened document only commits its journal if journal saves are selected
+            if (sameFile && saved.getJournal() != null && actionController.getOptions().isJournalSave()) {
+                ioService.commit(saved, new Runnable() {
+                    public void run() {
+                        saved.getTracker().clear();
+                    }
+                });
+                return;
+            }
+
+            // save tree to file in background and save further changes incrementally to the new file
+            ioService.save(saved.getModel(), file, new Runnable() {
+                public void run() {
+                    if (document == saved) {
+                        // the saved document holds all changes of its old journal, so a fresh journal is started
+                        if (sameFile && saved.getJournal() != null) {
+                            saved.getJournal().delete();
+                        }
+                        saved.getTracker().clear();
+                        saved.setFile(file);
+                        saved.setSegments(ioService.readSegments(file, saved.getModel()));
+                        saved.setJournal(ioService.openJournal(file, saved.getModel()));
+                    }
+                }
+            });
         }
     }
 
@@ -457,10 +879,22 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
         @Override
         public void actionPerformed(ActionEvent e) {
             // closes the frame
+            cancelProgressiveLoad();
+            document.close();
+            ioService.shutdown();
             parent.dispose();
         }
     }
 
+    class SearchAction extends AbstractAction {
+        private static final long serialVersionUID = -7237920874119476613L;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            search(panel.getSearchText());
+        }
+    }
+
     class AddChildAction extends AbstractAction {
         private static final long serialVersionUID = 5615170526349378561L;
 
@@ -472,9 +906,9 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
     class AddChildToGivenNodeAction extends AbstractAction {
         private static final long      serialVersionUID = 4369850568304248929L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public AddChildToGivenNodeAction(DefaultMutableTreeNode node) {
+        public AddChildToGivenNodeAction(Object node) {
             this.node = node;
         }
 
@@ -489,15 +923,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            actionController.deleteNodeAction(tree);
+            List<TreePath> paths = getSelectedDataPaths();
+            if (paths.size() > 1) {
+                actionController.deleteNodesAction(tree, paths);
+            } else {
+                actionController.deleteNodeAction(tree);
+            }
         }
     }
 
     class DeleteGivenNodeAction extends AbstractAction {
         private static final long      serialVersionUID = -5583980603769870L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public DeleteGivenNodeAction(DefaultMutableTreeNode node) {
+        public DeleteGivenNodeAction(Object node) {
             this.node = node;
         }
 
@@ -512,15 +951,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            actionController.moveUpAction(tree);
+            List<TreePath> paths = getSelectedDataPaths();
+            if (paths.size() > 1) {
+                actionController.moveNodesUpAction(tree, paths);
+            } else {
+                actionController.moveUpAction(tree);
+            }
         }
     }
 
     class MoveGivenNodeUpAction extends AbstractAction {
         private static final long      serialVersionUID = 2938691710946526429L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public MoveGivenNodeUpAction(DefaultMutableTreeNode node) {
+        public MoveGivenNodeUpAction(Object node) {
             this.node = node;
         }
 
@@ -535,15 +979,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            actionController.moveDownAction(tree);
+            List<TreePath> paths = getSelectedDataPaths();
+            if (paths.size() > 1) {
+                actionController.moveNodesDownAction(tree, paths);
+            } else {
+                actionController.moveDownAction(tree);
+            }
         }
     }
 
     class MoveGivenNodeDownAction extends AbstractAction {
         private static final long      serialVersionUID = -424040859626671541L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public MoveGivenNodeDownAction(DefaultMutableTreeNode node) {
+        public MoveGivenNodeDownAction(Object node) {
             this.node = node;
         }
 
@@ -558,15 +1007,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            actionController.moveLevelUpAction(tree);
+            List<TreePath> paths = getSelectedDataPaths();
+            if (paths.size() > 1) {
+                actionController.moveNodesLevelUpAction(tree, paths);
+            } else {
+                actionController.moveLevelUpAction(tree);
+            }
         }
     }
 
     class MoveGivenNodeLevelUpAction extends AbstractAction {
         private static final long      serialVersionUID = 1917736190988919903L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public MoveGivenNodeLevelUpAction(DefaultMutableTreeNode node) {
+        public MoveGivenNodeLevelUpAction(Object node) {
             this.node = node;
         }
 
@@ -581,15 +1035,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            actionController.moveLevelDownAction(tree);
+            List<TreePath> paths = getSelectedDataPaths();
+            if (paths.size() > 1) {
+                actionController.moveNodesLevelDownAction(tree, paths);
+            } else {
+                actionController.moveLevelDownAction(tree);
+            }
         }
     }
 
     class MoveGivenNodeLevelDownAction extends AbstractAction {
         private static final long      serialVersionUID = -3016491520292684865L;
-        private DefaultMutableTreeNode node;
+        private Object                 node;
 
-        public MoveGivenNodeLevelDownAction(DefaultMutableTreeNode node) {
+        public MoveGivenNodeLevelDownAction(Object node) {
             this.node = node;
         }
 
@@ -599,6 +1058,20 @@ public class JavaTreeController implements TreeSelectionListener, MouseListener
         }
     }
 
+    class MoveSelectedNodesToGivenNodeAction extends AbstractAction {
+        private static final long      serialVersionUID = 7391652408217584301L;
+        private Object                 node;
+
+        public MoveSelectedNodesToGivenNodeAction(Object node) {
+            this.node = node;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            actionController.moveNodesToGivenNodeAction(tree, getSelectedDataPaths(), node);
+        }
+    }
+
     class HelpAction extends AbstractAction {
         private static final long serialVersionUID = -8604936465557558816L;
 
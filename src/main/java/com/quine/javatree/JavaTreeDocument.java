@@ -0,0 +1,166 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+
+import javax.swing.tree.TreeModel;
+
+/**
+ * JavaTreeDocument groups the model of an opened document with the file it was read from and the structures that
+ * follow the model, its search index, its journal, its change tracker and its segment table. File is null for new
+ * documents, index and tracker are null while they are not available, journal is null if changes are not recorded
+ * and segment table is null unless the file is a segmented document.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeDocument {
+    private File                  file;
+    private TreeModel             model;
+    private JavaTreeSearchIndex   index;
+    private JavaTreeJournal       journal;
+    private JavaTreeChangeTracker tracker;
+    private JavaTreeSegmentTable  segments;
+
+    /**
+     * Creates JavaTreeDocument.
+     * 
+     * @param file
+     * @param model
+     */
+    public JavaTreeDocument(File file, TreeModel model) {
+        this.file = file;
+        this.model = model;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param file the file to set
+     */
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the model
+     */
+    public TreeModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return the index
+     */
+    public JavaTreeSearchIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param index the index to set
+     */
+    public void setIndex(JavaTreeSearchIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return the journal
+     */
+    public JavaTreeJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Replaces journal of the document. Previous journal is closed and its records that were not committed are
+     * dropped.
+     * 
+     * @param journal the journal to set
+     */
+    public void setJournal(JavaTreeJournal journal) {
+
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * @return the tracker
+     */
+    public JavaTreeChangeTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * @param tracker the tracker to set
+     */
+    public void setTracker(JavaTreeChangeTracker tracker) {
+
+        if (this.tracker != null) {
+            this.tracker.dispose();
+        }
+        this.tracker = tracker;
+    }
+
+    /**
+     * @return the segments
+     */
+    public JavaTreeSegmentTable getSegments() {
+        return segments;
+    }
+
+    /**
+     * @param segments the segments to set
+     */
+    public void setSegments(JavaTreeSegmentTable segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Releases index and tracker and closes journal of the document. Changes that were not saved are dropped from the journal.
+     */
+    public void close() {
+
+        if (index != null) {
+            index.dispose();
+            index = null;
+        }
+        setTracker(null);
+        setJournal(null);
+    }
+}
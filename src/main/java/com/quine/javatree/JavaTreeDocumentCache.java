@@ -0,0 +1,410 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * JavaTreeDocumentCache keeps binary images of loaded XML documents in a cache directory, so an unchanged document
+ * is opened again by reading its image with JavaTreeBinaryReader instead of parsing the XML.
+ * 
+ * Every entry is an image in JavaTreeBinaryFormat and a key file. Key holds the path, length, modification time and
+ * CRC32C of the content of the document the image was made from. Entry is used only while all of them still match
+ * the document. Both files are named after a digest of the path and are written with a JavaTreeFileSaver, key after
+ * the image, so an entry whose writing was interrupted has no valid key.
+ * 
+ * Used entries are touched, and when the entries take more than the size limit the least recently used ones are
+ * deleted.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeDocumentCache {
+    // magic bytes at the start of key files, "JTC1"
+    private final static int    KEY_MAGIC     = 0x4A544331;
+
+    private final static String KEY_EXTENSION = ".key";
+
+    // size of the windows of documents that are mapped to compute their checksums
+    private final static int    WINDOW_SIZE   = 16 * 1024 * 1024;
+
+    private File                directory;
+
+    // total size of entries over which least recently used entries are deleted
+    private long                maxSize;
+
+    /**
+     * Creates JavaTreeDocumentCache that keeps entries in directory.
+     * 
+     * @param directory
+     * @param maxSize
+     */
+    public JavaTreeDocumentCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns true if the cache has an entry whose length and modification time match the file. Content of the file
+     * is not checked.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    public boolean contains(File file) {
+
+        try {
+            Key key = readKey(file);
+            return key != null && key.length == file.length() && key.modified == file.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the image of a file and returns root node of its tree. Returns null if there is no valid entry for the
+     * file. Read bytes and nodes of the image are reported to progress.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     */
+    public DefaultMutableTreeNode load(File file, JavaTreeProgress progress) {
+
+        try {
+            Key key = readKey(file);
+            if (key == null || key.length != file.length() || key.modified != file.lastModified()
+                || key.checksum != checksum(file, progress)) {
+                return null;
+            }
+
+            File image = getImageFile(file);
+            JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+            JavaTreeBinaryReader.load(image, builder, progress);
+
+            // file may have changed while it was checked
+            if (key.length != file.length() || key.modified != file.lastModified()) {
+                return null;
+            }
+            image.setLastModified(System.currentTimeMillis());
+            return builder.getRoot();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes an image of the tree read from a file and deletes least recently used entries if the cache is over its
+     * size limit. Nothing is written if the file no longer has the length and modification time it had when it was
+     * read.
+     * 
+     * @param file
+     * @param length length of the file before it was read
+     * @param modified modification time of the file before it was read
+     * @param root
+     */
+    public synchronized void store(File file, long length, long modified, final DefaultMutableTreeNode root) {
+
+        try {
+            int checksum = checksum(file, new JavaTreeProgress());
+            if (file.length() != length || file.lastModified() != modified) {
+                return;
+            }
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cache directory " + directory + " can not be created.");
+            }
+
+            JavaTreeFileSaver saver = new JavaTreeFileSaver(JavaTreeOptions.Durability.NONE);
+            File keyFile = getKeyFile(file);
+            keyFile.delete();
+            saver.save(getImageFile(file), new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    JavaTreeBinaryWriter.write(root, channel, new JavaTreeProgress());
+                }
+            }, new JavaTreeProgress());
+
+            final ByteBuffer key = encodeKey(new Key(file.getCanonicalPath(), length, modified, checksum));
+            saver.save(keyFile, new JavaTreeFileSaver.Content() {
+                public void write(FileChannel channel) throws Exception {
+                    while (key.hasRemaining()) {
+                        channel.write(key);
+                    }
+                }
+            }, new JavaTreeProgress());
+
+            evict(getImageFile(file));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes least recently used entries, except keep, until the entries fit in the size limit.
+     * 
+     * @param keep
+     */
+    private void evict(File keep) {
+
+        File[] images = directory.listFiles();
+        if (images == null) {
+            return;
+        }
+
+        long size = 0;
+        List<File> entries = new ArrayList<File>();
+        for (File image : images) {
+            if (image.getName().endsWith(JavaTreeBinaryFormat.EXTENSION)) {
+                entries.add(image);
+                size += image.length() + getKeyFile(image.getName()).length();
+            }
+        }
+
+        // least recently used first
+        entries.sort(new Comparator<File>() {
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        for (File image : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (image.equals(keep)) {
+                continue;
+            }
+            File keyFile = getKeyFile(image.getName());
+            size -= image.length() + keyFile.length();
+            keyFile.delete();
+            image.delete();
+        }
+    }
+
+    /**
+     * Computes CRC32C of the content of a file. Stops with CancellationException when progress is cancelled.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return checksum
+     * 
+     * @throws IOException
+     */
+    private static int checksum(File file, JavaTreeProgress progress) throws IOException {
+
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                progress.checkCancelled();
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                                      Math.min(WINDOW_SIZE, size - position));
+                crc.update(window);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads the key of the entry of a file. Returns null if there is no entry or its key is not for the file.
+     * 
+     * @param file
+     * 
+     * @return key
+     * 
+     * @throws IOException
+     */
+    private Key readKey(File file) throws IOException {
+
+        File keyFile = getKeyFile(file);
+        if (!keyFile.isFile()) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(keyFile.length(), 64 * 1024));
+        try (FileChannel channel = FileChannel.open(keyFile.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole key
+            }
+        }
+        buffer.flip();
+
+        if (buffer.remaining() < 32 || buffer.getInt(0) != KEY_MAGIC) {
+            return null;
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.limit(buffer.limit() - 4);
+        if (JavaTreeBinaryFormat.checksum(data) != buffer.getInt(buffer.limit() - 4)) {
+            return null;
+        }
+
+        buffer.getInt();
+        long length = buffer.getLong();
+        long modified = buffer.getLong();
+        int checksum = buffer.getInt();
+        byte[] path = new byte[buffer.getInt()];
+        if (path.length != buffer.remaining() - 4) {
+            return null;
+        }
+        buffer.get(path);
+
+        Key key = new Key(new String(path, StandardCharsets.UTF_8), length, modified, checksum);
+        return key.path.equals(file.getCanonicalPath()) ? key : null;
+    }
+
+    /**
+     * Encodes a key: magic, length, modification time and checksum of the document, length of the path followed by
+     * the path in UTF-8, and CRC32C of all that.
+     * 
+     * @param key
+     * 
+     * @return buffer ready to be written
+     */
+    private static ByteBuffer encodeKey(Key key) {
+
+        byte[] path = key.path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(32 + path.length);
+        buffer.putInt(KEY_MAGIC);
+        buffer.putLong(key.length);
+        buffer.putLong(key.modified);
+        buffer.putInt(key.checksum);
+        buffer.putInt(path.length);
+        buffer.put(path);
+
+        ByteBuffer data = buffer.duplicate();
+        data.flip();
+        buffer.putInt(JavaTreeBinaryFormat.checksum(data));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param file
+     * 
+     * @return image file of the entry of file
+     * 
+     * @throws IOException
+     */
+    private File getImageFile(File file) throws IOException {
+        return new File(directory, getEntryName(file) + JavaTreeBinaryFormat.EXTENSION);
+    }
+
+    /**
+     * @param file
+     * 
+     * @return key file of the entry of file
+     * 
+     * @throws IOException
+     */
+    private File getKeyFile(File file) throws IOException {
+        return new File(directory, getEntryName(file) + KEY_EXTENSION);
+    }
+
+    /**
+     * @param imageName
+     * 
+     * @return key file of the entry with the image file named imageName
+     */
+    private File getKeyFile(String imageName) {
+        String entryName = imageName.substring(0, imageName.length() - JavaTreeBinaryFormat.EXTENSION.length());
+        return new File(directory, entryName + KEY_EXTENSION);
+    }
+
+    /**
+     * Returns name of the entry of a file, which is the hexadecimal SHA-256 digest of its canonical path.
+     * 
+     * @param file
+     * 
+     * @return name
+     * 
+     * @throws IOException
+     */
+    private static String getEntryName(File file) throws IOException {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(file.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte value : Arrays.copyOf(digest, 16)) {
+                name.append(String.format("%02x", value & 0xFF));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Key describes the document an image was made from.
+     */
+    private static class Key {
+        private String path;
+        private long   length;
+        private long   modified;
+        private int    checksum;
+
+        /**
+         * Creates Key.
+         * 
+         * @param path
+         * @param length
+         * @param modified
+         * @param checksum
+         */
+        public Key(String path, long length, long modified, int checksum) {
+            this.path = path;
+            this.length = length;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+    }
+}
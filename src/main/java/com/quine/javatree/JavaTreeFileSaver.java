@@ -0,0 +1,164 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * JavaTreeFileSaver saves documents without ever leaving a partly written document in place of the original. The
+ * content is written to a temporary file next to the document, forced to the disk as the durability level asks and
+ * then moved over the document with an atomic move. If writing fails or is cancelled the temporary file is deleted
+ * and the document is left as it was.
+ * 
+ * Writers of all formats plug in through the Content interface, which receives the channel of the temporary file.
+ * Time the save took is reported to progress together with the bytes counted by the writer.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeFileSaver {
+    // extension added to the name of the document to get the name of the temporary file
+    private final static String        TEMPORARY_EXTENSION = ".saving";
+
+    private JavaTreeOptions.Durability durability;
+
+    /**
+     * Content writes a document to a channel. The channel must not be closed.
+     */
+    public interface Content {
+
+        /**
+         * Writes the document to channel starting at its current position.
+         * 
+         * @param channel
+         * 
+         * @throws Exception
+         */
+        void write(FileChannel channel) throws Exception;
+    }
+
+    /**
+     * Creates JavaTreeFileSaver that forces saved documents to the disk as durability asks.
+     * 
+     * @param durability
+     */
+    public JavaTreeFileSaver(JavaTreeOptions.Durability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Writes content to a temporary file and moves it over file. Time the save took is reported to progress.
+     * 
+     * @param file
+     * @param content
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public void save(File file, Content content, JavaTreeProgress progress) throws Exception {
+
+        long start = System.nanoTime();
+        File temporary = new File(file.getAbsoluteFile().getParentFile(), file.getName() + TEMPORARY_EXTENSION);
+        boolean moved = false;
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                                                        StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                content.write(channel);
+                progress.checkCancelled();
+                if (durability != JavaTreeOptions.Durability.NONE) {
+                    channel.force(durability == JavaTreeOptions.Durability.METADATA);
+                }
+            }
+            copyPermissions(file, temporary);
+
+            try {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+
+            if (durability == JavaTreeOptions.Durability.METADATA) {
+                forceDirectory(file.getAbsoluteFile().getParentFile());
+            }
+        } finally {
+            if (!moved) {
+                temporary.delete();
+            }
+            progress.setElapsedMillis((System.nanoTime() - start) / 1000000);
+        }
+    }
+
+    /**
+     * Gives temporary file the permissions of the document it replaces, where the file system supports them.
+     * 
+     * @param file
+     * @param temporary
+     */
+    private static void copyPermissions(File file, File temporary) {
+
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temporary.toPath(), Files.getPosixFilePermissions(file.toPath()));
+        } catch (UnsupportedOperationException e) {
+            // file system has no POSIX permissions, temporary file keeps the default ones
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forces the entries of a directory to the disk, so a moved file stays moved after a crash. Not all platforms
+     * can open directories, there the move is left to the file system.
+     * 
+     * @param directory
+     */
+    private static void forceDirectory(File directory) {
+
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories can not be opened on this platform
+        }
+    }
+}
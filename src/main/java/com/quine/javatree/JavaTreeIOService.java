@@ -0,0 +1,408 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.awt.Frame;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.tree.TreeModel;
+
+/**
+ * JavaTreeIOService runs loading and saving of documents on a background executor so that the Event Dispatch Thread
+ * stays responsive. While an operation runs a modal JavaTreeProgressDialog shows processed bytes and nodes, which
+ * also keeps the user from changing the tree that is being saved. Results are handed over on the Event Dispatch
+ * Thread.
+ * 
+ * All methods of this class are expected to be called on the Event Dispatch Thread.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeIOService {
+    // controller that provides load and save logic
+    private JavaTreeActionController actionController;
+
+    // frame that owns progress dialogs
+    private Frame                    owner;
+
+    // executor that runs loads and saves
+    private ExecutorService          executor;
+
+    /**
+     * Creates JavaTreeIOService.
+     * 
+     * @param actionController
+     * @param owner
+     */
+    public JavaTreeIOService(JavaTreeActionController actionController, Frame owner) {
+        this.actionController = actionController;
+        this.owner = owner;
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "javatree-io-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Loads a file in background, applies its journal and builds a search index of its tree. If loading succeeds
+     * loaded is called on the Event Dispatch Thread with the loaded document. Index is null for lazily loaded trees,
+     * which would have to be read completely to be indexed. If loading fails user is informed, if it is cancelled
+     * nothing happens.
+     * 
+     * @param file
+     * @param loaded
+     */
+    public void open(final File file, final Consumer<JavaTreeDocument> loaded) {
+
+        final JavaTreeProgress progress = new JavaTreeProgress();
+        final JavaTreeProgressDialog dialog = new JavaTreeProgressDialog(owner, "Opening " + file.getName(),
+                                                                         progress, true);
+
+        SwingWorker<JavaTreeDocument, Void> worker = new SwingWorker<JavaTreeDocument, Void>() {
+            @Override
+            protected JavaTreeDocument doInBackground() throws Exception {
+
+                TreeModel model = actionController.loadModelFromFile(file, progress);
+                if (model == null) {
+                    return null;
+                }
+
+                JavaTreeDocument document = new JavaTreeDocument(file, model);
+                document.setTracker(new JavaTreeChangeTracker(model));
+                document.setSegments(readSegments(file, model));
+                // journal is applied before the index is built, so the index sees the replayed changes
+                document.setJournal(openJournal(file, model));
+                if (!(model.getRoot() instanceof JavaTreeLazyNode)) {
+                    try {
+                        document.setIndex(JavaTreeSearchIndex.build(model, progress));
+                    } catch (Exception e) {
+                        document.close();
+                        throw e;
+                    }
+                }
+                return document;
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+
+                JavaTreeDocument document = getResult(this);
+                if (document != null) {
+                    loaded.accept(document);
+                } else if (!progress.isCancelled()) {
+                    JOptionPane.showMessageDialog(owner, "Error while parsing document.");
+                }
+            }
+        };
+
+        run(worker, dialog);
+    }
+
+    /**
+     * Opens journal of a document whose tree is in model. Records of an existing journal are applied to model, if
+     * there is none a new journal is started. Returns null if journals are disabled or the journal can not be opened.
+     * Committed records of a journal written while journals were enabled are still applied, so the saved changes are
+     * not lost. Segmented documents are saved incrementally and have no journal.
+     * 
+     * @param file
+     * @param model
+     * 
+     * @return journal
+     */
+    public JavaTreeJournal openJournal(File file, TreeModel model) {
+
+        JavaTreeOptions options = actionController.getOptions();
+        if (JavaTreeSegmentedFormat.isSegmented(file)) {
+            return null;
+        }
+
+        if (!options.isJournal()) {
+            try {
+                JavaTreeJournal.replay(file, model);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+
+        try {
+            JavaTreeJournal journal = JavaTreeJournal.open(file, model);
+            // lazily opened documents are never read completely, so they are not compacted
+            if (!(model.getRoot() instanceof JavaTreeLazyNode)) {
+                journal.setCompaction(actionController, options.getJournalCompactSize());
+            }
+            return journal;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads segment table of a segmented document whose tree is in model. Returns null if the file is not a segmented
+     * document or its table does not describe the tree.
+     * 
+     * @param file
+     * @param model
+     * 
+     * @return table
+     */
+    public JavaTreeSegmentTable readSegments(File file, TreeModel model) {
+
+        if (!JavaTreeSegmentedFormat.isSegmented(file)) {
+            return null;
+        }
+
+        try {
+            JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(file);
+            table.bind(model);
+            return table;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Starts loading a file progressively in background. Listener is notified on the Event Dispatch Thread as soon as
+     * the root node is read and again when loading ends.
+     * 
+     * @param file
+     * @param listener
+     * 
+     * @return loader that can be used to cancel loading
+     */
+    public JavaTreeProgressiveLoader openProgressively(File file, JavaTreeProgressiveLoader.Listener listener) {
+
+        boolean trusted = actionController.getOptions().isTrustedOpen();
+        JavaTreeProgressiveLoader loader = new JavaTreeProgressiveLoader(file, trusted, listener);
+        loader.start(executor);
+        return loader;
+    }
+
+    /**
+     * Builds a search index of a tree in background. Dialog is shown while the index is built, so the tree can not be
+     * changed. If building succeeds indexed is called on the Event Dispatch Thread with the index.
+     * 
+     * @param model
+     * @param indexed
+     */
+    public void index(final TreeModel model, final Consumer<JavaTreeSearchIndex> indexed) {
+
+        final JavaTreeProgress progress = new JavaTreeProgress();
+        final JavaTreeProgressDialog dialog = new JavaTreeProgressDialog(owner, "Indexing", progress, false);
+
+        SwingWorker<JavaTreeSearchIndex, Void> worker = new SwingWorker<JavaTreeSearchIndex, Void>() {
+            @Override
+            protected JavaTreeSearchIndex doInBackground() throws Exception {
+                return JavaTreeSearchIndex.build(model, progress);
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+
+                JavaTreeSearchIndex index = getResult(this);
+                if (index != null) {
+                    indexed.accept(index);
+                }
+            }
+        };
+
+        run(worker, dialog);
+    }
+
+    /**
+     * Saves a tree to a file in background. If saving succeeds saved is called on the Event Dispatch Thread. If saving
+     * fails user is informed, if it is cancelled the file is left as it was.
+     * 
+     * @param model
+     * @param file
+     * @param saved
+     */
+    public void save(final TreeModel model, final File file, final Runnable saved) {
+
+        final JavaTreeProgress progress = new JavaTreeProgress();
+        // file is replaced only when the new one is completely written, so a save can be cancelled
+        final JavaTreeProgressDialog dialog = new JavaTreeProgressDialog(owner, "Saving " + file.getName(),
+                                                                         progress, true);
+
+        SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return actionController.saveModelToFile(model, file, progress);
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+
+                if (Boolean.TRUE.equals(getResult(this))) {
+                    saved.run();
+                } else if (!progress.isCancelled()) {
+                    JOptionPane.showMessageDialog(owner, "Error while saving document.");
+                }
+            }
+        };
+
+        run(worker, dialog);
+    }
+
+    /**
+     * Saves changed subtrees of a segmented document to its file in background. If saving succeeds the segment table
+     * of the document is replaced and saved is called on the Event Dispatch Thread. If saving fails user is informed.
+     * 
+     * @param document
+     * @param saved
+     */
+    public void saveIncrementally(final JavaTreeDocument document, final Runnable saved) {
+
+        final JavaTreeProgress progress = new JavaTreeProgress();
+        final File file = document.getFile();
+        final JavaTreeProgressDialog dialog = new JavaTreeProgressDialog(owner, "Saving " + file.getName(),
+                                                                         progress, false);
+
+        SwingWorker<JavaTreeSegmentTable, Void> worker = new SwingWorker<JavaTreeSegmentTable, Void>() {
+            @Override
+            protected JavaTreeSegmentTable doInBackground() throws Exception {
+                return JavaTreeSegmentedWriter.update(document.getModel(), file, document.getSegments(),
+                                                      document.getTracker(), progress);
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+
+                JavaTreeSegmentTable table = getResult(this);
+                if (table != null) {
+                    document.setSegments(table);
+                    saved.run();
+                } else {
+                    JOptionPane.showMessageDialog(owner, "Error while saving document.");
+                }
+            }
+        };
+
+        run(worker, dialog);
+    }
+
+    /**
+     * Commits the journal of a document in background, which forces its records to disk. If committing succeeds saved
+     * is called on the Event Dispatch Thread. If committing fails user is informed.
+     * 
+     * @param document
+     * @param saved
+     */
+    public void commit(final JavaTreeDocument document, final Runnable saved) {
+
+        final JavaTreeProgress progress = new JavaTreeProgress();
+        final File file = document.getFile();
+        final JavaTreeProgressDialog dialog = new JavaTreeProgressDialog(owner, "Saving " + file.getName(),
+                                                                         progress, false);
+
+        SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                document.getJournal().commit();
+                return Boolean.TRUE;
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+
+                if (Boolean.TRUE.equals(getResult(this))) {
+                    saved.run();
+                } else {
+                    JOptionPane.showMessageDialog(owner, "Error while saving document.");
+                }
+            }
+        };
+
+        run(worker, dialog);
+    }
+
+    /**
+     * Stops accepting new operations. Operations that are running are left to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Starts worker on the executor and shows the dialog. Dialog is modal so this method returns after the worker is
+     * done and the dialog is disposed.
+     * 
+     * @param worker
+     * @param dialog
+     */
+    private void run(SwingWorker<?, ?> worker, JavaTreeProgressDialog dialog) {
+
+        // done is posted to the Event Dispatch Thread, so it can not run before the dialog is shown
+        executor.execute(worker);
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Returns result of a worker that is done or null if the worker failed.
+     * 
+     * @param worker
+     * 
+     * @return result
+     */
+    private static <T> T getResult(SwingWorker<T, ?> worker) {
+
+        try {
+            return worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
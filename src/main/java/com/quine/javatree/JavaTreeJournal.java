@@ -0,0 +1,1127 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeJournal is a write ahead log of changes made to a document since it was last written completely. It is kept
+ * next to the document in a file with the journal extension, so saving an edit appends a few bytes instead of writing
+ * the whole document again.
+ * 
+ * Journal follows the model of the document as a TreeModelListener and records inserted, removed and moved nodes.
+ * Title and text edits are made without model events and have to be reported with recordEdit. Nodes are addressed by
+ * the child indexes on their path from the root. Every record has its length and CRC32C in front of it, so a record
+ * torn by a crash is found and dropped on the next open.
+ * 
+ * Records are collected in memory and written and forced to disk in batches, at most FLUSH_DELAY milliseconds after
+ * they were recorded. Save writes a commit record and forces the journal immediately. Records after the last commit
+ * are dropped when the journal is closed, but they survive a crash and are replayed with the rest of the journal on
+ * the next open.
+ * 
+ * Header of the journal holds size and modification time of the document it applies to. When the committed part of
+ * the journal grows over the compaction size, the document is read again in background, committed records are applied
+ * to it and it is written to a new file. New document and a journal that holds only the records that followed replace
+ * the old ones, first the document and then the journal. If a crash happens between the two, the new journal is
+ * found under its temporary name on the next open.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeJournal implements TreeModelListener {
+    // extension added to the name of the document
+    public final static String       EXTENSION     = ".journal";
+
+    // magic bytes at the start of journals
+    private final static int         MAGIC         = 0x4A544A31;
+
+    private final static int         VERSION       = 1;
+
+    // magic, version, document size, document modification time and CRC of them
+    private final static int         HEADER_SIZE   = 28;
+
+    // length and CRC of a record
+    private final static int         RECORD_HEADER = 8;
+
+    // record types
+    private final static byte        INSERT        = 1;
+    private final static byte        REMOVE        = 2;
+    private final static byte        MOVE          = 3;
+    private final static byte        EDIT          = 4;
+    private final static byte        COMMIT        = 5;
+
+    // longest time a record waits in memory before it is forced to disk
+    private final static long        FLUSH_DELAY   = 200;
+
+    // size of collected records that are written without waiting
+    private final static int         FLUSH_SIZE    = 64 * 1024;
+
+    // size of the buffer records are read through, larger records get a buffer of their own
+    private final static int         READ_SIZE     = 64 * 1024;
+
+    private File                     document;
+    private File                     journalFile;
+    private TreeModel                model;
+
+    // used to read and write the document when the journal is compacted, null if it is never compacted
+    private JavaTreeActionController actionController;
+    private long                     compactSize;
+
+    private FileChannel              channel;
+
+    // bytes in the file and bytes up to the end of the last commit record
+    private long                     length;
+    private long                     committedLength;
+
+    // records not written yet
+    private ByteBuffer               buffer;
+    private boolean                  flushScheduled;
+    private ScheduledExecutorService flusher;
+
+    private boolean                  compacting;
+    private boolean                  closed;
+
+    // last removed node, which is moved if it is inserted by the next event
+    private Object                   removedNode;
+    private int[]                    removedParent;
+    private int                      removedIndex;
+
+    /**
+     * Creates JavaTreeJournal that appends to channel.
+     */
+    private JavaTreeJournal(File document, TreeModel model, FileChannel channel, long length, long committedLength) {
+        this.document = document;
+        this.journalFile = getJournalFile(document);
+        this.model = model;
+        this.channel = channel;
+        this.length = length;
+        this.committedLength = committedLength;
+        compactSize = Long.MAX_VALUE;
+        buffer = ByteBuffer.allocate(FLUSH_SIZE * 2);
+        flushScheduled = false;
+        compacting = false;
+        closed = false;
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "javatree-journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param document
+     * 
+     * @return journal file of the document
+     */
+    public static File getJournalFile(File document) {
+        return new File(document.getPath() + EXTENSION);
+    }
+
+    /**
+     * Returns true if document has a journal, or had one that was being replaced by a compaction.
+     * 
+     * @param document
+     * 
+     * @return status
+     */
+    public static boolean exists(File document) {
+        return getJournalFile(document).exists() || getNextJournalFile(document).exists();
+    }
+
+    /**
+     * Returns true if document has a journal that applies to it and holds records, so the document alone does not
+     * show its saved changes.
+     * 
+     * @param document
+     * 
+     * @return status
+     * 
+     * @throws IOException
+     */
+    public static boolean hasRecords(File document) throws IOException {
+
+        File journalFile = getJournalFile(document);
+        if (!journalFile.exists()) {
+            journalFile = getNextJournalFile(document);
+        }
+        if (!journalFile.exists()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            return channel.size() > HEADER_SIZE && matches(channel, document);
+        }
+    }
+
+    /**
+     * Opens journal of a document that was just read into model and starts recording changes of model. Records of
+     * the journal are applied to model first. Journal that does not apply to the document, because the document was
+     * written without it, is renamed with the old extension and a new journal is started.
+     * 
+     * @param document
+     * @param model
+     * 
+     * @return journal
+     * 
+     * @throws IOException
+     */
+    public static JavaTreeJournal open(File document, TreeModel model) throws IOException {
+
+        File journalFile = recover(document);
+        if (journalFile == null) {
+            return create(document, model);
+        }
+
+        FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        try {
+            long[] lengths = apply(channel, channel.size(), model, true);
+            // anything after the last complete record was torn by a crash
+            channel.truncate(lengths[0]);
+            channel.force(true);
+
+            JavaTreeJournal journal = new JavaTreeJournal(document, model, channel, lengths[0], lengths[1]);
+            model.addTreeModelListener(journal);
+            return journal;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts an empty journal for a document that holds the tree of model and starts recording changes of model.
+     * Existing journal of the document is renamed with the old extension.
+     * 
+     * @param document
+     * @param model
+     * 
+     * @return journal
+     * 
+     * @throws IOException
+     */
+    public static JavaTreeJournal create(File document, TreeModel model) throws IOException {
+
+        File journalFile = getJournalFile(document);
+        if (journalFile.exists()) {
+            Files.move(journalFile.toPath(), getOldJournalFile(document).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(getNextJournalFile(document).toPath());
+
+        FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE_NEW,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeFully(channel, header(document), 0);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        JavaTreeJournal journal = new JavaTreeJournal(document, model, channel, HEADER_SIZE, HEADER_SIZE);
+        model.addTreeModelListener(journal);
+        return journal;
+    }
+
+    /**
+     * Applies committed records of the journal of a document to model without changing the journal. Does nothing if
+     * the document has no journal that applies to it.
+     * 
+     * @param document
+     * @param model
+     * 
+     * @throws IOException
+     */
+    public static void replay(File document, TreeModel model) throws IOException {
+
+        File journalFile = getJournalFile(document);
+        if (!journalFile.exists()) {
+            journalFile = getNextJournalFile(document);
+        }
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            if (matches(channel, document)) {
+                apply(channel, channel.size(), model, false);
+            }
+        }
+    }
+
+    /**
+     * Lets the journal compact itself in background once its committed part grows over compactSize. Document is read
+     * and written again with actionController.
+     * 
+     * @param actionController
+     * @param compactSize
+     */
+    public synchronized void setCompaction(JavaTreeActionController actionController, long compactSize) {
+        this.actionController = actionController;
+        this.compactSize = compactSize;
+    }
+
+    /**
+     * @return the document
+     */
+    public File getDocument() {
+        return document;
+    }
+
+    /**
+     * Records new title and text of the node at the end of path.
+     * 
+     * @param path
+     */
+    public synchronized void recordEdit(TreePath path) {
+
+        recordRemoval();
+        int[] indexes = getIndexes(path);
+        if (indexes == null) {
+            // node is not part of the tree any more
+            return;
+        }
+
+        Object node = path.getLastPathComponent();
+        ByteBuffer record = startRecord(EDIT);
+        record = putIndexes(record, indexes);
+        record = putString(record, getTitle(node));
+        record = putString(record, getText(node));
+        append(record);
+    }
+
+    /**
+     * Writes a commit record and forces all records to disk. Committed records are kept when the journal is closed.
+     * 
+     * @throws IOException
+     */
+    public synchronized void commit() throws IOException {
+
+        recordRemoval();
+        append(startRecord(COMMIT));
+        flush();
+        committedLength = length;
+
+        if (!compacting && actionController != null && committedLength - HEADER_SIZE > compactSize) {
+            compacting = true;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    compact();
+                }
+            }, "javatree-journal-compaction");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops recording, drops records that were not committed and closes the journal. Journal without committed records
+     * is deleted, since the document holds all its changes. Compaction that is still running is abandoned.
+     */
+    public synchronized void close() {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        model.removeTreeModelListener(this);
+        flusher.shutdownNow();
+
+        try {
+            buffer.clear();
+            channel.truncate(committedLength);
+            channel.force(true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (committedLength == HEADER_SIZE) {
+            journalFile.delete();
+        }
+    }
+
+    /**
+     * Stops recording, closes the journal and deletes it. Used after the whole document was saved over itself, which
+     * makes all records of the journal part of the document.
+     */
+    public synchronized void delete() {
+
+        close();
+        journalFile.delete();
+        getNextJournalFile(document).delete();
+    }
+
+    @Override
+    public synchronized void treeNodesChanged(TreeModelEvent event) {
+
+        recordRemoval();
+        if (event.getChildren() == null) {
+            recordEdit(event.getTreePath());
+        } else {
+            for (Object child : event.getChildren()) {
+                recordEdit(event.getTreePath().pathByAddingChild(child));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void treeNodesInserted(TreeModelEvent event) {
+
+        int[] parent = getIndexes(event.getTreePath());
+        Object[] children = event.getChildren();
+        int[] indexes = event.getChildIndices();
+
+        for (int index = 0; index < children.length; index++) {
+            if (removedNode != null && removedNode.equals(children[index])) {
+                ByteBuffer record = startRecord(MOVE);
+                record = putIndexes(record, removedParent);
+                record = putVarint(record, removedIndex);
+                record = putIndexes(record, parent);
+                record = putVarint(record, indexes[index]);
+                append(record);
+                removedNode = null;
+            } else {
+                recordRemoval();
+                recordInsert(parent, indexes[index], children[index]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void treeNodesRemoved(TreeModelEvent event) {
+
+        recordRemoval();
+        int[] parent = getIndexes(event.getTreePath());
+        Object[] children = event.getChildren();
+        int[] indexes = event.getChildIndices();
+
+        if (children.length == 1 && !isDeleted(children[0])) {
+            // removal is recorded once it is clear the node is not moved
+            removedNode = children[0];
+            removedParent = parent;
+            removedIndex = indexes[0];
+            return;
+        }
+
+        // removing from the end keeps the remaining indexes valid while records are applied
+        for (int index = children.length - 1; index >= 0; index--) {
+            ByteBuffer record = startRecord(REMOVE);
+            record = putIndexes(record, parent);
+            record = putVarint(record, indexes[index]);
+            append(record);
+        }
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent event) {
+        // structure changes are fired when lazily loaded children are unloaded and do not change the document
+    }
+
+    /**
+     * Records the last removed node as deleted if it was not inserted again.
+     */
+    private void recordRemoval() {
+
+        if (removedNode != null) {
+            ByteBuffer record = startRecord(REMOVE);
+            record = putIndexes(record, removedParent);
+            record = putVarint(record, removedIndex);
+            append(record);
+            removedNode = null;
+        }
+    }
+
+    /**
+     * Records insertion of node and all of its descendants, in pre-order and without recursion.
+     * 
+     * @param parent
+     * @param index
+     * @param node
+     */
+    private void recordInsert(int[] parent, int index, Object node) {
+
+        // indexes of the path from the root to the current node
+        int[] path = Arrays.copyOf(parent, parent.length + 16);
+        JavaTreeTraversal traversal = new JavaTreeTraversal(model, node);
+        while (traversal.next()) {
+            if (!traversal.isEntering()) {
+                continue;
+            }
+            int level = parent.length + traversal.getDepth();
+            if (level == path.length) {
+                path = Arrays.copyOf(path, level * 2);
+            }
+            path[level] = traversal.getDepth() == 0 ? index : traversal.getIndex();
+
+            ByteBuffer record = startRecord(INSERT);
+            record = putIndexes(record, path, level);
+            record = putVarint(record, path[level]);
+            record = putString(record, getTitle(traversal.getNode()));
+            record = putString(record, getText(traversal.getNode()));
+            append(record);
+        }
+    }
+
+    /**
+     * Adds a record to the batch and makes sure the batch is written soon.
+     * 
+     * @param record
+     */
+    private void append(ByteBuffer record) {
+
+        if (closed) {
+            return;
+        }
+
+        record.flip();
+        if (buffer.remaining() < RECORD_HEADER + record.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                                                             buffer.position() + RECORD_HEADER + record.remaining()));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putInt(record.remaining());
+        buffer.putInt(JavaTreeBinaryFormat.checksum(record));
+        buffer.put(record);
+
+        if (buffer.position() >= FLUSH_SIZE) {
+            try {
+                flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(new Runnable() {
+                public void run() {
+                    synchronized (JavaTreeJournal.this) {
+                        flushScheduled = false;
+                        // a move split here is recorded as removal and insertion, which has the same result
+                        recordRemoval();
+                        try {
+                            flush();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes collected records at the end of the journal and forces them to disk.
+     * 
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+
+        if (closed || buffer.position() == 0) {
+            return;
+        }
+
+        buffer.flip();
+        length += writeFully(channel, buffer, length);
+        buffer.clear();
+        channel.force(false);
+    }
+
+    /**
+     * Applies committed records to a fresh copy of the document and replaces the document and the journal with the
+     * result.
+     */
+    private void compact() {
+
+        File snapshot = new File(document.getParentFile(), document.getName() + ".compact" + getExtension(document));
+        File nextJournal = getNextJournalFile(document);
+
+        try {
+            long end;
+            synchronized (this) {
+                end = committedLength;
+            }
+
+            TreeModel copy = actionController.loadModelFromFile(document, new JavaTreeProgress());
+            if (copy == null) {
+                throw new IOException("Document " + document + " could not be read.");
+            }
+            // committed records are read through a channel of their own, which stays open if the journal is closed
+            try (FileChannel committed = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+                apply(committed, end, copy, false);
+            }
+            if (!actionController.saveModelToFile(copy, snapshot, new JavaTreeProgress())) {
+                throw new IOException("Document " + snapshot + " could not be written.");
+            }
+            try (FileChannel snapshotChannel = FileChannel.open(snapshot.toPath(), StandardOpenOption.WRITE)) {
+                snapshotChannel.force(true);
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                flush();
+
+                try (FileChannel next = FileChannel.open(nextJournal.toPath(), StandardOpenOption.CREATE,
+                                                         StandardOpenOption.WRITE,
+                                                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeFully(next, header(snapshot), 0);
+                    transferFully(channel, end, length - end, next, HEADER_SIZE);
+                    next.force(true);
+                }
+
+                Files.move(snapshot.toPath(), document.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+                Files.move(nextJournal.toPath(), journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+
+                channel.close();
+                channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                length = HEADER_SIZE + length - end;
+                committedLength = HEADER_SIZE + committedLength - end;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            snapshot.delete();
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Finds the journal that applies to the document. Journal left under its temporary name by an interrupted
+     * compaction is renamed. Journals that do not apply are moved out of the way.
+     * 
+     * @param document
+     * 
+     * @return journal file or null if there is no journal that applies to the document
+     * 
+     * @throws IOException
+     */
+    private static File recover(File document) throws IOException {
+
+        File journalFile = getJournalFile(document);
+        File nextJournal = getNextJournalFile(document);
+
+        if (nextJournal.exists()) {
+            if (matches(nextJournal, document)) {
+                Files.move(nextJournal.toPath(), journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(nextJournal.toPath());
+            }
+        }
+
+        if (journalFile.exists() && !matches(journalFile, document)) {
+            Files.move(journalFile.toPath(), getOldJournalFile(document).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return journalFile.exists() ? journalFile : null;
+    }
+
+    /**
+     * Applies records of a journal channel to model. Records start after the header and end at length or at the first
+     * incomplete or damaged record. If uncommitted records are applied too, applying stops quietly at the first record
+     * that does not fit the tree. Records are read through a buffer of fixed size, so journals of any length can be
+     * applied.
+     * 
+     * @param channel
+     * @param length
+     * @param model
+     * @param uncommitted apply records after the last commit too
+     * 
+     * @return length up to the end of applied records and length up to the end of the last commit
+     * 
+     * @throws IOException
+     */
+    private static long[] apply(FileChannel channel, long length, TreeModel model, boolean uncommitted)
+            throws IOException {
+
+        long complete = HEADER_SIZE;
+        long committed = HEADER_SIZE;
+        RecordReader reader = new RecordReader(channel, HEADER_SIZE, length);
+        ByteBuffer record;
+        while ((record = reader.next()) != null) {
+            complete = reader.getPosition();
+            if (record.get(record.position()) == COMMIT) {
+                committed = complete;
+            }
+        }
+
+        long end = uncommitted ? complete : committed;
+        reader = new RecordReader(channel, HEADER_SIZE, end);
+        long position = HEADER_SIZE;
+        while ((record = reader.next()) != null) {
+            try {
+                if (record.get(record.position()) != COMMIT) {
+                    applyRecord(record, model);
+                }
+            } catch (RuntimeException | IOException e) {
+                if (!uncommitted) {
+                    throw e;
+                }
+                e.printStackTrace();
+                end = position;
+                break;
+            }
+            position = reader.getPosition();
+        }
+
+        return new long[] { end, Math.min(committed, end) };
+    }
+
+    /**
+     * Applies one record to model.
+     * 
+     * @param record
+     * @param model
+     * 
+     * @throws IOException if record does not fit the tree
+     */
+    private static void applyRecord(ByteBuffer record, TreeModel model) throws IOException {
+
+        byte type = record.get();
+        if (type == INSERT) {
+            Object parent = resolve(model, getIndexes(record), null, -1);
+            int index = getIndex(record, model.getChildCount(parent));
+            String title = getString(record);
+            String text = getString(record);
+            if (model instanceof JavaTreeStoreTreeModel) {
+                ((JavaTreeStoreTreeModel) model).insertChild(((Integer) parent).intValue(), index, title, text);
+            } else {
+                ((DefaultTreeModel) model).insertNodeInto(new JavaTreeNode(new JavaTreeNodeObject(title,
+                                                                                                          text)),
+                                                          (MutableTreeNode) parent, index);
+            }
+        } else if (type == REMOVE) {
+            Object parent = resolve(model, getIndexes(record), null, -1);
+            Object node = model.getChild(parent, getIndex(record, model.getChildCount(parent) - 1));
+            if (model instanceof JavaTreeStoreTreeModel) {
+                ((JavaTreeStoreTreeModel) model).delete(((Integer) node).intValue());
+            } else {
+                ((DefaultTreeModel) model).removeNodeFromParent((MutableTreeNode) node);
+            }
+        } else if (type == MOVE) {
+            Object parent = resolve(model, getIndexes(record), null, -1);
+            int index = getIndex(record, model.getChildCount(parent) - 1);
+            Object node = model.getChild(parent, index);
+            // new parent was recorded after the node was removed
+            Object newParent = resolve(model, getIndexes(record), parent, index);
+            if (newParent == node) {
+                throw new IOException("Node can not be moved into itself.");
+            }
+            boolean sameParent = newParent == parent || newParent.equals(parent);
+            int newIndex = getIndex(record, model.getChildCount(newParent) - (sameParent ? 1 : 0));
+            if (model instanceof JavaTreeStoreTreeModel) {
+                ((JavaTreeStoreTreeModel) model).move(((Integer) node).intValue(), ((Integer) newParent).intValue(),
+                                                      newIndex);
+            } else {
+                ((DefaultTreeModel) model).removeNodeFromParent((MutableTreeNode) node);
+                ((DefaultTreeModel) model).insertNodeInto((MutableTreeNode) node, (MutableTreeNode) newParent,
+                                                          newIndex);
+            }
+        } else if (type == EDIT) {
+            Object node = resolve(model, getIndexes(record), null, -1);
+            String title = getString(record);
+            String text = getString(record);
+            if (model instanceof JavaTreeStoreTreeModel) {
+                ((JavaTreeStoreTreeModel) model).setNodeData(((Integer) node).intValue(), title, text);
+            } else {
+                JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject();
+                nodeObject.setTitle(title);
+                nodeObject.setText(text);
+                ((DefaultTreeModel) model).nodeChanged((TreeNode) node);
+            }
+        } else {
+            throw new IOException("Unknown journal record " + type + ".");
+        }
+    }
+
+    /**
+     * Finds node at the end of a path of child indexes. If removedFrom is not null, path is resolved as if the child
+     * of removedFrom at removedIndex was not there.
+     */
+    private static Object resolve(TreeModel model, int[] indexes, Object removedFrom, int removedIndex)
+            throws IOException {
+
+        Object node = model.getRoot();
+        for (int index : indexes) {
+            if (removedFrom != null && (node == removedFrom || node.equals(removedFrom)) && index >= removedIndex) {
+                index++;
+            }
+            if (index >= model.getChildCount(node)) {
+                throw new IOException("Journal does not match the document.");
+            }
+            node = model.getChild(node, index);
+        }
+        return node;
+    }
+
+    /**
+     * Returns child indexes on path from the root or null if a node on path is not part of the tree.
+     */
+    private int[] getIndexes(TreePath path) {
+
+        Object[] nodes = path.getPath();
+        int[] indexes = new int[nodes.length - 1];
+        for (int index = 1; index < nodes.length; index++) {
+            indexes[index - 1] = model.getIndexOfChild(nodes[index - 1], nodes[index]);
+            if (indexes[index - 1] < 0) {
+                return null;
+            }
+        }
+        return nodes[0].equals(model.getRoot()) ? indexes : null;
+    }
+
+    /**
+     * Returns true if a removed node is known to be deleted. Store reuses ids of deleted nodes, so a deleted node can
+     * not be told from a node inserted after it by its id.
+     */
+    private boolean isDeleted(Object node) {
+
+        return model instanceof JavaTreeStoreTreeModel
+               && !((JavaTreeStoreTreeModel) model).getStore().contains(((Integer) node).intValue());
+    }
+
+    private String getTitle(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getStore().getTitle(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getTitle();
+    }
+
+    private String getText(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getStore().getText(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getText();
+    }
+
+    private static ByteBuffer startRecord(byte type) {
+
+        ByteBuffer record = ByteBuffer.allocate(64);
+        record.put(type);
+        return record;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer record, int size) {
+
+        if (record.remaining() >= size) {
+            return record;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + size));
+        record.flip();
+        larger.put(record);
+        return larger;
+    }
+
+    private static ByteBuffer putVarint(ByteBuffer record, int value) {
+
+        record = ensure(record, 5);
+        JavaTreeBinaryFormat.putVarint(record, value);
+        return record;
+    }
+
+    private static ByteBuffer putIndexes(ByteBuffer record, int[] indexes) {
+        return putIndexes(record, indexes, indexes.length);
+    }
+
+    /**
+     * Puts the first length indexes.
+     */
+    private static ByteBuffer putIndexes(ByteBuffer record, int[] indexes, int length) {
+
+        record = putVarint(record, length);
+        for (int index = 0; index < length; index++) {
+            record = putVarint(record, indexes[index]);
+        }
+        return record;
+    }
+
+    private static ByteBuffer putString(ByteBuffer record, String value) {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record = putVarint(record, bytes.length);
+        record = ensure(record, bytes.length);
+        record.put(bytes);
+        return record;
+    }
+
+    private static int[] getIndexes(ByteBuffer record) throws IOException {
+
+        int[] indexes = new int[JavaTreeBinaryFormat.getVarint(record)];
+        for (int index = 0; index < indexes.length; index++) {
+            indexes[index] = JavaTreeBinaryFormat.getVarint(record);
+        }
+        return indexes;
+    }
+
+    /**
+     * Reads a child index that must not be larger than max.
+     */
+    private static int getIndex(ByteBuffer record, int max) throws IOException {
+
+        int index = JavaTreeBinaryFormat.getVarint(record);
+        if (index < 0 || index > max) {
+            throw new IOException("Journal does not match the document.");
+        }
+        return index;
+    }
+
+    private static String getString(ByteBuffer record) throws IOException {
+
+        int size = JavaTreeBinaryFormat.getVarint(record);
+        String value = new String(record.array(), record.arrayOffset() + record.position(), size,
+                                  StandardCharsets.UTF_8);
+        record.position(record.position() + size);
+        return value;
+    }
+
+    /**
+     * Creates header of a journal that applies to the current state of document.
+     */
+    private static ByteBuffer header(File document) {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(document.length());
+        header.putLong(document.lastModified());
+        header.flip();
+        int crc = JavaTreeBinaryFormat.checksum(header);
+        header.limit(HEADER_SIZE);
+        header.putInt(HEADER_SIZE - 4, crc);
+        return header;
+    }
+
+    /**
+     * Returns true if journal file starts with the header for the current state of document.
+     */
+    private static boolean matches(File journalFile, File document) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            return matches(channel, document);
+        }
+    }
+
+    private static boolean matches(FileChannel channel, File document) throws IOException {
+
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        return header.equals(header(document));
+    }
+
+    private static File getNextJournalFile(File document) {
+        return new File(document.getPath() + EXTENSION + ".new");
+    }
+
+    private static File getOldJournalFile(File document) {
+        return new File(document.getPath() + EXTENSION + ".old");
+    }
+
+    private static String getExtension(File document) {
+        return document.getName().toLowerCase().endsWith(JavaTreeBinaryFormat.EXTENSION)
+                ? JavaTreeBinaryFormat.EXTENSION : ".jtd";
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Copies count bytes from position of source to target position of target.
+     */
+    private static void transferFully(FileChannel source, long position, long count, FileChannel target,
+                                      long targetPosition) throws IOException {
+
+        target.position(targetPosition);
+        long transferred = 0;
+        while (transferred < count) {
+            long written = source.transferTo(position + transferred, count - transferred, target);
+            if (written <= 0) {
+                throw new IOException("Unexpected end of journal.");
+            }
+            transferred += written;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal.");
+            }
+            offset += read;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Reads complete and undamaged records of a journal channel in order, through a buffer of fixed size.
+     */
+    private static class RecordReader {
+        private FileChannel channel;
+        private long        end;
+        private ByteBuffer  buffer;
+
+        // position in the channel of the next record
+        private long        position;
+
+        /**
+         * Creates RecordReader of records between start and end of channel.
+         */
+        public RecordReader(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.end = end;
+            buffer = ByteBuffer.allocate(READ_SIZE);
+            buffer.limit(0);
+            position = start;
+        }
+
+        /**
+         * Returns payload of the next record, which is valid until the next call, or null if there are no more
+         * complete and undamaged records.
+         * 
+         * @return record
+         * 
+         * @throws IOException
+         */
+        public ByteBuffer next() throws IOException {
+
+            if (!fill(RECORD_HEADER)) {
+                return null;
+            }
+            int size = buffer.getInt(buffer.position());
+            int crc = buffer.getInt(buffer.position() + 4);
+            if (size <= 0 || size > end - position - RECORD_HEADER || !fill(RECORD_HEADER + size)) {
+                return null;
+            }
+
+            ByteBuffer record = buffer.duplicate();
+            record.position(buffer.position() + RECORD_HEADER);
+            record.limit(record.position() + size);
+            if (JavaTreeBinaryFormat.checksum(record) != crc) {
+                return null;
+            }
+
+            buffer.position(record.limit());
+            position += RECORD_HEADER + size;
+            return record;
+        }
+
+        /**
+         * @return position in the channel after the last returned record
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Makes sure the buffer holds the next size bytes. Returns false if the channel ends before them.
+         */
+        private boolean fill(int size) throws IOException {
+
+            if (buffer.remaining() >= size) {
+                return true;
+            }
+            if (end - position < size) {
+                return false;
+            }
+
+            if (size > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(size);
+                larger.put(buffer);
+                buffer = larger;
+            } else if (buffer.capacity() > READ_SIZE) {
+                // buffer of a large record is not kept for the records after it
+                ByteBuffer smaller = ByteBuffer.allocate(READ_SIZE);
+                smaller.put(buffer);
+                buffer = smaller;
+            } else {
+                buffer.compact();
+            }
+            // read up to the end of the buffer or the end of records, whichever comes first
+            long available = end - position - buffer.position();
+            if (buffer.remaining() > available) {
+                buffer.limit(buffer.position() + (int) available);
+            }
+            readFully(channel, buffer, position + buffer.position());
+            return true;
+        }
+    }
+}
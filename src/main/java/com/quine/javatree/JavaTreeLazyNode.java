@@ -0,0 +1,307 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+
+/**
+ * JavaTreeLazyNode is a DefaultMutableTreeNode whose children are read from a JavaTree XML document the first time
+ * they are needed. Until then the node only knows from the JavaTreeXMLIndex of the document whether it has children.
+ * All methods that access children load them first, so the node can be used wherever a DefaultMutableTreeNode is
+ * expected.
+ * 
+ * Children of a node that was not changed can be unloaded again and are read from the document when they are needed
+ * next time.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeLazyNode extends JavaTreeNode {
+    private static final long         serialVersionUID = -1950385453566346318L;
+
+    // size of the buffer used to check the document
+    private final static int          BUFFER_SIZE      = 64 * 1024;
+
+    // index of the document the node is read from and number of the node in it
+    private transient JavaTreeXMLIndex index;
+    private int                       indexNode;
+
+    private volatile boolean          loaded;
+
+    // true if children were added or removed after they were loaded
+    private boolean                   modified;
+
+    // title and text as read from the document
+    private String                    originalTitle;
+    private String                    originalText;
+
+    /**
+     * Creates JavaTreeLazyNode for a node of an indexed document.
+     * 
+     * @param index
+     * @param indexNode
+     * @param nodeObject
+     */
+    public JavaTreeLazyNode(JavaTreeXMLIndex index, int indexNode, JavaTreeNodeObject nodeObject) {
+        super(nodeObject);
+        this.index = index;
+        this.indexNode = indexNode;
+        loaded = false;
+        modified = false;
+        originalTitle = nodeObject.getTitle();
+        originalText = nodeObject.getText();
+    }
+
+    /**
+     * Scans a document and creates its root node. Unless trusted is true and the checksum trailer of the document
+     * matches, the document is read once more after the scan to check it against the compiled grammar. Scanned and
+     * read bytes and found nodes are reported to progress.
+     * 
+     * @param file
+     * @param trusted
+     * @param progress
+     * 
+     * @return root
+     * 
+     * @throws Exception
+     */
+    public static JavaTreeLazyNode open(File file, boolean trusted, JavaTreeProgress progress) throws Exception {
+
+        JavaTreeXMLIndex index = JavaTreeXMLIndex.scan(file, progress);
+        try (FileChannel channel = index.openChannel()) {
+            if (!(trusted && index.isTrusted())) {
+                // nodes were counted by the scan, only bytes are reported again
+                progress.setTotalBytes(progress.getBytes() + channel.size());
+                InputStream input = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+                new JavaTreeStreamLoader().check(progress.track(input), progress);
+            }
+            return new JavaTreeLazyNode(index, 0, index.readNodeObject(channel, 0));
+        }
+    }
+
+    /**
+     * @return true if children of the node are loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reads children of the node from the document if they are not loaded yet.
+     * 
+     * @throws IllegalStateException if children can not be read
+     */
+    public void ensureLoaded() {
+
+        if (loaded) {
+            return;
+        }
+
+        try (FileChannel channel = index.openChannel()) {
+            ensureLoaded(channel);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while reading children of " + originalTitle, e);
+        }
+    }
+
+    /**
+     * Loads all nodes of the subtree of this node. All of them are read through one channel.
+     * 
+     * @throws IllegalStateException if a node can not be read
+     */
+    public void loadAll() {
+
+        try (FileChannel channel = index.openChannel()) {
+            Deque<TreeNode> pending = new ArrayDeque<TreeNode>();
+            pending.push(this);
+            while (!pending.isEmpty()) {
+                TreeNode node = pending.pop();
+                if (node instanceof JavaTreeLazyNode) {
+                    ((JavaTreeLazyNode) node).ensureLoaded(channel);
+                }
+                for (int child = 0; child < node.getChildCount(); child++) {
+                    pending.push(node.getChildAt(child));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while reading nodes of " + originalTitle, e);
+        }
+    }
+
+    /**
+     * Returns true if nothing in the loaded part of the subtree of this node was changed, so its children can be
+     * unloaded and read again from the document.
+     * 
+     * @return status
+     */
+    public boolean isUnloadable() {
+
+        Deque<JavaTreeLazyNode> pending = new ArrayDeque<JavaTreeLazyNode>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            JavaTreeLazyNode node = pending.pop();
+            if (node.modified || !node.isUnchanged()) {
+                return false;
+            }
+            if (node.loaded) {
+                for (int child = 0; child < node.getChildCount(); child++) {
+                    TreeNode childNode = node.getChildAt(child);
+                    if (!(childNode instanceof JavaTreeLazyNode)) {
+                        return false;
+                    }
+                    pending.push((JavaTreeLazyNode) childNode);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops loaded children of the node if the subtree is unloadable. Returns true if children were dropped.
+     * 
+     * @return status
+     */
+    public synchronized boolean unload() {
+
+        if (!loaded || !isUnloadable()) {
+            return false;
+        }
+
+        for (int child = super.getChildCount() - 1; child >= 0; child--) {
+            super.remove(child);
+        }
+        loaded = false;
+        return true;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        if (!loaded) {
+            return index.getFirstChild(indexNode) < 0;
+        }
+        return super.isLeaf();
+    }
+
+    @Override
+    public int getChildCount() {
+        ensureLoaded();
+        return super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int childIndex) {
+        ensureLoaded();
+        return super.getChildAt(childIndex);
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+        ensureLoaded();
+        return super.getIndex(child);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        ensureLoaded();
+        return super.children();
+    }
+
+    @Override
+    public void insert(MutableTreeNode child, int childIndex) {
+        ensureLoaded();
+        modified = true;
+        super.insert(child, childIndex);
+    }
+
+    @Override
+    public void remove(int childIndex) {
+        ensureLoaded();
+        modified = true;
+        super.remove(childIndex);
+    }
+
+    /**
+     * Reads children of the node through channel if they are not loaded yet.
+     * 
+     * @param channel
+     * 
+     * @throws IllegalStateException if children can not be read
+     */
+    private void ensureLoaded(FileChannel channel) {
+
+        if (loaded) {
+            return;
+        }
+
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+
+            List<JavaTreeLazyNode> nodes = new ArrayList<JavaTreeLazyNode>();
+            try {
+                for (int child = index.getFirstChild(indexNode); child >= 0; child = index.getNextSibling(child)) {
+                    nodes.add(new JavaTreeLazyNode(index, child, index.readNodeObject(channel, child)));
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Error while reading children of " + originalTitle, e);
+            }
+
+            for (JavaTreeLazyNode node : nodes) {
+                super.insert(node, super.getChildCount());
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * @return true if title and text are the same as in the document
+     */
+    private boolean isUnchanged() {
+
+        JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) getUserObject();
+        return originalTitle.equals(nodeObject.getTitle()) && originalText.equals(nodeObject.getText());
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.swing.JTree;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultTreeModel;
+
+/**
+ * JavaTreeLazyTreeModel is a tree model for documents opened lazily. Root of the model is a JavaTreeLazyNode and the
+ * children of a node are read from the document when the node is about to be expanded in the JTree the model is
+ * attached to. Since the model is a DefaultTreeModel, all actions work on it the same way they work on an eagerly
+ * loaded tree.
+ * 
+ * If eviction is enabled, collapsed nodes are remembered and when the heap gets full the children of the ones
+ * collapsed longest ago are unloaded, provided nothing in their subtrees was changed.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeLazyTreeModel extends DefaultTreeModel implements TreeWillExpandListener, TreeExpansionListener {
+    private static final long     serialVersionUID = 7240981513580957218L;
+
+    // fraction of maximum heap above which collapsed nodes are unloaded
+    private final static double   HEAP_THRESHOLD   = 0.75;
+
+    private boolean               evictionEnabled;
+
+    // collapsed nodes with loaded children, longest collapsed first
+    private Set<JavaTreeLazyNode> collapsedNodes;
+
+    /**
+     * Creates JavaTreeLazyTreeModel with the given root.
+     * 
+     * @param root
+     * @param evictionEnabled
+     */
+    public JavaTreeLazyTreeModel(JavaTreeLazyNode root, boolean evictionEnabled) {
+        super(root);
+        this.evictionEnabled = evictionEnabled;
+        collapsedNodes = new LinkedHashSet<JavaTreeLazyNode>();
+    }
+
+    /**
+     * Creates a JTree that shows the model and loads children of nodes that are about to be expanded.
+     * 
+     * @return tree
+     */
+    public JTree createTree() {
+
+        JTree tree = new JTree(this);
+        tree.addTreeWillExpandListener(this);
+        tree.addTreeExpansionListener(this);
+        return tree;
+    }
+
+    @Override
+    public void treeWillExpand(TreeExpansionEvent event) {
+
+        Object node = event.getPath().getLastPathComponent();
+        if (node instanceof JavaTreeLazyNode) {
+            ((JavaTreeLazyNode) node).ensureLoaded();
+        }
+    }
+
+    @Override
+    public void treeWillCollapse(TreeExpansionEvent event) {
+        // children are unloaded only when memory is needed
+    }
+
+    @Override
+    public void treeExpanded(TreeExpansionEvent event) {
+        collapsedNodes.remove(event.getPath().getLastPathComponent());
+    }
+
+    @Override
+    public void treeCollapsed(TreeExpansionEvent event) {
+
+        if (!evictionEnabled) {
+            return;
+        }
+
+        Object node = event.getPath().getLastPathComponent();
+        if (node instanceof JavaTreeLazyNode) {
+            collapsedNodes.remove(node);
+            collapsedNodes.add((JavaTreeLazyNode) node);
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Unloads children of the collapsed nodes, longest collapsed first, if used heap is above the threshold. Half of
+     * the remembered nodes are unloaded at a time because the memory is freed only by the next garbage collection.
+     */
+    private void evictIfNeeded() {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used < runtime.maxMemory() * HEAP_THRESHOLD) {
+            return;
+        }
+
+        int toEvict = Math.max(1, collapsedNodes.size() / 2);
+        Iterator<JavaTreeLazyNode> iterator = collapsedNodes.iterator();
+        while (iterator.hasNext() && toEvict > 0) {
+            JavaTreeLazyNode node = iterator.next();
+            iterator.remove();
+            toEvict--;
+
+            // skip nodes that were removed from the tree since they were collapsed
+            if (node.getRoot() == getRoot() && node.unload()) {
+                nodeStructureChanged(node);
+            }
+        }
+    }
+}
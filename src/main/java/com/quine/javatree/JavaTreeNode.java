@@ -0,0 +1,227 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+
+/**
+ * JavaTreeNode is a DefaultMutableTreeNode that keeps its children in a JavaTreeChildList instead of a Vector. Index
+ * of a child, inserting and removing a child take logarithmic time, so DefaultTreeModel operations and moves of nodes
+ * stay fast for nodes with hundreds of thousands of children. A JavaTreeNode child knows its entry in the list of its
+ * parent, children of other types are found by going through the list.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeNode extends DefaultMutableTreeNode {
+    private static final long       serialVersionUID = 2893176035742106489L;
+
+    // children of the node, null when the node has no children
+    private JavaTreeChildList       childList;
+
+    // entry of the node in the child list of its parent
+    private JavaTreeChildList.Entry entry;
+
+    /**
+     * Creates JavaTreeNode with no user object that allows children.
+     */
+    public JavaTreeNode() {
+        super();
+    }
+
+    /**
+     * Creates JavaTreeNode with user object that allows children.
+     * 
+     * @param userObject
+     */
+    public JavaTreeNode(Object userObject) {
+        super(userObject);
+    }
+
+    /**
+     * Creates JavaTreeNode with user object.
+     * 
+     * @param userObject
+     * @param allowsChildren
+     */
+    public JavaTreeNode(Object userObject, boolean allowsChildren) {
+        super(userObject, allowsChildren);
+    }
+
+    @Override
+    public void insert(MutableTreeNode newChild, int childIndex) {
+
+        if (!allowsChildren) {
+            throw new IllegalStateException("node does not allow children");
+        } else if (newChild == null) {
+            throw new IllegalArgumentException("new child is null");
+        } else if (isNodeAncestor(newChild)) {
+            throw new IllegalArgumentException("new child is an ancestor");
+        }
+
+        MutableTreeNode oldParent = (MutableTreeNode) newChild.getParent();
+        if (oldParent != null) {
+            oldParent.remove(newChild);
+        }
+        if (childList == null) {
+            childList = new JavaTreeChildList();
+        }
+        JavaTreeChildList.Entry childEntry = childList.insert(childIndex, newChild);
+        newChild.setParent(this);
+        if (newChild instanceof JavaTreeNode) {
+            ((JavaTreeNode) newChild).entry = childEntry;
+        }
+    }
+
+    @Override
+    public void remove(int childIndex) {
+
+        if (childList == null) {
+            throw new ArrayIndexOutOfBoundsException(childIndex);
+        }
+        JavaTreeChildList.Entry childEntry = childList.remove(childIndex);
+        MutableTreeNode child = (MutableTreeNode) childEntry.getNode();
+        child.setParent(null);
+        if (child instanceof JavaTreeNode) {
+            ((JavaTreeNode) child).entry = null;
+        }
+    }
+
+    @Override
+    public void removeAllChildren() {
+
+        if (childList == null) {
+            return;
+        }
+        for (Enumeration<TreeNode> children = childList.elements(); children.hasMoreElements();) {
+            MutableTreeNode child = (MutableTreeNode) children.nextElement();
+            child.setParent(null);
+            if (child instanceof JavaTreeNode) {
+                ((JavaTreeNode) child).entry = null;
+            }
+        }
+        childList = null;
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+
+        if (childList == null) {
+            throw new ArrayIndexOutOfBoundsException("node has no children");
+        }
+        return childList.get(index);
+    }
+
+    @Override
+    public int getChildCount() {
+        return childList == null ? 0 : childList.size();
+    }
+
+    @Override
+    public int getIndex(TreeNode aChild) {
+
+        if (aChild == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        if (!isNodeChild(aChild)) {
+            return -1;
+        }
+        if (aChild instanceof JavaTreeNode && ((JavaTreeNode) aChild).entry != null) {
+            return childList.indexOf(((JavaTreeNode) aChild).entry);
+        }
+        return childList.indexOf(aChild);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+
+        if (childList == null) {
+            return Collections.emptyEnumeration();
+        }
+        return childList.elements();
+    }
+
+    @Override
+    public TreeNode getFirstChild() {
+
+        if (getChildCount() == 0) {
+            throw new NoSuchElementException("node has no children");
+        }
+        return childList.getFirst();
+    }
+
+    @Override
+    public TreeNode getLastChild() {
+
+        if (getChildCount() == 0) {
+            throw new NoSuchElementException("node has no children");
+        }
+        return childList.getLast();
+    }
+
+    /**
+     * Returns path from the root to node followed by depth empty places. Unlike the inherited version it does not
+     * recurse once per level.
+     */
+    @Override
+    protected TreeNode[] getPathToRoot(TreeNode node, int depth) {
+
+        int count = 0;
+        for (TreeNode current = node; current != null; current = current.getParent()) {
+            count++;
+        }
+        if (count + depth == 0) {
+            return null;
+        }
+
+        TreeNode[] path = new TreeNode[count + depth];
+        for (TreeNode current = node; current != null; current = current.getParent()) {
+            path[--count] = current;
+        }
+        return path;
+    }
+
+    @Override
+    public Object clone() {
+
+        JavaTreeNode node = (JavaTreeNode) super.clone();
+        node.childList = null;
+        node.entry = null;
+        return node;
+    }
+}
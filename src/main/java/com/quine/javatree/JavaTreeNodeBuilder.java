@@ -0,0 +1,84 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * JavaTreeNodeBuilder is a JavaTreeHandler that builds a tree of DefaultMutableTreeNode objects holding
+ * JavaTreeNodeObject instances from the nodes it receives.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeNodeBuilder implements JavaTreeHandler {
+    // nodes that are started but not yet finished
+    private Deque<DefaultMutableTreeNode> openNodes;
+
+    // first node that was started
+    private DefaultMutableTreeNode        root;
+
+    /**
+     * Creates JavaTreeNodeBuilder with no nodes.
+     */
+    public JavaTreeNodeBuilder() {
+        openNodes = new ArrayDeque<DefaultMutableTreeNode>();
+        root = null;
+    }
+
+    @Override
+    public void startNode(String title, String text) {
+        DefaultMutableTreeNode node = new JavaTreeNode(new JavaTreeNodeObject(title, text));
+
+        if (root == null) {
+            root = node;
+        } else {
+            openNodes.peek().add(node);
+        }
+        openNodes.push(node);
+    }
+
+    @Override
+    public void endNode() {
+        openNodes.pop();
+    }
+
+    /**
+     * @return root node of the built tree or null if no node was received
+     */
+    public DefaultMutableTreeNode getRoot() {
+        return root;
+    }
+}
@@ -29,6 +29,9 @@ package com.quine.javatree;
 /**
  * JavaTreeNodeObject is a POJO class used as object property of DefaultMutableTreeNode in JavaTree application.
  * 
+ * When a text store is set, texts of its spill size or longer are written to it and the node keeps only a reference.
+ * getText reads such texts back from the store, and setText releases them when they are replaced.
+ * 
  * @author Ivan Dejanovic
  * 
  * @version 1.0
@@ -38,8 +41,16 @@ package com.quine.javatree;
  */
 
 public class JavaTreeNodeObject {
-    private String title;
-    private String text;
+    private static volatile JavaTreeTextStore textStore;
+
+    private String                            title;
+    private String                            text;
+
+    // reference to the text in the text store, text is null when it is set
+    private JavaTreeTextStore.Reference       textReference;
+
+    // true if the node or a node in its subtree was changed since the flag was cleared
+    private boolean                           dirty;
 
     /**
      * Creates JavaTreeNodeObject and initialize title to "New Node", text to empty string.
@@ -59,6 +70,33 @@ public class JavaTreeNodeObject {
         text = "";
     }
 
+    /**
+     * Creates JavaTreeNodeObject and initialize title to title, text to text.
+     * 
+     * @param title the node title
+     * @param text the node text
+     */
+    public JavaTreeNodeObject(String title, String text) {
+        this.title = title;
+        setText(text);
+    }
+
+    /**
+     * @return store that keeps large texts of nodes, or null if texts are kept in the heap
+     */
+    public static JavaTreeTextStore getTextStore() {
+        return textStore;
+    }
+
+    /**
+     * Sets store for large texts of nodes created or changed from now on.
+     * 
+     * @param store
+     */
+    public static void setTextStore(JavaTreeTextStore store) {
+        textStore = store;
+    }
+
     /**
      * @return title
      */
@@ -77,14 +115,39 @@ public class JavaTreeNodeObject {
      * @return text
      */
     public String getText() {
+        if (textReference != null) {
+            return textReference.getText();
+        }
         return text;
     }
 
     /**
+     * Sets text of the node. Null texts and texts shorter than the spill size of the text store stay in the node.
+     * 
      * @param text
      */
     public void setText(String text) {
-        this.text = text;
+        if (textReference != null) {
+            textReference.release();
+        }
+        JavaTreeTextStore store = textStore;
+        boolean spill = store != null && text != null && text.length() >= store.getSpillSize();
+        textReference = spill ? store.put(text) : null;
+        this.text = textReference != null ? null : text;
+    }
+
+    /**
+     * @return true if the node or a node in its subtree was changed
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @param dirty
+     */
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
     }
 
     /**
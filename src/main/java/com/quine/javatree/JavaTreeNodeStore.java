@@ -0,0 +1,732 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * JavaTreeNodeStore keeps a whole tree in primitive arrays instead of one DefaultMutableTreeNode, children Vector and
+ * JavaTreeNodeObject per node. A node is an int and its parent, first and last child, siblings and child count are
+ * stored in int arrays indexed by it. Titles and texts are references into a string pool, empty strings take no pool
+ * entry.
+ * 
+ * Nodes and pool entries of deleted subtrees are reused, so structural edits do not allocate once the arrays are big
+ * enough. Children are linked lists, so the most recently accessed child of a parent is remembered to make walking
+ * over consecutive children cheap.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeNodeStore {
+    // reference used for empty strings and missing nodes
+    public final static int NONE             = -1;
+
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private int              root;
+
+    // number of node slots used, including the free ones
+    private int              nodeCount;
+    private int[]            parent;
+    private int[]            firstChild;
+    private int[]            lastChild;
+    private int[]            nextSibling;
+    private int[]            previousSibling;
+    private int[]            childCount;
+    private int[]            title;
+    private int[]            text;
+
+    // nodes whose subtrees were changed since the flags were last cleared
+    private BitSet           dirty;
+
+    // deleted nodes available for reuse
+    private int[]            freeNodes;
+    private int              freeNodeCount;
+
+    private String[]         strings;
+    private int              stringCount;
+    private int[]            freeStrings;
+    private int              freeStringCount;
+
+    // stack used to walk subtrees of deleted nodes
+    private int[]            stack;
+
+    // last child accessed by index
+    private int              cursorParent;
+    private int              cursorIndex;
+    private int              cursorNode;
+
+    /**
+     * Creates empty JavaTreeNodeStore. Root must be created with createRoot before the store is used.
+     */
+    public JavaTreeNodeStore() {
+        root = NONE;
+        nodeCount = 0;
+        parent = new int[INITIAL_CAPACITY];
+        firstChild = new int[INITIAL_CAPACITY];
+        lastChild = new int[INITIAL_CAPACITY];
+        nextSibling = new int[INITIAL_CAPACITY];
+        previousSibling = new int[INITIAL_CAPACITY];
+        childCount = new int[INITIAL_CAPACITY];
+        title = new int[INITIAL_CAPACITY];
+        text = new int[INITIAL_CAPACITY];
+        dirty = new BitSet();
+        freeNodes = new int[16];
+        freeNodeCount = 0;
+        strings = new String[INITIAL_CAPACITY];
+        stringCount = 0;
+        freeStrings = new int[16];
+        freeStringCount = 0;
+        stack = new int[16];
+        resetCursor();
+    }
+
+    /**
+     * Creates root node of the store.
+     * 
+     * @param rootTitle
+     * @param rootText
+     * 
+     * @return root
+     */
+    public int createRoot(String rootTitle, String rootText) {
+
+        if (root != NONE) {
+            throw new IllegalStateException("Store already has a root.");
+        }
+        root = createNode(rootTitle, rootText);
+        return root;
+    }
+
+    /**
+     * @return root node
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns true if node or a node in its subtree was changed since the flag was cleared.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean isDirty(int node) {
+        return dirty.get(node);
+    }
+
+    /**
+     * Sets or clears dirty flag of node. Flags of other nodes are not changed.
+     * 
+     * @param node
+     * @param value
+     */
+    public void setDirty(int node, boolean value) {
+        dirty.set(node, value);
+    }
+
+    /**
+     * Returns true if node is part of the tree. Deleted nodes are not part of the tree until they are reused.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean contains(int node) {
+        return node >= 0 && node < nodeCount && (node == root || parent[node] != NONE);
+    }
+
+    /**
+     * @return number of nodes in the tree
+     */
+    public int size() {
+        return nodeCount - freeNodeCount;
+    }
+
+    /**
+     * @param node
+     * 
+     * @return parent of the node or NONE for the root
+     */
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return first child of the node or NONE
+     */
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return next sibling of the node or NONE
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return previous sibling of the node or NONE
+     */
+    public int getPreviousSibling(int node) {
+        return previousSibling[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return number of children of the node
+     */
+    public int getChildCount(int node) {
+        return childCount[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return title of the node
+     */
+    public String getTitle(int node) {
+        return getString(title[node]);
+    }
+
+    /**
+     * @param node
+     * @param value
+     */
+    public void setTitle(int node, String value) {
+        title[node] = setString(title[node], value);
+    }
+
+    /**
+     * @param node
+     * 
+     * @return text of the node
+     */
+    public String getText(int node) {
+        return getString(text[node]);
+    }
+
+    /**
+     * @param node
+     * @param value
+     */
+    public void setText(int node, String value) {
+        text[node] = setString(text[node], value);
+    }
+
+    /**
+     * Returns child of parent at index.
+     * 
+     * @param parentNode
+     * @param index
+     * 
+     * @return child
+     */
+    public int getChildAt(int parentNode, int index) {
+
+        if (index < 0 || index >= childCount[parentNode]) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        int node;
+        int current;
+        int last = childCount[parentNode] - 1;
+        if (cursorParent == parentNode && Math.abs(index - cursorIndex) <= Math.min(index, last - index)) {
+            node = cursorNode;
+            current = cursorIndex;
+        } else if (index <= last - index) {
+            node = firstChild[parentNode];
+            current = 0;
+        } else {
+            node = lastChild[parentNode];
+            current = last;
+        }
+
+        while (current < index) {
+            node = nextSibling[node];
+            current++;
+        }
+        while (current > index) {
+            node = previousSibling[node];
+            current--;
+        }
+
+        cursorParent = parentNode;
+        cursorIndex = index;
+        cursorNode = node;
+        return node;
+    }
+
+    /**
+     * Returns index of child in the children of its parent.
+     * 
+     * @param child
+     * 
+     * @return index
+     */
+    public int getIndex(int child) {
+
+        if (cursorNode == child && cursorParent == parent[child]) {
+            return cursorIndex;
+        }
+
+        int index = 0;
+        for (int node = previousSibling[child]; node != NONE; node = previousSibling[node]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Adds a new last child to parent.
+     * 
+     * @param parentNode
+     * @param childTitle
+     * @param childText
+     * 
+     * @return child
+     */
+    public int addChild(int parentNode, String childTitle, String childText) {
+
+        int child = createNode(childTitle, childText);
+        append(parentNode, child);
+        return child;
+    }
+
+    /**
+     * Adds a new child to parent at index.
+     * 
+     * @param parentNode
+     * @param index
+     * @param childTitle
+     * @param childText
+     * 
+     * @return child
+     */
+    public int insertChild(int parentNode, int index, String childTitle, String childText) {
+
+        int before = index == childCount[parentNode] ? NONE : getChildAt(parentNode, index);
+        int child = createNode(childTitle, childText);
+        insertBefore(parentNode, child, before);
+        return child;
+    }
+
+    /**
+     * Moves node with its subtree to newParent at index. Index is a position among children of newParent after node
+     * was removed from its parent. Node can not be moved into its own subtree.
+     * 
+     * @param node
+     * @param newParent
+     * @param index
+     */
+    public void move(int node, int newParent, int index) {
+
+        for (int ancestor = newParent; ancestor != NONE; ancestor = parent[ancestor]) {
+            if (ancestor == node) {
+                throw new IllegalArgumentException("Node can not be moved into its own subtree.");
+            }
+        }
+
+        unlink(node);
+        int before = index == childCount[newParent] ? NONE : getChildAt(newParent, index);
+        insertBefore(newParent, node, before);
+    }
+
+    /**
+     * Removes node with its subtree from the tree without deleting it, so it can be attached again. Root can not be
+     * detached.
+     * 
+     * @param node
+     */
+    public void detach(int node) {
+
+        if (node == root) {
+            throw new IllegalArgumentException("Root can not be detached.");
+        }
+        unlink(node);
+    }
+
+    /**
+     * Attaches a detached node with its subtree to newParent at index.
+     * 
+     * @param node
+     * @param newParent
+     * @param index
+     */
+    public void attach(int node, int newParent, int index) {
+
+        if (parent[node] != NONE || node == root) {
+            throw new IllegalArgumentException("Node is not detached.");
+        }
+        int before = index == childCount[newParent] ? NONE : getChildAt(newParent, index);
+        insertBefore(newParent, node, before);
+    }
+
+    /**
+     * Deletes node and its subtree. Node can be part of the tree or detached. Root can not be deleted.
+     * 
+     * @param node
+     */
+    public void delete(int node) {
+
+        if (node == root) {
+            throw new IllegalArgumentException("Root can not be deleted.");
+        }
+
+        if (parent[node] != NONE) {
+            unlink(node);
+        }
+
+        int top = 0;
+        stack[top++] = node;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int child = firstChild[current]; child != NONE; child = nextSibling[child]) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child;
+            }
+            freeNode(current);
+        }
+    }
+
+    /**
+     * Swaps node with its previous sibling. Returns false if node is the first child.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean moveUp(int node) {
+
+        int previous = previousSibling[node];
+        if (previous == NONE) {
+            return false;
+        }
+
+        int parentNode = parent[node];
+        unlink(node);
+        insertBefore(parentNode, node, previous);
+        return true;
+    }
+
+    /**
+     * Swaps node with its next sibling. Returns false if node is the last child.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean moveDown(int node) {
+
+        int next = nextSibling[node];
+        if (next == NONE) {
+            return false;
+        }
+
+        int parentNode = parent[node];
+        unlink(node);
+        insertBefore(parentNode, node, nextSibling[next]);
+        return true;
+    }
+
+    /**
+     * Moves node to the end of the children of its grandparent. Returns false if node is the root or a child of the
+     * root.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean moveLevelUp(int node) {
+
+        int parentNode = parent[node];
+        if (parentNode == NONE || parentNode == root) {
+            return false;
+        }
+
+        int grandParent = parent[parentNode];
+        unlink(node);
+        append(grandParent, node);
+        return true;
+    }
+
+    /**
+     * Moves node to the end of the children of its next sibling. Returns false if node is the last child.
+     * 
+     * @param node
+     * 
+     * @return status
+     */
+    public boolean moveLevelDown(int node) {
+
+        int next = nextSibling[node];
+        if (next == NONE) {
+            return false;
+        }
+
+        unlink(node);
+        append(next, node);
+        return true;
+    }
+
+    /**
+     * Pushes all nodes of the tree to handler in pre-order. Walk follows the links, so it needs no stack.
+     * 
+     * @param handler
+     * 
+     * @throws Exception
+     */
+    public void walk(JavaTreeHandler handler) throws Exception {
+
+        int node = root;
+        while (node != NONE) {
+            handler.startNode(getTitle(node), getText(node));
+
+            if (firstChild[node] != NONE) {
+                node = firstChild[node];
+                continue;
+            }
+
+            // finish nodes until one with a next sibling is found
+            handler.endNode();
+            while (node != root && nextSibling[node] == NONE) {
+                node = parent[node];
+                handler.endNode();
+            }
+            node = node == root ? NONE : nextSibling[node];
+        }
+    }
+
+    /**
+     * Creates a detached node.
+     * 
+     * @param nodeTitle
+     * @param nodeText
+     * 
+     * @return node
+     */
+    private int createNode(String nodeTitle, String nodeText) {
+
+        int node;
+        if (freeNodeCount > 0) {
+            node = freeNodes[--freeNodeCount];
+        } else {
+            if (nodeCount == parent.length) {
+                grow(nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+
+        parent[node] = NONE;
+        firstChild[node] = NONE;
+        lastChild[node] = NONE;
+        nextSibling[node] = NONE;
+        previousSibling[node] = NONE;
+        childCount[node] = 0;
+        title[node] = setString(NONE, nodeTitle);
+        text[node] = setString(NONE, nodeText);
+
+        return node;
+    }
+
+    /**
+     * Returns node and its strings to the free lists.
+     * 
+     * @param node
+     */
+    private void freeNode(int node) {
+
+        setString(title[node], "");
+        setString(text[node], "");
+        title[node] = NONE;
+        text[node] = NONE;
+        parent[node] = NONE;
+        dirty.clear(node);
+
+        if (freeNodeCount == freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, freeNodes.length * 2);
+        }
+        freeNodes[freeNodeCount++] = node;
+    }
+
+    /**
+     * Adds detached node as the last child of parent.
+     * 
+     * @param parentNode
+     * @param node
+     */
+    private void append(int parentNode, int node) {
+        insertBefore(parentNode, node, NONE);
+    }
+
+    /**
+     * Adds detached node to the children of parent before the given child, or as the last child if before is NONE.
+     * 
+     * @param parentNode
+     * @param node
+     * @param before
+     */
+    private void insertBefore(int parentNode, int node, int before) {
+
+        int previous = before == NONE ? lastChild[parentNode] : previousSibling[before];
+
+        parent[node] = parentNode;
+        previousSibling[node] = previous;
+        nextSibling[node] = before;
+
+        if (previous == NONE) {
+            firstChild[parentNode] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+        if (before == NONE) {
+            lastChild[parentNode] = node;
+        } else {
+            previousSibling[before] = node;
+        }
+
+        childCount[parentNode]++;
+        resetCursor();
+    }
+
+    /**
+     * Removes node from the children of its parent. Subtree of the node stays intact.
+     * 
+     * @param node
+     */
+    private void unlink(int node) {
+
+        int parentNode = parent[node];
+        int previous = previousSibling[node];
+        int next = nextSibling[node];
+
+        if (previous == NONE) {
+            firstChild[parentNode] = next;
+        } else {
+            nextSibling[previous] = next;
+        }
+        if (next == NONE) {
+            lastChild[parentNode] = previous;
+        } else {
+            previousSibling[next] = previous;
+        }
+
+        childCount[parentNode]--;
+        parent[node] = NONE;
+        previousSibling[node] = NONE;
+        nextSibling[node] = NONE;
+        resetCursor();
+    }
+
+    /**
+     * @param reference
+     * 
+     * @return string from the pool or empty string for NONE
+     */
+    private String getString(int reference) {
+        return reference == NONE ? "" : strings[reference];
+    }
+
+    /**
+     * Stores value in the pool entry reference and returns the reference to use from now on. Empty values release
+     * the entry and are stored as NONE.
+     * 
+     * @param reference
+     * @param value
+     * 
+     * @return reference
+     */
+    private int setString(int reference, String value) {
+
+        if (value == null || value.isEmpty()) {
+            if (reference != NONE) {
+                strings[reference] = null;
+                if (freeStringCount == freeStrings.length) {
+                    freeStrings = Arrays.copyOf(freeStrings, freeStrings.length * 2);
+                }
+                freeStrings[freeStringCount++] = reference;
+            }
+            return NONE;
+        }
+
+        if (reference == NONE) {
+            if (freeStringCount > 0) {
+                reference = freeStrings[--freeStringCount];
+            } else {
+                if (stringCount == strings.length) {
+                    strings = Arrays.copyOf(strings, stringCount * 2);
+                }
+                reference = stringCount++;
+            }
+        }
+        strings[reference] = value;
+        return reference;
+    }
+
+    /**
+     * Grows node arrays to capacity.
+     * 
+     * @param capacity
+     */
+    private void grow(int capacity) {
+
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        previousSibling = Arrays.copyOf(previousSibling, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        title = Arrays.copyOf(title, capacity);
+        text = Arrays.copyOf(text, capacity);
+    }
+
+    /**
+     * Forgets the last accessed child after the structure changed.
+     */
+    private void resetCursor() {
+        cursorParent = NONE;
+        cursorIndex = NONE;
+        cursorNode = NONE;
+    }
+}
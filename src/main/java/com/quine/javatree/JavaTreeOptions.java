@@ -0,0 +1,557 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+
+/**
+ * JavaTreeOptions holds settings that select how JavaTree application loads and saves documents. Default values can
+ * be overridden with system properties so different engines can be compared without rebuilding the application.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeOptions {
+
+    /**
+     * Engines that can be used to load XML documents.
+     */
+    public enum LoadEngine {
+        // parse the whole file into a DOM and convert it to a tree
+        DOM,
+        // create tree nodes directly from StAX events
+        STAX,
+        // read subtrees of the children of the root concurrently with StAX or the binary reader
+        PARALLEL
+    }
+
+    /**
+     * Engines that can be used to save XML documents.
+     */
+    public enum SaveEngine {
+        // build a DOM from the tree and write it out
+        DOM,
+        // write the tree directly with a StAX writer
+        STAX,
+        // write subtrees concurrently with StAX writers and gather them into the file in order
+        PARALLEL
+    }
+
+    /**
+     * How far saved documents are forced to the disk before they replace the original.
+     */
+    public enum Durability {
+        // leave writing to the disk to the operating system
+        NONE,
+        // force the content of the document
+        DATA,
+        // force the content and the metadata of the document and the directory entry of the move
+        METADATA
+    }
+
+    private LoadEngine loadEngine;
+    private SaveEngine saveEngine;
+
+    // indent saved XML documents
+    private boolean    saveIndent;
+
+    // how far saved documents are forced to the disk
+    private Durability saveDurability;
+
+    // show the tree while the rest of the document is still being read
+    private boolean    progressiveOpen;
+
+    // read children of nodes only when they are expanded
+    private boolean    lazyOpen;
+
+    // unload children of collapsed nodes of lazily opened documents when memory is needed
+    private boolean    lazyEviction;
+
+    // hold opened documents in a JavaTreeNodeStore instead of tree node objects
+    private boolean    compactStore;
+
+    // skip validation of XML documents whose checksum trailer shows they are unchanged since they were saved
+    private boolean    trustedOpen;
+
+    // record changes in a journal next to the document, so they survive a crash
+    private boolean    journal;
+
+    // save over the opened document only commits its journal, which leaves the document behind its journal until
+    // the journal is compacted
+    private boolean    journalSave;
+
+    // size of committed journal records over which the journal is applied to the document
+    private long       journalCompactSize;
+
+    // length of node texts from which they are shown without line wrap in a paged text document
+    private int        largeTextSize;
+
+    // show trees with fixed row height, large model layout and range folders for wide sibling lists
+    private boolean    largeTree;
+
+    // number of children in a range folder, 0 shows all children directly under their parent
+    private int        rangeSize;
+
+    // length of node texts from which they are kept in a spill file instead of the heap, 0 keeps all in the heap
+    private int        textSpillSize;
+
+    // number of characters of spilled texts kept in the heap cache
+    private long       textCacheSize;
+
+    // keep binary images of opened XML documents in cacheDirectory, up to cacheSize bytes
+    private boolean    cache;
+    private File       cacheDirectory;
+    private long       cacheSize;
+
+    /**
+     * Creates JavaTreeOptions with default values.
+     */
+    public JavaTreeOptions() {
+        loadEngine = LoadEngine.STAX;
+        saveEngine = SaveEngine.STAX;
+        saveIndent = true;
+        saveDurability = Durability.DATA;
+        progressiveOpen = true;
+        lazyOpen = false;
+        lazyEviction = true;
+        compactStore = false;
+        trustedOpen = false;
+        journal = true;
+        journalSave = false;
+        journalCompactSize = 16 * 1024 * 1024;
+        largeTextSize = 256 * 1024;
+        largeTree = true;
+        rangeSize = JavaTreeRangeTreeModel.DEFAULT_RANGE_SIZE;
+        textSpillSize = 64 * 1024;
+        textCacheSize = 4 * 1024 * 1024;
+        cache = false;
+        cacheDirectory = new File(System.getProperty("user.home"), ".javatree" + File.separator + "cache");
+        cacheSize = 1024L * 1024 * 1024;
+    }
+
+    /**
+     * Creates JavaTreeOptions with default values overridden by system properties.
+     * 
+     * @return options
+     */
+    public static JavaTreeOptions fromSystemProperties() {
+
+        JavaTreeOptions options = new JavaTreeOptions();
+
+        options.setLoadEngine(getEnumProperty("javatree.load.engine", LoadEngine.class, options.getLoadEngine()));
+        options.setSaveEngine(getEnumProperty("javatree.save.engine", SaveEngine.class, options.getSaveEngine()));
+        options.setSaveIndent(getBooleanProperty("javatree.save.indent", options.isSaveIndent()));
+        options.setSaveDurability(getEnumProperty("javatree.save.durability", Durability.class,
+                                                  options.getSaveDurability()));
+        options.setProgressiveOpen(getBooleanProperty("javatree.open.progressive", options.isProgressiveOpen()));
+        options.setLazyOpen(getBooleanProperty("javatree.open.lazy", options.isLazyOpen()));
+        options.setLazyEviction(getBooleanProperty("javatree.open.lazy.evict", options.isLazyEviction()));
+        options.setCompactStore(getBooleanProperty("javatree.open.compact", options.isCompactStore()));
+        options.setTrustedOpen(getBooleanProperty("javatree.open.trusted", options.isTrustedOpen()));
+        options.setJournal(getBooleanProperty("javatree.journal", options.isJournal()));
+        options.setJournalSave(getBooleanProperty("javatree.journal.save", options.isJournalSave()));
+        options.setJournalCompactSize(getLongProperty("javatree.journal.compact", options.getJournalCompactSize()));
+        options.setLargeTextSize((int) getLongProperty("javatree.text.large", options.getLargeTextSize()));
+        options.setLargeTree(getBooleanProperty("javatree.tree.large", options.isLargeTree()));
+        options.setRangeSize((int) getLongProperty("javatree.tree.range", options.getRangeSize()));
+        options.setTextSpillSize((int) getLongProperty("javatree.text.spill", options.getTextSpillSize()));
+        options.setTextCacheSize(getLongProperty("javatree.text.cache", options.getTextCacheSize()));
+        options.setCache(getBooleanProperty("javatree.cache", options.isCache()));
+        options.setCacheDirectory(getFileProperty("javatree.cache.dir", options.getCacheDirectory()));
+        options.setCacheSize(getLongProperty("javatree.cache.size", options.getCacheSize()));
+
+        return options;
+    }
+
+    /**
+     * @return the loadEngine
+     */
+    public LoadEngine getLoadEngine() {
+        return loadEngine;
+    }
+
+    /**
+     * @param loadEngine the loadEngine to set
+     */
+    public void setLoadEngine(LoadEngine loadEngine) {
+        this.loadEngine = loadEngine;
+    }
+
+    /**
+     * @return the saveEngine
+     */
+    public SaveEngine getSaveEngine() {
+        return saveEngine;
+    }
+
+    /**
+     * @param saveEngine the saveEngine to set
+     */
+    public void setSaveEngine(SaveEngine saveEngine) {
+        this.saveEngine = saveEngine;
+    }
+
+    /**
+     * @return true if saved XML documents are indented
+     */
+    public boolean isSaveIndent() {
+        return saveIndent;
+    }
+
+    /**
+     * @param saveIndent the saveIndent to set
+     */
+    public void setSaveIndent(boolean saveIndent) {
+        this.saveIndent = saveIndent;
+    }
+
+    /**
+     * @return how far saved documents are forced to the disk
+     */
+    public Durability getSaveDurability() {
+        return saveDurability;
+    }
+
+    /**
+     * @param saveDurability the saveDurability to set
+     */
+    public void setSaveDurability(Durability saveDurability) {
+        this.saveDurability = saveDurability;
+    }
+
+    /**
+     * @return true if documents are opened progressively. Progressive open is used only with STAX load engine.
+     */
+    public boolean isProgressiveOpen() {
+        return progressiveOpen;
+    }
+
+    /**
+     * @param progressiveOpen the progressiveOpen to set
+     */
+    public void setProgressiveOpen(boolean progressiveOpen) {
+        this.progressiveOpen = progressiveOpen;
+    }
+
+    /**
+     * @return true if documents are opened lazily. Lazy open takes precedence over load engine and progressive open.
+     */
+    public boolean isLazyOpen() {
+        return lazyOpen;
+    }
+
+    /**
+     * @param lazyOpen the lazyOpen to set
+     */
+    public void setLazyOpen(boolean lazyOpen) {
+        this.lazyOpen = lazyOpen;
+    }
+
+    /**
+     * @return true if children of collapsed nodes of lazily opened documents are unloaded when memory is needed
+     */
+    public boolean isLazyEviction() {
+        return lazyEviction;
+    }
+
+    /**
+     * @param lazyEviction the lazyEviction to set
+     */
+    public void setLazyEviction(boolean lazyEviction) {
+        this.lazyEviction = lazyEviction;
+    }
+
+    /**
+     * @return the compactStore
+     */
+    public boolean isCompactStore() {
+        return compactStore;
+    }
+
+    /**
+     * @param compactStore the compactStore to set
+     */
+    public void setCompactStore(boolean compactStore) {
+        this.compactStore = compactStore;
+    }
+
+    /**
+     * @return true if XML documents with a matching checksum trailer are opened without validation
+     */
+    public boolean isTrustedOpen() {
+        return trustedOpen;
+    }
+
+    /**
+     * @param trustedOpen the trustedOpen to set
+     */
+    public void setTrustedOpen(boolean trustedOpen) {
+        this.trustedOpen = trustedOpen;
+    }
+
+    /**
+     * @return true if changes are recorded in a journal next to the opened document
+     */
+    public boolean isJournal() {
+        return journal;
+    }
+
+    /**
+     * @param journal the journal to set
+     */
+    public void setJournal(boolean journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @return true if save over the opened document only commits its journal instead of writing the whole document
+     */
+    public boolean isJournalSave() {
+        return journalSave;
+    }
+
+    /**
+     * @param journalSave the journalSave to set
+     */
+    public void setJournalSave(boolean journalSave) {
+        this.journalSave = journalSave;
+    }
+
+    /**
+     * @return size of committed journal records in bytes over which the journal is compacted
+     */
+    public long getJournalCompactSize() {
+        return journalCompactSize;
+    }
+
+    /**
+     * @param journalCompactSize the journalCompactSize to set
+     */
+    public void setJournalCompactSize(long journalCompactSize) {
+        this.journalCompactSize = journalCompactSize;
+    }
+
+    /**
+     * @return length of node texts in characters from which they are shown without line wrap
+     */
+    public int getLargeTextSize() {
+        return largeTextSize;
+    }
+
+    /**
+     * @param largeTextSize the largeTextSize to set
+     */
+    public void setLargeTextSize(int largeTextSize) {
+        this.largeTextSize = largeTextSize;
+    }
+
+    /**
+     * @return true if trees are shown in high-scale mode, with fixed row height and range folders
+     */
+    public boolean isLargeTree() {
+        return largeTree;
+    }
+
+    /**
+     * @param largeTree the largeTree to set
+     */
+    public void setLargeTree(boolean largeTree) {
+        this.largeTree = largeTree;
+    }
+
+    /**
+     * @return number of children in a range folder of a tree shown in high-scale mode, 0 if children are not grouped
+     */
+    public int getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * @param rangeSize the rangeSize to set
+     */
+    public void setRangeSize(int rangeSize) {
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @return length of node texts in characters from which they are spilled to a file, 0 if texts are not spilled
+     */
+    public int getTextSpillSize() {
+        return textSpillSize;
+    }
+
+    /**
+     * @param textSpillSize the textSpillSize to set
+     */
+    public void setTextSpillSize(int textSpillSize) {
+        this.textSpillSize = textSpillSize;
+    }
+
+    /**
+     * @return number of characters of spilled texts kept in the heap cache
+     */
+    public long getTextCacheSize() {
+        return textCacheSize;
+    }
+
+    /**
+     * @param textCacheSize the textCacheSize to set
+     */
+    public void setTextCacheSize(long textCacheSize) {
+        this.textCacheSize = textCacheSize;
+    }
+
+    /**
+     * @return true if binary images of opened XML documents are kept in the cache directory
+     */
+    public boolean isCache() {
+        return cache;
+    }
+
+    /**
+     * @param cache the cache to set
+     */
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return directory that holds binary images of opened XML documents
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * @param cacheDirectory the cacheDirectory to set
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * @return size in bytes over which least recently used images are deleted from the cache directory
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @param cacheSize the cacheSize to set
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Reads file from system property. Returns defaultValue if property is not set or is empty.
+     * 
+     * @param name
+     * @param defaultValue
+     * 
+     * @return value
+     */
+    private static File getFileProperty(String name, File defaultValue) {
+
+        String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        return new File(value.trim());
+    }
+
+    /**
+     * Reads boolean value from system property. Returns defaultValue if property is not set.
+     * 
+     * @param name
+     * @param defaultValue
+     * 
+     * @return value
+     */
+    private static boolean getBooleanProperty(String name, boolean defaultValue) {
+
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Reads long value from system property. Returns defaultValue if property is not set or is not valid.
+     * 
+     * @param name
+     * @param defaultValue
+     * 
+     * @return value
+     */
+    private static long getLongProperty(String name, long defaultValue) {
+
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads enum value from system property. Returns defaultValue if property is not set or is not valid.
+     * 
+     * @param name
+     * @param type
+     * @param defaultValue
+     * 
+     * @return value
+     */
+    private static <E extends Enum<E>> E getEnumProperty(String name, Class<E> type, E defaultValue) {
+
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+}
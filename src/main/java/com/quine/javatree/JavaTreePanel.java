@@ -26,17 +26,26 @@
  */
 package com.quine.javatree;
 
+import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.event.ActionListener;
 
+import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.JTree;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
 
 /**
  * JavaTreePanel class extends JPanel class and contains in it self a JScrollPane which displays the tree and JTextField
@@ -53,18 +62,33 @@ import javax.swing.JTree;
 public class JavaTreePanel extends JPanel {
     private static final long serialVersionUID = 8348988696970897749L;
 
+    private JTextField        searchField;
     private JTextField        textField;
     private JTextArea         textArea;
+    private JScrollPane       textView;
     private JScrollPane       treeView;
+    private DocumentListener  textListener;
+
+    // texts this long or longer are shown in a JavaTreeTextDocument without line wrap
+    private int               largeTextSize;
+
+    // true if user changed the title or the text since they were set
+    private boolean           titleModified;
+    private boolean           textModified;
 
     /**
      * Creates TreeLinePanel
      */
     public JavaTreePanel(JTree tree) {
+        largeTextSize = Integer.MAX_VALUE;
+
         // set TreeLine Panel layout
         BoxLayout layout = new BoxLayout(this, BoxLayout.Y_AXIS);
         setLayout(layout);
 
+        // Set up search field above the tree
+        add(setSearchPanel());
+
         // Set up tree in Scroll Pane
         treeView = new JScrollPane(tree);
 
@@ -83,7 +107,24 @@ public class JavaTreePanel extends JPanel {
     public void setTree(JTree tree) {
         treeView.setViewportView(tree);
         textField.setText("");
-        textArea.setText("");
+        setTextArea("");
+        clearModified();
+    }
+
+    /**
+     * @return the searchField text
+     */
+    public String getSearchText() {
+        return searchField.getText();
+    }
+
+    /**
+     * Adds listener that is notified when user asks for a search.
+     * 
+     * @param listener
+     */
+    public void addSearchListener(ActionListener listener) {
+        searchField.addActionListener(listener);
     }
 
     /**
@@ -98,6 +139,14 @@ public class JavaTreePanel extends JPanel {
      */
     public void setTextField(String text) {
         textField.setText(text);
+        titleModified = false;
+    }
+
+    /**
+     * @return true if user changed the textField text since it was set
+     */
+    public boolean isTitleModified() {
+        return titleModified;
     }
 
     /**
@@ -108,10 +157,76 @@ public class JavaTreePanel extends JPanel {
     }
 
     /**
+     * Sets text to textArea. Texts of largeTextSize or longer are shown in a JavaTreeTextDocument, which does not copy
+     * the text and reads only the lines that are displayed. Line wrap needs the whole text laid out, so it is turned
+     * off for them.
+     * 
      * @param text to set to textArea
      */
     public void setTextArea(String text) {
-        textArea.setText(text);
+        if (text.length() >= largeTextSize) {
+            setTextDocument(new JavaTreeTextDocument(text), false);
+        } else {
+            if (textArea.getDocument() instanceof JavaTreeTextDocument) {
+                setTextDocument(new PlainDocument(), true);
+            }
+            textArea.setText(text);
+        }
+        textModified = false;
+    }
+
+    /**
+     * @param largeTextSize length from which texts are shown without line wrap in a JavaTreeTextDocument
+     */
+    public void setLargeTextSize(int largeTextSize) {
+        this.largeTextSize = largeTextSize;
+    }
+
+    /**
+     * @return true if user changed the textArea text since it was set
+     */
+    public boolean isTextModified() {
+        return textModified;
+    }
+
+    /**
+     * Marks textField and textArea texts as not modified, after they were copied to a node.
+     */
+    public void clearModified() {
+        titleModified = false;
+        textModified = false;
+    }
+
+    /**
+     * Replaces textArea document and moves textListener to it.
+     */
+    private void setTextDocument(Document document, boolean lineWrap) {
+        textArea.getDocument().removeDocumentListener(textListener);
+        textArea.setLineWrap(lineWrap);
+        textView.setHorizontalScrollBarPolicy(lineWrap ? JScrollPane.HORIZONTAL_SCROLLBAR_NEVER
+                                                      : JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        textArea.setDocument(document);
+        document.addDocumentListener(textListener);
+    }
+
+    /**
+     * Creates and sets up searchPanel
+     * 
+     * @return searchPanel
+     */
+    private JPanel setSearchPanel() {
+        JPanel searchPanel = new JPanel(new BorderLayout(3, 3));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+
+        searchField = new JTextField();
+        searchField.setToolTipText("Words to find in titles and texts, press Enter to search");
+        searchPanel.add(new JLabel("Search"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+
+        // keep the search panel from growing vertically
+        searchPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, searchPanel.getPreferredSize().height));
+
+        return searchPanel;
     }
 
     /**
@@ -136,10 +251,37 @@ public class JavaTreePanel extends JPanel {
         c.insets = new Insets(3, 3, 3, 3);
         c.fill = GridBagConstraints.HORIZONTAL;
         textPanel.add(textField, c);
+        textField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                titleModified = true;
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                titleModified = true;
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                // attribute changes do not change the title
+            }
+        });
 
         textArea = new JTextArea();
         textArea.setLineWrap(true);
         textArea.setWrapStyleWord(true);
+        textListener = new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                textModified = true;
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                textModified = true;
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                // attribute changes do not change the text
+            }
+        };
+        textArea.getDocument().addDocumentListener(textListener);
         c.gridx = 0;
         c.gridy = 1;
         c.gridwidth = GridBagConstraints.REMAINDER;
@@ -147,9 +289,10 @@ public class JavaTreePanel extends JPanel {
         c.weightx = 1;
         c.weighty = 1;
         c.fill = GridBagConstraints.BOTH;
-        textPanel.add(new JScrollPane(textArea,
-                                      JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
-                                      JScrollPane.HORIZONTAL_SCROLLBAR_NEVER), c);
+        textView = new JScrollPane(textArea,
+                                   JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+                                   JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        textPanel.add(textView, c);
 
         return textPanel;
     }
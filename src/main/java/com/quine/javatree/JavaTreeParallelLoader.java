@@ -0,0 +1,475 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+
+/**
+ * JavaTreeParallelLoader reads large documents with all threads of the common fork join pool. The children of the
+ * root node are found first, then they are split into chunks of about the same number of bytes that are read
+ * concurrently into detached subtrees. Subtrees are attached to the root in document order, so the tree is the same
+ * as the one read by a single thread.
+ * 
+ * Children of the root of XML documents are found by a JavaTreeXMLIndex scan that records only the root and its
+ * children, and each chunk is read from its byte range by a JavaTreeStreamLoader. Children of the root of segmented
+ * documents are the segments of the segment table, and each chunk is read by a JavaTreeBinaryReader. Small documents
+ * and documents whose root has less than two children are read by a single thread.
+ * 
+ * XML chunks are checked against the compiled grammar of sibling Node elements while they are read, and the rest of
+ * the document, the prolog, the root node without its children and what follows it, against the grammar of whole
+ * documents. A trusted load skips both when the scan shows that the checksum trailer of the document matches.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeParallelLoader {
+    // documents smaller than this are read by a single thread
+    private final static long MIN_PARALLEL_SIZE = 4 * 1024 * 1024;
+
+    // chunks are not made smaller than this, unless a single child is smaller
+    private final static long MIN_CHUNK_SIZE    = 256 * 1024;
+
+    // number of chunks per thread, so threads that finish early take over chunks of the others
+    private final static int  CHUNKS_PER_THREAD = 4;
+
+    // nodes a chunk reads before it reports them and its bytes to progress
+    private final static int  REPORT_NODES      = 4096;
+
+    // size of the buffer used to read a chunk of an XML document
+    private final static int  BUFFER_SIZE       = 64 * 1024;
+
+    private FileChannel       channel;
+    private JavaTreeProgress  progress;
+
+    // true for segmented documents, false for XML documents
+    private boolean           segmented;
+
+    // check chunks of XML documents against the compiled grammar
+    private boolean           validating;
+
+    // offset and length of every child of the root and, for segmented documents, its number of nodes
+    private long[]            offsets;
+    private long[]            lengths;
+    private long[]            nodeCounts;
+
+    // set when a chunk fails, so the others stop, and the exception of the first chunk that failed
+    private volatile boolean  failed;
+    private Exception         failure;
+
+    /**
+     * Creates JavaTreeParallelLoader that reads children of the root from channel.
+     * 
+     * @param channel
+     * @param segmented
+     * @param progress
+     */
+    private JavaTreeParallelLoader(FileChannel channel, boolean segmented, JavaTreeProgress progress) {
+        this.channel = channel;
+        this.segmented = segmented;
+        this.progress = progress;
+        validating = true;
+        failed = false;
+        failure = null;
+    }
+
+    /**
+     * Reads an XML document and returns root node of the tree. Document is validated unless trusted is true and its
+     * checksum trailer matches. Read bytes and nodes are reported to progress and reading stops with
+     * CancellationException when progress is cancelled.
+     * 
+     * @param file
+     * @param trusted
+     * @param progress
+     * 
+     * @return root
+     * 
+     * @throws Exception
+     */
+    public static DefaultMutableTreeNode load(File file, boolean trusted, final JavaTreeProgress progress)
+            throws Exception {
+
+        progress.setTotalBytes(file.length());
+        if (file.length() < MIN_PARALLEL_SIZE || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return loadSequentially(file, trusted, progress);
+        }
+
+        // scanned bytes are not reported, as the chunks report them again when they are read
+        JavaTreeXMLIndex index = JavaTreeXMLIndex.scan(file, 2, new JavaTreeProgress() {
+            @Override
+            public void checkCancelled() {
+                progress.checkCancelled();
+            }
+        });
+
+        List<Integer> children = new ArrayList<Integer>();
+        for (int child = index.getFirstChild(0); child >= 0; child = index.getNextSibling(child)) {
+            children.add(Integer.valueOf(child));
+        }
+        if (children.size() < 2) {
+            return loadSequentially(file, trusted, progress);
+        }
+
+        try (FileChannel channel = index.openChannel()) {
+            JavaTreeNodeObject rootObject = new JavaTreeStreamLoader()
+                    .readRoot(new BufferedInputStream(new RangeInputStream(channel, 0, index.getEnd(0)), BUFFER_SIZE));
+            if (rootObject == null) {
+                return loadSequentially(file, trusted, progress);
+            }
+
+            boolean validating = !(trusted && index.isTrusted());
+            if (validating) {
+                // the document without the children of the root is a document too
+                long first = index.getStart(children.get(0).intValue());
+                long last = index.getEnd(children.get(children.size() - 1).intValue());
+                InputStream shell = new SequenceInputStream(new RangeInputStream(channel, 0, first),
+                                                            new RangeInputStream(channel, last, channel.size()));
+                new JavaTreeStreamLoader().check(new BufferedInputStream(shell, BUFFER_SIZE), progress);
+            }
+
+            JavaTreeParallelLoader loader = new JavaTreeParallelLoader(channel, false, progress);
+            loader.validating = validating;
+            loader.offsets = new long[children.size()];
+            loader.lengths = new long[children.size()];
+            for (int child = 0; child < children.size(); child++) {
+                int node = children.get(child).intValue();
+                loader.offsets[child] = index.getStart(node);
+                loader.lengths[child] = index.getEnd(node) - index.getStart(node);
+            }
+
+            DefaultMutableTreeNode root = loader.loadChildren(rootObject);
+            // prolog and end of the document are not part of any chunk
+            progress.addBytes(file.length() - index.getEnd(children.get(children.size() - 1).intValue())
+                              + index.getStart(children.get(0).intValue()));
+            return root;
+        }
+    }
+
+    /**
+     * Reads a segmented document and returns root node of the tree. Read bytes and nodes are reported to progress
+     * and reading stops with CancellationException when progress is cancelled.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return root
+     * 
+     * @throws Exception
+     */
+    public static DefaultMutableTreeNode loadSegmented(File file, JavaTreeProgress progress) throws Exception {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(channel);
+            if (table.getSegmentBytes() >= MIN_PARALLEL_SIZE && table.getSegmentCount() >= 2
+                && ForkJoinPool.getCommonPoolParallelism() >= 2) {
+                progress.setTotalBytes(table.getSegmentBytes());
+
+                JavaTreeParallelLoader loader = new JavaTreeParallelLoader(channel, true, progress);
+                int count = table.getSegmentCount();
+                loader.offsets = new long[count];
+                loader.lengths = new long[count];
+                loader.nodeCounts = new long[count];
+                for (int segment = 0; segment < count; segment++) {
+                    loader.offsets[segment] = table.getOffset(segment);
+                    loader.lengths[segment] = table.getLength(segment);
+                    loader.nodeCounts[segment] = table.getNodeCount(segment);
+                }
+
+                return loader.loadChildren(new JavaTreeNodeObject(table.getRootTitle(), table.getRootText()));
+            }
+        }
+
+        JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+        JavaTreeSegmentedReader.load(file, builder, progress);
+        return builder.getRoot();
+    }
+
+    /**
+     * Reads an XML document with a single thread.
+     * 
+     * @param file
+     * @param trusted
+     * @param progress
+     * 
+     * @return root
+     * 
+     * @throws Exception
+     */
+    private static DefaultMutableTreeNode loadSequentially(File file, boolean trusted, JavaTreeProgress progress)
+            throws Exception {
+
+        JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+        JavaTreeStreamLoader loader = new JavaTreeStreamLoader();
+        loader.setTrusted(trusted);
+        loader.load(file, builder, progress);
+        return builder.getRoot();
+    }
+
+    /**
+     * Splits children of the root into chunks, reads the chunks in the common fork join pool and attaches their
+     * subtrees to a new root node in document order.
+     * 
+     * @param rootObject
+     * 
+     * @return root
+     * 
+     * @throws Exception
+     */
+    private DefaultMutableTreeNode loadChildren(JavaTreeNodeObject rootObject) throws Exception {
+
+        long totalLength = 0;
+        for (int child = 0; child < lengths.length; child++) {
+            totalLength += lengths[child];
+        }
+        long chunkSize = Math.max(MIN_CHUNK_SIZE,
+                                  totalLength / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD));
+
+        List<Callable<DefaultMutableTreeNode>> tasks = new ArrayList<Callable<DefaultMutableTreeNode>>();
+        int start = 0;
+        long length = 0;
+        for (int child = 0; child < lengths.length; child++) {
+            length += lengths[child];
+            if (length >= chunkSize || child == lengths.length - 1) {
+                final int from = start;
+                final int to = child + 1;
+                tasks.add(new Callable<DefaultMutableTreeNode>() {
+                    public DefaultMutableTreeNode call() throws Exception {
+                        try {
+                            return loadChunk(from, to);
+                        } catch (Exception e) {
+                            fail(e);
+                            throw e;
+                        } catch (Error e) {
+                            failed = true;
+                            throw e;
+                        }
+                    }
+                });
+                start = to;
+                length = 0;
+            }
+        }
+
+        List<Future<DefaultMutableTreeNode>> chunks = ForkJoinPool.commonPool().invokeAll(tasks);
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<DefaultMutableTreeNode> holders = new ArrayList<DefaultMutableTreeNode>();
+        for (Future<DefaultMutableTreeNode> chunk : chunks) {
+            try {
+                holders.add(chunk.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        progress.checkCancelled();
+
+        DefaultMutableTreeNode root = new JavaTreeNode(rootObject);
+        progress.addNode();
+        for (DefaultMutableTreeNode holder : holders) {
+            MutableTreeNode[] subtrees = new MutableTreeNode[holder.getChildCount()];
+            for (int child = 0; child < subtrees.length; child++) {
+                subtrees[child] = (MutableTreeNode) holder.getChildAt(child);
+            }
+            holder.removeAllChildren();
+            for (MutableTreeNode subtree : subtrees) {
+                root.add(subtree);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Records the exception of the first chunk that failed and stops the others.
+     * 
+     * @param exception
+     */
+    private synchronized void fail(Exception exception) {
+        if (failure == null) {
+            failure = exception;
+        }
+        failed = true;
+    }
+
+    /**
+     * Reads children of the root with indexes from from up to, but not including, to and returns a node that holds
+     * their subtrees.
+     * 
+     * @param from
+     * @param to
+     * 
+     * @return holder
+     * 
+     * @throws Exception
+     */
+    private DefaultMutableTreeNode loadChunk(int from, int to) throws Exception {
+
+        TaskProgress taskProgress = new TaskProgress();
+        JavaTreeNodeBuilder builder = new JavaTreeNodeBuilder();
+        builder.startNode("", "");
+
+        if (segmented) {
+            JavaTreeBinaryReader reader = new JavaTreeBinaryReader(channel, taskProgress);
+            for (int segment = from; segment < to; segment++) {
+                long nodes = reader.readTree(offsets[segment], offsets[segment] + lengths[segment], builder);
+                if (nodes != nodeCounts[segment]) {
+                    throw new IOException("Segment " + segment + " has " + nodes + " nodes, table says "
+                                          + nodeCounts[segment]);
+                }
+            }
+        } else {
+            // chunk ends where the next one starts, so whitespace between children is read and reported too
+            long end = to < offsets.length ? offsets[to] : offsets[to - 1] + lengths[to - 1];
+            InputStream input = new BufferedInputStream(new RangeInputStream(channel, offsets[from], end),
+                                                        BUFFER_SIZE);
+            JavaTreeStreamLoader loader = new JavaTreeStreamLoader();
+            loader.setValidating(validating);
+            loader.loadNodes(taskProgress.track(input), builder, taskProgress);
+        }
+
+        builder.endNode();
+        taskProgress.report();
+        return builder.getRoot();
+    }
+
+    /**
+     * TaskProgress counts bytes and nodes of one chunk and adds them to the progress of the load in batches, so
+     * chunks do not update it concurrently for every node. Chunk stops when the load is cancelled or another chunk
+     * fails.
+     */
+    private class TaskProgress extends JavaTreeProgress {
+        private long pendingBytes;
+        private long pendingNodes;
+
+        @Override
+        public void addBytes(long count) {
+            pendingBytes += count;
+        }
+
+        @Override
+        public void addNode() {
+            pendingNodes++;
+            if (pendingNodes == REPORT_NODES) {
+                report();
+            }
+        }
+
+        @Override
+        public void checkCancelled() {
+            if (failed) {
+                throw new CancellationException();
+            }
+            progress.checkCancelled();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return failed || progress.isCancelled();
+        }
+
+        /**
+         * Adds counted bytes and nodes to the progress of the load.
+         */
+        public void report() {
+            synchronized (progress) {
+                progress.addBytes(pendingBytes);
+                progress.addNodes(pendingNodes);
+            }
+            pendingBytes = 0;
+            pendingNodes = 0;
+        }
+    }
+
+    /**
+     * RangeInputStream reads a range of bytes of a file channel with positional reads, so several streams can read
+     * from the same channel concurrently.
+     */
+    private static class RangeInputStream extends InputStream {
+        private FileChannel channel;
+        private long        position;
+        private long        end;
+
+        /**
+         * Creates RangeInputStream that reads bytes from position to the byte before end.
+         * 
+         * @param channel
+         * @param position
+         * @param end
+         */
+        public RangeInputStream(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] value = new byte[1];
+            return read(value, 0, 1) < 0 ? -1 : value[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            if (position >= end) {
+                return -1;
+            }
+            int count = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)),
+                                     position);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * JavaTreeParallelWriter writes large trees to XML documents with all threads of the common fork join pool. The
+ * structure of the tree is copied first, so the writing threads never walk the tree. The copy is split into units of
+ * consecutive sibling subtrees of about the same number of nodes. Subtrees with more nodes than a unit holds are
+ * split further, and their own start and end tags are written between the units of their children.
+ * 
+ * Units are written concurrently by JavaTreeStreamWriter instances into direct byte buffers taken from a pool. The
+ * buffers are written to the file in document order with gathering writes and then returned to the pool. Only a
+ * limited number of units are written ahead of the one the file is waiting for, so buffers of the whole document
+ * are never held at once. Every unit is written with the indentation it has in the whole document, so the file is
+ * the same as the one written by a single JavaTreeStreamWriter. Small trees are written by a single thread.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeParallelWriter {
+    // trees with fewer nodes are written by a single thread
+    private final static int MIN_PARALLEL_NODES = 16 * 1024;
+
+    // units are not made smaller than this, unless a single subtree is smaller
+    private final static int MIN_UNIT_NODES     = 1024;
+
+    // number of units per thread, so threads that finish early take over units of the others
+    private final static int UNITS_PER_THREAD   = 4;
+
+    // number of units per thread that are written ahead of the unit the file is waiting for
+    private final static int UNITS_AHEAD        = 2;
+
+    // size of the pooled buffers
+    private final static int BUFFER_SIZE        = 64 * 1024;
+
+    // kinds of steps of the plan
+    private final static int START              = 0;
+    private final static int END                = 1;
+    private final static int UNIT               = 2;
+
+    private boolean           indent;
+
+    // copy of the tree in preorder: node objects, number of ancestors and number of nodes in the subtree of each node
+    private Object[]          nodeObjects;
+    private int[]             depths;
+    private int[]             sizes;
+    private int               count;
+
+    // steps of the plan in document order, each is a kind followed by its node, or the first node and the end of its
+    // unit
+    private int[]             plan;
+    private int               planLength;
+
+    // buffers that are not in use
+    private Deque<ByteBuffer> pool;
+
+    // set when a unit fails, and the exception of the first unit that failed
+    private volatile boolean  failed;
+    private Exception         failure;
+
+    /**
+     * Creates JavaTreeParallelWriter.
+     * 
+     * @param indent
+     */
+    private JavaTreeParallelWriter(boolean indent) {
+        this.indent = indent;
+        pool = new ArrayDeque<ByteBuffer>();
+        failed = false;
+        failure = null;
+    }
+
+    /**
+     * Writes a tree to a channel at its current position. Written bytes and nodes are reported to progress and
+     * writing stops with CancellationException when progress is cancelled. Channel is not closed.
+     * 
+     * @param root
+     * @param channel
+     * @param indent
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public static void write(DefaultMutableTreeNode root, GatheringByteChannel channel, boolean indent,
+                             JavaTreeProgress progress) throws Exception {
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        JavaTreeParallelWriter writer = new JavaTreeParallelWriter(indent);
+        writer.copyTree(root);
+        if (writer.count < MIN_PARALLEL_NODES || parallelism < 2) {
+            JavaTreeStreamWriter.write(root, channel, indent, progress);
+            return;
+        }
+
+        writer.createPlan(Math.max(MIN_UNIT_NODES, writer.count / (parallelism * UNITS_PER_THREAD)));
+        writer.writePlan(channel, parallelism * UNITS_AHEAD, progress);
+    }
+
+    /**
+     * Copies node objects and structure of the tree in preorder, without recursion.
+     * 
+     * @param root
+     */
+    private void copyTree(DefaultMutableTreeNode root) {
+
+        int capacity = 1024;
+        nodeObjects = new Object[capacity];
+        depths = new int[capacity];
+        sizes = new int[capacity];
+        count = 0;
+
+        // preorder numbers of the nodes on the path to the current node
+        int[] path = new int[64];
+
+        JavaTreeTraversal traversal = new JavaTreeTraversal(root);
+        while (traversal.next()) {
+            int depth = traversal.getDepth();
+            if (traversal.isEntering()) {
+                if (count == capacity) {
+                    capacity *= 2;
+                    nodeObjects = Arrays.copyOf(nodeObjects, capacity);
+                    depths = Arrays.copyOf(depths, capacity);
+                    sizes = Arrays.copyOf(sizes, capacity);
+                }
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                nodeObjects[count] = ((DefaultMutableTreeNode) traversal.getNode()).getUserObject();
+                depths[count] = depth;
+                path[depth] = count;
+                count++;
+            } else {
+                sizes[path[depth]] = count - path[depth];
+            }
+        }
+    }
+
+    /**
+     * Creates the plan. Subtrees with more than unitNodes nodes get start and end steps and their children are
+     * planned in between, smaller consecutive sibling subtrees are grouped into units of at most unitNodes nodes.
+     * 
+     * @param unitNodes
+     */
+    private void createPlan(int unitNodes) {
+
+        plan = new int[48];
+        planLength = 0;
+
+        // nodes with start steps whose end steps are not planned yet
+        Deque<Integer> open = new ArrayDeque<Integer>();
+        int unitStart = -1;
+        int unitSize = 0;
+
+        int node = 0;
+        while (node < count || !open.isEmpty()) {
+            // end subtrees that have no more nodes
+            if (!open.isEmpty() && (node == count || node >= open.peek().intValue() + sizes[open.peek().intValue()])) {
+                addUnit(unitStart, unitSize);
+                unitStart = -1;
+                addStep(END, open.pop().intValue(), 0);
+                continue;
+            }
+
+            if (sizes[node] > unitNodes) {
+                addUnit(unitStart, unitSize);
+                unitStart = -1;
+                addStep(START, node, 0);
+                open.push(Integer.valueOf(node));
+                node++;
+            } else {
+                if (unitStart >= 0 && unitSize + sizes[node] > unitNodes) {
+                    addUnit(unitStart, unitSize);
+                    unitStart = -1;
+                }
+                if (unitStart < 0) {
+                    unitStart = node;
+                    unitSize = 0;
+                }
+                unitSize += sizes[node];
+                node += sizes[node];
+            }
+        }
+        addUnit(unitStart, unitSize);
+    }
+
+    /**
+     * Adds a unit step for the subtrees from start if there are any.
+     * 
+     * @param start
+     * @param size
+     */
+    private void addUnit(int start, int size) {
+        if (start >= 0) {
+            addStep(UNIT, start, start + size);
+        }
+    }
+
+    /**
+     * Adds a step to the plan.
+     * 
+     * @param kind
+     * @param first
+     * @param second
+     */
+    private void addStep(int kind, int first, int second) {
+
+        if (planLength + 3 > plan.length) {
+            plan = Arrays.copyOf(plan, plan.length * 2);
+        }
+        plan[planLength++] = kind;
+        plan[planLength++] = first;
+        plan[planLength++] = second;
+    }
+
+    /**
+     * Writes the document following the plan. Start and end steps are written on the calling thread, units are
+     * written in the common fork join pool at most ahead units in advance.
+     * 
+     * @param channel
+     * @param ahead
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    private void writePlan(GatheringByteChannel channel, int ahead, JavaTreeProgress progress) throws Exception {
+
+        List<Integer> units = new ArrayList<Integer>();
+        for (int step = 0; step < planLength; step += 3) {
+            if (plan[step] == UNIT) {
+                units.add(Integer.valueOf(step));
+            }
+        }
+        List<Future<List<ByteBuffer>>> written = new ArrayList<Future<List<ByteBuffer>>>();
+
+        BufferOutputStream output = new BufferOutputStream();
+        JavaTreeStreamWriter writer = new JavaTreeStreamWriter(output, indent);
+        writer.setProgress(progress);
+
+        try {
+            writer.startDocument();
+            int unit = 0;
+            for (int step = 0; step < planLength; step += 3) {
+                if (plan[step] == START) {
+                    JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) nodeObjects[plan[step + 1]];
+                    writer.startNode(nodeObject.getTitle(), nodeObject.getText());
+                } else if (plan[step] == END) {
+                    writer.endNode();
+                } else {
+                    while (written.size() < units.size() && written.size() <= unit + ahead) {
+                        final int unitStep = units.get(written.size()).intValue();
+                        written.add(ForkJoinPool.commonPool().submit(new Callable<List<ByteBuffer>>() {
+                            public List<ByteBuffer> call() throws Exception {
+                                try {
+                                    return writeUnit(plan[unitStep + 1], plan[unitStep + 2]);
+                                } catch (Exception e) {
+                                    fail(e);
+                                    throw e;
+                                } catch (Error e) {
+                                    failed = true;
+                                    throw e;
+                                }
+                            }
+                        }));
+                    }
+
+                    writer.flush();
+                    List<ByteBuffer> buffers = output.take();
+                    buffers.addAll(getUnit(written.get(unit)));
+                    written.set(unit, null);
+                    writeBuffers(channel, buffers, progress);
+                    progress.addNodes(plan[step + 2] - plan[step + 1]);
+                    unit++;
+                }
+            }
+            writer.endDocument();
+            writeBuffers(channel, output.take(), progress);
+        } finally {
+            // units still being written stop at their next node
+            failed = true;
+            for (Future<List<ByteBuffer>> future : written) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the subtrees from first node up to, but not including, last node into buffers.
+     * 
+     * @param first
+     * @param last
+     * 
+     * @return buffers
+     * 
+     * @throws Exception
+     */
+    private List<ByteBuffer> writeUnit(int first, int last) throws Exception {
+
+        BufferOutputStream output = new BufferOutputStream();
+        JavaTreeStreamWriter writer = new JavaTreeStreamWriter(output, indent);
+
+        int depth = depths[first];
+        writer.setDepth(depth);
+        for (int node = first; node < last; node++) {
+            if (failed) {
+                throw new IOException("Writing stopped.");
+            }
+            for (; depth > depths[node]; depth--) {
+                writer.endNode();
+            }
+            JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) nodeObjects[node];
+            writer.startNode(nodeObject.getTitle(), nodeObject.getText());
+            depth++;
+        }
+        for (; depth > depths[first]; depth--) {
+            writer.endNode();
+        }
+        writer.flush();
+
+        return output.take();
+    }
+
+    /**
+     * Waits for a unit to be written and returns its buffers. Throws the exception of the first unit that failed.
+     * 
+     * @param unit
+     * 
+     * @return buffers
+     * 
+     * @throws Exception
+     */
+    private List<ByteBuffer> getUnit(Future<List<ByteBuffer>> unit) throws Exception {
+
+        try {
+            return unit.get();
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Records the exception of the first unit that failed and stops the others.
+     * 
+     * @param exception
+     */
+    private synchronized void fail(Exception exception) {
+        if (failure == null) {
+            failure = exception;
+        }
+        failed = true;
+    }
+
+    /**
+     * Writes buffers to the channel with gathering writes and returns them to the pool.
+     * 
+     * @param channel
+     * @param buffers
+     * @param progress
+     * 
+     * @throws IOException
+     */
+    private void writeBuffers(GatheringByteChannel channel, List<ByteBuffer> buffers, JavaTreeProgress progress)
+            throws IOException {
+
+        progress.checkCancelled();
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[buffers.size()]);
+        int first = 0;
+        while (first < array.length) {
+            progress.addBytes(channel.write(array, first, array.length - first));
+            while (first < array.length && !array[first].hasRemaining()) {
+                first++;
+            }
+        }
+        for (ByteBuffer buffer : array) {
+            release(buffer);
+        }
+    }
+
+    /**
+     * @return empty buffer from the pool or a new one if the pool is empty
+     */
+    private synchronized ByteBuffer allocate() {
+        ByteBuffer buffer = pool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Returns buffer to the pool.
+     * 
+     * @param buffer
+     */
+    private synchronized void release(ByteBuffer buffer) {
+        buffer.clear();
+        pool.push(buffer);
+    }
+
+    /**
+     * BufferOutputStream collects written bytes in buffers taken from the pool.
+     */
+    private class BufferOutputStream extends OutputStream {
+        private List<ByteBuffer> buffers;
+        private ByteBuffer       current;
+
+        /**
+         * Creates BufferOutputStream with no buffers.
+         */
+        public BufferOutputStream() {
+            buffers = new ArrayList<ByteBuffer>();
+            current = null;
+        }
+
+        @Override
+        public void write(int value) {
+            if (current == null || !current.hasRemaining()) {
+                current = allocate();
+                buffers.add(current);
+            }
+            current.put((byte) value);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    current = allocate();
+                    buffers.add(current);
+                }
+                int part = Math.min(length, current.remaining());
+                current.put(bytes, offset, part);
+                offset += part;
+                length -= part;
+            }
+        }
+
+        /**
+         * Returns buffers with the bytes written since the last call, ready to be read.
+         * 
+         * @return buffers
+         */
+        public List<ByteBuffer> take() {
+            List<ByteBuffer> taken = buffers;
+            for (ByteBuffer buffer : taken) {
+                buffer.flip();
+            }
+            buffers = new ArrayList<ByteBuffer>();
+            current = null;
+            return taken;
+        }
+    }
+}
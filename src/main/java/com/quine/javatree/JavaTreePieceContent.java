@@ -0,0 +1,347 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * JavaTreePieceContent is document content kept as a piece table. Original text is referenced, not copied, and
+ * inserted text is appended to a separate buffer. Content is a sequence of pieces, each a range of the original text
+ * or of the buffer, so an edit only splits pieces. Characters are copied out of the original text only for the
+ * ranges that are asked for, which for a text component are the lines it shows.
+ * 
+ * As required by AbstractDocument, content always ends with a newline that is not part of the original text.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreePieceContent implements AbstractDocument.Content {
+    private CharSequence                   original;
+    private StringBuilder                  added;
+
+    // source, start and length of every piece, source is false for the original text and true for added text
+    private boolean[]                      pieceAdded;
+    private int[]                          pieceStart;
+    private int[]                          pieceLength;
+    private int                            pieceCount;
+
+    private int                            length;
+
+    // positions handed out by createPosition
+    private List<WeakReference<Mark>>      marks;
+
+    // piece found by the last lookup and its offset in the content
+    private int                            lastPiece;
+    private int                            lastPieceOffset;
+
+    /**
+     * Creates JavaTreePieceContent over original text.
+     * 
+     * @param original
+     */
+    public JavaTreePieceContent(CharSequence original) {
+        this.original = original;
+        added = new StringBuilder("\n");
+        pieceAdded = new boolean[16];
+        pieceStart = new int[16];
+        pieceLength = new int[16];
+        pieceCount = 0;
+        if (original.length() > 0) {
+            addPiece(pieceCount, false, 0, original.length());
+        }
+        addPiece(pieceCount, true, 0, 1);
+        length = original.length() + 1;
+        marks = new ArrayList<WeakReference<Mark>>();
+        lastPiece = 0;
+        lastPieceOffset = 0;
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+
+        if (offset < 0 || offset > length) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+        Mark mark = new Mark(offset);
+        marks.add(new WeakReference<Mark>(mark));
+        return mark;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+
+        if (where < 0 || where >= length) {
+            throw new BadLocationException("Invalid insert", where);
+        }
+        if (str.isEmpty()) {
+            return null;
+        }
+
+        int start = added.length();
+        added.append(str);
+
+        int piece = findPiece(where);
+        int offset = where - lastPieceOffset;
+        if (offset == 0 && piece > 0 && pieceAdded[piece - 1]
+            && pieceStart[piece - 1] + pieceLength[piece - 1] == start) {
+            // typing at the end of the last inserted text extends its piece
+            pieceLength[piece - 1] += str.length();
+        } else if (offset == 0) {
+            addPiece(piece, true, start, str.length());
+        } else {
+            splitPiece(piece, offset);
+            addPiece(piece + 1, true, start, str.length());
+        }
+
+        length += str.length();
+        resetLookup();
+        updateMarksForInsert(where, str.length());
+        return null;
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+
+        if (where < 0 || nitems < 0 || where + nitems >= length) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+        if (nitems == 0) {
+            return null;
+        }
+
+        // split pieces at both ends of the range and drop the pieces between
+        int first = findPiece(where);
+        if (where > lastPieceOffset) {
+            splitPiece(first, where - lastPieceOffset);
+            first++;
+        }
+        resetLookup();
+        int last = findPiece(where + nitems);
+        if (where + nitems > lastPieceOffset) {
+            splitPiece(last, where + nitems - lastPieceOffset);
+            last++;
+        }
+        removePieces(first, last);
+
+        length -= nitems;
+        resetLookup();
+        updateMarksForRemove(where, nitems);
+        return null;
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+
+        checkRange(where, len);
+        StringBuilder builder = new StringBuilder(len);
+        int piece = findPiece(where);
+        int offset = where - lastPieceOffset;
+        int remaining = len;
+        while (remaining > 0) {
+            int count = Math.min(remaining, pieceLength[piece] - offset);
+            int start = pieceStart[piece] + offset;
+            builder.append(source(piece), start, start + count);
+            remaining -= count;
+            piece++;
+            offset = 0;
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+
+        checkRange(where, len);
+        char[] chars = new char[len];
+        int piece = findPiece(where);
+        int offset = where - lastPieceOffset;
+        int copied = 0;
+        while (copied < len) {
+            int count = Math.min(len - copied, pieceLength[piece] - offset);
+            int start = pieceStart[piece] + offset;
+            CharSequence source = source(piece);
+            if (source instanceof String) {
+                ((String) source).getChars(start, start + count, chars, copied);
+            } else {
+                ((StringBuilder) source).getChars(start, start + count, chars, copied);
+            }
+            copied += count;
+            piece++;
+            offset = 0;
+        }
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    /**
+     * Returns character at offset.
+     * 
+     * @param offset
+     * 
+     * @return character
+     */
+    public char charAt(int offset) {
+
+        int piece = findPiece(offset);
+        return source(piece).charAt(pieceStart[piece] + offset - lastPieceOffset);
+    }
+
+    /**
+     * Returns index of the piece that holds offset and remembers the offset of the piece. Lookups usually move
+     * forward from the last one, as when lines are painted, so they start from the last found piece.
+     */
+    private int findPiece(int offset) {
+
+        if (offset < lastPieceOffset) {
+            resetLookup();
+        }
+        while (lastPiece < pieceCount - 1 && offset >= lastPieceOffset + pieceLength[lastPiece]) {
+            lastPieceOffset += pieceLength[lastPiece];
+            lastPiece++;
+        }
+        return lastPiece;
+    }
+
+    private void resetLookup() {
+        lastPiece = 0;
+        lastPieceOffset = 0;
+    }
+
+    private CharSequence source(int piece) {
+        return pieceAdded[piece] ? added : original;
+    }
+
+    /**
+     * Splits piece in two at offset inside of it.
+     */
+    private void splitPiece(int piece, int offset) {
+
+        addPiece(piece + 1, pieceAdded[piece], pieceStart[piece] + offset, pieceLength[piece] - offset);
+        pieceLength[piece] = offset;
+    }
+
+    private void addPiece(int index, boolean fromAdded, int start, int count) {
+
+        if (pieceCount == pieceStart.length) {
+            pieceAdded = Arrays.copyOf(pieceAdded, pieceCount * 2);
+            pieceStart = Arrays.copyOf(pieceStart, pieceCount * 2);
+            pieceLength = Arrays.copyOf(pieceLength, pieceCount * 2);
+        }
+        System.arraycopy(pieceAdded, index, pieceAdded, index + 1, pieceCount - index);
+        System.arraycopy(pieceStart, index, pieceStart, index + 1, pieceCount - index);
+        System.arraycopy(pieceLength, index, pieceLength, index + 1, pieceCount - index);
+        pieceAdded[index] = fromAdded;
+        pieceStart[index] = start;
+        pieceLength[index] = count;
+        pieceCount++;
+    }
+
+    private void removePieces(int from, int to) {
+
+        System.arraycopy(pieceAdded, to, pieceAdded, from, pieceCount - to);
+        System.arraycopy(pieceStart, to, pieceStart, from, pieceCount - to);
+        System.arraycopy(pieceLength, to, pieceLength, from, pieceCount - to);
+        pieceCount -= to - from;
+    }
+
+    private void checkRange(int where, int len) throws BadLocationException {
+
+        if (where < 0 || len < 0 || where + len > length) {
+            throw new BadLocationException("Invalid range", where + len);
+        }
+    }
+
+    /**
+     * Moves marks after an insertion. Marks at the insertion point stay before the inserted text, except at the start
+     * of the content.
+     */
+    private void updateMarksForInsert(int offset, int count) {
+
+        int from = offset == 0 ? 1 : offset;
+        for (Iterator<WeakReference<Mark>> iterator = marks.iterator(); iterator.hasNext();) {
+            Mark mark = iterator.next().get();
+            if (mark == null) {
+                iterator.remove();
+            } else if (mark.offset >= from) {
+                mark.offset += count;
+            }
+        }
+    }
+
+    /**
+     * Moves marks after a removal. Marks inside the removed range move to its start.
+     */
+    private void updateMarksForRemove(int offset, int count) {
+
+        for (Iterator<WeakReference<Mark>> iterator = marks.iterator(); iterator.hasNext();) {
+            Mark mark = iterator.next().get();
+            if (mark == null) {
+                iterator.remove();
+            } else if (mark.offset >= offset + count) {
+                mark.offset -= count;
+            } else if (mark.offset > offset) {
+                mark.offset = offset;
+            }
+        }
+    }
+
+    /**
+     * Position that follows edits of the content.
+     */
+    private static class Mark implements Position {
+        private int offset;
+
+        Mark(int offset) {
+            this.offset = offset;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
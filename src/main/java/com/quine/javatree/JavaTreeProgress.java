@@ -0,0 +1,213 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+
+/**
+ * JavaTreeProgress tracks bytes and nodes processed by a load or save running on a background thread and carries the
+ * cancellation request from the user interface to that thread. Loaders and writers update it as they go and call
+ * checkCancelled regularly, the user interface only reads it.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeProgress {
+    private volatile long    bytes;
+    private volatile long    nodes;
+
+    // expected number of bytes or -1 if unknown
+    private volatile long    totalBytes;
+
+    private volatile boolean cancelled;
+
+    // time the operation took, set when it is finished
+    private volatile long    elapsedMillis;
+
+    /**
+     * Creates JavaTreeProgress with nothing processed and unknown total.
+     */
+    public JavaTreeProgress() {
+        bytes = 0;
+        nodes = 0;
+        totalBytes = -1;
+        cancelled = false;
+        elapsedMillis = -1;
+    }
+
+    /**
+     * @return number of bytes processed
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @param count number of bytes processed since last call
+     */
+    public void addBytes(long count) {
+        bytes += count;
+    }
+
+    /**
+     * @return number of nodes processed
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Counts one more processed node.
+     */
+    public void addNode() {
+        nodes++;
+    }
+
+    /**
+     * @param count number of nodes processed since last call
+     */
+    public void addNodes(long count) {
+        nodes += count;
+    }
+
+    /**
+     * @return expected number of bytes or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @param totalBytes the totalBytes to set
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @return time the operation took in milliseconds or -1 if it is not finished
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @param elapsedMillis the elapsedMillis to set
+     */
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Requests cancellation of the operation.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if cancellation was requested
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws CancellationException if cancellation was requested.
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Wraps input stream so that bytes read from it are counted and reading stops when operation is cancelled.
+     * 
+     * @param input
+     * 
+     * @return tracked input stream
+     */
+    public InputStream track(InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                checkCancelled();
+                int value = super.read();
+                if (value >= 0) {
+                    addBytes(1);
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkCancelled();
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    addBytes(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Wraps output stream so that bytes written to it are counted and writing stops when operation is cancelled.
+     * 
+     * @param output
+     * 
+     * @return tracked output stream
+     */
+    public OutputStream track(OutputStream output) {
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(int value) throws IOException {
+                checkCancelled();
+                out.write(value);
+                addBytes(1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                checkCancelled();
+                out.write(buffer, offset, length);
+                addBytes(length);
+            }
+        };
+    }
+}
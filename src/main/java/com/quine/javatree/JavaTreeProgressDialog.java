@@ -0,0 +1,150 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+
+/**
+ * JavaTreeProgressDialog is a modal dialog that shows JavaTreeProgress of a load or save running in background. It
+ * polls the progress periodically instead of being notified, so background thread never waits for the Event Dispatch
+ * Thread. Cancel button requests cancellation of the operation.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeProgressDialog extends JDialog {
+    private static final long serialVersionUID = -2467153014296325614L;
+
+    // period of progress refresh in milliseconds
+    private final static int  REFRESH_PERIOD   = 100;
+
+    private JavaTreeProgress  progress;
+    private JProgressBar      progressBar;
+    private JLabel            statusLabel;
+    private JButton           cancelButton;
+    private Timer             timer;
+
+    /**
+     * Creates JavaTreeProgressDialog that shows progress. Cancel button is shown only if cancellable is true.
+     * 
+     * @param owner
+     * @param title
+     * @param progress
+     * @param cancellable
+     */
+    public JavaTreeProgressDialog(Frame owner, String title, JavaTreeProgress progress, boolean cancellable) {
+        super(owner, title, true);
+        this.progress = progress;
+
+        setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+
+        JPanel contentPanel = new JPanel(new BorderLayout(5, 5));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        progressBar = new JProgressBar(0, 1000);
+        progressBar.setIndeterminate(true);
+        contentPanel.add(progressBar, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        contentPanel.add(statusLabel, BorderLayout.NORTH);
+
+        cancelButton = new JButton("Cancel");
+        cancelButton.setVisible(cancellable);
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                JavaTreeProgressDialog.this.progress.cancel();
+                cancelButton.setEnabled(false);
+                statusLabel.setText("Cancelling...");
+            }
+        });
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(cancelButton);
+        contentPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        setContentPane(contentPanel);
+        setSize(360, 140);
+        setLocationRelativeTo(owner);
+
+        timer = new Timer(REFRESH_PERIOD, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible) {
+            refresh();
+            timer.start();
+        } else {
+            timer.stop();
+        }
+        super.setVisible(visible);
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        super.dispose();
+    }
+
+    /**
+     * Copies current values of progress to progress bar and status label.
+     */
+    private void refresh() {
+
+        long total = progress.getTotalBytes();
+        long bytes = progress.getBytes();
+
+        if (total > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) Math.min(1000, bytes * 1000 / total));
+        }
+
+        if (!progress.isCancelled()) {
+            statusLabel.setText(String.format("%,d nodes, %,d KB", progress.getNodes(), bytes / 1024));
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import javax.swing.Timer;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+/**
+ * JavaTreeProgressiveLoader opens a document so that the tree can be shown and browsed while the rest of the document
+ * is still being read. Background thread parses the file with JavaTreeStreamLoader and queues the created nodes. A
+ * Swing timer drains the queue on the Event Dispatch Thread in batches, attaches the nodes to the tree and fires one
+ * coalesced nodesWereInserted event per touched parent.
+ * 
+ * Nodes whose children are not completely read yet get a placeholder child, so they can be expanded and show that
+ * more is coming. Nodes arrive in document order, so the top level children of the root appear as the subtrees
+ * before them are finished.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeProgressiveLoader {
+
+    /**
+     * Listener notified on the Event Dispatch Thread about the progress of a progressive load.
+     */
+    public interface Listener {
+
+        /**
+         * Called when root node is read. Model is filled while loading continues.
+         * 
+         * @param model
+         */
+        void started(DefaultTreeModel model);
+
+        /**
+         * Called when loading ends. Success is false if loading failed or was cancelled.
+         * 
+         * @param success
+         */
+        void finished(boolean success);
+    }
+
+    // text of placeholder children
+    public final static String                      LOADING_TEXT   = "loading\u2026";
+
+    // period of attaching queued nodes to the tree in milliseconds
+    private final static int                         PUBLISH_PERIOD = 50;
+
+    // maximum number of queued steps applied in one period
+    private final static int                         BATCH_SIZE     = 50000;
+
+    private File                                     file;
+    private boolean                                  trusted;
+    private JavaTreeProgress                         progress;
+    private Listener                                 listener;
+
+    // steps queued by the background thread and applied on the Event Dispatch Thread
+    private Queue<Step>                              steps;
+    private volatile boolean                         done;
+    private volatile boolean                         success;
+
+    // state used only on the Event Dispatch Thread
+    private Timer                                    timer;
+    private DefaultTreeModel                         model;
+    private Set<DefaultMutableTreeNode>              openNodes;
+    private Map<DefaultMutableTreeNode, DefaultMutableTreeNode> placeholders;
+
+    /**
+     * Creates JavaTreeProgressiveLoader for a file.
+     * 
+     * @param file
+     * @param trusted true to skip validation of the file if its checksum trailer matches
+     * @param listener
+     */
+    public JavaTreeProgressiveLoader(File file, boolean trusted, Listener listener) {
+        this.file = file;
+        this.trusted = trusted;
+        this.listener = listener;
+        progress = new JavaTreeProgress();
+        steps = new ConcurrentLinkedQueue<Step>();
+        done = false;
+        success = false;
+        openNodes = new HashSet<DefaultMutableTreeNode>();
+        placeholders = new HashMap<DefaultMutableTreeNode, DefaultMutableTreeNode>();
+    }
+
+    /**
+     * Starts reading the file on executor and attaching the nodes on the Event Dispatch Thread. Must be called on the
+     * Event Dispatch Thread.
+     * 
+     * @param executor
+     */
+    public void start(Executor executor) {
+
+        timer = new Timer(PUBLISH_PERIOD, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                publish();
+            }
+        });
+        timer.setInitialDelay(0);
+        timer.start();
+
+        executor.execute(new Runnable() {
+            public void run() {
+                read();
+            }
+        });
+    }
+
+    /**
+     * Requests cancellation of the load. Listener is not notified after this call. Must be called on the Event
+     * Dispatch Thread.
+     */
+    public void cancel() {
+        progress.cancel();
+    }
+
+    /**
+     * @return the progress
+     */
+    public JavaTreeProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Reads the file and queues nodes. Runs on the background thread.
+     */
+    private void read() {
+
+        try {
+            JavaTreeStreamLoader loader = new JavaTreeStreamLoader();
+            loader.setTrusted(trusted);
+            loader.load(file, new JavaTreeHandler() {
+                // nodes started but not yet finished, used only by the background thread
+                private Deque<DefaultMutableTreeNode> parents = new ArrayDeque<DefaultMutableTreeNode>();
+
+                public void startNode(String title, String text) {
+                    DefaultMutableTreeNode node = new JavaTreeNode(new JavaTreeNodeObject(title, text));
+                    steps.add(new Step(parents.peek(), node, false));
+                    parents.push(node);
+                }
+
+                public void endNode() {
+                    steps.add(new Step(null, parents.pop(), true));
+                }
+            }, progress);
+            success = true;
+        } catch (Exception e) {
+            if (!progress.isCancelled()) {
+                e.printStackTrace();
+            }
+        } finally {
+            done = true;
+        }
+    }
+
+    /**
+     * Applies queued steps to the tree and fires coalesced events. Runs on the Event Dispatch Thread.
+     */
+    private void publish() {
+
+        if (progress.isCancelled()) {
+            timer.stop();
+            return;
+        }
+
+        // read done flag before draining so no step queued before it was set is missed
+        boolean finished = done;
+
+        // parents that existed before this batch mapped to their child count before the batch
+        Map<DefaultMutableTreeNode, Integer> insertedFrom = new LinkedHashMap<DefaultMutableTreeNode, Integer>();
+        // nodes attached in this batch
+        Set<DefaultMutableTreeNode> attached = new HashSet<DefaultMutableTreeNode>();
+
+        int count = 0;
+        Step step;
+        while (count < BATCH_SIZE && (step = steps.poll()) != null) {
+            count++;
+
+            if (step.complete) {
+                openNodes.remove(step.node);
+                removePlaceholder(step.node);
+                continue;
+            }
+
+            openNodes.add(step.node);
+            attached.add(step.node);
+
+            if (step.parent == null) {
+                model = new DefaultTreeModel(step.node);
+                continue;
+            }
+
+            removePlaceholder(step.parent);
+            if (!attached.contains(step.parent) && !insertedFrom.containsKey(step.parent)) {
+                insertedFrom.put(step.parent, step.parent.getChildCount());
+            }
+            step.parent.add(step.node);
+        }
+
+        // nodes that may still get children show a placeholder
+        for (DefaultMutableTreeNode node : attached) {
+            addPlaceholder(node);
+        }
+        for (DefaultMutableTreeNode parent : insertedFrom.keySet()) {
+            addPlaceholder(parent);
+        }
+
+        if (model != null) {
+            for (Map.Entry<DefaultMutableTreeNode, Integer> entry : insertedFrom.entrySet()) {
+                DefaultMutableTreeNode parent = entry.getKey();
+                int first = entry.getValue();
+                int[] indices = new int[parent.getChildCount() - first];
+                for (int index = 0; index < indices.length; index++) {
+                    indices[index] = first + index;
+                }
+                model.nodesWereInserted(parent, indices);
+            }
+
+            if (attached.contains(model.getRoot())) {
+                listener.started(model);
+            }
+        }
+
+        if (finished && steps.isEmpty()) {
+            timer.stop();
+            // a failed load may leave placeholders behind, they are removed with the rest of the tree
+            listener.finished(success && model != null);
+        }
+    }
+
+    /**
+     * Adds a placeholder child to a node that is still being read and does not have one.
+     * 
+     * @param node
+     */
+    private void addPlaceholder(DefaultMutableTreeNode node) {
+
+        if (openNodes.contains(node) && !placeholders.containsKey(node)) {
+            DefaultMutableTreeNode placeholder = new JavaTreeNode(LOADING_TEXT, false);
+            node.add(placeholder);
+            placeholders.put(node, placeholder);
+        }
+    }
+
+    /**
+     * Removes the placeholder child of a node if it has one and announces the removal to the model.
+     * 
+     * @param node
+     */
+    private void removePlaceholder(DefaultMutableTreeNode node) {
+
+        DefaultMutableTreeNode placeholder = placeholders.remove(node);
+        if (placeholder != null) {
+            int index = node.getIndex(placeholder);
+            node.remove(index);
+            model.nodesWereRemoved(node, new int[] { index }, new Object[] { placeholder });
+        }
+    }
+
+    /**
+     * Step of building the tree queued by the background thread. Either attaches node to parent or marks node as
+     * complete.
+     */
+    private static class Step {
+        private final DefaultMutableTreeNode parent;
+        private final DefaultMutableTreeNode node;
+        private final boolean                complete;
+
+        Step(DefaultMutableTreeNode parent, DefaultMutableTreeNode node, boolean complete) {
+            this.parent = parent;
+            this.node = node;
+            this.complete = complete;
+        }
+    }
+}
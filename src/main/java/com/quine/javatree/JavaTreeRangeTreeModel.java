@@ -0,0 +1,716 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.JTree;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeRangeTreeModel shows a document model in a JTree with very wide sibling lists grouped into range folders.
+ * Children of a node with more than range size children are shown in folders of range size children each, titled
+ * with the positions of their first and last child. Expanding such a node creates only its folders, so it stays fast
+ * however many children the node has.
+ * 
+ * Range folders exist only in the JTree. Actions, journal, tracker and index work on the document model and its
+ * paths, getDataModel, getDataPath and getViewPath translate between the two. Events of the document model are
+ * translated to events on the folders, so folders stay expanded while children are added, deleted and moved.
+ * 
+ * Between beginBatch and endBatch events of the document model are only collected. endBatch fires one event for
+ * every changed node that is not inside a changed subtree, so a JTree lays out and repaints once for a whole
+ * JavaTreeTransaction. Trees are always shown through this model, with range size 0 when range folders are off.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeRangeTreeModel implements TreeModel, TreeModelListener {
+    // default number of children in a range folder
+    public final static int   DEFAULT_RANGE_SIZE = 1000;
+
+    private TreeModel         model;
+    private int               rangeSize;
+    private EventListenerList listenerList;
+
+    // changes of nodes collected since beginBatch, null when events are passed on at once
+    private Map<Object, Change> batch;
+
+    /**
+     * Creates JavaTreeRangeTreeModel that shows model and listens to its changes.
+     * 
+     * @param model
+     * @param rangeSize
+     */
+    public JavaTreeRangeTreeModel(TreeModel model, int rangeSize) {
+        this.model = model;
+        this.rangeSize = rangeSize;
+        listenerList = new EventListenerList();
+        model.addTreeModelListener(this);
+    }
+
+    /**
+     * @return the document model
+     */
+    public TreeModel getModel() {
+        return model;
+    }
+
+    /**
+     * Stops listening to the document model.
+     */
+    public void dispose() {
+        model.removeTreeModelListener(this);
+    }
+
+    /**
+     * Returns the document model of a tree, which is the model of the tree unless it shows range folders.
+     * 
+     * @param tree
+     * 
+     * @return model
+     */
+    public static TreeModel getDataModel(JTree tree) {
+
+        TreeModel treeModel = tree.getModel();
+        if (treeModel instanceof JavaTreeRangeTreeModel) {
+            return ((JavaTreeRangeTreeModel) treeModel).getModel();
+        }
+        return treeModel;
+    }
+
+    /**
+     * Returns path in the document model of a path shown in a tree.
+     * 
+     * @param tree
+     * @param path
+     * 
+     * @return path or null if path is null
+     */
+    public static TreePath getDataPath(JTree tree, TreePath path) {
+
+        if (path == null || !(tree.getModel() instanceof JavaTreeRangeTreeModel)) {
+            return path;
+        }
+        return ((JavaTreeRangeTreeModel) tree.getModel()).getDataPath(path);
+    }
+
+    /**
+     * Returns path shown in a tree of a path in the document model.
+     * 
+     * @param tree
+     * @param path
+     * 
+     * @return path or null if path is null
+     */
+    public static TreePath getViewPath(JTree tree, TreePath path) {
+
+        if (path == null || !(tree.getModel() instanceof JavaTreeRangeTreeModel)) {
+            return path;
+        }
+        return ((JavaTreeRangeTreeModel) tree.getModel()).getViewPath(path);
+    }
+
+    /**
+     * Returns path without range folders.
+     * 
+     * @param path
+     * 
+     * @return path
+     */
+    public TreePath getDataPath(TreePath path) {
+
+        Object[] components = path.getPath();
+        int count = 0;
+        for (Object component : components) {
+            if (!(component instanceof RangeFolder)) {
+                components[count++] = component;
+            }
+        }
+
+        if (count == components.length) {
+            return path;
+        }
+        Object[] dataComponents = new Object[count];
+        System.arraycopy(components, 0, dataComponents, 0, count);
+        return new TreePath(dataComponents);
+    }
+
+    /**
+     * Returns path with range folders of nodes on path inserted before them.
+     * 
+     * @param path
+     * 
+     * @return path
+     */
+    public TreePath getViewPath(TreePath path) {
+
+        Object[] components = path.getPath();
+        TreePath viewPath = new TreePath(components[0]);
+        for (int index = 1; index < components.length; index++) {
+            Object parent = components[index - 1];
+            if (isGrouped(parent)) {
+                int childIndex = model.getIndexOfChild(parent, components[index]);
+                viewPath = viewPath.pathByAddingChild(new RangeFolder(parent, childIndex / rangeSize));
+            }
+            viewPath = viewPath.pathByAddingChild(components[index]);
+        }
+        return viewPath;
+    }
+
+    /**
+     * Starts collecting changes of the document model instead of passing them on.
+     * 
+     * @throws IllegalStateException if changes are already collected
+     */
+    public void beginBatch() {
+
+        if (batch != null) {
+            throw new IllegalStateException("Batch is already started.");
+        }
+        batch = new LinkedHashMap<Object, Change>();
+    }
+
+    /**
+     * Fires coalesced events for changes collected since beginBatch and passes further changes on at once. Changes
+     * inside subtrees that were inserted or whose structure changed are covered by the event of the subtree. A node
+     * that only got new children fires one inserted event, a node that lost children fires a structure change. Events
+     * are fired from the root down.
+     */
+    public void endBatch() {
+
+        Map<Object, Change> changes = batch;
+        batch = null;
+        if (changes == null) {
+            return;
+        }
+
+        Set<Object> inserted = new HashSet<Object>();
+        Set<Object> replaced = new HashSet<Object>();
+        for (Map.Entry<Object, Change> entry : changes.entrySet()) {
+            inserted.addAll(entry.getValue().inserted);
+            if (entry.getValue().structure || entry.getValue().removed) {
+                replaced.add(entry.getKey());
+            }
+        }
+
+        // a tree finds the node of an event by its index in the parent, so parents have to be updated first
+        List<Change> ordered = new ArrayList<Change>(changes.values());
+        ordered.sort(new Comparator<Change>() {
+            public int compare(Change first, Change second) {
+                return first.path.getPathCount() - second.path.getPathCount();
+            }
+        });
+
+        for (Change change : ordered) {
+            if (!isValid(change.path) || isCovered(change.path, inserted, replaced)) {
+                continue;
+            }
+
+            if (change.structure || change.removed) {
+                fireTreeStructureChanged(getViewPath(change.path));
+                continue;
+            }
+            if (change.nodeChanged) {
+                fireTreeNodesChanged(getViewPath(change.path), null, null);
+            }
+            if (!change.inserted.isEmpty()) {
+                treeNodesInserted(createEvent(change.path, change.inserted));
+            }
+            // inserted children are shown with their new data and children added and removed again are gone
+            change.changed.removeAll(change.inserted);
+            Object parent = change.path.getLastPathComponent();
+            for (Iterator<Object> children = change.changed.iterator(); children.hasNext();) {
+                if (model.getIndexOfChild(parent, children.next()) < 0) {
+                    children.remove();
+                }
+            }
+            if (!change.changed.isEmpty()) {
+                treeNodesChanged(createEvent(change.path, change.changed));
+            }
+        }
+    }
+
+    @Override
+    public Object getRoot() {
+        return model.getRoot();
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+
+        if (parent instanceof RangeFolder) {
+            RangeFolder folder = (RangeFolder) parent;
+            return model.getChild(folder.parent, folder.getStart() + index);
+        }
+        if (isGrouped(parent)) {
+            return new RangeFolder(parent, index);
+        }
+        return model.getChild(parent, index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+
+        if (parent instanceof RangeFolder) {
+            return ((RangeFolder) parent).getSize();
+        }
+        return getViewCount(model.getChildCount(parent));
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return !(node instanceof RangeFolder) && model.isLeaf(node);
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        model.valueForPathChanged(getDataPath(path), newValue);
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+
+        if (parent == null || child == null) {
+            return -1;
+        }
+        if (parent instanceof RangeFolder) {
+            RangeFolder folder = (RangeFolder) parent;
+            int index = model.getIndexOfChild(folder.parent, child) - folder.getStart();
+            return index >= 0 && index < folder.getSize() ? index : -1;
+        }
+        if (child instanceof RangeFolder) {
+            RangeFolder folder = (RangeFolder) child;
+            boolean shown = folder.parent.equals(parent) && isGrouped(parent) && folder.index < getChildCount(parent);
+            return shown ? folder.index : -1;
+        }
+        if (isGrouped(parent)) {
+            return -1;
+        }
+        return model.getIndexOfChild(parent, child);
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listenerList.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listenerList.remove(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent e) {
+
+        if (batch != null) {
+            Change change = getChange(e.getTreePath());
+            if (e.getChildren() == null) {
+                change.nodeChanged = true;
+            } else {
+                change.changed.addAll(Arrays.asList(e.getChildren()));
+            }
+            return;
+        }
+
+        TreePath viewParent = getViewPath(e.getTreePath());
+        Object parent = e.getTreePath().getLastPathComponent();
+        int[] indices = e.getChildIndices();
+        if (indices == null || !isGrouped(parent)) {
+            fireTreeNodesChanged(viewParent, indices, e.getChildren());
+            return;
+        }
+
+        for (int index : indices) {
+            fireTreeNodesChanged(getFolderPath(viewParent, parent, index / rangeSize),
+                                 new int[] { index % rangeSize }, new Object[] { model.getChild(parent, index) });
+        }
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent e) {
+
+        if (batch != null) {
+            getChange(e.getTreePath()).inserted.addAll(Arrays.asList(e.getChildren()));
+            return;
+        }
+
+        TreePath viewParent = getViewPath(e.getTreePath());
+        Object parent = e.getTreePath().getLastPathComponent();
+        int[] indices = e.getChildIndices();
+        int count = model.getChildCount(parent);
+        int oldCount = count - indices.length;
+
+        if (!isGrouped(oldCount) && !isGrouped(count)) {
+            fireTreeNodesInserted(viewParent, indices, e.getChildren());
+        } else if (isGrouped(oldCount) != isGrouped(count)) {
+            fireTreeStructureChanged(viewParent);
+        } else if (indices.length == 1) {
+            insertChild(viewParent, parent, indices[0], oldCount);
+        } else if (indices[0] == oldCount) {
+            appendChildren(viewParent, parent, oldCount, count);
+        } else {
+            fireTreeStructureChanged(viewParent);
+        }
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent e) {
+
+        if (batch != null) {
+            Change change = getChange(e.getTreePath());
+            for (Object child : e.getChildren()) {
+                // children inserted and removed in the same batch were never shown
+                if (!change.inserted.remove(child)) {
+                    change.removed = true;
+                }
+            }
+            return;
+        }
+
+        TreePath viewParent = getViewPath(e.getTreePath());
+        Object parent = e.getTreePath().getLastPathComponent();
+        int[] indices = e.getChildIndices();
+        int count = model.getChildCount(parent);
+        int oldCount = count + indices.length;
+
+        if (!isGrouped(oldCount) && !isGrouped(count)) {
+            fireTreeNodesRemoved(viewParent, indices, e.getChildren());
+        } else if (isGrouped(oldCount) != isGrouped(count)) {
+            fireTreeStructureChanged(viewParent);
+        } else if (indices.length == 1) {
+            removeChild(viewParent, parent, indices[0], oldCount, e.getChildren()[0]);
+        } else {
+            fireTreeStructureChanged(viewParent);
+        }
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent e) {
+
+        if (batch != null) {
+            getChange(e.getTreePath()).structure = true;
+            return;
+        }
+        fireTreeStructureChanged(getViewPath(e.getTreePath()));
+    }
+
+    private Change getChange(TreePath path) {
+
+        Object node = path.getLastPathComponent();
+        Change change = batch.get(node);
+        if (change == null) {
+            change = new Change(path);
+            batch.put(node, change);
+        }
+        return change;
+    }
+
+    /**
+     * Returns true if every node on path is still a child of the node before it.
+     */
+    private boolean isValid(TreePath path) {
+
+        Object[] nodes = path.getPath();
+        if (!nodes[0].equals(model.getRoot())) {
+            return false;
+        }
+        for (int index = 1; index < nodes.length; index++) {
+            if (model.getIndexOfChild(nodes[index - 1], nodes[index]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the last node of path or a node above it was inserted, or a node above it was replaced.
+     */
+    private boolean isCovered(TreePath path, Set<Object> inserted, Set<Object> replaced) {
+
+        Object[] nodes = path.getPath();
+        for (int index = 0; index < nodes.length; index++) {
+            if (inserted.contains(nodes[index]) || index < nodes.length - 1 && replaced.contains(nodes[index])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates event of the document model for children of the last node of path, ordered by their indexes.
+     */
+    private TreeModelEvent createEvent(TreePath path, Set<Object> children) {
+
+        final Object parent = path.getLastPathComponent();
+        List<Object> ordered = new ArrayList<Object>(children);
+        final Map<Object, Integer> indexes = new LinkedHashMap<Object, Integer>();
+        for (Object child : ordered) {
+            indexes.put(child, Integer.valueOf(model.getIndexOfChild(parent, child)));
+        }
+        ordered.sort(new Comparator<Object>() {
+            public int compare(Object first, Object second) {
+                return indexes.get(first).compareTo(indexes.get(second));
+            }
+        });
+
+        int[] childIndices = new int[ordered.size()];
+        for (int index = 0; index < childIndices.length; index++) {
+            childIndices[index] = indexes.get(ordered.get(index)).intValue();
+        }
+        return new TreeModelEvent(model, path, childIndices, ordered.toArray());
+    }
+
+    /**
+     * Fires events for a child inserted into a grouped node. Child is inserted into its folder and every full folder
+     * after it passes its last child to the next folder. A folder is added when the last one overflows.
+     */
+    private void insertChild(TreePath viewParent, Object parent, int index, int oldCount) {
+
+        int folders = getViewCount(oldCount);
+        int first = index / rangeSize;
+        if (first == folders) {
+            fireTreeNodesInserted(viewParent, new int[] { first }, new Object[] { new RangeFolder(parent, first) });
+            return;
+        }
+
+        fireTreeNodesInserted(getFolderPath(viewParent, parent, first), new int[] { index % rangeSize },
+                              new Object[] { model.getChild(parent, index) });
+        for (int folder = first; folder < folders; folder++) {
+            TreePath folderPath = getFolderPath(viewParent, parent, folder);
+            if (folder > first) {
+                fireTreeNodesInserted(folderPath, new int[] { 0 },
+                                      new Object[] { model.getChild(parent, folder * rangeSize) });
+            }
+            if (oldCount - folder * rangeSize >= rangeSize) {
+                fireTreeNodesRemoved(folderPath, new int[] { rangeSize },
+                                     new Object[] { model.getChild(parent, (folder + 1) * rangeSize) });
+                if (folder == folders - 1) {
+                    fireTreeNodesInserted(viewParent, new int[] { folders },
+                                          new Object[] { new RangeFolder(parent, folders) });
+                }
+            }
+        }
+    }
+
+    /**
+     * Fires events for a child removed from a grouped node. Child is removed from its folder and every folder after
+     * it passes its first child to the previous folder. Last folder is removed when it becomes empty.
+     */
+    private void removeChild(TreePath viewParent, Object parent, int index, int oldCount, Object child) {
+
+        int folders = getViewCount(oldCount);
+        int first = index / rangeSize;
+        boolean lastEmptied = oldCount - (folders - 1) * rangeSize == 1;
+        if (first == folders - 1 && lastEmptied) {
+            fireTreeNodesRemoved(viewParent, new int[] { first }, new Object[] { new RangeFolder(parent, first) });
+            return;
+        }
+
+        fireTreeNodesRemoved(getFolderPath(viewParent, parent, first), new int[] { index % rangeSize },
+                             new Object[] { child });
+        for (int folder = first + 1; folder < folders; folder++) {
+            Object moved = model.getChild(parent, folder * rangeSize - 1);
+            fireTreeNodesInserted(getFolderPath(viewParent, parent, folder - 1), new int[] { rangeSize - 1 },
+                                  new Object[] { moved });
+            if (folder == folders - 1 && lastEmptied) {
+                fireTreeNodesRemoved(viewParent, new int[] { folder },
+                                     new Object[] { new RangeFolder(parent, folder) });
+            } else {
+                fireTreeNodesRemoved(getFolderPath(viewParent, parent, folder), new int[] { 0 },
+                                     new Object[] { moved });
+            }
+        }
+    }
+
+    /**
+     * Fires events for children appended to a grouped node, as a document that is being loaded does. Last folder is
+     * filled up and new folders are added for the rest.
+     */
+    private void appendChildren(TreePath viewParent, Object parent, int oldCount, int count) {
+
+        int last = getViewCount(oldCount) - 1;
+        int start = last * rangeSize;
+        int end = Math.min(count, start + rangeSize);
+        if (oldCount < end) {
+            int[] indices = new int[end - oldCount];
+            Object[] children = new Object[indices.length];
+            for (int index = 0; index < indices.length; index++) {
+                indices[index] = oldCount - start + index;
+                children[index] = model.getChild(parent, oldCount + index);
+            }
+            fireTreeNodesInserted(getFolderPath(viewParent, parent, last), indices, children);
+        }
+
+        int folders = getViewCount(count);
+        if (folders > last + 1) {
+            int[] indices = new int[folders - last - 1];
+            Object[] children = new Object[indices.length];
+            for (int index = 0; index < indices.length; index++) {
+                indices[index] = last + 1 + index;
+                children[index] = new RangeFolder(parent, indices[index]);
+            }
+            fireTreeNodesInserted(viewParent, indices, children);
+        }
+    }
+
+    private boolean isGrouped(Object node) {
+        return rangeSize > 0 && isGrouped(model.getChildCount(node));
+    }
+
+    private boolean isGrouped(int count) {
+        return rangeSize > 0 && count > rangeSize;
+    }
+
+    /**
+     * Returns number of children shown for a node with count children.
+     */
+    private int getViewCount(int count) {
+        return isGrouped(count) ? (count + rangeSize - 1) / rangeSize : count;
+    }
+
+    private TreePath getFolderPath(TreePath viewParent, Object parent, int folder) {
+        return viewParent.pathByAddingChild(new RangeFolder(parent, folder));
+    }
+
+    private void fireTreeNodesChanged(TreePath path, int[] indices, Object[] children) {
+
+        TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            ((TreeModelListener) listeners[i + 1]).treeNodesChanged(event);
+        }
+    }
+
+    private void fireTreeNodesInserted(TreePath path, int[] indices, Object[] children) {
+
+        TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            ((TreeModelListener) listeners[i + 1]).treeNodesInserted(event);
+        }
+    }
+
+    private void fireTreeNodesRemoved(TreePath path, int[] indices, Object[] children) {
+
+        TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            ((TreeModelListener) listeners[i + 1]).treeNodesRemoved(event);
+        }
+    }
+
+    private void fireTreeStructureChanged(TreePath path) {
+
+        TreeModelEvent event = new TreeModelEvent(this, path);
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            ((TreeModelListener) listeners[i + 1]).treeStructureChanged(event);
+        }
+    }
+
+    /**
+     * Changes of the children of a node collected in a batch.
+     */
+    private static class Change {
+        // path of the node when it was first changed
+        private TreePath    path;
+
+        private boolean     structure;
+        private boolean     removed;
+        private boolean     nodeChanged;
+        private Set<Object> inserted;
+        private Set<Object> changed;
+
+        Change(TreePath path) {
+            this.path = path;
+            inserted = new LinkedHashSet<Object>();
+            changed = new LinkedHashSet<Object>();
+        }
+    }
+
+    /**
+     * Folder that shows range size children of a node, starting at index times range size.
+     */
+    public class RangeFolder {
+        private final Object parent;
+        private final int    index;
+
+        private RangeFolder(Object parent, int index) {
+            this.parent = parent;
+            this.index = index;
+        }
+
+        private int getStart() {
+            return index * rangeSize;
+        }
+
+        private int getSize() {
+            return Math.max(0, Math.min(rangeSize, model.getChildCount(parent) - getStart()));
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            if (!(object instanceof RangeFolder)) {
+                return false;
+            }
+            RangeFolder folder = (RangeFolder) object;
+            return folder.index == index && folder.parent.equals(parent);
+        }
+
+        @Override
+        public int hashCode() {
+            return parent.hashCode() * 31 + index;
+        }
+
+        /**
+         * Title of the folder, positions of its first and last child counted from 1.
+         */
+        @Override
+        public String toString() {
+            return (getStart() + 1) + "\u2013" + (getStart() + getSize());
+        }
+    }
+}
@@ -0,0 +1,624 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeSearchIndex is an inverted index over titles and texts of the nodes of a tree. Every indexed version of a
+ * node gets a document number and every token maps to a posting list of the document numbers that contain it. Posting
+ * lists only grow at the end, so they stay sorted and a query is answered by combining bit sets of the posting lists
+ * of its tokens.
+ * 
+ * Tokens known when the index is built or compacted are kept in a sorted array and tokens added later in a sorted
+ * set, so tokens that start with a prefix are found without a scan of all tokens. Index is built from all nodes of a
+ * model with the work split among the threads of the common fork join pool. After
+ * that it follows the model as a TreeModelListener. Inserted nodes are indexed, removed nodes are dropped once it is
+ * clear they were not just moved, and changed nodes are indexed again. Edits of title and text that are made without
+ * model events have to be reported with update. Old versions of nodes are only marked as removed and the index is
+ * compacted when they outnumber the live ones.
+ * 
+ * Index works with trees of DefaultMutableTreeNode objects and with JavaTreeStoreTreeModel. Except for build, all
+ * methods are expected to be called on the Event Dispatch Thread.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSearchIndex implements TreeModelListener {
+    // number of nodes tokenized by one task while building the index
+    private final static int      CHUNK_SIZE = 16 * 1024;
+
+    private TreeModel             model;
+
+    // node of every document, documents are numbered from 0
+    private Object[]              documents;
+    private int                   documentCount;
+    private BitSet                removed;
+    private int                   removedCount;
+
+    // current document of every indexed node
+    private Map<Object, Integer>  nodeDocuments;
+
+    private Map<String, Postings> postings;
+
+    // tokens in sorted order and tokens added since they were sorted, used for prefix queries
+    private String[]              sortedTokens;
+    private TreeSet<String>       addedTokens;
+
+    // nodes removed from the tree that may be inserted again by a move
+    private Set<Object>           detached;
+
+    /**
+     * Creates empty JavaTreeSearchIndex for model. Use build to index nodes of the model.
+     * 
+     * @param model
+     */
+    private JavaTreeSearchIndex(TreeModel model) {
+        this.model = model;
+        documents = new Object[1024];
+        documentCount = 0;
+        removed = new BitSet();
+        removedCount = 0;
+        nodeDocuments = new HashMap<Object, Integer>();
+        postings = new HashMap<String, Postings>();
+        sortedTokens = new String[0];
+        addedTokens = new TreeSet<String>();
+        detached = new LinkedHashSet<Object>();
+    }
+
+    /**
+     * Indexes all nodes of model and starts following its changes. Model must not be changed while the index is
+     * built. Indexed nodes are reported to progress.
+     * 
+     * @param model
+     * @param progress
+     * 
+     * @return index
+     * 
+     * @throws Exception
+     */
+    public static JavaTreeSearchIndex build(final TreeModel model, JavaTreeProgress progress) throws Exception {
+
+        final JavaTreeSearchIndex index = new JavaTreeSearchIndex(model);
+        final List<Object> nodes = index.collect(model.getRoot());
+
+        List<Callable<Map<String, Postings>>> tasks = new ArrayList<Callable<Map<String, Postings>>>();
+        for (int start = 0; start < nodes.size(); start += CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(start + CHUNK_SIZE, nodes.size());
+            tasks.add(new Callable<Map<String, Postings>>() {
+                public Map<String, Postings> call() {
+                    Map<String, Postings> chunk = new HashMap<String, Postings>();
+                    for (int document = from; document < to; document++) {
+                        index.tokenize(nodes.get(document), document, chunk, null);
+                    }
+                    return chunk;
+                }
+            });
+        }
+
+        // chunks are merged in order so every posting list stays sorted
+        List<Future<Map<String, Postings>>> chunks = ForkJoinPool.commonPool().invokeAll(tasks);
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            progress.checkCancelled();
+            for (Map.Entry<String, Postings> entry : chunks.get(chunk).get().entrySet()) {
+                Postings list = index.postings.get(entry.getKey());
+                if (list == null) {
+                    index.postings.put(entry.getKey(), entry.getValue());
+                } else {
+                    list.addAll(entry.getValue());
+                }
+            }
+            for (int node = chunk * CHUNK_SIZE; node < Math.min((chunk + 1) * CHUNK_SIZE, nodes.size()); node++) {
+                progress.addNode();
+            }
+        }
+
+        index.sortTokens();
+        index.documents = nodes.toArray(new Object[Math.max(nodes.size(), 1024)]);
+        index.documentCount = nodes.size();
+        index.nodeDocuments = new HashMap<Object, Integer>(nodes.size() * 2);
+        for (int document = 0; document < nodes.size(); document++) {
+            index.nodeDocuments.put(nodes.get(document), Integer.valueOf(document));
+        }
+
+        model.addTreeModelListener(index);
+        return index;
+    }
+
+    /**
+     * Stops following changes of the model.
+     */
+    public void dispose() {
+        model.removeTreeModelListener(this);
+    }
+
+    /**
+     * @return number of indexed nodes
+     */
+    public int size() {
+        return documentCount - removedCount;
+    }
+
+    /**
+     * Finds nodes whose title or text contain all tokens of query. Last token also matches tokens it is a prefix of, so
+     * results are shown while a word is typed. Nodes are returned in the order they were indexed.
+     * 
+     * @param query
+     * 
+     * @return nodes
+     */
+    public List<Object> search(String query) {
+
+        dropDetached();
+
+        List<String> tokens = new ArrayList<String>();
+        tokenize(query, tokens);
+
+        List<Object> result = new ArrayList<Object>();
+        if (tokens.isEmpty()) {
+            return result;
+        }
+
+        BitSet matches = null;
+        for (int index = 0; index < tokens.size(); index++) {
+            BitSet tokenMatches = new BitSet(documentCount);
+            if (index == tokens.size() - 1) {
+                addPrefixMatches(tokens.get(index), tokenMatches);
+            } else {
+                Postings list = postings.get(tokens.get(index));
+                if (list != null) {
+                    list.addTo(tokenMatches);
+                }
+            }
+
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.and(tokenMatches);
+            }
+            if (matches.isEmpty()) {
+                return result;
+            }
+        }
+
+        matches.andNot(removed);
+        for (int document = matches.nextSetBit(0); document >= 0; document = matches.nextSetBit(document + 1)) {
+            if (isInTree(documents[document])) {
+                result.add(documents[document]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexes node again after its title or text were changed without a model event.
+     * 
+     * @param node
+     */
+    public void update(Object node) {
+
+        if (isInTree(node)) {
+            removeDocument(node);
+            addDocument(node);
+        }
+    }
+
+    /**
+     * Returns path from the root of the model to node.
+     * 
+     * @param node
+     * 
+     * @return path
+     */
+    public TreePath getPath(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getPath(((Integer) node).intValue());
+        }
+        return new TreePath(((DefaultMutableTreeNode) node).getPath());
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent event) {
+
+        Object[] children = event.getChildren();
+        if (children == null) {
+            update(event.getTreePath().getLastPathComponent());
+        } else {
+            for (Object child : children) {
+                update(child);
+            }
+        }
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent event) {
+
+        for (Object child : event.getChildren()) {
+            if (detached.remove(child) && nodeDocuments.containsKey(child)) {
+                // node was moved, only its own data could have been replaced
+                update(child);
+            } else {
+                for (Object node : collect(child)) {
+                    removeDocument(node);
+                    addDocument(node);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent event) {
+
+        // nodes removed earlier that were not inserted again were deleted
+        dropDetached();
+        for (Object child : event.getChildren()) {
+            detached.add(child);
+        }
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent event) {
+
+        for (Object node : collect(event.getTreePath().getLastPathComponent())) {
+            removeDocument(node);
+            addDocument(node);
+        }
+    }
+
+    /**
+     * Removes documents of detached nodes that are not part of the tree any more. Subtrees of nodes deleted from a
+     * store can not be walked, so their documents stay until they are found not to be part of the tree by search, or
+     * their numbers are used by new nodes.
+     */
+    private void dropDetached() {
+
+        for (Object node : detached) {
+            if (isInTree(node)) {
+                continue;
+            }
+            if (model instanceof JavaTreeStoreTreeModel) {
+                removeDocument(node);
+            } else {
+                for (Object descendant : collect(node)) {
+                    removeDocument(descendant);
+                }
+            }
+        }
+        detached.clear();
+
+        if (removedCount > 1024 && removedCount > documentCount - removedCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns node and all of its descendants in document order.
+     * 
+     * @param node
+     * 
+     * @return nodes
+     */
+    private List<Object> collect(Object node) {
+
+        List<Object> nodes = new ArrayList<Object>();
+        JavaTreeTraversal traversal = new JavaTreeTraversal(model, node);
+        while (traversal.next()) {
+            if (!traversal.isEntering()) {
+                continue;
+            }
+            if (isDataNode(traversal.getNode())) {
+                nodes.add(traversal.getNode());
+            } else {
+                traversal.skipChildren();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Adds a new document for node.
+     * 
+     * @param node
+     */
+    private void addDocument(Object node) {
+
+        if (documentCount == documents.length) {
+            documents = Arrays.copyOf(documents, documentCount * 2);
+        }
+        int document = documentCount++;
+        documents[document] = node;
+        nodeDocuments.put(node, Integer.valueOf(document));
+
+        tokenize(node, document, postings, addedTokens);
+    }
+
+    /**
+     * Marks current document of node as removed.
+     * 
+     * @param node
+     */
+    private void removeDocument(Object node) {
+
+        Integer document = nodeDocuments.remove(node);
+        if (document != null) {
+            removed.set(document.intValue());
+            documents[document.intValue()] = null;
+            removedCount++;
+        }
+    }
+
+    /**
+     * Renumbers live documents and drops removed ones from all posting lists.
+     */
+    private void compact() {
+
+        int[] numbers = new int[documentCount];
+        int count = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (removed.get(document)) {
+                numbers[document] = -1;
+            } else {
+                numbers[document] = count;
+                documents[count] = documents[document];
+                nodeDocuments.put(documents[count], Integer.valueOf(count));
+                count++;
+            }
+        }
+        Arrays.fill(documents, count, documentCount, null);
+
+        List<String> empty = new ArrayList<String>();
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            if (entry.getValue().renumber(numbers) == 0) {
+                empty.add(entry.getKey());
+            }
+        }
+        for (String token : empty) {
+            postings.remove(token);
+        }
+
+        documentCount = count;
+        removed.clear();
+        removedCount = 0;
+        sortTokens();
+    }
+
+    /**
+     * Sorts all tokens into the array used for prefix queries.
+     */
+    private void sortTokens() {
+
+        sortedTokens = postings.keySet().toArray(new String[postings.size()]);
+        Arrays.parallelSort(sortedTokens);
+        addedTokens.clear();
+    }
+
+    /**
+     * Sets bits of all documents that contain a token starting with prefix.
+     * 
+     * @param prefix
+     * @param matches
+     */
+    private void addPrefixMatches(String prefix, BitSet matches) {
+
+        int index = Arrays.binarySearch(sortedTokens, prefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (; index < sortedTokens.length && sortedTokens[index].startsWith(prefix); index++) {
+            postings.get(sortedTokens[index]).addTo(matches);
+        }
+
+        for (String token : addedTokens.tailSet(prefix)) {
+            if (!token.startsWith(prefix)) {
+                break;
+            }
+            postings.get(token).addTo(matches);
+        }
+    }
+
+    /**
+     * Adds document to posting lists of all tokens of the title and text of node. Tokens that were not in target yet
+     * are added to newTokens, unless it is null.
+     * 
+     * @param node
+     * @param document
+     * @param target
+     * @param newTokens
+     */
+    private void tokenize(Object node, int document, Map<String, Postings> target, Set<String> newTokens) {
+
+        List<String> tokens = new ArrayList<String>();
+        tokenize(getTitle(node), tokens);
+        tokenize(getText(node), tokens);
+
+        for (String token : tokens) {
+            Postings list = target.get(token);
+            if (list == null) {
+                list = new Postings();
+                target.put(token, list);
+                if (newTokens != null) {
+                    newTokens.add(token);
+                }
+            }
+            list.add(document);
+        }
+    }
+
+    /**
+     * Splits value into lower case tokens made of letters and digits.
+     * 
+     * @param value
+     * @param tokens
+     */
+    private static void tokenize(String value, List<String> tokens) {
+
+        int start = -1;
+        for (int index = 0; index <= value.length(); index++) {
+            boolean part = index < value.length() && Character.isLetterOrDigit(value.charAt(index));
+            if (part && start < 0) {
+                start = index;
+            } else if (!part && start >= 0) {
+                tokens.add(value.substring(start, index).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * @param node
+     * 
+     * @return true if node holds data of a document
+     */
+    private boolean isDataNode(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getStore().contains(((Integer) node).intValue());
+        }
+        return ((DefaultMutableTreeNode) node).getUserObject() instanceof JavaTreeNodeObject;
+    }
+
+    /**
+     * @param node
+     * 
+     * @return true if node is part of the tree of the model
+     */
+    private boolean isInTree(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return isDataNode(node);
+        }
+        return ((DefaultMutableTreeNode) node).getRoot() == model.getRoot() && isDataNode(node);
+    }
+
+    /**
+     * @param node
+     * 
+     * @return title of node
+     */
+    private String getTitle(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getStore().getTitle(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getTitle();
+    }
+
+    /**
+     * @param node
+     * 
+     * @return text of node
+     */
+    private String getText(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getStore().getText(((Integer) node).intValue());
+        }
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getText();
+    }
+
+    /**
+     * Sorted list of document numbers.
+     */
+    private static class Postings {
+        private int[] documents = new int[2];
+        private int   size      = 0;
+
+        /**
+         * Adds document unless it is already the last one, which happens when a token repeats in a node.
+         */
+        void add(int document) {
+
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        /**
+         * Adds all documents of other, which all follow documents of this list.
+         */
+        void addAll(Postings other) {
+
+            if (size + other.size > documents.length) {
+                documents = Arrays.copyOf(documents, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.documents, 0, documents, size, other.size);
+            size += other.size;
+        }
+
+        void addTo(BitSet matches) {
+            for (int index = 0; index < size; index++) {
+                matches.set(documents[index]);
+            }
+        }
+
+        /**
+         * Replaces document numbers with new ones, dropping documents whose new number is negative.
+         * 
+         * @return number of documents left
+         */
+        int renumber(int[] numbers) {
+
+            int count = 0;
+            for (int index = 0; index < size; index++) {
+                int number = numbers[documents[index]];
+                if (number >= 0) {
+                    documents[count++] = number;
+                }
+            }
+            size = count;
+            return size;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.tree.TreeModel;
+
+/**
+ * JavaTreeSegmentTable describes the segments of a segmented document: the title and the text of the root, and the
+ * position, length and node count of the segment of every child of the root, in document order. Table also remembers
+ * which child of the root of an opened model every segment holds, so segments of unchanged children can be kept when
+ * the document is saved.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSegmentTable {
+    // generation of the document header the table belongs to
+    private long                 generation;
+
+    private String               rootTitle;
+    private String               rootText;
+
+    private int                  count;
+    private long[]               offsets;
+    private long[]               lengths;
+    private long[]               nodeCounts;
+
+    // segment index of every child of the root of the bound model
+    private Map<Object, Integer> segments;
+
+    /**
+     * Creates empty JavaTreeSegmentTable.
+     * 
+     * @param generation
+     * @param rootTitle
+     * @param rootText
+     */
+    public JavaTreeSegmentTable(long generation, String rootTitle, String rootText) {
+        this.generation = generation;
+        this.rootTitle = rootTitle;
+        this.rootText = rootText;
+        count = 0;
+        offsets = new long[16];
+        lengths = new long[16];
+        nodeCounts = new long[16];
+        segments = new HashMap<Object, Integer>();
+    }
+
+    /**
+     * Adds a segment to the end of the table.
+     * 
+     * @param offset
+     * @param length
+     * @param nodeCount
+     */
+    public void add(long offset, long length, long nodeCount) {
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+            nodeCounts = Arrays.copyOf(nodeCounts, count * 2);
+        }
+        offsets[count] = offset;
+        lengths[count] = length;
+        nodeCounts[count] = nodeCount;
+        count++;
+    }
+
+    /**
+     * Remembers that the children of the root of model are held by the segments of the table, in the same order.
+     * 
+     * @param model
+     * 
+     * @throws IllegalArgumentException if the root of model does not have one child for every segment
+     */
+    public void bind(TreeModel model) {
+
+        Object root = model.getRoot();
+        if (model.getChildCount(root) != count) {
+            throw new IllegalArgumentException("Tree has " + model.getChildCount(root) + " top level nodes, table has "
+                                               + count + " segments.");
+        }
+
+        segments.clear();
+        for (int index = 0; index < count; index++) {
+            segments.put(model.getChild(root, index), Integer.valueOf(index));
+        }
+    }
+
+    /**
+     * Returns index of the segment that holds node or -1 if node is not held by a segment of the table.
+     * 
+     * @param node
+     * 
+     * @return segment
+     */
+    public int getSegment(Object node) {
+
+        Integer segment = segments.get(node);
+        return segment == null ? -1 : segment.intValue();
+    }
+
+    /**
+     * @return the generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the rootTitle
+     */
+    public String getRootTitle() {
+        return rootTitle;
+    }
+
+    /**
+     * @return the rootText
+     */
+    public String getRootText() {
+        return rootText;
+    }
+
+    /**
+     * @return number of segments
+     */
+    public int getSegmentCount() {
+        return count;
+    }
+
+    /**
+     * @param segment
+     * 
+     * @return position of the segment in the file
+     */
+    public long getOffset(int segment) {
+        return offsets[segment];
+    }
+
+    /**
+     * @param segment
+     * 
+     * @return length of the segment in bytes
+     */
+    public long getLength(int segment) {
+        return lengths[segment];
+    }
+
+    /**
+     * @param segment
+     * 
+     * @return number of nodes in the segment
+     */
+    public long getNodeCount(int segment) {
+        return nodeCounts[segment];
+    }
+
+    /**
+     * @return total length of all segments in bytes
+     */
+    public long getSegmentBytes() {
+
+        long bytes = 0;
+        for (int index = 0; index < count; index++) {
+            bytes += lengths[index];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * JavaTreeSegmentedFormat defines the segmented JavaTree document format read by JavaTreeSegmentedReader and written
+ * by JavaTreeSegmentedWriter. Every child of the root is stored with its subtree in a separate segment, so a save can
+ * write only the segments of changed subtrees.
+ * 
+ * A document starts with two header slots. A slot holds magic bytes "JTS1", format version as int, generation as
+ * long, position of the segment table as long, length of the table as int and CRC32C of those 28 bytes as int. The
+ * valid slot with the higher generation describes the document. The other slot is overwritten by the next save, so a
+ * save interrupted before its header is written leaves the previous generation intact.
+ * 
+ * Segment table is a block as in JavaTreeBinaryFormat. Its payload is the title and the text of the root as strings
+ * followed by the number of segments as varint and the position, length and node count of every segment as longs.
+ * Segment is a sequence of blocks in JavaTreeBinaryFormat that holds exactly one subtree. Segments and tables that no
+ * longer belong to the current generation stay in the file until the document is written again completely.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public final class JavaTreeSegmentedFormat {
+    // file extension of segmented documents
+    public final static String EXTENSION       = ".jts";
+
+    // magic bytes at the start of header slots
+    public final static int    MAGIC           = 0x4A545331;
+
+    public final static int    VERSION         = 1;
+
+    // size of a header slot in bytes
+    public final static int    SLOT_SIZE       = 32;
+
+    // size of both header slots, segments start after them
+    public final static int    HEADER_SIZE     = 2 * SLOT_SIZE;
+
+    private JavaTreeSegmentedFormat() {
+    }
+
+    /**
+     * Returns true if the file starts with a header slot of a segmented document.
+     * 
+     * @param file
+     * 
+     * @return status
+     */
+    public static boolean isSegmented(File file) {
+
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            return header.getInt(0) == MAGIC || header.getInt(SLOT_SIZE) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads segment table of the current generation of a document.
+     * 
+     * @param file
+     * 
+     * @return table
+     * 
+     * @throws IOException
+     */
+    public static JavaTreeSegmentTable readTable(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readTable(channel);
+        }
+    }
+
+    /**
+     * Reads segment table of the current generation of a document. If the table of the newest header slot is damaged
+     * the table of the other slot is used.
+     * 
+     * @param channel
+     * 
+     * @return table
+     * 
+     * @throws IOException if neither slot describes a valid table
+     */
+    public static JavaTreeSegmentTable readTable(FileChannel channel) throws IOException {
+
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        ByteBuffer first = slot(header, 0);
+        ByteBuffer second = slot(header, SLOT_SIZE);
+
+        if (first != null && second != null && second.getLong(8) > first.getLong(8)) {
+            ByteBuffer swap = first;
+            first = second;
+            second = swap;
+        } else if (first == null) {
+            first = second;
+            second = null;
+        }
+        if (first == null) {
+            throw new IOException("Not a segmented JavaTree document.");
+        }
+
+        try {
+            return readTable(channel, first);
+        } catch (IOException e) {
+            if (second == null) {
+                throw e;
+            }
+            return readTable(channel, second);
+        }
+    }
+
+    /**
+     * Creates a header slot.
+     * 
+     * @param generation
+     * @param tableOffset
+     * @param tableLength
+     * 
+     * @return slot
+     */
+    public static ByteBuffer header(long generation, long tableOffset, int tableLength) {
+
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+        slot.putInt(MAGIC);
+        slot.putInt(VERSION);
+        slot.putLong(generation);
+        slot.putLong(tableOffset);
+        slot.putInt(tableLength);
+        slot.flip();
+        int crc = JavaTreeBinaryFormat.checksum(slot);
+        slot.limit(SLOT_SIZE);
+        slot.putInt(SLOT_SIZE - 4, crc);
+        return slot;
+    }
+
+    /**
+     * Encodes a segment table as a block.
+     * 
+     * @param table
+     * 
+     * @return block
+     */
+    public static ByteBuffer encodeTable(JavaTreeSegmentTable table) {
+
+        byte[] title = table.getRootTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] text = table.getRootText().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer block = ByteBuffer.allocate(JavaTreeBinaryFormat.BLOCK_HEADER + title.length + text.length + 15
+                                               + table.getSegmentCount() * 24);
+        block.position(JavaTreeBinaryFormat.BLOCK_HEADER);
+        JavaTreeBinaryFormat.putVarint(block, title.length);
+        block.put(title);
+        JavaTreeBinaryFormat.putVarint(block, text.length);
+        block.put(text);
+        JavaTreeBinaryFormat.putVarint(block, table.getSegmentCount());
+        for (int segment = 0; segment < table.getSegmentCount(); segment++) {
+            block.putLong(table.getOffset(segment));
+            block.putLong(table.getLength(segment));
+            block.putLong(table.getNodeCount(segment));
+        }
+        block.flip();
+
+        ByteBuffer payload = block.duplicate();
+        payload.position(JavaTreeBinaryFormat.BLOCK_HEADER);
+        block.putInt(0, payload.remaining());
+        block.putInt(4, JavaTreeBinaryFormat.checksum(payload));
+        return block;
+    }
+
+    /**
+     * Returns a header slot if it is valid or null otherwise.
+     */
+    private static ByteBuffer slot(ByteBuffer header, int position) {
+
+        ByteBuffer slot = header.duplicate();
+        slot.position(position);
+        slot.limit(position + SLOT_SIZE);
+        slot = slot.slice();
+
+        ByteBuffer data = slot.duplicate();
+        data.limit(SLOT_SIZE - 4);
+        if (slot.getInt(0) != MAGIC || slot.getInt(4) != VERSION
+            || JavaTreeBinaryFormat.checksum(data) != slot.getInt(SLOT_SIZE - 4)) {
+            return null;
+        }
+        return slot;
+    }
+
+    /**
+     * Reads the table a valid header slot points to.
+     */
+    private static JavaTreeSegmentTable readTable(FileChannel channel, ByteBuffer slot) throws IOException {
+
+        long generation = slot.getLong(8);
+        long offset = slot.getLong(16);
+        int length = slot.getInt(24);
+        if (offset < HEADER_SIZE || length < JavaTreeBinaryFormat.BLOCK_HEADER || offset + length > channel.size()) {
+            throw new IOException("Segment table exceeds the end of the file.");
+        }
+
+        ByteBuffer block = read(channel, offset, length);
+        ByteBuffer payload = block.duplicate();
+        payload.position(JavaTreeBinaryFormat.BLOCK_HEADER);
+        if (block.getInt(0) != payload.remaining() || JavaTreeBinaryFormat.checksum(payload) != block.getInt(4)) {
+            throw new IOException("Segment table checksum mismatch.");
+        }
+
+        JavaTreeSegmentTable table = new JavaTreeSegmentTable(generation, getString(payload), getString(payload));
+        int count = JavaTreeBinaryFormat.getVarint(payload);
+        if (count < 0 || count > payload.remaining() / 24) {
+            throw new IOException("Segment table is damaged.");
+        }
+        for (int segment = 0; segment < count; segment++) {
+            long segmentOffset = payload.getLong();
+            long segmentLength = payload.getLong();
+            long nodeCount = payload.getLong();
+            if (segmentOffset < HEADER_SIZE || segmentLength <= 0 || segmentOffset + segmentLength > offset) {
+                throw new IOException("Segment " + segment + " is outside of the document.");
+            }
+            table.add(segmentOffset, segmentLength, nodeCount);
+        }
+        return table;
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+
+        int length = JavaTreeBinaryFormat.getVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("String exceeds the end of the segment table.");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                                  StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + offset);
+            }
+            offset += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * JavaTreeSegmentedReader reads segmented JavaTree documents and pushes their nodes to a JavaTreeHandler. Segments
+ * of the current generation are read in the order of the segment table with a JavaTreeBinaryReader.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSegmentedReader {
+
+    private JavaTreeSegmentedReader() {
+    }
+
+    /**
+     * Reads a file and pushes its nodes to handler. Read bytes and nodes are reported to progress.
+     * 
+     * @param file
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public static void load(File file, JavaTreeHandler handler, JavaTreeProgress progress) throws Exception {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(channel);
+            progress.setTotalBytes(table.getSegmentBytes());
+
+            JavaTreeBinaryReader reader = new JavaTreeBinaryReader(channel, progress);
+            handler.startNode(table.getRootTitle(), table.getRootText());
+            progress.addNode();
+            for (int segment = 0; segment < table.getSegmentCount(); segment++) {
+                long offset = table.getOffset(segment);
+                long nodes = reader.readTree(offset, offset + table.getLength(segment), handler);
+                if (nodes != table.getNodeCount(segment)) {
+                    throw new IOException("Segment " + segment + " has " + nodes + " nodes, table says "
+                                          + table.getNodeCount(segment));
+                }
+            }
+            handler.endNode();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeModel;
+
+/**
+ * JavaTreeSegmentedWriter writes segmented JavaTree documents. A document can be written completely, or updated in
+ * place after its tree was changed.
+ * 
+ * Update appends segments of the children of the root that were changed since the document was last written, keeps
+ * segments of unchanged children where they are and appends a new segment table. The table and the segments are
+ * forced to disk before the header slot of the new generation is written, so an interrupted update leaves the previous
+ * generation readable. Time of an update depends on the size of changed subtrees, not on the size of the document.
+ * Once segments that are no longer used take more space than the ones in use, the document is written again as a new
+ * file that replaces the old one.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSegmentedWriter {
+    private TreeModel            model;
+    private FileChannel          channel;
+    private JavaTreeBinaryWriter writer;
+
+    /**
+     * Creates JavaTreeSegmentedWriter that writes segments of model to channel.
+     * 
+     * @param model
+     * @param channel
+     * @param progress
+     */
+    private JavaTreeSegmentedWriter(TreeModel model, FileChannel channel, JavaTreeProgress progress) {
+        this.model = model;
+        this.channel = channel;
+        writer = new JavaTreeBinaryWriter(channel, progress);
+    }
+
+    /**
+     * Writes the tree of a model to an empty channel. Written bytes and nodes are reported to progress.
+     * 
+     * @param model
+     * @param channel
+     * @param progress
+     * 
+     * @return table of the written document, bound to model
+     * 
+     * @throws IOException
+     */
+    public static JavaTreeSegmentTable write(TreeModel model, FileChannel channel, JavaTreeProgress progress)
+            throws IOException {
+        return new JavaTreeSegmentedWriter(model, channel, progress).writeDocument(1, null, null);
+    }
+
+    /**
+     * Updates a document that holds the tree of model as described by table, which must be bound to model. Only
+     * children of the root that tracker reports as changed, and children that were added since the table was bound,
+     * are written. Written bytes and nodes are reported to progress.
+     * 
+     * @param model
+     * @param file
+     * @param table
+     * @param tracker
+     * @param progress
+     * 
+     * @return table of the updated document, bound to model
+     * 
+     * @throws IOException
+     */
+    public static JavaTreeSegmentTable update(TreeModel model, File file, JavaTreeSegmentTable table,
+                                              JavaTreeChangeTracker tracker, JavaTreeProgress progress)
+            throws IOException {
+
+        JavaTreeSegmentTable updated = null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            // file that was written without the table is written again completely
+            if (JavaTreeSegmentedFormat.readTable(channel).getGeneration() == table.getGeneration()) {
+                updated = new JavaTreeSegmentedWriter(model, channel, progress)
+                        .writeDocument(table.getGeneration() + 1, table, tracker);
+                // keep the file while unused segments take less space than used ones
+                if (channel.size() <= 2 * (JavaTreeSegmentedFormat.HEADER_SIZE + updated.getSegmentBytes())) {
+                    return updated;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // write a new generation of the file and replace the old one with it
+        File next = new File(file.getPath() + ".new");
+        long generation = (updated != null ? updated.getGeneration() : table.getGeneration()) + 1;
+        try (FileChannel channel = FileChannel.open(next.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            updated = new JavaTreeSegmentedWriter(model, channel, progress).writeDocument(generation, null, null);
+        }
+        Files.move(next.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        return updated;
+    }
+
+    /**
+     * Writes segments at the end of the file, then the segment table and then the header slot of generation. If
+     * previous is null all segments are written and the other slot is cleared.
+     * 
+     * @param generation
+     * @param previous table of the previous generation or null
+     * @param tracker
+     * 
+     * @return table
+     * 
+     * @throws IOException
+     */
+    private JavaTreeSegmentTable writeDocument(long generation, JavaTreeSegmentTable previous,
+                                               JavaTreeChangeTracker tracker) throws IOException {
+
+        Object root = model.getRoot();
+        if (root instanceof JavaTreeLazyNode) {
+            // read the whole document before the file it is read from can be overwritten
+            ((JavaTreeLazyNode) root).loadAll();
+        }
+
+        if (previous == null) {
+            writeFully(ByteBuffer.allocate(JavaTreeSegmentedFormat.HEADER_SIZE), 0);
+        }
+        long position = Math.max(channel.size(), JavaTreeSegmentedFormat.HEADER_SIZE);
+        channel.position(position);
+
+        String[] rootData = getNodeData(root);
+        JavaTreeSegmentTable table = new JavaTreeSegmentTable(generation, rootData[0], rootData[1]);
+        for (int index = 0; index < model.getChildCount(root); index++) {
+            Object child = model.getChild(root, index);
+            int segment = previous == null ? -1 : previous.getSegment(child);
+            if (segment >= 0 && !tracker.isChanged(child)) {
+                table.add(previous.getOffset(segment), previous.getLength(segment), previous.getNodeCount(segment));
+                continue;
+            }
+
+            long nodes = writer.getNodeCount();
+            if (child instanceof Integer) {
+                writer.writeTree(((JavaTreeStoreTreeModel) model).getStore(), ((Integer) child).intValue());
+            } else {
+                writer.writeTree((DefaultMutableTreeNode) child);
+            }
+            writer.flushBlock();
+            table.add(position, channel.position() - position, writer.getNodeCount() - nodes);
+            position = channel.position();
+        }
+
+        ByteBuffer tableBlock = JavaTreeSegmentedFormat.encodeTable(table);
+        int tableLength = tableBlock.remaining();
+        writeFully(tableBlock, position);
+        channel.force(false);
+
+        int slot = (int) (generation % 2) * JavaTreeSegmentedFormat.SLOT_SIZE;
+        writeFully(JavaTreeSegmentedFormat.header(generation, position, tableLength), slot);
+        channel.force(false);
+
+        table.bind(model);
+        return table;
+    }
+
+    /**
+     * @param node
+     * 
+     * @return title and text of node
+     */
+    private String[] getNodeData(Object node) {
+
+        if (node instanceof Integer) {
+            JavaTreeNodeStore store = ((JavaTreeStoreTreeModel) model).getStore();
+            return new String[] { store.getTitle(((Integer) node).intValue()),
+                                  store.getText(((Integer) node).intValue()) };
+        }
+        JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject();
+        return new String[] { nodeObject.getTitle(), nodeObject.getText() };
+    }
+
+    /**
+     * Writes the whole buffer at given position without moving the channel position.
+     * 
+     * @param buffer
+     * @param position
+     * 
+     * @throws IOException
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+}
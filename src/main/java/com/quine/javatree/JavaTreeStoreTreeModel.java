@@ -0,0 +1,376 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JTree;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeStoreTreeModel exposes a JavaTreeNodeStore to JTree. Nodes of the model are the Integer numbers of the
+ * store nodes. Edit operations change the store arrays directly and fire the same events DefaultTreeModel fires for
+ * the equivalent operations on DefaultMutableTreeNode objects.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeStoreTreeModel implements TreeModel {
+    private JavaTreeNodeStore store;
+    private EventListenerList listenerList;
+
+    /**
+     * Creates JavaTreeStoreTreeModel over store.
+     * 
+     * @param store
+     */
+    public JavaTreeStoreTreeModel(JavaTreeNodeStore store) {
+        this.store = store;
+        listenerList = new EventListenerList();
+    }
+
+    /**
+     * @return the store
+     */
+    public JavaTreeNodeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Creates a JTree that shows the model and displays node titles.
+     * 
+     * @return tree
+     */
+    public JTree createTree() {
+
+        return new JTree(this) {
+            private static final long serialVersionUID = 3181665947312957113L;
+
+            @Override
+            public String convertValueToText(Object value, boolean selected, boolean expanded, boolean leaf, int row,
+                                             boolean hasFocus) {
+                if (value instanceof Integer) {
+                    return store.getTitle(((Integer) value).intValue());
+                }
+                return super.convertValueToText(value, selected, expanded, leaf, row, hasFocus);
+            }
+        };
+    }
+
+    @Override
+    public Object getRoot() {
+        return Integer.valueOf(store.getRoot());
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return Integer.valueOf(store.getChildAt(node(parent), index));
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return store.getChildCount(node(parent));
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return store.getChildCount(node(node)) == 0;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+
+        int node = node(path.getLastPathComponent());
+        store.setTitle(node, String.valueOf(newValue));
+        fireNodeChanged(node);
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+
+        if (parent == null || child == null || store.getParent(node(child)) != node(parent)) {
+            return -1;
+        }
+        return store.getIndex(node(child));
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listenerList.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listenerList.remove(TreeModelListener.class, listener);
+    }
+
+    /**
+     * Adds a new child with default title to the end of the children of node.
+     * 
+     * @param node
+     */
+    public void addChild(int node) {
+
+        store.addChild(node, new JavaTreeNodeObject().getTitle(), "");
+        fireNodesInserted(node, store.getChildCount(node) - 1);
+    }
+
+    /**
+     * Sets title and text of node.
+     * 
+     * @param node
+     * @param title
+     * @param text
+     */
+    public void setNodeData(int node, String title, String text) {
+
+        store.setTitle(node, title);
+        store.setText(node, text);
+        fireNodeChanged(node);
+    }
+
+    /**
+     * Inserts a new child at index among the children of node.
+     * 
+     * @param node
+     * @param index
+     * @param title
+     * @param text
+     * 
+     * @return new child
+     */
+    public int insertChild(int node, int index, String title, String text) {
+
+        int child = store.insertChild(node, index, title, text);
+        fireNodesInserted(node, index);
+        return child;
+    }
+
+    /**
+     * Moves node to index among the children of newParent. Index is the position after node is removed from its
+     * current parent.
+     * 
+     * @param node
+     * @param newParent
+     * @param index
+     */
+    public void move(int node, int newParent, int index) {
+
+        int parent = store.getParent(node);
+        int oldIndex = store.getIndex(node);
+        store.move(node, newParent, index);
+        fireNodesRemoved(parent, oldIndex, node);
+        fireNodesInserted(newParent, index);
+    }
+
+    /**
+     * Deletes node and its subtree.
+     * 
+     * @param node
+     */
+    public void delete(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        store.delete(node);
+        fireNodesRemoved(parent, index, node);
+    }
+
+    /**
+     * Removes node with its subtree from the tree without deleting it from the store.
+     * 
+     * @param node
+     */
+    public void detach(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        store.detach(node);
+        fireNodesRemoved(parent, index, node);
+    }
+
+    /**
+     * Attaches a detached node with its subtree to parent at index.
+     * 
+     * @param node
+     * @param parent
+     * @param index
+     */
+    public void attach(int node, int parent, int index) {
+
+        store.attach(node, parent, index);
+        fireNodesInserted(parent, index);
+    }
+
+    /**
+     * Moves node before its previous sibling.
+     * 
+     * @param node
+     */
+    public void moveUp(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        if (store.moveUp(node)) {
+            fireNodesRemoved(parent, index, node);
+            fireNodesInserted(parent, index - 1);
+        }
+    }
+
+    /**
+     * Moves node after its next sibling.
+     * 
+     * @param node
+     */
+    public void moveDown(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        if (store.moveDown(node)) {
+            fireNodesRemoved(parent, index, node);
+            fireNodesInserted(parent, index + 1);
+        }
+    }
+
+    /**
+     * Moves node to the end of the children of its grandparent.
+     * 
+     * @param node
+     */
+    public void moveLevelUp(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        if (store.moveLevelUp(node)) {
+            int grandParent = store.getParent(parent);
+            fireNodesRemoved(parent, index, node);
+            fireNodesInserted(grandParent, store.getChildCount(grandParent) - 1);
+        }
+    }
+
+    /**
+     * Moves node to the end of the children of its next sibling.
+     * 
+     * @param node
+     */
+    public void moveLevelDown(int node) {
+
+        int parent = store.getParent(node);
+        int index = store.getIndex(node);
+        int next = store.getNextSibling(node);
+        if (store.moveLevelDown(node)) {
+            fireNodesRemoved(parent, index, node);
+            fireNodesInserted(next, store.getChildCount(next) - 1);
+        }
+    }
+
+    /**
+     * Returns path from the root to node.
+     * 
+     * @param node
+     * 
+     * @return path
+     */
+    public TreePath getPath(int node) {
+
+        List<Object> nodes = new ArrayList<Object>();
+        for (int current = node; current != JavaTreeNodeStore.NONE; current = store.getParent(current)) {
+            nodes.add(0, Integer.valueOf(current));
+        }
+        return new TreePath(nodes.toArray());
+    }
+
+    /**
+     * @param value
+     * 
+     * @return store node of a model node
+     */
+    private static int node(Object value) {
+        return ((Integer) value).intValue();
+    }
+
+    /**
+     * Notifies listeners that a child was inserted at index.
+     * 
+     * @param parent
+     * @param index
+     */
+    private void fireNodesInserted(int parent, int index) {
+
+        TreeModelEvent event = new TreeModelEvent(this, getPath(parent), new int[] { index },
+                                                  new Object[] { Integer.valueOf(store.getChildAt(parent, index)) });
+        for (TreeModelListener listener : listenerList.getListeners(TreeModelListener.class)) {
+            listener.treeNodesInserted(event);
+        }
+    }
+
+    /**
+     * Notifies listeners that child was removed from index.
+     * 
+     * @param parent
+     * @param index
+     * @param child
+     */
+    private void fireNodesRemoved(int parent, int index, int child) {
+
+        TreeModelEvent event = new TreeModelEvent(this, getPath(parent), new int[] { index },
+                                                  new Object[] { Integer.valueOf(child) });
+        for (TreeModelListener listener : listenerList.getListeners(TreeModelListener.class)) {
+            listener.treeNodesRemoved(event);
+        }
+    }
+
+    /**
+     * Notifies listeners that node was changed.
+     * 
+     * @param node
+     */
+    private void fireNodeChanged(int node) {
+
+        int parent = store.getParent(node);
+        TreeModelEvent event;
+        if (parent == JavaTreeNodeStore.NONE) {
+            event = new TreeModelEvent(this, getPath(node), null, null);
+        } else {
+            event = new TreeModelEvent(this, getPath(parent), new int[] { store.getIndex(node) },
+                                       new Object[] { Integer.valueOf(node) });
+        }
+        for (TreeModelListener listener : listenerList.getListeners(TreeModelListener.class)) {
+            listener.treeNodesChanged(event);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * JavaTreeStreamLoader reads JavaTree XML documents with a StAX XMLStreamReader and pushes the nodes to a
+ * JavaTreeHandler as soon as their title and text are read. No DOM is created, so the memory needed to load a
+ * document is close to the memory needed by the tree the handler builds.
+ * 
+ * Elements are read in the order of the content model of javatree.dtd. A validating loader also passes the events
+ * of the reader to a JavaTreeValidator handler, so documents are checked against the compiled grammar while they are
+ * read. A trusted loader skips validation of documents whose checksum trailer matches their content, which is only
+ * known at the end, so a document that does not match is read a second time to check it. The DTD file itself is
+ * never read.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeStreamLoader {
+    // size of the buffer used to read the file
+    private final static int                  BUFFER_SIZE = 64 * 1024;
+
+    // loader used to read single nodes
+    private final static JavaTreeStreamLoader NODE_LOADER = new JavaTreeStreamLoader();
+
+    // element that wraps sibling nodes read by loadNodes
+    private final static String               NODES       = JavaTreeValidator.NODES;
+    private final static byte[]               NODES_START = ("<" + NODES + ">").getBytes(StandardCharsets.UTF_8);
+    private final static byte[]               NODES_END   = ("</" + NODES + ">").getBytes(StandardCharsets.UTF_8);
+
+    // handler of documents that are only checked
+    private final static JavaTreeHandler      SKIP_NODES  = new JavaTreeHandler() {
+        public void startNode(String title, String text) {
+            // nodes of checked documents are not needed
+        }
+
+        public void endNode() {
+            // nodes of checked documents are not needed
+        }
+    };
+
+    private XMLInputFactory                   factory;
+
+    // check documents against the compiled grammar of javatree.dtd
+    private boolean                           validating;
+
+    // skip validation of documents whose checksum trailer matches their content
+    private boolean                           trusted;
+
+    /**
+     * Creates validating JavaTreeStreamLoader.
+     */
+    public JavaTreeStreamLoader() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        validating = true;
+        trusted = false;
+    }
+
+    /**
+     * @param validating true to check documents and sibling nodes against the compiled grammar while reading
+     */
+    public void setValidating(boolean validating) {
+        this.validating = validating;
+    }
+
+    /**
+     * @param trusted true to skip validation of files whose checksum trailer matches their content
+     */
+    public void setTrusted(boolean trusted) {
+        this.trusted = trusted;
+    }
+
+    /**
+     * Reads title and text of the first Node element in the stream. Reading stops after the Text element, so the
+     * stream may end right after it. Stream is not closed.
+     * 
+     * @param input
+     * 
+     * @return nodeObject
+     * 
+     * @throws Exception
+     */
+    public static JavaTreeNodeObject readNodeObject(InputStream input) throws Exception {
+
+        XMLStreamReader reader;
+        // factory is shared by all threads reading single nodes
+        synchronized (NODE_LOADER) {
+            reader = NODE_LOADER.factory.createXMLStreamReader(input, "UTF-8");
+        }
+
+        try {
+            while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                // skip whitespace before the node
+            }
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Node");
+
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Title");
+            String title = reader.getElementText().trim();
+
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Text");
+            String text = reader.getElementText().trim();
+
+            return new JavaTreeNodeObject(title, text);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the file and pushes its nodes to handler.
+     * 
+     * @param file
+     * @param handler
+     * 
+     * @throws Exception
+     */
+    public void load(File file, JavaTreeHandler handler) throws Exception {
+        load(file, handler, new JavaTreeProgress());
+    }
+
+    /**
+     * Reads the file and pushes its nodes to handler. Read bytes and nodes are reported to progress and reading stops
+     * with CancellationException when progress is cancelled.
+     * 
+     * @param file
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public void load(File file, JavaTreeHandler handler, JavaTreeProgress progress) throws Exception {
+
+        progress.setTotalBytes(file.length());
+        long checksum = validating && trusted ? JavaTreeValidator.readTrailer(file) : -1;
+        if (checksum < 0) {
+            try (InputStream input = progress.track(new BufferedInputStream(new FileInputStream(file),
+                                                                            BUFFER_SIZE))) {
+                read(input, handler, progress, validating);
+            }
+            return;
+        }
+
+        JavaTreeChecksumInputStream checked = new JavaTreeChecksumInputStream(new FileInputStream(file),
+                                                                              file.length()
+                                                                              - JavaTreeValidator.TRAILER_SIZE);
+        try (InputStream input = progress.track(new BufferedInputStream(checked, BUFFER_SIZE))) {
+            read(input, handler, progress, false);
+        }
+        if (checked.matches(checksum)) {
+            return;
+        }
+
+        // document was changed after it was saved, its nodes are pushed already so it is only checked
+        progress.setTotalBytes(progress.getBytes() + file.length());
+        try (InputStream input = progress.track(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            check(input, progress);
+        }
+    }
+
+    /**
+     * Reads the stream and checks it against the compiled grammar without pushing its nodes anywhere. Reading stops
+     * with CancellationException when progress is cancelled, nothing is reported to it. Stream is not closed.
+     * 
+     * @param input
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public void check(InputStream input, final JavaTreeProgress progress) throws Exception {
+
+        read(input, SKIP_NODES, new JavaTreeProgress() {
+            @Override
+            public void checkCancelled() {
+                progress.checkCancelled();
+            }
+        }, true);
+    }
+
+    /**
+     * Reads the stream and pushes its nodes to handler. Stream is not closed.
+     * 
+     * @param input
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public void load(InputStream input, JavaTreeHandler handler, JavaTreeProgress progress) throws Exception {
+        read(input, handler, progress, validating);
+    }
+
+    /**
+     * Reads the prolog of a document and the title and text of its root node. Returns null if the document is not
+     * encoded in UTF-8, since only then Node elements can be read separately from their byte offsets. Stream is not
+     * closed.
+     * 
+     * @param input
+     * 
+     * @return nodeObject
+     * 
+     * @throws Exception
+     */
+    public JavaTreeNodeObject readRoot(InputStream input) throws Exception {
+
+        XMLStreamReader reader = factory.createXMLStreamReader(input);
+
+        try {
+            readProlog(reader);
+            if (reader.getEncoding() != null && !reader.getEncoding().equalsIgnoreCase("UTF-8")) {
+                return null;
+            }
+
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Title");
+            String title = reader.getElementText().trim();
+
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Text");
+            String text = reader.getElementText().trim();
+
+            return new JavaTreeNodeObject(title, text);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads sibling Node elements encoded in UTF-8, as they appear between the children of a node, and pushes their
+     * nodes to handler. Stream is not closed.
+     * 
+     * @param input
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public void loadNodes(InputStream input, JavaTreeHandler handler, JavaTreeProgress progress) throws Exception {
+
+        // siblings are wrapped in an element so they form a document
+        InputStream document = new SequenceInputStream(new ByteArrayInputStream(NODES_START),
+                                                       new SequenceInputStream(input,
+                                                                               new ByteArrayInputStream(NODES_END)));
+        XMLStreamReader reader = factory.createXMLStreamReader(document, "UTF-8");
+        if (validating) {
+            reader = new ValidatingReader(reader, true);
+        }
+
+        try {
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, NODES);
+
+            reader.nextTag();
+            while (reader.isStartElement()) {
+                reader.require(XMLStreamConstants.START_ELEMENT, null, "Node");
+                readNodes(reader, handler, progress);
+            }
+
+            reader.require(XMLStreamConstants.END_ELEMENT, null, NODES);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the stream up to its end and pushes its nodes to handler. Stream is not closed.
+     * 
+     * @param input
+     * @param handler
+     * @param progress
+     * @param validate
+     * 
+     * @throws Exception
+     */
+    private void read(InputStream input, JavaTreeHandler handler, JavaTreeProgress progress, boolean validate)
+            throws Exception {
+
+        // parser closes the stream when it reaches the end of the document
+        XMLStreamReader reader = factory.createXMLStreamReader(new FilterInputStream(input) {
+            @Override
+            public void close() {
+                // stream belongs to the caller
+            }
+        });
+        if (validate) {
+            reader = new ValidatingReader(reader, false);
+        }
+
+        try {
+            readProlog(reader);
+            readNodes(reader, handler, progress);
+            reader.require(XMLStreamConstants.END_ELEMENT, null, "JavaTreeXML");
+
+            // only comments, processing instructions and whitespace may follow the root element
+            while (reader.hasNext()) {
+                reader.next();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Skips the prolog of a document and its root element. Reader is left on the start of the root Node element.
+     * 
+     * @param reader
+     * 
+     * @throws XMLStreamException
+     */
+    private void readProlog(XMLStreamReader reader) throws XMLStreamException {
+
+        while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            if (reader.getEventType() == XMLStreamConstants.CHARACTERS && !reader.isWhiteSpace()) {
+                throw new XMLStreamException("Unexpected text before root element.", reader.getLocation());
+            }
+        }
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "JavaTreeXML");
+
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "Node");
+    }
+
+    /**
+     * Reads a Node element with all its descendants and pushes them to handler. Reader must be on the start of the
+     * element and is left on the first tag after its end.
+     * 
+     * @param reader
+     * @param handler
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    private void readNodes(XMLStreamReader reader, JavaTreeHandler handler, JavaTreeProgress progress)
+            throws Exception {
+
+        int openNodes = 0;
+        while (true) {
+            // reader is positioned on the start of a Node element
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Title");
+            String title = reader.getElementText().trim();
+
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Text");
+            String text = reader.getElementText().trim();
+
+            progress.checkCancelled();
+            handler.startNode(title, text);
+            progress.addNode();
+            openNodes++;
+
+            // close finished nodes until the next child node is found
+            reader.nextTag();
+            while (reader.isEndElement() && openNodes > 0) {
+                reader.require(XMLStreamConstants.END_ELEMENT, null, "Node");
+                handler.endNode();
+                openNodes--;
+                reader.nextTag();
+            }
+
+            if (openNodes == 0) {
+                return;
+            }
+            reader.require(XMLStreamConstants.START_ELEMENT, null, "Node");
+        }
+    }
+
+    /**
+     * ValidatingReader passes the events of a reader to a validator handler of the compiled grammar. Events skipped by
+     * nextTag and getElementText are read with next, so the handler receives all of them.
+     */
+    private static class ValidatingReader extends StreamReaderDelegate {
+        private ValidatorHandler handler;
+        private AttributesImpl   attributes;
+
+        public ValidatingReader(XMLStreamReader reader, boolean nodes) throws SAXException {
+            super(reader);
+            attributes = new AttributesImpl();
+            handler = JavaTreeValidator.newValidatorHandler(nodes);
+            handler.setDocumentLocator(new Locator() {
+                public String getPublicId() {
+                    return getLocation().getPublicId();
+                }
+
+                public String getSystemId() {
+                    return getLocation().getSystemId();
+                }
+
+                public int getLineNumber() {
+                    return getLocation().getLineNumber();
+                }
+
+                public int getColumnNumber() {
+                    return getLocation().getColumnNumber();
+                }
+            });
+            handler.startDocument();
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+
+            int event = super.next();
+            try {
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    attributes.clear();
+                    for (int index = 0; index < getAttributeCount(); index++) {
+                        String name = getAttributeLocalName(index);
+                        attributes.addAttribute(getNamespace(getAttributeNamespace(index)), name, name, "CDATA",
+                                                getAttributeValue(index));
+                    }
+                    handler.startElement(getNamespace(getNamespaceURI()), getLocalName(), getLocalName(),
+                                         attributes);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    handler.endElement(getNamespace(getNamespaceURI()), getLocalName(), getLocalName());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    handler.endDocument();
+                    break;
+                default:
+                    // comments, processing instructions and the document type do not change validity
+                    break;
+                }
+            } catch (SAXException e) {
+                throw new XMLStreamException(e.getMessage(), getLocation(), e);
+            }
+            return event;
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+
+            int event = next();
+            while ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && isWhiteSpace()
+                   || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.COMMENT
+                   || event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                event = next();
+            }
+            if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+                throw new XMLStreamException("Expected start or end tag.", getLocation());
+            }
+            return event;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+
+            require(XMLStreamConstants.START_ELEMENT, null, null);
+            StringBuilder text = new StringBuilder();
+            int event = next();
+            while (event != XMLStreamConstants.END_ELEMENT) {
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                    text.append(getText());
+                } else if (event != XMLStreamConstants.COMMENT
+                           && event != XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                    throw new XMLStreamException("Expected text only in element " + getLocalName() + ".",
+                                                 getLocation());
+                }
+                event = next();
+            }
+            return text.toString();
+        }
+
+        /**
+         * @param uri
+         * 
+         * @return uri or empty string for no namespace
+         */
+        private static String getNamespace(String uri) {
+            return uri == null ? "" : uri;
+        }
+    }
+}
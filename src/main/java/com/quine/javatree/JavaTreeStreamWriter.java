@@ -0,0 +1,302 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * JavaTreeStreamWriter writes JavaTree XML documents with a StAX XMLStreamWriter. Nodes are written as they are
+ * received, either from a tree with writeTree or from any other source through the JavaTreeHandler methods, so no
+ * DOM is created while saving. Written documents are valid against javatree.dtd.
+ * 
+ * Indentation can be turned off to get the most throughput. Levels deeper than MAX_INDENT_LEVEL are indented like
+ * that level. Documents written with and without indentation are read
+ * back the same way because title and text are trimmed when loaded.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeStreamWriter implements JavaTreeHandler {
+    // size of the buffer used to write the file
+    private final static int    BUFFER_SIZE      = 256 * 1024;
+
+    // string used for one level of indentation
+    private final static String INDENT           = "    ";
+
+    private final static String NEW_LINE         = "\n";
+
+    // deeper levels are indented like this one, so indentation of very deep documents does not grow quadratically
+    private final static int    MAX_INDENT_LEVEL = 64;
+
+    private XMLStreamWriter     writer;
+    private boolean             indent;
+
+    // receives the number of written nodes
+    private JavaTreeProgress    progress;
+
+    // number of nodes started but not yet finished
+    private int                 depth;
+
+    // new line followed by indentation for MAX_INDENT_LEVEL levels
+    private char[]              indentation;
+
+    /**
+     * Creates JavaTreeStreamWriter that writes to output. Output is not closed by the writer.
+     * 
+     * @param output
+     * @param indent
+     * 
+     * @throws XMLStreamException
+     */
+    public JavaTreeStreamWriter(OutputStream output, boolean indent) throws XMLStreamException {
+        writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+        this.indent = indent;
+        progress = new JavaTreeProgress();
+        depth = 0;
+
+        StringBuilder builder = new StringBuilder(NEW_LINE);
+        for (int level = 0; level < MAX_INDENT_LEVEL; level++) {
+            builder.append(INDENT);
+        }
+        indentation = builder.toString().toCharArray();
+    }
+
+    /**
+     * Writes a tree to a channel at its current position. Written bytes and nodes are reported to progress. Channel
+     * is not closed.
+     * 
+     * @param root
+     * @param channel
+     * @param indent
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public static void write(DefaultMutableTreeNode root, WritableByteChannel channel, boolean indent,
+                             JavaTreeProgress progress) throws Exception {
+
+        OutputStream output = openStream(channel, progress);
+        JavaTreeStreamWriter writer = new JavaTreeStreamWriter(output, indent);
+        writer.setProgress(progress);
+        writer.startDocument();
+        writer.writeTree(root);
+        writer.endDocument();
+        output.flush();
+    }
+
+    /**
+     * Writes the tree held by a store to a channel at its current position. Written bytes and nodes are reported to
+     * progress. Channel is not closed.
+     * 
+     * @param store
+     * @param channel
+     * @param indent
+     * @param progress
+     * 
+     * @throws Exception
+     */
+    public static void write(JavaTreeNodeStore store, WritableByteChannel channel, boolean indent,
+                             JavaTreeProgress progress) throws Exception {
+
+        OutputStream output = openStream(channel, progress);
+        JavaTreeStreamWriter writer = new JavaTreeStreamWriter(output, indent);
+        writer.setProgress(progress);
+        writer.startDocument();
+        store.walk(writer);
+        writer.endDocument();
+        output.flush();
+    }
+
+    /**
+     * Creates a buffered stream that writes to channel and counts written bytes in progress. Stream must be flushed
+     * and not closed, closing it would close the channel.
+     * 
+     * @param channel
+     * @param progress
+     * 
+     * @return output
+     */
+    public static OutputStream openStream(WritableByteChannel channel, JavaTreeProgress progress) {
+        return new BufferedOutputStream(progress.track(Channels.newOutputStream(channel)), BUFFER_SIZE);
+    }
+
+    /**
+     * @param progress the progress to set
+     */
+    public void setProgress(JavaTreeProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Sets number of nodes that enclose the nodes written next. Used to write a subtree of a document on its own,
+     * indented as it is in the whole document.
+     * 
+     * @param depth
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Writes everything written so far to the output.
+     * 
+     * @throws XMLStreamException
+     */
+    public void flush() throws XMLStreamException {
+        writer.flush();
+    }
+
+    /**
+     * Writes XML declaration, document type and start of the root element.
+     * 
+     * @throws XMLStreamException
+     */
+    public void startDocument() throws XMLStreamException {
+
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters(NEW_LINE);
+        writer.writeDTD("<!DOCTYPE JavaTreeXML SYSTEM \"javatree.dtd\">");
+        writer.writeCharacters(NEW_LINE);
+        writer.writeStartElement("JavaTreeXML");
+    }
+
+    /**
+     * Writes end of the root element and flushes the writer.
+     * 
+     * @throws XMLStreamException
+     */
+    public void endDocument() throws XMLStreamException {
+
+        writeIndent(0);
+        writer.writeEndElement();
+        writer.writeCharacters(NEW_LINE);
+        writer.writeEndDocument();
+        writer.flush();
+    }
+
+    /**
+     * Writes node and all of its descendants, without recursion.
+     * 
+     * @param node
+     * 
+     * @throws XMLStreamException
+     */
+    public void writeTree(DefaultMutableTreeNode node) throws XMLStreamException {
+
+        JavaTreeTraversal traversal = new JavaTreeTraversal(node);
+        while (traversal.next()) {
+            if (traversal.isEntering()) {
+                JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) ((DefaultMutableTreeNode) traversal.getNode())
+                        .getUserObject();
+                startNode(nodeObject.getTitle(), nodeObject.getText());
+            } else {
+                endNode();
+            }
+        }
+    }
+
+    @Override
+    public void startNode(String title, String text) throws XMLStreamException {
+
+        depth++;
+        writeIndent(depth);
+        writer.writeStartElement("Node");
+
+        writeIndent(depth + 1);
+        writer.writeStartElement("Title");
+        writeText(title);
+        writer.writeEndElement();
+
+        writeIndent(depth + 1);
+        writer.writeStartElement("Text");
+        writeText(text);
+        writer.writeEndElement();
+
+        progress.addNode();
+    }
+
+    @Override
+    public void endNode() throws XMLStreamException {
+
+        writeIndent(depth);
+        writer.writeEndElement();
+        depth--;
+    }
+
+    /**
+     * Writes new line and indentation for given level if indentation is turned on.
+     * 
+     * @param level
+     * 
+     * @throws XMLStreamException
+     */
+    private void writeIndent(int level) throws XMLStreamException {
+
+        if (indent) {
+            int length = NEW_LINE.length() + Math.min(level, MAX_INDENT_LEVEL) * INDENT.length();
+            writer.writeCharacters(indentation, 0, length);
+        }
+    }
+
+    /**
+     * Writes character data. Carriage returns are written as character references so they survive end of line
+     * normalization when the document is read.
+     * 
+     * @param text
+     * 
+     * @throws XMLStreamException
+     */
+    private void writeText(String text) throws XMLStreamException {
+
+        if (text == null) {
+            return;
+        }
+
+        int start = 0;
+        int index = text.indexOf('\r');
+        while (index >= 0) {
+            writer.writeCharacters(text.substring(start, index));
+            writer.writeEntityRef("#13");
+            start = index + 1;
+            index = text.indexOf('\r', start);
+        }
+        writer.writeCharacters(text.substring(start));
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.Arrays;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+
+/**
+ * JavaTreeTextDocument is a plain text document for very large node texts. Text is kept in a JavaTreePieceContent so
+ * it is not copied when the document is created, and lines are kept as an array of line start offsets instead of an
+ * element with positions for every line. Line elements are created when asked for, so a text component showing the
+ * document reads only the lines it displays.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeTextDocument extends AbstractDocument {
+    private static final long serialVersionUID = -2652049935386815040L;
+
+    private Element           root;
+
+    // offset where every line starts, there is always at least one line
+    private int[]             lineStarts;
+    private int               lineCount;
+
+    /**
+     * Creates JavaTreeTextDocument holding text.
+     * 
+     * @param text
+     */
+    public JavaTreeTextDocument(String text) {
+        super(new JavaTreePieceContent(text));
+        putProperty(PlainDocument.tabSizeAttribute, Integer.valueOf(8));
+        root = new RootElement();
+
+        lineStarts = new int[64];
+        lineCount = 1;
+        int newline = text.indexOf('\n');
+        while (newline >= 0) {
+            addLineStart(lineCount, newline + 1);
+            newline = text.indexOf('\n', newline + 1);
+        }
+    }
+
+    /**
+     * @return number of lines in the document
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public Element getDefaultRootElement() {
+        return root;
+    }
+
+    @Override
+    public Element getParagraphElement(int pos) {
+        return root.getElement(root.getElementIndex(pos));
+    }
+
+    @Override
+    protected void insertUpdate(DefaultDocumentEvent chng, AttributeSet attr) {
+
+        int offset = chng.getOffset();
+        int length = chng.getLength();
+        int line = getLineIndex(offset);
+        for (int i = line + 1; i < lineCount; i++) {
+            lineStarts[i] += length;
+        }
+
+        // text is already in the content, every newline in it starts a new line
+        int added = 0;
+        try {
+            Segment segment = new Segment();
+            getText(offset, length, segment);
+            for (int i = 0; i < length; i++) {
+                if (segment.array[segment.offset + i] == '\n') {
+                    added++;
+                    addLineStart(line + added, offset + i + 1);
+                }
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+
+        if (added > 0) {
+            Element[] removed = new Element[] { new LineElement(line) };
+            Element[] lines = new Element[added + 1];
+            for (int i = 0; i <= added; i++) {
+                lines[i] = new LineElement(line + i);
+            }
+            chng.addEdit(new ElementEdit(root, line, removed, lines));
+        }
+        super.insertUpdate(chng, attr);
+    }
+
+    @Override
+    protected void removeUpdate(DefaultDocumentEvent chng) {
+
+        // called before the text is removed from the content
+        int offset = chng.getOffset();
+        int length = chng.getLength();
+        int first = getLineIndex(offset);
+        int last = getLineIndex(offset + length);
+
+        if (last > first) {
+            Element[] removed = new Element[last - first + 1];
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = new LineElement(first + i);
+            }
+            System.arraycopy(lineStarts, last + 1, lineStarts, first + 1, lineCount - last - 1);
+            lineCount -= last - first;
+            chng.addEdit(new ElementEdit(root, first, removed, new Element[] { new LineElement(first) }));
+        }
+        for (int i = first + 1; i < lineCount; i++) {
+            lineStarts[i] -= length;
+        }
+        super.removeUpdate(chng);
+    }
+
+    /**
+     * Returns index of the line that holds offset.
+     */
+    private int getLineIndex(int offset) {
+
+        int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private void addLineStart(int index, int start) {
+
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        System.arraycopy(lineStarts, index, lineStarts, index + 1, lineCount - index);
+        lineStarts[index] = start;
+        lineCount++;
+    }
+
+    private int getLineStart(int index) {
+        return lineStarts[Math.min(index, lineCount - 1)];
+    }
+
+    private int getLineEnd(int index) {
+        return index + 1 < lineCount ? lineStarts[index + 1] : getLength() + 1;
+    }
+
+    /**
+     * Root element of the document, its children are the lines.
+     */
+    private class RootElement implements Element {
+
+        public Document getDocument() {
+            return JavaTreeTextDocument.this;
+        }
+
+        public Element getParentElement() {
+            return null;
+        }
+
+        public String getName() {
+            return ParagraphElementName;
+        }
+
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        public int getStartOffset() {
+            return 0;
+        }
+
+        public int getEndOffset() {
+            return getLength() + 1;
+        }
+
+        public int getElementIndex(int offset) {
+            return getLineIndex(Math.max(offset, 0));
+        }
+
+        public int getElementCount() {
+            return lineCount;
+        }
+
+        public Element getElement(int index) {
+            return index >= 0 && index < lineCount ? new LineElement(index) : null;
+        }
+
+        public boolean isLeaf() {
+            return false;
+        }
+    }
+
+    /**
+     * Line element, offsets are read from the line index when asked for.
+     */
+    private class LineElement implements Element {
+        private int index;
+
+        LineElement(int index) {
+            this.index = index;
+        }
+
+        public Document getDocument() {
+            return JavaTreeTextDocument.this;
+        }
+
+        public Element getParentElement() {
+            return root;
+        }
+
+        public String getName() {
+            return ContentElementName;
+        }
+
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        public int getStartOffset() {
+            return getLineStart(index);
+        }
+
+        public int getEndOffset() {
+            return getLineEnd(Math.min(index, lineCount - 1));
+        }
+
+        public int getElementIndex(int offset) {
+            return -1;
+        }
+
+        public int getElementCount() {
+            return 0;
+        }
+
+        public Element getElement(int index) {
+            return null;
+        }
+
+        public boolean isLeaf() {
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof LineElement && ((LineElement) object).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JavaTreeTextStore keeps large node texts out of the heap. Texts are appended in UTF-8 to a spill file in the
+ * temporary directory and read back through memory mapped regions of it. Recently read texts are kept in a least
+ * recently used cache bounded by the number of characters it holds.
+ * 
+ * Texts are dead once the node that holds them gets another text or is no longer used. When dead texts take more
+ * space than live ones, and at least COMPACT_SIZE bytes, live texts are copied to a new spill file that replaces the
+ * old one, so the spill file stays at most about twice the size of live texts. Spill file is deleted when the
+ * application exits. Store is safe for use from several threads, texts are read by background saves as well as by
+ * the tree.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeTextStore {
+    // size of mapped regions of the spill file
+    private static final int              REGION_SIZE  = 64 * 1024 * 1024;
+
+    // bytes of dead texts from which the spill file is compacted once they outweigh live texts
+    private static final long             COMPACT_SIZE = 4 * 1024 * 1024;
+
+    private int                           spillSize;
+    private long                          cacheSize;
+
+    private File                          file;
+    private FileChannel                   channel;
+    private long                          fileLength;
+    private MappedByteBuffer[]            regions;
+
+    // extents of live texts and the queue their references are put in once the nodes holding them are collected
+    private Set<Extent>                   extents;
+    private ReferenceQueue<Reference>     collected;
+    private long                          liveBytes;
+    private long                          compactions;
+
+    // cached texts by their extent, in access order
+    private LinkedHashMap<Extent, String> cache;
+    private long                          cachedChars;
+
+    private long                          hits;
+    private long                          misses;
+    private long                          evictions;
+
+    /**
+     * Creates JavaTreeTextStore. Spill file is created when the first text is spilled.
+     * 
+     * @param spillSize length of texts in characters from which they are spilled
+     * @param cacheSize number of characters of texts kept in the cache
+     */
+    public JavaTreeTextStore(int spillSize, long cacheSize) {
+        this.spillSize = spillSize;
+        this.cacheSize = cacheSize;
+        regions = new MappedByteBuffer[0];
+        extents = new HashSet<Extent>();
+        collected = new ReferenceQueue<Reference>();
+        cache = new LinkedHashMap<Extent, String>(16, 0.75f, true);
+    }
+
+    /**
+     * @return length of texts in characters from which they are spilled
+     */
+    public int getSpillSize() {
+        return spillSize;
+    }
+
+    /**
+     * Writes text to the spill file.
+     * 
+     * @param text
+     * 
+     * @return reference to the text or null if text is null, shorter than spill size or could not be written
+     */
+    public synchronized Reference put(String text) {
+
+        if (text == null || text.length() < spillSize) {
+            return null;
+        }
+
+        removeCollected();
+        compactIfWasted();
+        try {
+            if (channel == null) {
+                file = File.createTempFile("javatree", ".spill");
+                file.deleteOnExit();
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long offset = fileLength;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            fileLength += bytes.length;
+
+            Reference reference = new Reference(this);
+            reference.extent = new Extent(reference, collected, offset, bytes.length);
+            extents.add(reference.extent);
+            liveBytes += bytes.length;
+            return reference;
+        } catch (IOException e) {
+            // text stays in the heap
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns text from the cache or reads it from the spill file.
+     * 
+     * @param reference
+     * 
+     * @return text
+     */
+    public synchronized String get(Reference reference) {
+
+        Extent extent = reference.extent;
+        String text = cache.get(extent);
+        if (text != null) {
+            hits++;
+            return text;
+        }
+
+        misses++;
+        try {
+            text = new String(read(extent.offset, extent.length), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // texts larger than the cache are not cached
+        if (text.length() <= cacheSize) {
+            cache.put(extent, text);
+            cachedChars += text.length();
+            Iterator<Map.Entry<Extent, String>> iterator = cache.entrySet().iterator();
+            while (cachedChars > cacheSize) {
+                cachedChars -= iterator.next().getValue().length();
+                iterator.remove();
+                evictions++;
+            }
+        }
+
+        return text;
+    }
+
+    /**
+     * Marks the text of reference as dead, because the node that held it got another text. Compacts the spill file if
+     * dead texts take too much of it.
+     * 
+     * @param reference
+     */
+    public synchronized void release(Reference reference) {
+
+        removeCollected();
+        remove(reference.extent);
+        compactIfWasted();
+    }
+
+    /**
+     * @return number of texts found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of texts read from the spill file
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of texts removed from the cache to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of characters of texts in the cache
+     */
+    public synchronized long getCachedChars() {
+        return cachedChars;
+    }
+
+    /**
+     * @return size of the spill file in bytes
+     */
+    public synchronized long getSpillFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * @return bytes of live texts in the spill file
+     */
+    public synchronized long getLiveBytes() {
+
+        removeCollected();
+        return liveBytes;
+    }
+
+    /**
+     * @return number of times the spill file was compacted
+     */
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Marks texts of nodes that were collected as dead.
+     */
+    private void removeCollected() {
+
+        Object extent;
+        while ((extent = collected.poll()) != null) {
+            remove((Extent) extent);
+        }
+    }
+
+    /**
+     * Marks text of an extent as dead and drops it from the cache.
+     */
+    private void remove(Extent extent) {
+
+        if (!extents.remove(extent)) {
+            return;
+        }
+        extent.clear();
+        liveBytes -= extent.length;
+        String text = cache.remove(extent);
+        if (text != null) {
+            cachedChars -= text.length();
+        }
+    }
+
+    /**
+     * Copies live texts to a new spill file if dead texts take more space than live ones and at least COMPACT_SIZE.
+     * Extents of live texts are moved to their new offsets. If the new file can not be written the old one is kept.
+     */
+    private void compactIfWasted() {
+
+        long deadBytes = fileLength - liveBytes;
+        if (deadBytes < COMPACT_SIZE || deadBytes <= liveBytes) {
+            return;
+        }
+
+        List<Extent> live = new ArrayList<Extent>(extents);
+        Collections.sort(live, new Comparator<Extent>() {
+            public int compare(Extent first, Extent second) {
+                return Long.compare(first.offset, second.offset);
+            }
+        });
+
+        File compacted = null;
+        try {
+            compacted = File.createTempFile("javatree", ".spill");
+            compacted.deleteOnExit();
+            long[] offsets = new long[live.size()];
+            long length = 0;
+            try (FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.WRITE)) {
+                for (int index = 0; index < offsets.length; index++) {
+                    Extent extent = live.get(index);
+                    offsets[index] = length;
+                    long copied = 0;
+                    while (copied < extent.length) {
+                        copied += channel.transferTo(extent.offset + copied, extent.length - copied, target);
+                    }
+                    length += extent.length;
+                }
+            }
+
+            FileChannel compactedChannel = FileChannel.open(compacted.toPath(), StandardOpenOption.READ,
+                                                            StandardOpenOption.WRITE);
+            channel.close();
+            file.delete();
+            file = compacted;
+            channel = compactedChannel;
+            fileLength = length;
+            regions = new MappedByteBuffer[0];
+            for (int index = 0; index < offsets.length; index++) {
+                live.get(index).offset = offsets[index];
+            }
+            compactions++;
+        } catch (IOException e) {
+            // old spill file stays in use
+            e.printStackTrace();
+            if (compacted != null && !compacted.equals(file)) {
+                compacted.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads bytes of the spill file through mapped regions.
+     */
+    private byte[] read(long offset, int length) throws IOException {
+
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            int index = (int) (position / REGION_SIZE);
+            int start = (int) (position % REGION_SIZE);
+            int count = Math.min(length - copied, REGION_SIZE - start);
+            getRegion(index, start + count).get(start, bytes, copied, count);
+            copied += count;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Returns mapped region of the spill file that is at least size bytes long. The last region is mapped again when
+     * the file grows past its end.
+     */
+    private MappedByteBuffer getRegion(int index, int size) throws IOException {
+
+        if (index >= regions.length) {
+            regions = Arrays.copyOf(regions, index + 1);
+        }
+        MappedByteBuffer region = regions[index];
+        if (region == null || region.capacity() < size) {
+            long start = (long) index * REGION_SIZE;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, fileLength - start));
+            regions[index] = region;
+        }
+
+        return region;
+    }
+
+    /**
+     * Reference to a text in the spill file.
+     */
+    public static final class Reference {
+        private final JavaTreeTextStore store;
+        private Extent                  extent;
+
+        private Reference(JavaTreeTextStore store) {
+            this.store = store;
+        }
+
+        /**
+         * @return text read from the store
+         */
+        public String getText() {
+            return store.get(this);
+        }
+
+        /**
+         * Marks the text as dead. Reference can not be used after it is released.
+         */
+        public void release() {
+            store.release(this);
+        }
+    }
+
+    /**
+     * Place of a text in the spill file. It is put in the queue of the store once its reference is no longer used,
+     * and moved when the spill file is compacted.
+     */
+    private static final class Extent extends WeakReference<Reference> {
+        private long      offset;
+        private final int length;
+
+        private Extent(Reference reference, ReferenceQueue<Reference> queue, long offset, int length) {
+            super(reference, queue);
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
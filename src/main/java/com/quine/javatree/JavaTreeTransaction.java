@@ -0,0 +1,420 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * JavaTreeTransaction applies a batch of edits to the model of a tree as one unit. Nodes are added, deleted, moved
+ * and edited with the methods of the transaction, which change the model at once through its usual methods, so
+ * listeners of the model such as journal, change tracker and search index get exact events. The tree shows the model
+ * through a JavaTreeRangeTreeModel that only collects these events and, on commit or rollback, fires one event per
+ * changed node that is not inside another changed subtree, so the tree is laid out and repainted once per batch.
+ * 
+ * Every applied edit records its inverse. Rollback undoes the edits in reverse order, and an edit that fails rolls the
+ * whole transaction back before its exception is rethrown. Deleted nodes are only detached until commit, so rollback
+ * puts the same nodes back. Expanded and selected paths that still exist are restored after the batch.
+ * 
+ * Transaction works with trees of DefaultMutableTreeNode objects and with JavaTreeStoreTreeModel, and is expected to
+ * be used on the Event Dispatch Thread. Only one transaction can be open on a tree at a time.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeTransaction {
+    private JTree                  tree;
+    private TreeModel              model;
+    private JavaTreeRangeTreeModel view;
+
+    // inverses of applied edits, last applied first
+    private Deque<Runnable>        undo;
+    // store nodes deleted in the transaction, freed on commit
+    private List<Integer>          detached;
+    private boolean                open;
+
+    private JavaTreeTransaction(JTree tree) {
+        this.tree = tree;
+        model = JavaTreeRangeTreeModel.getDataModel(tree);
+        if (tree.getModel() instanceof JavaTreeRangeTreeModel) {
+            view = (JavaTreeRangeTreeModel) tree.getModel();
+        }
+        undo = new ArrayDeque<Runnable>();
+        detached = new ArrayList<Integer>();
+    }
+
+    /**
+     * Opens a transaction on the model of tree. If tree does not show its model through a JavaTreeRangeTreeModel the
+     * edits are still applied as one unit, but the tree gets an event for every edit.
+     * 
+     * @param tree
+     * 
+     * @return transaction
+     * 
+     * @throws IllegalStateException if a transaction is already open on tree
+     */
+    public static JavaTreeTransaction begin(JTree tree) {
+
+        JavaTreeTransaction transaction = new JavaTreeTransaction(tree);
+        if (transaction.view != null) {
+            transaction.view.beginBatch();
+        }
+        transaction.open = true;
+        return transaction;
+    }
+
+    /**
+     * @return true until the transaction is committed or rolled back
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Adds a new child with title and text at index among the children of parent.
+     * 
+     * @param parent
+     * @param index
+     * @param title
+     * @param text
+     * 
+     * @return new child
+     */
+    public Object addChild(Object parent, int index, String title, String text) {
+
+        checkOpen();
+        try {
+            checkIndex(index, model.getChildCount(parent));
+            final Object child;
+            if (model instanceof JavaTreeStoreTreeModel) {
+                final JavaTreeStoreTreeModel storeModel = (JavaTreeStoreTreeModel) model;
+                child = Integer.valueOf(storeModel.insertChild(node(parent), index, title, text));
+                undo.push(new Runnable() {
+                    public void run() {
+                        storeModel.delete(node(child));
+                    }
+                });
+            } else {
+                final DefaultTreeModel treeModel = getTreeModel();
+                child = new JavaTreeNode(new JavaTreeNodeObject(title, text));
+                treeModel.insertNodeInto((MutableTreeNode) child, (MutableTreeNode) parent, index);
+                undo.push(new Runnable() {
+                    public void run() {
+                        treeModel.removeNodeFromParent((MutableTreeNode) child);
+                    }
+                });
+            }
+            return child;
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes node and its subtree. Root can not be deleted.
+     * 
+     * @param node
+     */
+    public void delete(final Object node) {
+
+        checkOpen();
+        try {
+            checkNotRoot(node);
+            if (model instanceof JavaTreeStoreTreeModel) {
+                final JavaTreeStoreTreeModel storeModel = (JavaTreeStoreTreeModel) model;
+                final int parent = storeModel.getStore().getParent(node(node));
+                final int index = storeModel.getStore().getIndex(node(node));
+                storeModel.detach(node(node));
+                detached.add((Integer) node);
+                undo.push(new Runnable() {
+                    public void run() {
+                        detached.remove(node);
+                        storeModel.attach(node(node), parent, index);
+                    }
+                });
+            } else {
+                final DefaultTreeModel treeModel = getTreeModel();
+                final MutableTreeNode parent = (MutableTreeNode) ((TreeNode) node).getParent();
+                final int index = parent.getIndex((TreeNode) node);
+                treeModel.removeNodeFromParent((MutableTreeNode) node);
+                undo.push(new Runnable() {
+                    public void run() {
+                        treeModel.insertNodeInto((MutableTreeNode) node, parent, index);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves node to index among the children of newParent. Index is the position after node is removed from its
+     * current parent. Node can not be moved into its own subtree.
+     * 
+     * @param node
+     * @param newParent
+     * @param index
+     */
+    public void move(final Object node, Object newParent, int index) {
+
+        checkOpen();
+        try {
+            checkNotRoot(node);
+            for (Object ancestor : getPath(newParent).getPath()) {
+                if (ancestor.equals(node)) {
+                    throw new IllegalArgumentException("Node can not be moved into its own subtree.");
+                }
+            }
+            Object oldParent = getPath(node).getParentPath().getLastPathComponent();
+            int count = model.getChildCount(newParent);
+            checkIndex(index, oldParent.equals(newParent) ? count - 1 : count);
+
+            if (model instanceof JavaTreeStoreTreeModel) {
+                final JavaTreeStoreTreeModel storeModel = (JavaTreeStoreTreeModel) model;
+                final int parent = node(oldParent);
+                final int oldIndex = storeModel.getStore().getIndex(node(node));
+                storeModel.move(node(node), node(newParent), index);
+                undo.push(new Runnable() {
+                    public void run() {
+                        storeModel.move(node(node), parent, oldIndex);
+                    }
+                });
+            } else {
+                final DefaultTreeModel treeModel = getTreeModel();
+                final MutableTreeNode parent = (MutableTreeNode) oldParent;
+                final int oldIndex = parent.getIndex((TreeNode) node);
+                treeModel.removeNodeFromParent((MutableTreeNode) node);
+                treeModel.insertNodeInto((MutableTreeNode) node, (MutableTreeNode) newParent, index);
+                undo.push(new Runnable() {
+                    public void run() {
+                        treeModel.removeNodeFromParent((MutableTreeNode) node);
+                        treeModel.insertNodeInto((MutableTreeNode) node, parent, oldIndex);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets title and text of node.
+     * 
+     * @param node
+     * @param title
+     * @param text
+     */
+    public void edit(final Object node, String title, String text) {
+
+        checkOpen();
+        try {
+            final String oldTitle;
+            final String oldText;
+            if (model instanceof JavaTreeStoreTreeModel) {
+                final JavaTreeStoreTreeModel storeModel = (JavaTreeStoreTreeModel) model;
+                oldTitle = storeModel.getStore().getTitle(node(node));
+                oldText = storeModel.getStore().getText(node(node));
+                storeModel.setNodeData(node(node), title, text);
+                undo.push(new Runnable() {
+                    public void run() {
+                        storeModel.setNodeData(node(node), oldTitle, oldText);
+                    }
+                });
+            } else {
+                final DefaultTreeModel treeModel = getTreeModel();
+                final JavaTreeNodeObject nodeObject = (JavaTreeNodeObject) ((DefaultMutableTreeNode) node)
+                        .getUserObject();
+                oldTitle = nodeObject.getTitle();
+                oldText = nodeObject.getText();
+                nodeObject.setTitle(title);
+                nodeObject.setText(text);
+                treeModel.nodeChanged((TreeNode) node);
+                undo.push(new Runnable() {
+                    public void run() {
+                        nodeObject.setTitle(oldTitle);
+                        nodeObject.setText(oldText);
+                        treeModel.nodeChanged((TreeNode) node);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps all edits, frees deleted nodes and updates the tree.
+     */
+    public void commit() {
+
+        checkOpen();
+        open = false;
+        if (model instanceof JavaTreeStoreTreeModel) {
+            JavaTreeNodeStore store = ((JavaTreeStoreTreeModel) model).getStore();
+            for (Integer node : detached) {
+                store.delete(node.intValue());
+            }
+        }
+        detached.clear();
+        undo.clear();
+        endBatch();
+    }
+
+    /**
+     * Undoes all edits in reverse order and updates the tree.
+     */
+    public void rollback() {
+
+        checkOpen();
+        open = false;
+        try {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+        } finally {
+            detached.clear();
+            endBatch();
+        }
+    }
+
+    /**
+     * Ends the batch of the view and expands and selects again the paths that still exist.
+     */
+    private void endBatch() {
+
+        if (view == null) {
+            return;
+        }
+
+        List<TreePath> expanded = new ArrayList<TreePath>();
+        Enumeration<TreePath> paths = tree.getExpandedDescendants(new TreePath(view.getRoot()));
+        while (paths != null && paths.hasMoreElements()) {
+            expanded.add(paths.nextElement());
+        }
+        TreePath[] selected = tree.getSelectionPaths();
+
+        view.endBatch();
+
+        for (TreePath path : expanded) {
+            if (isValid(path)) {
+                tree.expandPath(path);
+            }
+        }
+        if (selected != null) {
+            List<TreePath> valid = new ArrayList<TreePath>();
+            for (TreePath path : selected) {
+                if (isValid(path)) {
+                    valid.add(path);
+                }
+            }
+            tree.setSelectionPaths(valid.toArray(new TreePath[valid.size()]));
+        }
+    }
+
+    /**
+     * Returns true if every node on a path of the view is still a child of the node before it.
+     */
+    private boolean isValid(TreePath path) {
+
+        Object[] nodes = path.getPath();
+        if (!nodes[0].equals(view.getRoot())) {
+            return false;
+        }
+        for (int index = 1; index < nodes.length; index++) {
+            if (view.getIndexOfChild(nodes[index - 1], nodes[index]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns path from the root of the model to node.
+     */
+    private TreePath getPath(Object node) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            return ((JavaTreeStoreTreeModel) model).getPath(node(node));
+        }
+        return new TreePath(((DefaultMutableTreeNode) node).getPath());
+    }
+
+    private DefaultTreeModel getTreeModel() {
+        return (DefaultTreeModel) model;
+    }
+
+    private void checkOpen() {
+
+        if (!open) {
+            throw new IllegalStateException("Transaction is not open.");
+        }
+    }
+
+    private void checkNotRoot(Object node) {
+
+        if (node.equals(model.getRoot())) {
+            throw new IllegalArgumentException("Root can not be deleted or moved.");
+        }
+    }
+
+    private static void checkIndex(int index, int count) {
+
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range 0 to " + count + ".");
+        }
+    }
+
+    /**
+     * @param value
+     * 
+     * @return store node of a model node
+     */
+    private static int node(Object value) {
+        return ((Integer) value).intValue();
+    }
+}
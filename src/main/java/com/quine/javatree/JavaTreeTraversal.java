@@ -0,0 +1,248 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
+
+/**
+ * JavaTreeTraversal walks the subtree of a node of a TreeModel in document order without recursion. The path from the
+ * start node to the current node is kept in arrays that grow as needed, so depth of a tree is limited only by the
+ * heap. Each call of next moves to the next event: a node is entered before its children and left after them, so
+ * callers that write nested formats get the same start and end calls a recursive walk would make.
+ * 
+ * Pre-order, post-order and level-order iterators are built on the same stacks. Children are read through the model
+ * one at a time when they are reached, so lazily loaded subtrees are loaded in document order.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeTraversal {
+    private TreeModel model;
+
+    // nodes on the path from the start node to the current node and the number of their children visited so far
+    private Object[]  nodes;
+    private int[]     visited;
+    private int       depth;
+
+    private boolean   started;
+    private boolean   entering;
+
+    /**
+     * Creates traversal of the subtree of node of model.
+     * 
+     * @param model
+     * @param node
+     */
+    public JavaTreeTraversal(TreeModel model, Object node) {
+        this.model = model;
+        nodes = new Object[16];
+        visited = new int[16];
+        nodes[0] = node;
+        depth = 0;
+    }
+
+    /**
+     * Creates traversal of the subtree of node.
+     * 
+     * @param node
+     */
+    public JavaTreeTraversal(TreeNode node) {
+        this(new DefaultTreeModel(node), node);
+    }
+
+    /**
+     * Moves to the next event. Returns false when the start node was left.
+     * 
+     * @return status
+     */
+    public boolean next() {
+
+        if (!started) {
+            started = true;
+            entering = true;
+            return true;
+        }
+        if (!entering) {
+            nodes[depth--] = null;
+        }
+        if (depth < 0) {
+            return false;
+        }
+
+        Object node = nodes[depth];
+        if (visited[depth] < model.getChildCount(node)) {
+            Object child = model.getChild(node, visited[depth]++);
+            if (++depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                visited = Arrays.copyOf(visited, depth * 2);
+            }
+            nodes[depth] = child;
+            visited[depth] = 0;
+            entering = true;
+        } else {
+            entering = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return node of the current event
+     */
+    public Object getNode() {
+        return nodes[depth];
+    }
+
+    /**
+     * @return true if the current node is entered, false if it is left
+     */
+    public boolean isEntering() {
+        return entering;
+    }
+
+    /**
+     * @return number of levels between the start node and the current node
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return index of the current node among the children of its parent, -1 for the start node
+     */
+    public int getIndex() {
+        return depth == 0 ? -1 : visited[depth - 1] - 1;
+    }
+
+    /**
+     * Skips the children of the entered node, so the next event leaves it.
+     */
+    public void skipChildren() {
+        visited[depth] = Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param model
+     * @param node
+     * 
+     * @return iterator over node and its descendants, every node before its children
+     */
+    public static Iterator<Object> preOrder(TreeModel model, Object node) {
+        return new EventIterator(new JavaTreeTraversal(model, node), true);
+    }
+
+    /**
+     * @param model
+     * @param node
+     * 
+     * @return iterator over node and its descendants, every node after its children
+     */
+    public static Iterator<Object> postOrder(TreeModel model, Object node) {
+        return new EventIterator(new JavaTreeTraversal(model, node), false);
+    }
+
+    /**
+     * @param model
+     * @param node
+     * 
+     * @return iterator over node and its descendants, level by level
+     */
+    public static Iterator<Object> levelOrder(final TreeModel model, Object node) {
+
+        final Deque<Object> queue = new ArrayDeque<Object>();
+        queue.add(node);
+        return new Iterator<Object>() {
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            public Object next() {
+
+                Object next = queue.remove();
+                int count = model.getChildCount(next);
+                for (int index = 0; index < count; index++) {
+                    queue.add(model.getChild(next, index));
+                }
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Iterator over the nodes of either enter or leave events of a traversal.
+     */
+    private static class EventIterator implements Iterator<Object> {
+        private JavaTreeTraversal traversal;
+        private boolean           entering;
+        private Object            next;
+
+        EventIterator(JavaTreeTraversal traversal, boolean entering) {
+            this.traversal = traversal;
+            this.entering = entering;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Object node = next;
+            advance();
+            return node;
+        }
+
+        private void advance() {
+
+            next = null;
+            while (traversal.next()) {
+                if (traversal.isEntering() == entering) {
+                    next = traversal.getNode();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * JavaTreeValidator parses JavaTree XML documents into a DOM. The grammar of javatree.dtd is embedded as an
+ * equivalent XML schema that is compiled once and checks documents while they are parsed, so the DTD file is never
+ * read and documents open the same way whether it is next to them or not.
+ * 
+ * XML writers end documents with a trailer comment holding CRC32C of all the bytes before it. Trusted parsing skips
+ * validation of documents whose trailer matches their content, so documents this application saved and nobody
+ * changed since are read without the cost of validation. Checksum is computed while the document is parsed, and a
+ * document that turns out not to match is parsed again with validation.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public final class JavaTreeValidator {
+    // system identifier of the document type of JavaTree documents
+    public final static String            DTD_SYSTEM_ID  = "javatree.dtd";
+
+    // content of javatree.dtd, given to the parser instead of the file
+    public final static String            DTD            = "<!ELEMENT JavaTreeXML (Node)>\n"
+                                                           + "<!ELEMENT Node (Title, Text, Node*)>\n"
+                                                           + "<!ELEMENT Title (#PCDATA)>\n"
+                                                           + "<!ELEMENT Text (#PCDATA)>\n";
+
+    // content model of the Node element of javatree.dtd as XML schema type
+    private final static String           NODE_TYPE      =
+            "<xs:complexType name=\"Node\"><xs:sequence>"
+            + "<xs:element name=\"Title\" type=\"xs:string\"/>"
+            + "<xs:element name=\"Text\" type=\"xs:string\"/>"
+            + "<xs:element name=\"Node\" type=\"Node\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>"
+            + "</xs:sequence></xs:complexType>";
+
+    // the grammar of javatree.dtd as XML schema
+    private final static String           SCHEMA         =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"JavaTreeXML\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"Node\" type=\"Node\"/>"
+            + "</xs:sequence></xs:complexType></xs:element>"
+            + NODE_TYPE
+            + "</xs:schema>";
+
+    // element that wraps sibling Node elements read separately from the rest of their document
+    public final static String            NODES          = "Nodes";
+
+    // sibling Node elements wrapped in a NODES element, as XML schema
+    private final static String           NODES_SCHEMA   =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"" + NODES + "\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"Node\" type=\"Node\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>"
+            + "</xs:sequence></xs:complexType></xs:element>"
+            + NODE_TYPE
+            + "</xs:schema>";
+
+    // trailer is TRAILER_START, CRC32C as eight lower case hex digits and TRAILER_END
+    private final static String           TRAILER_START  = "<!-- JavaTree CRC32C ";
+    private final static String           TRAILER_END    = " -->\n";
+    public final static int               TRAILER_SIZE   = TRAILER_START.length() + 8 + TRAILER_END.length();
+
+    // size of the buffer used to read documents
+    private final static int              BUFFER_SIZE    = 64 * 1024;
+
+    private final static EntityResolver   RESOLVER       = new EntityResolver() {
+        public InputSource resolveEntity(String publicId, String systemId) {
+            // JavaTree documents use no external entities other than their DTD
+            if (systemId != null && systemId.endsWith(DTD_SYSTEM_ID)) {
+                return new InputSource(new StringReader(DTD));
+            }
+            return new InputSource(new StringReader(""));
+        }
+    };
+
+    private final static ErrorHandler     ERROR_HANDLER  = new ErrorHandler() {
+        public void warning(SAXParseException exception) {
+            // warnings do not make a document invalid
+        }
+
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    };
+
+    // compiled schemas and factories, created when they are first needed
+    private static Schema                 schema;
+    private static Schema                 nodesSchema;
+    private static DocumentBuilderFactory validatingFactory;
+    private static DocumentBuilderFactory trustingFactory;
+
+    private JavaTreeValidator() {
+    }
+
+    /**
+     * Returns the grammar of JavaTree documents compiled to a schema. Schema is compiled on the first call and shared
+     * afterwards, it is safe to use from many threads.
+     * 
+     * @return schema
+     * 
+     * @throws SAXException
+     */
+    public static synchronized Schema getSchema() throws SAXException {
+
+        if (schema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = factory.newSchema(new StreamSource(new StringReader(SCHEMA)));
+        }
+        return schema;
+    }
+
+    /**
+     * Returns the schema of sibling Node elements wrapped in a NODES element, which is used to check parts of a
+     * document that are read separately. Schema is compiled on the first call and shared afterwards.
+     * 
+     * @return schema
+     * 
+     * @throws SAXException
+     */
+    public static synchronized Schema getNodesSchema() throws SAXException {
+
+        if (nodesSchema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            nodesSchema = factory.newSchema(new StreamSource(new StringReader(NODES_SCHEMA)));
+        }
+        return nodesSchema;
+    }
+
+    /**
+     * Creates a validator handler that checks SAX events of a document, or of sibling Node elements wrapped in a NODES
+     * element, against the compiled grammar and throws SAXParseException on the first error.
+     * 
+     * @param nodes
+     * 
+     * @return handler
+     * 
+     * @throws SAXException
+     */
+    public static ValidatorHandler newValidatorHandler(boolean nodes) throws SAXException {
+
+        ValidatorHandler handler = (nodes ? getNodesSchema() : getSchema()).newValidatorHandler();
+        handler.setErrorHandler(ERROR_HANDLER);
+        return handler;
+    }
+
+    /**
+     * Creates a document builder for JavaTree documents. Whitespace between elements is dropped and javatree.dtd is
+     * taken from the embedded grammar. A validating builder throws SAXParseException on the first error.
+     * 
+     * @param validating
+     * 
+     * @return builder
+     * 
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     */
+    public static synchronized DocumentBuilder newDocumentBuilder(boolean validating)
+            throws ParserConfigurationException, SAXException {
+
+        if (validatingFactory == null) {
+            validatingFactory = DocumentBuilderFactory.newInstance();
+            validatingFactory.setSchema(getSchema());
+            validatingFactory.setIgnoringElementContentWhitespace(true);
+
+            // element content whitespace is recognized with the embedded DTD when there is no schema
+            trustingFactory = DocumentBuilderFactory.newInstance();
+            trustingFactory.setIgnoringElementContentWhitespace(true);
+        }
+
+        DocumentBuilder builder = (validating ? validatingFactory : trustingFactory).newDocumentBuilder();
+        builder.setEntityResolver(RESOLVER);
+        builder.setErrorHandler(ERROR_HANDLER);
+        return builder;
+    }
+
+    /**
+     * Parses file into a document, checking it against the grammar while reading. If trusted is true and the
+     * checksum trailer of the file matches its content the document is not validated. Read bytes are reported to
+     * progress.
+     * 
+     * @param file
+     * @param trusted
+     * @param progress
+     * 
+     * @return document
+     * 
+     * @throws Exception
+     */
+    public static Document parse(File file, boolean trusted, JavaTreeProgress progress) throws Exception {
+
+        long checksum = trusted ? readTrailer(file) : -1;
+        progress.setTotalBytes(file.length());
+
+        if (checksum >= 0) {
+            JavaTreeChecksumInputStream checked = new JavaTreeChecksumInputStream(new FileInputStream(file),
+                                                                                  file.length() - TRAILER_SIZE);
+            Document document;
+            try (InputStream input = progress.track(new BufferedInputStream(checked, BUFFER_SIZE))) {
+                document = newDocumentBuilder(false).parse(input, file.toURI().toString());
+            }
+            // parser reads up to the end of the document to find out that nothing follows the root element
+            if (checked.matches(checksum)) {
+                return document;
+            }
+
+            // document was changed after it was saved, the progress continues with the second reading
+            progress.setTotalBytes(progress.getBytes() + file.length());
+        }
+
+        try (InputStream input = progress.track(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            return newDocumentBuilder(true).parse(input, file.toURI().toString());
+        }
+    }
+
+    /**
+     * Writes the checksum trailer to channel. Checksum covers all the bytes written through channel before the
+     * trailer. Trailer bytes are reported to progress.
+     * 
+     * @param channel
+     * @param progress
+     * 
+     * @throws IOException
+     */
+    public static void writeTrailer(JavaTreeChecksumChannel channel, JavaTreeProgress progress) throws IOException {
+
+        progress.checkCancelled();
+        ByteBuffer trailer = ByteBuffer.wrap(formatTrailer(channel.getChecksum()).getBytes(StandardCharsets.US_ASCII));
+        while (trailer.hasRemaining()) {
+            channel.write(trailer);
+        }
+        progress.addBytes(TRAILER_SIZE);
+    }
+
+    /**
+     * Returns the checksum stored in the trailer of file, or -1 if file does not end with a trailer.
+     * 
+     * @param file
+     * 
+     * @return checksum
+     * 
+     * @throws IOException
+     */
+    public static long readTrailer(File file) throws IOException {
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            if (input.length() < TRAILER_SIZE) {
+                return -1;
+            }
+            byte[] bytes = new byte[TRAILER_SIZE];
+            input.seek(input.length() - TRAILER_SIZE);
+            input.readFully(bytes);
+
+            String trailer = new String(bytes, StandardCharsets.US_ASCII);
+            if (!trailer.startsWith(TRAILER_START) || !trailer.endsWith(TRAILER_END)) {
+                return -1;
+            }
+            String checksum = trailer.substring(TRAILER_START.length(), TRAILER_SIZE - TRAILER_END.length());
+            try {
+                return Long.parseLong(checksum, 16);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @param checksum
+     * 
+     * @return trailer holding checksum
+     */
+    private static String formatTrailer(long checksum) {
+        return TRAILER_START + String.format("%08x", checksum) + TRAILER_END;
+    }
+}
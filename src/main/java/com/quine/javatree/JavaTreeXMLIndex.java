@@ -0,0 +1,560 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * JavaTreeXMLIndex holds byte offsets of all Node elements of a JavaTree XML document and the parent, first child and
+ * next sibling of each of them. Nodes are numbered in document order, so node 0 is the root node.
+ * 
+ * Index is built by a fast scan of the raw bytes that only recognizes markup. Comments, CDATA sections, processing
+ * instructions and the document type declaration are skipped, everything else is left to the XML parser when a
+ * node is read. Documents are expected to be encoded in UTF-8, which is the encoding JavaTree writes. CRC32C of the
+ * scanned bytes is computed on the way, so the index tells whether the checksum trailer of the document matches.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeXMLIndex {
+    // size of the buffer used to scan the file
+    private final static int BUFFER_SIZE   = 1024 * 1024;
+
+    // initial capacity of the arrays
+    private final static int INITIAL_NODES = 1024;
+
+    private static final byte[] NODE_NAME  = { 'N', 'o', 'd', 'e' };
+
+    private File             file;
+
+    // length and modification time of the file when it was scanned
+    private long             fileLength;
+    private long             fileModified;
+
+    private int              count;
+
+    // offset of the '<' that starts the Node element and offset just after its end tag
+    private long[]           start;
+    private long[]           end;
+
+    private int[]            parent;
+    private int[]            firstChild;
+    private int[]            nextSibling;
+
+    // true if the file ends with a checksum trailer that matches the scanned bytes
+    private boolean          trusted;
+
+    // state of the scan
+    private FileChannel      channel;
+    private ByteBuffer       buffer;
+    private long             bufferOffset;
+    private JavaTreeProgress progress;
+    private CRC32C           crc;
+
+    /**
+     * Creates empty JavaTreeXMLIndex for a file.
+     * 
+     * @param file
+     */
+    private JavaTreeXMLIndex(File file) {
+        this.file = file;
+        count = 0;
+        start = new long[INITIAL_NODES];
+        end = new long[INITIAL_NODES];
+        parent = new int[INITIAL_NODES];
+        firstChild = new int[INITIAL_NODES];
+        nextSibling = new int[INITIAL_NODES];
+    }
+
+    /**
+     * Scans a file and builds its index. Scanned bytes and found nodes are reported to progress.
+     * 
+     * @param file
+     * @param progress
+     * 
+     * @return index
+     * 
+     * @throws IOException if file can not be read or its Node elements are not properly nested
+     */
+    public static JavaTreeXMLIndex scan(File file, JavaTreeProgress progress) throws IOException {
+        return scan(file, Integer.MAX_VALUE, progress);
+    }
+
+    /**
+     * Scans a file and builds an index of the Node elements that are less than maxDepth levels below the root, so
+     * maxDepth 2 records the root and its children. Deeper nodes are skipped and nodes at the last recorded level
+     * appear to have no children. Scanned bytes and found nodes are reported to progress.
+     * 
+     * @param file
+     * @param maxDepth
+     * @param progress
+     * 
+     * @return index
+     * 
+     * @throws IOException if file can not be read or its Node elements are not properly nested
+     */
+    public static JavaTreeXMLIndex scan(File file, int maxDepth, JavaTreeProgress progress) throws IOException {
+
+        JavaTreeXMLIndex index = new JavaTreeXMLIndex(file);
+        index.fileModified = file.lastModified();
+        index.fileLength = file.length();
+        progress.setTotalBytes(index.fileLength);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            index.channel = channel;
+            index.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            index.buffer.flip();
+            index.bufferOffset = 0;
+            index.progress = progress;
+            index.crc = new CRC32C();
+            index.scan(Math.max(maxDepth, 1));
+            long checksum = JavaTreeValidator.readTrailer(file);
+            index.trusted = checksum >= 0 && index.crc.getValue() == checksum;
+        } finally {
+            index.channel = null;
+            index.buffer = null;
+            index.progress = null;
+            index.crc = null;
+        }
+
+        return index;
+    }
+
+    /**
+     * @return true if the file ends with a checksum trailer that matches the content it had when it was scanned
+     */
+    public boolean isTrusted() {
+        return trusted;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param node
+     * 
+     * @return offset of the start of the node element
+     */
+    public long getStart(int node) {
+        return start[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return offset just after the end of the node element
+     */
+    public long getEnd(int node) {
+        return end[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return parent of the node or -1 for the root
+     */
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return first child of the node or -1 if node has no children
+     */
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * @param node
+     * 
+     * @return next sibling of the node or -1 if node is the last child
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * Reads title and text of a node from an open channel of the indexed file.
+     * 
+     * @param channel
+     * @param node
+     * 
+     * @return nodeObject
+     * 
+     * @throws Exception
+     */
+    public JavaTreeNodeObject readNodeObject(FileChannel channel, int node) throws Exception {
+
+        // title and text are between the start of the node and the start of its first child
+        long from = start[node];
+        long to = firstChild[node] >= 0 ? start[firstChild[node]] : end[node];
+        ByteBuffer data = ByteBuffer.allocate((int) (to - from));
+        while (data.hasRemaining()) {
+            if (channel.read(data, from + data.position()) < 0) {
+                throw new IOException("Unexpected end of file " + file);
+            }
+        }
+
+        return JavaTreeStreamLoader.readNodeObject(new ByteArrayInputStream(data.array()));
+    }
+
+    /**
+     * Opens the indexed file for reading. Fails if the file changed since it was scanned.
+     * 
+     * @return channel
+     * 
+     * @throws IOException
+     */
+    public FileChannel openChannel() throws IOException {
+
+        if (file.length() != fileLength || file.lastModified() != fileModified) {
+            throw new IOException("File " + file + " changed since it was opened.");
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Scans the whole file and records Node elements less than maxDepth levels below the root.
+     * 
+     * @param maxDepth
+     * 
+     * @throws IOException
+     */
+    private void scan(int maxDepth) throws IOException {
+
+        int current = -1;
+        int lastChild = -1;
+        // number of recorded nodes that are open and number of open nodes below them that are not recorded
+        int depth = 0;
+        int hidden = 0;
+        byte[] name = new byte[NODE_NAME.length + 1];
+
+        int value;
+        while ((value = read()) >= 0) {
+            if (value != '<') {
+                continue;
+            }
+
+            long tagStart = position() - 1;
+            value = read();
+            if (value == '!') {
+                skipDeclaration();
+            } else if (value == '?') {
+                skipUntil(new byte[] { '?', '>' });
+            } else if (value == '/') {
+                int length = readName(read(), name);
+                if (isNodeName(name, length)) {
+                    if (hidden > 0) {
+                        skipTag(value);
+                        hidden--;
+                        continue;
+                    }
+                    if (current < 0) {
+                        throw new IOException("Unexpected end of Node element at " + tagStart);
+                    }
+                    skipTag(value);
+                    end[current] = position();
+                    lastChild = current;
+                    current = parent[current];
+                    depth--;
+                }
+            } else {
+                int length = readName(value, name);
+                if (isNodeName(name, length) && depth >= maxDepth) {
+                    if (!skipTag(value)) {
+                        hidden++;
+                    }
+                } else if (isNodeName(name, length)) {
+                    if (current < 0 && count > 0) {
+                        throw new IOException("Second root Node element at " + tagStart);
+                    }
+                    int node = addNode(tagStart, current);
+                    if (lastChild >= 0) {
+                        nextSibling[lastChild] = node;
+                    } else if (current >= 0) {
+                        firstChild[current] = node;
+                    }
+                    if (skipTag(value)) {
+                        // empty Node element
+                        end[node] = position();
+                        lastChild = node;
+                    } else {
+                        current = node;
+                        lastChild = -1;
+                        depth++;
+                    }
+                }
+            }
+        }
+
+        if (current >= 0) {
+            throw new IOException("Node element starting at " + start[current] + " is not closed.");
+        }
+        if (count == 0) {
+            throw new IOException("No Node element found.");
+        }
+    }
+
+    /**
+     * Adds a node to the arrays and returns its number.
+     * 
+     * @param offset
+     * @param parentNode
+     * 
+     * @return node
+     */
+    private int addNode(long offset, int parentNode) {
+
+        if (count == start.length) {
+            int capacity = count * 2;
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+        }
+
+        start[count] = offset;
+        end[count] = -1;
+        parent[count] = parentNode;
+        firstChild[count] = -1;
+        nextSibling[count] = -1;
+        progress.addNode();
+
+        return count++;
+    }
+
+    /**
+     * Reads element name starting with first into name and returns its length. Only as many bytes as fit in name are
+     * stored. Reading stops at the first byte that can not be part of a name, that byte is not consumed.
+     * 
+     * @param first
+     * @param name
+     * 
+     * @return length
+     * 
+     * @throws IOException
+     */
+    private int readName(int first, byte[] name) throws IOException {
+
+        int length = 0;
+        int value = first;
+        while (value >= 0 && value != '>' && value != '/' && !isWhitespace(value)) {
+            if (length < name.length) {
+                name[length] = (byte) value;
+            }
+            length++;
+            value = read();
+        }
+        unread();
+
+        return length;
+    }
+
+    /**
+     * Skips the rest of a tag up to and including '&gt;'. Quoted attribute values are skipped as a whole. Returns true
+     * if the tag was an empty element tag.
+     * 
+     * @param first byte before the rest of the tag
+     * 
+     * @return empty
+     * 
+     * @throws IOException
+     */
+    private boolean skipTag(int first) throws IOException {
+
+        int previous = first;
+        int value;
+        while ((value = read()) >= 0) {
+            if (value == '>') {
+                return previous == '/';
+            }
+            if (value == '"' || value == '\'') {
+                skipUntil(new byte[] { (byte) value });
+            }
+            previous = value;
+        }
+        throw new IOException("Unexpected end of file in a tag.");
+    }
+
+    /**
+     * Skips a comment, CDATA section or document type declaration. The '&lt;!' is already consumed.
+     * 
+     * @throws IOException
+     */
+    private void skipDeclaration() throws IOException {
+
+        int value = read();
+        if (value == '-') {
+            skipUntil(new byte[] { '-', '-', '>' });
+        } else if (value == '[') {
+            skipUntil(new byte[] { ']', ']', '>' });
+        } else {
+            // document type declaration may contain an internal subset with its own markup
+            int depth = 0;
+            while ((value = read()) >= 0) {
+                if (value == '"' || value == '\'') {
+                    skipUntil(new byte[] { (byte) value });
+                } else if (value == '[') {
+                    depth++;
+                } else if (value == ']') {
+                    depth--;
+                } else if (value == '>' && depth == 0) {
+                    return;
+                }
+            }
+            throw new IOException("Unexpected end of file in a declaration.");
+        }
+    }
+
+    /**
+     * Skips bytes up to and including the first occurrence of pattern.
+     * 
+     * @param pattern
+     * 
+     * @throws IOException
+     */
+    private void skipUntil(byte[] pattern) throws IOException {
+
+        int matched = 0;
+        int value;
+        while ((value = read()) >= 0) {
+            if (value == pattern[matched]) {
+                matched++;
+                if (matched == pattern.length) {
+                    return;
+                }
+            } else if (matched > 0) {
+                // patterns used here have no repeated prefix except runs of the same byte
+                if (value != pattern[0]) {
+                    matched = 0;
+                } else if (pattern[0] != pattern[matched - 1]) {
+                    matched = 1;
+                }
+            }
+        }
+        throw new IOException("Unexpected end of file.");
+    }
+
+    /**
+     * @param name
+     * @param length
+     * 
+     * @return true if name is the name of the Node element
+     */
+    private static boolean isNodeName(byte[] name, int length) {
+
+        if (length != NODE_NAME.length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (name[index] != NODE_NAME[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param value
+     * 
+     * @return true if value is XML whitespace
+     */
+    private static boolean isWhitespace(int value) {
+        return value == ' ' || value == '\t' || value == '\n' || value == '\r';
+    }
+
+    /**
+     * Reads next byte from the file or returns -1 at the end of the file.
+     * 
+     * @return value
+     * 
+     * @throws IOException
+     */
+    private int read() throws IOException {
+
+        if (!buffer.hasRemaining()) {
+            bufferOffset += buffer.limit();
+            buffer.clear();
+            progress.checkCancelled();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read <= 0) {
+                return -1;
+            }
+            progress.addBytes(read);
+
+            // checksum of the trailer covers the bytes before it
+            long checked = Math.min(read, fileLength - JavaTreeValidator.TRAILER_SIZE - bufferOffset);
+            if (checked > 0) {
+                crc.update(buffer.array(), 0, (int) checked);
+            }
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Moves back by one byte. Must only be called after a read that returned a byte or reached the end of the file.
+     */
+    private void unread() {
+        if (buffer.position() > 0) {
+            buffer.position(buffer.position() - 1);
+        }
+    }
+
+    /**
+     * @return offset of the next byte to be read
+     */
+    private long position() {
+        return bufferOffset + buffer.position();
+    }
+}
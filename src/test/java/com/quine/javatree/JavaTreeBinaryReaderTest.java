@@ -0,0 +1,210 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that damaged blocks of binary and segmented documents are detected by their checksums.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeBinaryReaderTest {
+    // number of children of the root, large enough for several blocks
+    private final static int             CHILDREN   = 4000;
+
+    // handler that ignores nodes
+    private final static JavaTreeHandler SKIP_NODES = new JavaTreeHandler() {
+        public void startNode(String title, String text) {
+        }
+
+        public void endNode() {
+        }
+    };
+
+    @Rule
+    public TemporaryFolder               folder     = new TemporaryFolder();
+
+    private JavaTreeActionController     actionController;
+    private DefaultMutableTreeNode       root;
+
+    @Before
+    public void setUp() {
+
+        actionController = new JavaTreeActionController(new JavaTreeOptions());
+        root = JavaTreeTestSupport.createTree(CHILDREN, 1);
+    }
+
+    @Test
+    public void intactBinaryDocumentIsRead() throws Exception {
+
+        File document = save(JavaTreeBinaryFormat.EXTENSION);
+        List<Long> blocks = getBlocks(document, JavaTreeBinaryFormat.HEADER_SIZE, document.length());
+        assertTrue(blocks.size() > 2);
+
+        JavaTreeBinaryReader.load(document, SKIP_NODES, new JavaTreeProgress());
+        assertEquals(CHILDREN, actionController.loadTreeFromFile(document).getChildCount());
+    }
+
+    @Test
+    public void damagedBlockOfBinaryDocumentIsDetected() throws Exception {
+
+        File document = save(JavaTreeBinaryFormat.EXTENSION);
+        List<Long> blocks = getBlocks(document, JavaTreeBinaryFormat.HEADER_SIZE, document.length());
+        damage(document, blocks.get(blocks.size() / 2) + JavaTreeBinaryFormat.BLOCK_HEADER + 100);
+
+        assertFailure(document, "Block checksum mismatch");
+        assertNull(actionController.loadTreeFromFile(document));
+    }
+
+    @Test
+    public void damagedHeaderOfBinaryDocumentIsDetected() throws Exception {
+
+        File document = save(JavaTreeBinaryFormat.EXTENSION);
+        // node count in the header
+        damage(document, 12);
+
+        assertFailure(document, "Header checksum mismatch");
+    }
+
+    @Test
+    public void truncatedBinaryDocumentIsDetected() throws Exception {
+
+        File document = save(JavaTreeBinaryFormat.EXTENSION);
+        try (RandomAccessFile file = new RandomAccessFile(document, "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        assertFailure(document, "exceeds the end");
+    }
+
+    @Test
+    public void damagedSegmentIsDetected() throws Exception {
+
+        File document = save(JavaTreeSegmentedFormat.EXTENSION);
+        JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(document);
+        assertEquals(CHILDREN, table.getSegmentCount());
+        assertNotNull(actionController.loadTreeFromFile(document));
+
+        int segment = CHILDREN / 2;
+        damage(document, table.getOffset(segment) + JavaTreeBinaryFormat.BLOCK_HEADER + 2);
+
+        try {
+            JavaTreeSegmentedReader.load(document, SKIP_NODES, new JavaTreeProgress());
+            fail("damaged segment was read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Block checksum mismatch"));
+        }
+        assertNull(actionController.loadTreeFromFile(document));
+    }
+
+    @Test
+    public void damagedSegmentTableIsDetected() throws Exception {
+
+        File document = save(JavaTreeSegmentedFormat.EXTENSION);
+        JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(document);
+        long tableOffset = table.getOffset(CHILDREN - 1) + table.getLength(CHILDREN - 1);
+        damage(document, tableOffset + JavaTreeBinaryFormat.BLOCK_HEADER + 1);
+
+        try {
+            JavaTreeSegmentedFormat.readTable(document);
+            fail("damaged segment table was read");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(actionController.loadTreeFromFile(document));
+    }
+
+    private File save(String extension) {
+
+        File document = new File(folder.getRoot(), "document" + extension);
+        assertTrue(actionController.saveTreeToFile(root, document));
+        return document;
+    }
+
+    /**
+     * Returns positions of the blocks between position and end of a document.
+     */
+    private static List<Long> getBlocks(File document, long position, long end) throws IOException {
+
+        List<Long> blocks = new ArrayList<Long>();
+        try (RandomAccessFile file = new RandomAccessFile(document, "r")) {
+            while (position < end) {
+                blocks.add(position);
+                file.seek(position);
+                position += JavaTreeBinaryFormat.BLOCK_HEADER + file.readInt();
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Flips bits of the byte at position.
+     */
+    private static void damage(File document, long position) throws IOException {
+
+        try (RandomAccessFile file = new RandomAccessFile(document, "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x5A);
+        }
+    }
+
+    private static void assertFailure(File document, String message) throws Exception {
+
+        try {
+            JavaTreeBinaryReader.load(document, SKIP_NODES, new JavaTreeProgress());
+            fail("damaged document was read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
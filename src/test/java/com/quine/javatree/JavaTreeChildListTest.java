@@ -0,0 +1,159 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Test;
+
+/**
+ * Tests order statistics of the treap in JavaTreeChildList, directly and through JavaTreeNode, against a plain list
+ * that goes through the same inserts, removals and moves.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeChildListTest {
+    private final static int OPERATIONS = 5000;
+
+    @Test
+    public void insertAndRemoveKeepOrder() {
+
+        Random random = new Random(17);
+        JavaTreeChildList list = new JavaTreeChildList();
+        List<TreeNode> expected = new ArrayList<TreeNode>();
+        List<JavaTreeChildList.Entry> entries = new ArrayList<JavaTreeChildList.Entry>();
+
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                int index = random.nextInt(expected.size() + 1);
+                TreeNode node = new JavaTreeNode("node " + operation);
+                JavaTreeChildList.Entry entry = list.insert(index, node);
+                assertSame(node, entry.getNode());
+                expected.add(index, node);
+                entries.add(index, entry);
+            } else if (random.nextBoolean()) {
+                int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), list.remove(index).getNode());
+                entries.remove(index);
+            } else {
+                int index = random.nextInt(expected.size());
+                list.remove(entries.remove(index));
+                expected.remove(index);
+            }
+
+            assertEquals(expected.size(), list.size());
+            if (operation % 100 == 0) {
+                check(list, expected, entries);
+            }
+        }
+        check(list, expected, entries);
+    }
+
+    @Test
+    public void indexesFollowMoves() {
+
+        Random random = new Random(23);
+        JavaTreeNode first = new JavaTreeNode("first");
+        JavaTreeNode second = new JavaTreeNode("second");
+        List<TreeNode> firstExpected = new ArrayList<TreeNode>();
+        List<TreeNode> secondExpected = new ArrayList<TreeNode>();
+
+        for (int index = 0; index < 500; index++) {
+            JavaTreeNode child = new JavaTreeNode("child " + index);
+            first.add(child);
+            firstExpected.add(child);
+        }
+
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            boolean fromFirst = secondExpected.isEmpty() || (!firstExpected.isEmpty() && random.nextBoolean());
+            JavaTreeNode from = fromFirst ? first : second;
+            List<TreeNode> fromExpected = fromFirst ? firstExpected : secondExpected;
+            boolean toFirst = random.nextBoolean();
+            JavaTreeNode to = toFirst ? first : second;
+            List<TreeNode> toExpected = toFirst ? firstExpected : secondExpected;
+
+            // moving a node removes it from its old parent before it is inserted
+            TreeNode child = fromExpected.remove(random.nextInt(fromExpected.size()));
+            int index = random.nextInt(toExpected.size() + 1);
+            to.insert((JavaTreeNode) child, index);
+            toExpected.add(index, child);
+
+            assertSame(to, child.getParent());
+            assertEquals(index, to.getIndex(child));
+            if (operation % 100 == 0) {
+                check(first, firstExpected);
+                check(second, secondExpected);
+            }
+        }
+        check(first, firstExpected);
+        check(second, secondExpected);
+    }
+
+    private static void check(JavaTreeChildList list, List<TreeNode> expected, List<JavaTreeChildList.Entry> entries) {
+
+        assertEquals(expected.size(), list.size());
+        for (int index = 0; index < expected.size(); index++) {
+            assertSame(expected.get(index), list.get(index));
+            assertEquals(index, list.indexOf(entries.get(index)));
+            assertEquals(index, list.indexOf(expected.get(index)));
+        }
+
+        Enumeration<TreeNode> elements = list.elements();
+        for (TreeNode node : expected) {
+            assertSame(node, elements.nextElement());
+        }
+        assertFalse(elements.hasMoreElements());
+        if (!expected.isEmpty()) {
+            assertSame(expected.get(0), list.getFirst());
+            assertSame(expected.get(expected.size() - 1), list.getLast());
+        }
+    }
+
+    private static void check(JavaTreeNode parent, List<TreeNode> expected) {
+
+        assertEquals(expected.size(), parent.getChildCount());
+        for (int index = 0; index < expected.size(); index++) {
+            assertSame(expected.get(index), parent.getChildAt(index));
+            assertEquals(index, parent.getIndex(expected.get(index)));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests replay of committed and uncommitted journal records and recovery of journals left behind by a crash.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeJournalTest {
+    // longest time to wait for records to be flushed in background
+    private final static long        FLUSH_TIMEOUT = 5000;
+
+    @Rule
+    public TemporaryFolder           folder        = new TemporaryFolder();
+
+    private JavaTreeActionController actionController;
+    private File                     document;
+
+    @Before
+    public void setUp() throws Exception {
+
+        actionController = new JavaTreeActionController(new JavaTreeOptions());
+        document = new File(folder.getRoot(), "document.jtd");
+
+        DefaultMutableTreeNode root = JavaTreeTestSupport.createNode("root", "root text");
+        root.add(JavaTreeTestSupport.createNode("first", "first text"));
+        root.add(JavaTreeTestSupport.createNode("second", "second text"));
+        assertTrue(actionController.saveTreeToFile(root, document));
+    }
+
+    @Test
+    public void replayAppliesOnlyCommittedRecords() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 2, "third");
+        rename((DefaultMutableTreeNode) model.getChild(model.getRoot(), 0), "renamed", journal);
+        journal.commit();
+        String committed = JavaTreeTestSupport.dump(model);
+
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "uncommitted");
+        journal.close();
+
+        DefaultTreeModel replayed = load();
+        JavaTreeJournal.replay(document, replayed);
+        assertEquals(committed, JavaTreeTestSupport.dump(replayed));
+
+        DefaultTreeModel opened = load();
+        JavaTreeJournal.open(document, opened).close();
+        assertEquals(committed, JavaTreeTestSupport.dump(opened));
+    }
+
+    @Test
+    public void moveIsReplayed() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        MutableTreeNode first = (MutableTreeNode) model.getChild(model.getRoot(), 0);
+        model.removeNodeFromParent(first);
+        model.insertNodeInto(first, (MutableTreeNode) model.getChild(model.getRoot(), 0), 0);
+        journal.commit();
+        journal.close();
+
+        DefaultTreeModel replayed = load();
+        JavaTreeJournal.replay(document, replayed);
+        assertEquals("root:root text(second:second text(first:first text()))", JavaTreeTestSupport.dump(replayed));
+    }
+
+    @Test
+    public void openAfterCrashAppliesUncommittedRecords() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "committed");
+        journal.commit();
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "uncommitted");
+        File crashed = copyWhenFlushed(journal);
+        String expected = JavaTreeTestSupport.dump(model);
+        journal.close();
+        restore(crashed);
+
+        DefaultTreeModel replayed = load();
+        JavaTreeJournal.replay(document, replayed);
+        assertEquals("root:root text(committed:committed text()first:first text()second:second text())",
+                     JavaTreeTestSupport.dump(replayed));
+
+        DefaultTreeModel opened = load();
+        JavaTreeJournal.open(document, opened).close();
+        assertEquals(expected, JavaTreeTestSupport.dump(opened));
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "committed");
+        journal.commit();
+        String committed = JavaTreeTestSupport.dump(model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "torn");
+        File crashed = copyWhenFlushed(journal);
+        journal.close();
+        restore(crashed);
+        File journalFile = JavaTreeJournal.getJournalFile(document);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        DefaultTreeModel opened = load();
+        JavaTreeJournal reopened = JavaTreeJournal.open(document, opened);
+        assertEquals(committed, JavaTreeTestSupport.dump(opened));
+
+        // torn record is cut off, so records recorded after it follow the committed ones
+        JavaTreeTestSupport.insert(opened, opened.getRoot(), 3, "last");
+        reopened.commit();
+        reopened.close();
+
+        DefaultTreeModel replayed = load();
+        JavaTreeJournal.replay(document, replayed);
+        assertEquals("root:root text(committed:committed text()first:first text()second:second text()"
+                     + "last:last text())", JavaTreeTestSupport.dump(replayed));
+    }
+
+    @Test
+    public void newJournalOfInterruptedCompactionIsRecovered() throws Exception {
+
+        // stale journal of the document before compaction replaced it
+        DefaultTreeModel model = load();
+        JavaTreeJournal stale = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "compacted");
+        stale.commit();
+        stale.close();
+        File staleJournal = new File(folder.getRoot(), "stale.journal");
+        Files.copy(JavaTreeJournal.getJournalFile(document).toPath(), staleJournal.toPath());
+
+        // compaction wrote the new document and the new journal, but crashed before renaming the journal
+        assertTrue(actionController.saveModelToFile(model, document, new JavaTreeProgress()));
+        JavaTreeJournal next = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 3, "after compaction");
+        next.commit();
+        next.close();
+        String expected = JavaTreeTestSupport.dump(model);
+        File journalFile = JavaTreeJournal.getJournalFile(document);
+        File nextJournal = new File(journalFile.getPath() + ".new");
+        Files.move(journalFile.toPath(), nextJournal.toPath());
+        Files.copy(staleJournal.toPath(), journalFile.toPath());
+
+        assertTrue(JavaTreeJournal.exists(document));
+        DefaultTreeModel opened = load();
+        JavaTreeJournal.open(document, opened).close();
+        assertEquals(expected, JavaTreeTestSupport.dump(opened));
+        assertFalse(nextJournal.exists());
+    }
+
+    @Test
+    public void journalOfAnotherDocumentIsMovedAside() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "lost");
+        journal.commit();
+        journal.close();
+        assertTrue(JavaTreeJournal.hasRecords(document));
+
+        // document written without the journal
+        DefaultMutableTreeNode root = JavaTreeTestSupport.createNode("other root", "other text");
+        assertTrue(actionController.saveTreeToFile(root, document));
+        assertFalse(JavaTreeJournal.hasRecords(document));
+
+        DefaultTreeModel opened = load();
+        JavaTreeJournal.open(document, opened).close();
+        assertEquals("other root:other text()", JavaTreeTestSupport.dump(opened));
+        assertTrue(new File(JavaTreeJournal.getJournalFile(document).getPath() + ".old").exists());
+    }
+
+    @Test
+    public void journalWithoutCommittedRecordsIsDeletedOnClose() throws Exception {
+
+        assertTrue(new JavaTreeOptions().isJournal());
+        assertFalse(new JavaTreeOptions().isJournalSave());
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "uncommitted");
+        copyWhenFlushed(journal);
+        assertTrue(JavaTreeJournal.hasRecords(document));
+        journal.close();
+
+        assertFalse(JavaTreeJournal.exists(document));
+        assertFalse(JavaTreeJournal.hasRecords(document));
+    }
+
+    @Test
+    public void deletedJournalLeavesNothingBehind() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeJournal journal = JavaTreeJournal.create(document, model);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 0, "saved");
+        journal.commit();
+
+        // whole document is saved over itself, so the journal is no longer needed
+        assertTrue(actionController.saveModelToFile(model, document, new JavaTreeProgress()));
+        journal.delete();
+
+        assertFalse(JavaTreeJournal.exists(document));
+        assertFalse(new File(JavaTreeJournal.getJournalFile(document).getPath() + ".old").exists());
+        assertEquals(JavaTreeTestSupport.dump(model), JavaTreeTestSupport.dump(load()));
+    }
+
+    private DefaultTreeModel load() {
+        return (DefaultTreeModel) JavaTreeTestSupport.load(actionController, document);
+    }
+
+    private static void rename(DefaultMutableTreeNode node, String title, JavaTreeJournal journal) {
+
+        ((JavaTreeNodeObject) node.getUserObject()).setTitle(title);
+        journal.recordEdit(new TreePath(node.getPath()));
+    }
+
+    /**
+     * Waits until uncommitted records of journal are flushed and returns a copy of its file, as a crash would leave it.
+     */
+    private File copyWhenFlushed(JavaTreeJournal journal) throws Exception {
+
+        File journalFile = JavaTreeJournal.getJournalFile(document);
+        long committed = journalFile.length();
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+        while (journalFile.length() == committed && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(journalFile.length() > committed);
+
+        File copy = new File(folder.getRoot(), "crashed.journal");
+        Files.copy(journalFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    private void restore(File crashed) throws Exception {
+        Files.copy(crashed.toPath(), JavaTreeJournal.getJournalFile(document).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that JavaTreeParallelLoader reads the same tree as the DOM and StAX loaders from a document large enough to be
+ * read in chunks.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeParallelLoaderTest {
+    // documents from this size are read in parallel
+    private final static long PARALLEL_SIZE = 4 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder    folder        = new TemporaryFolder();
+
+    @Test
+    public void parallelLoaderReadsSameTreeAsOtherLoaders() throws Exception {
+
+        // chunks are read only when the common pool has more than one thread, see the surefire configuration
+        assertTrue(ForkJoinPool.getCommonPoolParallelism() >= 2);
+
+        File document = new File(folder.getRoot(), "document.jtd");
+        DefaultMutableTreeNode saved = JavaTreeTestSupport.createTree(64, 300, 200);
+        assertTrue(new JavaTreeActionController(new JavaTreeOptions()).saveTreeToFile(saved, document));
+        assertTrue(document.length() > PARALLEL_SIZE);
+
+        String dom = dump(load(document, JavaTreeOptions.LoadEngine.DOM));
+        String stax = dump(load(document, JavaTreeOptions.LoadEngine.STAX));
+        String parallel = dump(JavaTreeParallelLoader.load(document, false, new JavaTreeProgress()));
+        String trusted = dump(JavaTreeParallelLoader.load(document, true, new JavaTreeProgress()));
+
+        assertEquals(dump(saved), dom);
+        assertEquals(dom, stax);
+        assertEquals(dom, parallel);
+        assertEquals(dom, trusted);
+    }
+
+    private static DefaultMutableTreeNode load(File document, JavaTreeOptions.LoadEngine engine) {
+
+        JavaTreeOptions options = new JavaTreeOptions();
+        options.setLoadEngine(engine);
+        return new JavaTreeActionController(options).loadTreeFromFile(document);
+    }
+
+    private static String dump(DefaultMutableTreeNode root) {
+        return JavaTreeTestSupport.dump(new DefaultTreeModel(root));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that JavaTreeParallelWriter writes the same bytes as JavaTreeStreamWriter for a tree large enough to be written
+ * in units.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeParallelWriterTest {
+    // trees from this number of nodes are written in parallel
+    private final static int      PARALLEL_NODES = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder        folder         = new TemporaryFolder();
+
+    private DefaultMutableTreeNode root;
+
+    @Before
+    public void setUp() {
+
+        // units are written only when the common pool has more than one thread, see the surefire configuration
+        assertTrue(ForkJoinPool.getCommonPoolParallelism() >= 2);
+
+        root = JavaTreeTestSupport.createTree(64, 300, 20);
+        assertTrue(root.getLeafCount() > PARALLEL_NODES);
+    }
+
+    @Test
+    public void indentedOutputMatchesStreamWriter() throws Exception {
+        assertArrayEquals(write(false, true), write(true, true));
+    }
+
+    @Test
+    public void unindentedOutputMatchesStreamWriter() throws Exception {
+        assertArrayEquals(write(false, false), write(true, false));
+    }
+
+    private byte[] write(boolean parallel, boolean indent) throws Exception {
+
+        File document = folder.newFile();
+        try (FileChannel channel = FileChannel.open(document.toPath(), StandardOpenOption.WRITE)) {
+            if (parallel) {
+                JavaTreeParallelWriter.write(root, channel, indent, new JavaTreeProgress());
+            } else {
+                JavaTreeStreamWriter.write(root, channel, indent, new JavaTreeProgress());
+            }
+        }
+        return Files.readAllBytes(document.toPath());
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that JavaTreeSearchIndex follows edits, moves and deletes of trees of nodes and of node stores made through
+ * the model, through JavaTreeTransaction and without model events.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSearchIndexTest {
+    private JavaTreeActionController actionController;
+
+    @Before
+    public void setUp() {
+        actionController = new JavaTreeActionController(new JavaTreeOptions());
+    }
+
+    @Test
+    public void lastTokenMatchesAsPrefix() throws Exception {
+
+        DefaultTreeModel model = new DefaultTreeModel(JavaTreeTestSupport.createTree(3, 2));
+        JavaTreeSearchIndex index = JavaTreeSearchIndex.build(model, new JavaTreeProgress());
+        assertEquals(10, index.size());
+
+        assertEquals(Arrays.asList("grandchild 0.0", "grandchild 0.1", "grandchild 1.0", "grandchild 1.1",
+                                   "grandchild 2.0", "grandchild 2.1"), titles(model, index.search("gran")));
+        assertEquals(Arrays.asList("child 1"), titles(model, index.search("child 1")));
+        // only the last token is a prefix
+        assertEquals(0, index.search("gran 1").size());
+        // tokens match in any order
+        assertEquals(Arrays.asList("grandchild 0.1", "grandchild 1.0"), titles(model, index.search("grandchild 1.0")));
+        assertEquals(0, index.search("").size());
+    }
+
+    @Test
+    public void indexFollowsTreeOfNodes() throws Exception {
+
+        DefaultTreeModel model = new DefaultTreeModel(JavaTreeTestSupport.createTree(3, 2));
+        JTree tree = actionController.createTree(model);
+        JavaTreeSearchIndex index = JavaTreeSearchIndex.build(model, new JavaTreeProgress());
+        Object root = model.getRoot();
+
+        // node detached from its parent and inserted again is moved, its subtree is indexed once
+        MutableTreeNode moved = (MutableTreeNode) model.getChild(root, 0);
+        model.removeNodeFromParent(moved);
+        model.insertNodeInto(moved, (MutableTreeNode) model.getChild(root, 0), 0);
+        assertEquals(6, index.search("grandchild").size());
+        assertEquals(Arrays.asList("child 0"), titles(model, index.search("child 0")));
+        assertEquals(10, index.size());
+
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        transaction.edit(moved, "renamed", "renamed text");
+        transaction.addChild(moved, 0, "added", "added text");
+        transaction.delete(model.getChild(root, 1));
+        transaction.commit();
+
+        assertEquals(Arrays.asList("renamed"), titles(model, index.search("renamed")));
+        assertEquals(Arrays.asList("added"), titles(model, index.search("add")));
+        assertEquals(0, index.search("child 0").size());
+        // child 2 and its children are deleted
+        assertEquals(Arrays.asList("grandchild 0.0", "grandchild 0.1", "grandchild 1.0", "grandchild 1.1"),
+                     titles(model, index.search("grandchild")));
+        assertEquals(Arrays.asList("root"), titles(model, index.search("root")));
+
+        // title changed without a model event is found after update
+        ((JavaTreeNodeObject) ((DefaultMutableTreeNode) model.getChild(root, 0)).getUserObject()).setTitle("quiet");
+        assertEquals(0, index.search("quiet").size());
+        index.update(model.getChild(root, 0));
+        assertEquals(Arrays.asList("quiet"), titles(model, index.search("quiet")));
+        assertEquals(0, index.search("child").size());
+    }
+
+    @Test
+    public void indexFollowsNodeStore() throws Exception {
+
+        JavaTreeNodeStore store = JavaTreeTestSupport.createStore(3, 2);
+        JavaTreeStoreTreeModel model = new JavaTreeStoreTreeModel(store);
+        JTree tree = actionController.createTree(model);
+        JavaTreeSearchIndex index = JavaTreeSearchIndex.build(model, new JavaTreeProgress());
+        int root = store.getRoot();
+
+        // detached node attached again is moved
+        int moved = store.getChildAt(root, 0);
+        model.detach(moved);
+        model.attach(moved, store.getChildAt(root, 1), 2);
+        assertEquals(6, index.search("grandchild").size());
+        model.move(moved, root, 0);
+        assertEquals(Arrays.asList("child 0"), titles(model, index.search("child 0")));
+
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        transaction.edit(Integer.valueOf(moved), "renamed", "renamed text");
+        transaction.delete(Integer.valueOf(store.getChildAt(root, 1)));
+        transaction.commit();
+        assertEquals(Arrays.asList("renamed"), titles(model, index.search("renamed")));
+        assertEquals(Arrays.asList("grandchild 0.0", "grandchild 0.1", "grandchild 2.0", "grandchild 2.1"),
+                     titles(model, index.search("grandchild")));
+
+        // ids of deleted nodes are reused by new nodes, which must not match the deleted ones
+        List<Integer> deleted = new ArrayList<Integer>();
+        int child = store.getChildAt(root, 1);
+        deleted.add(Integer.valueOf(child));
+        deleted.add(Integer.valueOf(store.getChildAt(child, 0)));
+        deleted.add(Integer.valueOf(store.getChildAt(child, 1)));
+        model.delete(child);
+        int reused = model.insertChild(root, 0, "fresh", "fresh text");
+        assertTrue(deleted.contains(Integer.valueOf(reused)));
+
+        assertEquals(Arrays.asList("fresh"), titles(model, index.search("fresh")));
+        assertEquals(Arrays.asList("grandchild 0.0", "grandchild 0.1"), titles(model, index.search("grandchild")));
+        assertEquals(0, index.search("child").size());
+        assertEquals(Arrays.asList("renamed"), titles(model, index.search("ren")));
+
+        store.setTitle(reused, "quiet");
+        store.setText(reused, "quiet text");
+        index.update(Integer.valueOf(reused));
+        assertEquals(Arrays.asList("quiet"), titles(model, index.search("quiet")));
+        assertEquals(0, index.search("fresh").size());
+    }
+
+    /**
+     * Returns sorted titles of nodes found by a search.
+     */
+    private static List<String> titles(TreeModel model, List<Object> nodes) {
+
+        List<String> titles = new ArrayList<String>();
+        for (Object node : nodes) {
+            if (model instanceof JavaTreeStoreTreeModel) {
+                titles.add(((JavaTreeStoreTreeModel) model).getStore().getTitle(((Integer) node).intValue()));
+            } else {
+                titles.add(((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getTitle());
+            }
+        }
+        Collections.sort(titles);
+        return titles;
+    }
+}
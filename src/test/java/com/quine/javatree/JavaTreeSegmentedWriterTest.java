@@ -0,0 +1,160 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeModel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests incremental saves of segmented documents and reopening of the saved documents.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeSegmentedWriterTest {
+    @Rule
+    public TemporaryFolder           folder = new TemporaryFolder();
+
+    private JavaTreeActionController actionController;
+    private File                     document;
+
+    @Before
+    public void setUp() throws Exception {
+
+        actionController = new JavaTreeActionController(new JavaTreeOptions());
+        document = new File(folder.getRoot(), "document" + JavaTreeSegmentedFormat.EXTENSION);
+
+        assertTrue(actionController.saveTreeToFile(JavaTreeTestSupport.createTree(8, 20), document));
+    }
+
+    @Test
+    public void updateWritesOnlyChangedSubtrees() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeSegmentTable table = bind(model);
+        JavaTreeChangeTracker tracker = new JavaTreeChangeTracker(model);
+        long length = document.length();
+
+        DefaultMutableTreeNode changed = (DefaultMutableTreeNode) model.getChild(model.getChild(model.getRoot(), 1), 2);
+        ((JavaTreeNodeObject) changed.getUserObject()).setTitle("changed");
+        model.nodeChanged(changed);
+        JavaTreeTestSupport.insert(model, model.getRoot(), 8, "added");
+        model.removeNodeFromParent((MutableTreeNode) model.getChild(model.getRoot(), 7));
+
+        JavaTreeSegmentTable updated = JavaTreeSegmentedWriter.update(model, document, table, tracker,
+                                                                      new JavaTreeProgress());
+
+        assertEquals(table.getGeneration() + 1, updated.getGeneration());
+        assertEquals(8, updated.getSegmentCount());
+        // unchanged children keep their segments, changed and added ones are appended
+        assertEquals(table.getOffset(0), updated.getOffset(0));
+        assertEquals(table.getOffset(2), updated.getOffset(2));
+        assertTrue(updated.getOffset(1) >= length);
+        assertTrue(updated.getOffset(7) >= length);
+
+        assertEquals(JavaTreeTestSupport.dump(model), JavaTreeTestSupport.dump(load()));
+        assertEquals(updated.getGeneration(), JavaTreeSegmentedFormat.readTable(document).getGeneration());
+    }
+
+    @Test
+    public void interruptedUpdateLeavesPreviousGeneration() throws Exception {
+
+        DefaultTreeModel model = load();
+        String saved = JavaTreeTestSupport.dump(model);
+        JavaTreeSegmentTable table = bind(model);
+        JavaTreeChangeTracker tracker = new JavaTreeChangeTracker(model);
+
+        JavaTreeTestSupport.insert(model, model.getChild(model.getRoot(), 0), 0, "added");
+        JavaTreeSegmentTable updated = JavaTreeSegmentedWriter.update(model, document, table, tracker,
+                                                                      new JavaTreeProgress());
+
+        // damage the header slot of the new generation, as if writing it was interrupted
+        int slot = (int) (updated.getGeneration() % 2) * JavaTreeSegmentedFormat.SLOT_SIZE;
+        try (FileChannel channel = FileChannel.open(document.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }), slot + 8);
+        }
+
+        assertEquals(table.getGeneration(), JavaTreeSegmentedFormat.readTable(document).getGeneration());
+        assertEquals(saved, JavaTreeTestSupport.dump(load()));
+    }
+
+    @Test
+    public void repeatedUpdatesRewriteTheFile() throws Exception {
+
+        DefaultTreeModel model = load();
+        JavaTreeSegmentTable table = bind(model);
+        JavaTreeChangeTracker tracker = new JavaTreeChangeTracker(model);
+
+        long generation = table.getGeneration();
+        for (int update = 0; update < 20; update++) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) model.getChild(model.getRoot(), update % 8);
+            ((JavaTreeNodeObject) child.getUserObject()).setTitle("update " + update);
+            model.nodeChanged(child);
+
+            table = JavaTreeSegmentedWriter.update(model, document, table, tracker, new JavaTreeProgress());
+            tracker.clear();
+
+            assertTrue(table.getGeneration() > generation);
+            generation = table.getGeneration();
+            // unused segments never take more space than the ones in use
+            assertTrue(document.length() <= 2 * (JavaTreeSegmentedFormat.HEADER_SIZE + table.getSegmentBytes()));
+            assertEquals(JavaTreeTestSupport.dump(model), JavaTreeTestSupport.dump(load()));
+        }
+        assertTrue(generation > 21);
+    }
+
+    private DefaultTreeModel load() {
+        return (DefaultTreeModel) JavaTreeTestSupport.load(actionController, document);
+    }
+
+    private JavaTreeSegmentTable bind(TreeModel model) throws Exception {
+
+        JavaTreeSegmentTable table = JavaTreeSegmentedFormat.readTable(document);
+        table.bind(model);
+        return table;
+    }
+}
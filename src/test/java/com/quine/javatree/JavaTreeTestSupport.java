@@ -0,0 +1,194 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import java.io.File;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeModel;
+
+/**
+ * JavaTreeTestSupport creates, loads, edits and prints the trees used by the tests.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+final class JavaTreeTestSupport {
+    // markup characters, a line break and a character outside the Basic Multilingual Plane
+    final static String SPECIAL = "<&> \"quoted\" 'single'\r\nnext line \uD83C\uDF33";
+
+    private JavaTreeTestSupport() {
+    }
+
+    /**
+     * Creates a tree whose root has children "child i" with grandchildren "grandchild i.j". Texts are "text i" and
+     * "text i.j".
+     * 
+     * @param children
+     * @param grandchildren
+     * 
+     * @return root
+     */
+    static DefaultMutableTreeNode createTree(int children, int grandchildren) {
+
+        DefaultMutableTreeNode root = createNode("root", "root text");
+        for (int child = 0; child < children; child++) {
+            DefaultMutableTreeNode node = createNode("child " + child, "text " + child);
+            for (int grandchild = 0; grandchild < grandchildren; grandchild++) {
+                node.add(createNode("grandchild " + child + "." + grandchild, "text " + child + "." + grandchild));
+            }
+            root.add(node);
+        }
+        return root;
+    }
+
+    /**
+     * Creates a tree like createTree does, with SPECIAL in the titles and SPECIAL followed by padding characters in the
+     * texts of the grandchildren.
+     * 
+     * @param children
+     * @param grandchildren
+     * @param padding
+     * 
+     * @return root
+     */
+    static DefaultMutableTreeNode createTree(int children, int grandchildren, int padding) {
+
+        StringBuilder text = new StringBuilder(SPECIAL).append(' ');
+        for (int index = 0; index < padding; index++) {
+            text.append((char) ('a' + index % 26));
+        }
+
+        DefaultMutableTreeNode root = createTree(children, 0);
+        for (int child = 0; child < children; child++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) root.getChildAt(child);
+            for (int grandchild = 0; grandchild < grandchildren; grandchild++) {
+                node.add(createNode("grandchild " + child + "." + grandchild + " " + SPECIAL,
+                                    "text " + child + "." + grandchild + " " + text));
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Creates a node store holding the tree createTree creates.
+     * 
+     * @param children
+     * @param grandchildren
+     * 
+     * @return store
+     */
+    static JavaTreeNodeStore createStore(int children, int grandchildren) {
+
+        JavaTreeNodeStore store = new JavaTreeNodeStore();
+        int root = store.createRoot("root", "root text");
+        for (int child = 0; child < children; child++) {
+            int node = store.addChild(root, "child " + child, "text " + child);
+            for (int grandchild = 0; grandchild < grandchildren; grandchild++) {
+                store.addChild(node, "grandchild " + child + "." + grandchild, "text " + child + "." + grandchild);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @param title
+     * @param text
+     * 
+     * @return node holding title and text
+     */
+    static DefaultMutableTreeNode createNode(String title, String text) {
+        return new JavaTreeNode(new JavaTreeNodeObject(title, text));
+    }
+
+    /**
+     * Loads file with the model of actionController options and fails if it could not be read.
+     * 
+     * @param actionController
+     * @param file
+     * 
+     * @return model
+     */
+    static TreeModel load(JavaTreeActionController actionController, File file) {
+
+        TreeModel model = actionController.loadModelFromFile(file, new JavaTreeProgress());
+        if (model == null) {
+            throw new AssertionError("could not load " + file);
+        }
+        return model;
+    }
+
+    /**
+     * Inserts a node titled title with text "title text" into parent at index.
+     * 
+     * @param model
+     * @param parent
+     * @param index
+     * @param title
+     */
+    static void insert(DefaultTreeModel model, Object parent, int index, String title) {
+        model.insertNodeInto(createNode(title, title + " text"), (MutableTreeNode) parent, index);
+    }
+
+    /**
+     * Returns "title:text" of every node of the model with children of every node in parentheses.
+     * 
+     * @param model
+     * 
+     * @return printed tree
+     */
+    static String dump(TreeModel model) {
+
+        StringBuilder builder = new StringBuilder();
+        dump(model, model.getRoot(), builder);
+        return builder.toString();
+    }
+
+    private static void dump(TreeModel model, Object node, StringBuilder builder) {
+
+        if (model instanceof JavaTreeStoreTreeModel) {
+            JavaTreeNodeStore store = ((JavaTreeStoreTreeModel) model).getStore();
+            int id = ((Integer) node).intValue();
+            builder.append(store.getTitle(id)).append(':').append(store.getText(id));
+        } else {
+            JavaTreeNodeObject object = (JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject();
+            builder.append(object.getTitle()).append(':').append(object.getText());
+        }
+        builder.append('(');
+        for (int index = 0; index < model.getChildCount(node); index++) {
+            dump(model, model.getChild(node, index), builder);
+        }
+        builder.append(')');
+    }
+}
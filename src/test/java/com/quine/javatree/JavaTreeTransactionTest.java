@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that rollback of a JavaTreeTransaction restores the model, for trees of nodes and for node stores.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeTransactionTest {
+    private JavaTreeActionController actionController;
+
+    @Before
+    public void setUp() {
+        actionController = new JavaTreeActionController(new JavaTreeOptions());
+    }
+
+    @Test
+    public void rollbackRestoresTreeOfNodes() {
+
+        JTree tree = actionController.createTree(new DefaultTreeModel(JavaTreeTestSupport.createTree(3, 1)));
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(tree);
+        String saved = JavaTreeTestSupport.dump(model);
+        Object deleted = model.getChild(model.getRoot(), 1);
+
+        edit(tree, model).rollback();
+
+        assertEquals(saved, JavaTreeTestSupport.dump(model));
+        // deleted node is put back, not a copy of it
+        assertSame(deleted, model.getChild(model.getRoot(), 1));
+    }
+
+    @Test
+    public void rollbackRestoresNodeStore() {
+
+        JavaTreeNodeStore store = JavaTreeTestSupport.createStore(3, 1);
+        JavaTreeStoreTreeModel storeModel = new JavaTreeStoreTreeModel(store);
+        JTree tree = actionController.createTree(storeModel);
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(tree);
+        String saved = JavaTreeTestSupport.dump(model);
+        int size = store.size();
+        Object deleted = model.getChild(model.getRoot(), 1);
+
+        edit(tree, model).rollback();
+
+        assertEquals(saved, JavaTreeTestSupport.dump(model));
+        assertEquals(size, store.size());
+        assertEquals(deleted, model.getChild(model.getRoot(), 1));
+    }
+
+    @Test
+    public void failedEditRollsBackTransaction() {
+
+        JTree tree = actionController.createTree(new DefaultTreeModel(JavaTreeTestSupport.createTree(3, 1)));
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(tree);
+        String saved = JavaTreeTestSupport.dump(model);
+
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        Object parent = model.getChild(model.getRoot(), 0);
+        transaction.addChild(parent, 0, "added", "added text");
+        transaction.edit(model.getChild(model.getRoot(), 2), "edited", "edited text");
+        try {
+            transaction.move(parent, model.getChild(parent, 0), 0);
+            fail("node was moved into its own subtree");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertFalse(transaction.isOpen());
+        assertEquals(saved, JavaTreeTestSupport.dump(model));
+    }
+
+    @Test
+    public void commitKeepsEdits() {
+
+        JavaTreeNodeStore store = JavaTreeTestSupport.createStore(3, 1);
+        JTree tree = actionController.createTree(new JavaTreeStoreTreeModel(store));
+        TreeModel model = JavaTreeRangeTreeModel.getDataModel(tree);
+        int deleted = ((Integer) model.getChild(model.getRoot(), 1)).intValue();
+
+        edit(tree, model).commit();
+
+        assertEquals("root:root text(grandchild 2.0:text 2.0()edited:edited text(child 0:text 0(added:added text()"
+                     + "grandchild 0.0:text 0.0())))", JavaTreeTestSupport.dump(model));
+        assertFalse(store.contains(deleted));
+    }
+
+    /**
+     * Opens a transaction that adds, deletes, moves and edits nodes of a tree with children child 0 to child 2.
+     */
+    private static JavaTreeTransaction edit(JTree tree, TreeModel model) {
+
+        JavaTreeTransaction transaction = JavaTreeTransaction.begin(tree);
+        Object root = model.getRoot();
+        Object first = model.getChild(root, 0);
+        Object last = model.getChild(root, 2);
+        transaction.addChild(first, 0, "added", "added text");
+        transaction.delete(model.getChild(root, 1));
+        transaction.move(model.getChild(last, 0), root, 0);
+        transaction.move(first, last, 0);
+        transaction.edit(last, "edited", "edited text");
+        return transaction;
+    }
+}
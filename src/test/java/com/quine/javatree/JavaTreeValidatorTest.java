@@ -0,0 +1,216 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright 2008-2018 Ivan Dejanovic and Quine Interactive
+ * www.quineinteractive.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+package com.quine.javatree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that every loader rejects documents that do not match javatree.dtd, and that documents whose checksum trailer
+ * does not match their content are validated completely even when trusted.
+ * 
+ * @author Ivan Dejanovic
+ * 
+ * @version 1.0
+ * 
+ * @since 1.0
+ * 
+ */
+
+public class JavaTreeValidatorTest {
+    // documents from this size are read in parallel
+    private final static long     PARALLEL_SIZE = 4 * 1024 * 1024;
+
+    // longest time to wait for a progressive load in seconds
+    private final static long     LOAD_TIMEOUT  = 60;
+
+    // text of the node that is changed, in the middle of the document
+    private final static String   CHANGED_TEXT  = "<Text>text 40.0 ";
+
+    @Rule
+    public TemporaryFolder        folder        = new TemporaryFolder();
+
+    private File                  document;
+    private ExecutorService       executor;
+
+    @Before
+    public void setUp() throws Exception {
+
+        // chunks are read only when the common pool has more than one thread, see the surefire configuration
+        assertTrue(ForkJoinPool.getCommonPoolParallelism() >= 2);
+
+        document = new File(folder.getRoot(), "document.jtd");
+        DefaultMutableTreeNode root = JavaTreeTestSupport.createTree(64, 300, 200);
+        assertTrue(new JavaTreeActionController(new JavaTreeOptions()).saveTreeToFile(root, document));
+        assertTrue(document.length() > PARALLEL_SIZE);
+        assertTrue(JavaTreeValidator.readTrailer(document) >= 0);
+
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void invalidDocumentIsRejectedByEveryLoader() throws Exception {
+
+        // Note is not an element of javatree.dtd, the document stays well formed and keeps its length
+        String content = read();
+        int start = content.indexOf(CHANGED_TEXT);
+        int end = content.indexOf("</Text>", start);
+        write(content.substring(0, start) + "<Note>" + content.substring(start + 6, end) + "</Note>"
+              + content.substring(end + 7));
+
+        assertRejected(false);
+        // trailer no longer matches, so trusted loaders validate the document too
+        assertRejected(true);
+    }
+
+    @Test
+    public void invalidDocumentWithDamagedTrailerIsRejected() throws Exception {
+
+        String content = read();
+        int start = content.indexOf(CHANGED_TEXT);
+        content = content.substring(0, start) + "<Title>extra</Title>" + content.substring(start);
+        // checksum of the trailer is not a number any more
+        int checksum = content.length() - JavaTreeValidator.TRAILER_SIZE + "<!-- JavaTree CRC32C ".length();
+        write(content.substring(0, checksum) + "zzzzzzzz" + content.substring(checksum + 8));
+        assertTrue(JavaTreeValidator.readTrailer(document) < 0);
+
+        assertRejected(true);
+    }
+
+    @Test
+    public void changedDocumentIsValidatedAndRead() throws Exception {
+
+        String content = read();
+        int start = content.indexOf(CHANGED_TEXT);
+        write(content.substring(0, start) + "<Text>TEXT" + content.substring(start + 10));
+
+        for (JavaTreeOptions.LoadEngine engine : JavaTreeOptions.LoadEngine.values()) {
+            DefaultMutableTreeNode root = load(engine, false, true);
+            assertNotNull(engine.name(), root);
+            assertEquals(engine.name(), "TEXT 40.0", getText(root, 40, 0).substring(0, 9));
+        }
+        DefaultMutableTreeNode lazy = load(JavaTreeOptions.LoadEngine.STAX, true, true);
+        assertEquals("TEXT 40.0", getText(lazy, 40, 0).substring(0, 9));
+        assertTrue(loadProgressively(true));
+    }
+
+    /**
+     * Loads the document with every loader and fails if any of them accepts it.
+     */
+    private void assertRejected(boolean trusted) throws Exception {
+
+        for (JavaTreeOptions.LoadEngine engine : JavaTreeOptions.LoadEngine.values()) {
+            assertNull(engine.name(), load(engine, false, trusted));
+        }
+        assertNull("lazy", load(JavaTreeOptions.LoadEngine.STAX, true, trusted));
+
+        try {
+            JavaTreeParallelLoader.load(document, trusted, new JavaTreeProgress());
+            fail("parallel loader accepted an invalid document");
+        } catch (Exception e) {
+            // expected
+        }
+        assertFalse("progressive", loadProgressively(trusted));
+    }
+
+    private DefaultMutableTreeNode load(JavaTreeOptions.LoadEngine engine, boolean lazy, boolean trusted) {
+
+        JavaTreeOptions options = new JavaTreeOptions();
+        options.setLoadEngine(engine);
+        options.setLazyOpen(lazy);
+        options.setTrustedOpen(trusted);
+        return new JavaTreeActionController(options).loadTreeFromFile(document);
+    }
+
+    /**
+     * Opens the document with JavaTreeProgressiveLoader and returns true if loading succeeded.
+     */
+    private boolean loadProgressively(final boolean trusted) throws Exception {
+
+        final CountDownLatch finished = new CountDownLatch(1);
+        final boolean[] success = new boolean[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                new JavaTreeProgressiveLoader(document, trusted, new JavaTreeProgressiveLoader.Listener() {
+                    public void started(DefaultTreeModel model) {
+                    }
+
+                    public void finished(boolean result) {
+                        success[0] = result;
+                        finished.countDown();
+                    }
+                }).start(executor);
+            }
+        });
+        assertTrue(finished.await(LOAD_TIMEOUT, TimeUnit.SECONDS));
+        return success[0];
+    }
+
+    private static String getText(DefaultMutableTreeNode root, int child, int grandchild) {
+
+        DefaultTreeModel model = new DefaultTreeModel(root);
+        Object node = model.getChild(model.getChild(root, child), grandchild);
+        return ((JavaTreeNodeObject) ((DefaultMutableTreeNode) node).getUserObject()).getText();
+    }
+
+    // documents are read and written as ISO-8859-1, which keeps every byte as it is
+    private String read() throws Exception {
+        return new String(Files.readAllBytes(document.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    private void write(String content) throws Exception {
+        Files.write(document.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}